@@ -48,10 +48,21 @@ android {
             if (project.findProperty("org.the3deer.android.engine.includeStl") == "true") {
                 java.srcDir("src/stl/java")
             }
+            if (project.findProperty("org.the3deer.android.engine.includePly") == "true") {
+                java.srcDir("src/ply/java")
+            }
             if (project.findProperty("org.the3deer.android.engine.includeDae") == "true") {
                 java.srcDir("src/dae/java")
             }
         }
+        getByName("test") {
+            if (project.findProperty("org.the3deer.android.engine.includeObj") == "true") {
+                java.srcDir("src/obj/test/java")
+            }
+            if (project.findProperty("org.the3deer.android.engine.includeGltf") == "true") {
+                java.srcDir("src/gltf/test/java")
+            }
+        }
     }
 
     if (project.findProperty("org.the3deer.android.engine.includeFbx") == "true") {
@@ -63,6 +74,11 @@ android {
         }
     }
 
+    testOptions {
+        // local unit tests run on the JVM: the android stubs return default values instead of throwing
+        unitTests.isReturnDefaultValues = true
+    }
+
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
@@ -76,6 +92,9 @@ android {
 dependencies {
     implementation(libs.androidx.core.ktx)
     implementation(libs.androidx.appcompat)
+    testImplementation(libs.junit)
+    // the xml pull parser of android.util.Xml, for the unit tests on the JVM
+    testImplementation(libs.kxml2)
 }
 
 // Javadoc configuration
@@ -23,6 +23,7 @@ public class ColladaLoaderTask extends LoaderTask {
         // 1. Load the new model using your new parser
         final Scene scene = new ColladaLoader().load(uri);
         List<Object3D> loadNew = scene.getObjects();
+        publishParsed(countVertices(loadNew));
         //Map<String, Object3D> collectNew = loadNew.stream().collect(Collectors.toMap(Object3D::getId, Function.identity()));
 
         for (Object3D obj : loadNew) {
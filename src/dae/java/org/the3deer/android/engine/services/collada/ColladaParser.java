@@ -3,8 +3,7 @@ package org.the3deer.android.engine.services.collada;
 import android.opengl.Matrix;
 
 import org.the3deer.android.engine.animation.Animation;
-import org.the3deer.android.engine.animation.JointTransform;
-import org.the3deer.android.engine.animation.KeyFrame;
+import org.the3deer.android.engine.animation.Track;
 import org.the3deer.android.engine.services.collada.entities.Controller;
 import org.the3deer.android.engine.services.collada.entities.EffectData;
 import org.the3deer.android.engine.services.collada.entities.Geometry;
@@ -16,6 +15,7 @@ import org.the3deer.android.engine.services.collada.entities.Source;
 import org.the3deer.android.engine.services.collada.entities.Vertex;
 import org.the3deer.android.engine.services.collada.entities.VertexWeights;
 import org.the3deer.android.engine.util.HoleCutter;
+import org.the3deer.util.xml.XmlNumberScanner;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserFactory;
 
@@ -25,7 +25,6 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -53,6 +52,9 @@ public class ColladaParser {
     // metadata
     private String authoringTool;
 
+    // numeric payloads parser
+    private final XmlNumberScanner scanner = new XmlNumberScanner();
+
     private static class Accessor {
         final int stride;
 
@@ -385,15 +387,7 @@ public class ColladaParser {
                     String countStr = parser.getAttributeValue(null, "count");
                     int count = Integer.parseInt(countStr);
                     floatData = new float[count];
-                    String textData = parser.nextText();
-
-                    try (java.util.Scanner scanner = new java.util.Scanner(textData)) {
-                        for (int i = 0; i < count; i++) {
-                            if (scanner.hasNextFloat()) {
-                                floatData[i] = scanner.nextFloat();
-                            }
-                        }
-                    }
+                    scanner.readFloats(parser, floatData);
                     break;
 
                 case "Name_array":
@@ -526,13 +520,7 @@ public class ColladaParser {
             if (parser.getEventType() == XmlPullParser.START_TAG) {
                 if ("p".equals(parser.getName())) {
                     // Standard Polygon
-                    String indexData = parser.nextText();
-                    String[] pStrings = indexData.trim().split("\\s+");
-                    int[] indices = null;
-                    indices = new int[pStrings.length];
-                    for (int i = 0; i < pStrings.length; i++) {
-                        indices[i] = Integer.parseInt(pStrings[i]);
-                    }
+                    int[] indices = scanner.readInts(parser, -1);
                 } else if ("ph".equals(parser.getName())) {
                     // Polygon with Holes
                     processPolygonWithHoles(parser, stride, vertexOffset, normalOffset, texOffset, colorOffset,
@@ -587,6 +575,10 @@ public class ColladaParser {
         String primitiveName = parser.getName(); // Either "triangles" or "polylist"
         int primitiveStartDepth = parser.getDepth();
 
+        // number of triangles or polygons, to preallocate the arrays
+        String countStr = parser.getAttributeValue(null, "count");
+        int count = (countStr != null) ? Integer.parseInt(countStr) : -1;
+
         // Set the mesh ID and material
         mesh.setId(primitiveName + "#" + parser.getLineNumber());
 
@@ -606,20 +598,19 @@ public class ColladaParser {
                     inputs.add(parseInput(parser));
                     break;
                 case "vcount":
-                    String vcountData = parser.nextText();
-                    String[] vcountStrings = vcountData.trim().split("\\s+");
-                    vcount = new int[vcountStrings.length];
-                    for (int i = 0; i < vcountStrings.length; i++) {
-                        vcount[i] = Integer.parseInt(vcountStrings[i]);
-                    }
+                    vcount = scanner.readInts(parser, count);
                     break;
                 case "p":
-                    String indexData = parser.nextText();
-                    String[] pStrings = indexData.trim().split("\\s+");
-                    rawIndices = new int[pStrings.length];
-                    for (int i = 0; i < pStrings.length; i++) {
-                        rawIndices[i] = Integer.parseInt(pStrings[i]);
+                    // inputs come first, so we already know the size of each vertex
+                    int size = -1;
+                    if (vcount != null) {
+                        size = 0;
+                        for (int vc : vcount) size += vc;
+                        size *= getStride(inputs);
+                    } else if (count >= 0 && "triangles".equals(primitiveName)) {
+                        size = count * 3 * getStride(inputs);
                     }
+                    rawIndices = scanner.readInts(parser, size);
                     break;
             }
         }
@@ -636,11 +627,9 @@ public class ColladaParser {
         Source colorSource = null;
 
         int vertexOffset = -1, normalOffset = -1, texOffset = -1, colorOffset = -1;
-        int stride = 0;
+        int stride = getStride(inputs);
 
         for (Input input : inputs) {
-            stride = Math.max(stride, input.offset + 1);
-
             if ("VERTEX".equals(input.semantic)) {
                 vertexOffset = input.offset;
                 List<Input> vertexInputs = verticesLibrary.get(input.sourceId);
@@ -676,13 +665,24 @@ public class ColladaParser {
             return;
         }
 
-        // Handle triangulation
-        List<Float> unrolledPositions = new ArrayList<>();
-        List<Float> unrolledNormals = new ArrayList<>();
-        List<Float> unrolledTexCoords = new ArrayList<>();
-        List<Float> unrolledColors = new ArrayList<>();
-        List<Integer> indicesList = new ArrayList<>();
+        // Count the unrolled vertices, so the arrays are allocated only once
+        int vertexTotal = 0;
+        if (vcount != null && vcount.length > 0) {
+            for (int vc : vcount) {
+                if (vc > 2) vertexTotal += (vc - 2) * 3;
+            }
+        } else {
+            vertexTotal = rawIndices.length / stride / 3 * 3;
+        }
 
+        final float[] unrolledPositions = new float[vertexTotal * 3];
+        final float[] unrolledNormals = normalOffset >= 0 && normalSource != null ? new float[vertexTotal * 3] : null;
+        final float[] unrolledTexCoords = texOffset >= 0 && texCoordSource != null ? new float[vertexTotal * 2] : null;
+        final float[] unrolledColors = colorOffset >= 0 && colorSource != null ? new float[vertexTotal * 4] : null;
+        final int[] indicesMap = new int[vertexTotal];
+
+        // Handle triangulation
+        int vertex = 0;
         if (vcount != null && vcount.length > 0) {
             // POLYLIST: Use vcount for triangulation
             int currentRawIndex = 0;
@@ -691,127 +691,108 @@ public class ColladaParser {
 
                 // Triangle fan triangulation
                 for (int k = 0; k < vertexCount - 2; k++) {
-                    addVertexToMesh(currentRawIndex, rawIndices, stride, vertexOffset, normalOffset, texOffset, colorOffset,
+                    addVertexToMesh(currentRawIndex, vertex++, rawIndices, stride, vertexOffset, normalOffset, texOffset, colorOffset,
                             positionSource, normalSource, texCoordSource, colorSource,
-                            unrolledPositions, unrolledNormals, unrolledTexCoords, unrolledColors, indicesList);
+                            unrolledPositions, unrolledNormals, unrolledTexCoords, unrolledColors, indicesMap);
 
-                    addVertexToMesh(currentRawIndex + k + 1, rawIndices, stride, vertexOffset, normalOffset, texOffset, colorOffset,
+                    addVertexToMesh(currentRawIndex + k + 1, vertex++, rawIndices, stride, vertexOffset, normalOffset, texOffset, colorOffset,
                             positionSource, normalSource, texCoordSource, colorSource,
-                            unrolledPositions, unrolledNormals, unrolledTexCoords, unrolledColors, indicesList);
+                            unrolledPositions, unrolledNormals, unrolledTexCoords, unrolledColors, indicesMap);
 
-                    addVertexToMesh(currentRawIndex + k + 2, rawIndices, stride, vertexOffset, normalOffset, texOffset, colorOffset,
+                    addVertexToMesh(currentRawIndex + k + 2, vertex++, rawIndices, stride, vertexOffset, normalOffset, texOffset, colorOffset,
                             positionSource, normalSource, texCoordSource, colorSource,
-                            unrolledPositions, unrolledNormals, unrolledTexCoords, unrolledColors, indicesList);
+                            unrolledPositions, unrolledNormals, unrolledTexCoords, unrolledColors, indicesMap);
                 }
 
                 currentRawIndex += vertexCount;
             }
         } else {
             // TRIANGLES: Already triangulated, just unroll
-            int triangleCount = rawIndices.length / stride / 3;
-            for (int i = 0; i < triangleCount; i++) {
-                for (int j = 0; j < 3; j++) {
-                    int vertexIndex = i * 3 + j;
-                    addVertexToMesh(vertexIndex, rawIndices, stride, vertexOffset, normalOffset, texOffset, colorOffset,
-                            positionSource, normalSource, texCoordSource, colorSource,
-                            unrolledPositions, unrolledNormals, unrolledTexCoords, unrolledColors, indicesList);
-                }
-            }
-        }
-
-        // Invert texture V-coordinates
-        if (!unrolledTexCoords.isEmpty()) {
-            for (int i = 1; i < unrolledTexCoords.size(); i += 2) {
-                unrolledTexCoords.set(i, 1.0f - unrolledTexCoords.get(i));
+            for (; vertex < vertexTotal; vertex++) {
+                addVertexToMesh(vertex, vertex, rawIndices, stride, vertexOffset, normalOffset, texOffset, colorOffset,
+                        positionSource, normalSource, texCoordSource, colorSource,
+                        unrolledPositions, unrolledNormals, unrolledTexCoords, unrolledColors, indicesMap);
             }
         }
 
-        // Add default colors if not present
-        /*if (unrolledColors.isEmpty() && colorSource == null) {
-            int vertexCount = unrolledPositions.size() / 3;
-            for (int i = 0; i < vertexCount; i++) {
-                unrolledColors.add(1.0f);
-                unrolledColors.add(1.0f);
-                unrolledColors.add(1.0f);
-                unrolledColors.add(1.0f);
-            }
-        }*/
-
         // Commit to mesh
-        mesh.setVertices(floatListToArray(unrolledPositions));
-        if (!unrolledNormals.isEmpty()) {
-            mesh.setNormals(floatListToArray(unrolledNormals));
+        mesh.setVertices(unrolledPositions);
+        if (unrolledNormals != null && unrolledNormals.length > 0) {
+            mesh.setNormals(unrolledNormals);
         }
-        if (!unrolledTexCoords.isEmpty()) {
-            mesh.setTextureCoords(floatListToArray(unrolledTexCoords));
+        if (unrolledTexCoords != null && unrolledTexCoords.length > 0) {
+            mesh.setTextureCoords(unrolledTexCoords);
         }
-        if (!unrolledColors.isEmpty()) {
-            mesh.setColors(floatListToArray(unrolledColors));
+        if (unrolledColors != null && unrolledColors.length > 0) {
+            mesh.setColors(unrolledColors);
         }
 
         // Store both indices and indices map
-        int[] indicesNew = new int[indicesList.size()];
-        for (int i = 0; i < indicesList.size(); i++) {
+        int[] indicesNew = new int[vertexTotal];
+        for (int i = 0; i < vertexTotal; i++) {
             indicesNew[i] = i;
         }
         // mesh.setIndices(rawIndices);
         mesh.setIndices(indicesNew);
-
-        int[] indicesMap = new int[indicesList.size()];
-        for (int i = 0; i < indicesList.size(); i++) {
-            indicesMap[i] = indicesList.get(i);
-        }
         mesh.setIndicesMap(indicesMap);
 
         geometry.addMesh(mesh);
-        logger.config("Assembled geometry '" + mesh.getId() + "' with " + (unrolledPositions.size() / 3) + " vertices.");
+        logger.config("Assembled geometry '" + mesh.getId() + "' with " + vertexTotal + " vertices.");
     }
 
-    // Helper to unroll a single vertex with simplified signature for mesh primitive parsing
-    private void addVertexToMesh(int vertexIndexInPoly, int[] indices, int stride,
+    /**
+     * @return the number of indices per vertex in the <p> element
+     */
+    private static int getStride(List<Input> inputs) {
+        int stride = 0;
+        for (Input input : inputs) {
+            stride = Math.max(stride, input.offset + 1);
+        }
+        return stride;
+    }
+
+    // Helper to unroll a single vertex with simplified signature for mesh primitive parsing.
+    // The texture V-coordinate is inverted
+    private void addVertexToMesh(int vertexIndexInPoly, int vertex, int[] indices, int stride,
                                  int vertexOffset, int normalOffset, int texOffset, int colorOffset,
                                  Source posSrc, Source normSrc, Source texSrc, Source colSrc,
-                                 List<Float> outPos, List<Float> outNorm, List<Float> outTex, List<Float> outCol, List<Integer> outIndices) {
+                                 float[] outPos, float[] outNorm, float[] outTex, float[] outCol, int[] outIndices) {
 
         int baseIndex = vertexIndexInPoly * stride;
 
         // Position (required)
         int pIdx = indices[baseIndex + vertexOffset];
         int pStride = posSrc.getStride();
-        outPos.add(posSrc.floatData[pIdx * pStride]);
-        outPos.add(posSrc.floatData[pIdx * pStride + 1]);
-        outPos.add(posSrc.floatData[pIdx * pStride + 2]);
-        outIndices.add(pIdx);
+        outPos[vertex * 3] = posSrc.floatData[pIdx * pStride];
+        outPos[vertex * 3 + 1] = posSrc.floatData[pIdx * pStride + 1];
+        outPos[vertex * 3 + 2] = posSrc.floatData[pIdx * pStride + 2];
+        outIndices[vertex] = pIdx;
 
         // Normal
-        if (normalOffset >= 0 && normSrc != null) {
+        if (outNorm != null) {
             int nIdx = indices[baseIndex + normalOffset];
             int nStride = normSrc.getStride();
-            outNorm.add(normSrc.floatData[nIdx * nStride]);
-            outNorm.add(normSrc.floatData[nIdx * nStride + 1]);
-            outNorm.add(normSrc.floatData[nIdx * nStride + 2]);
+            outNorm[vertex * 3] = normSrc.floatData[nIdx * nStride];
+            outNorm[vertex * 3 + 1] = normSrc.floatData[nIdx * nStride + 1];
+            outNorm[vertex * 3 + 2] = normSrc.floatData[nIdx * nStride + 2];
         }
 
         // TexCoord
-        if (texOffset >= 0 && texSrc != null) {
+        if (outTex != null) {
             int tIdx = indices[baseIndex + texOffset];
             int tStride = texSrc.getStride();
-            outTex.add(texSrc.floatData[tIdx * tStride]);
-            outTex.add(texSrc.floatData[tIdx * tStride + 1]);
+            outTex[vertex * 2] = texSrc.floatData[tIdx * tStride];
+            outTex[vertex * 2 + 1] = 1.0f - texSrc.floatData[tIdx * tStride + 1];
         }
 
         // Color
-        if (colorOffset >= 0 && colSrc != null) {
+        if (outCol != null) {
             int cIdx = indices[baseIndex + colorOffset];
             int cStride = colSrc.getStride();
-            outCol.add(colSrc.floatData[cIdx * cStride]);
-            outCol.add(colSrc.floatData[cIdx * cStride + 1]);
-            outCol.add(colSrc.floatData[cIdx * cStride + 2]);
-            if (cStride >= 4) {
-                outCol.add(colSrc.floatData[cIdx * cStride + 3]);
-            } else {
-                outCol.add(1.0f);
-            }
+            outCol[vertex * 4] = colSrc.floatData[cIdx * cStride];
+            outCol[vertex * 4 + 1] = colSrc.floatData[cIdx * cStride + 1];
+            outCol[vertex * 4 + 2] = colSrc.floatData[cIdx * cStride + 2];
+            outCol[vertex * 4 + 3] = cStride >= 4 ? colSrc.floatData[cIdx * cStride + 3] : 1.0f;
         }
     }
 
@@ -932,7 +913,7 @@ public class ColladaParser {
                 String tagName = parser.getName();
                 switch (tagName) {
                     case "bind_shape_matrix":
-                        skin.setBindShapeMatrix(readMatrix(parser.nextText()));
+                        skin.setBindShapeMatrix(readMatrix(parser));
                         break;
                     case "source":
                         Source source = parseSource(parser);
@@ -989,6 +970,8 @@ public class ColladaParser {
      * @return A VertexWeights object containing the final joint and weight data.
      */
     private VertexWeights parseVertexWeights(XmlPullParser parser, Map<String, Source> sources) throws Exception {
+        String countStr = parser.getAttributeValue(null, "count");
+        int count = (countStr != null) ? Integer.parseInt(countStr) : -1;
         Input jointInput = null;
         Input weightInput = null;
         int[] vcount = null;
@@ -1013,10 +996,17 @@ public class ColladaParser {
                     }
                     break;
                 case "vcount":
-                    vcount = parseIntArray(parser.nextText());
+                    vcount = scanner.readInts(parser, count);
                     break;
                 case "v":
-                    v = parseIntArray(parser.nextText());
+                    // inputs come first, so we know the size of each influence
+                    int size = -1;
+                    if (vcount != null) {
+                        size = 0;
+                        for (int vc : vcount) size += vc;
+                        size *= inputCount;
+                    }
+                    v = scanner.readInts(parser, size);
                     break;
             }
         }
@@ -1081,16 +1071,6 @@ public class ColladaParser {
         return new VertexWeights(finalJointIndices, finalWeights);
     }
 
-    private int[] parseIntArray(String text) {
-        if (text == null || text.trim().isEmpty()) return new int[0];
-        String[] parts = text.trim().split("\\s+");
-        int[] result = new int[parts.length];
-        for (int i = 0; i < parts.length; i++) {
-            result[i] = Integer.parseInt(parts[i]);
-        }
-        return result;
-    }
-
 
     /**
      * Parses the <library_images> section to map image IDs to their file names.
@@ -1449,26 +1429,21 @@ public class ColladaParser {
     // Add this method to ColladaParser.java
 
     /**
-     * Reads a 4x4 matrix from a space-separated string of16 floats.
+     * Reads a 4x4 matrix from the 16 space-separated floats of the current element.
      *
-     * @param textData The string containing the 16 float values.
-     * @return A float array of size 16.
+     * @param parser The XmlPullParser at the START_TAG of the element.
+     * @return A float array of size 16, or null if the element has less values.
      */
-    private float[] readMatrix(String textData) {
-        if (textData == null || textData.isEmpty()) {
+    private float[] readMatrix(XmlPullParser parser) throws Exception {
+        float[] matrix = new float[16];
+        int count = scanner.readFloats(parser, matrix);
+        if (count == 0) {
             return null;
         }
-
-        String[] floatStrings = textData.trim().split("\\s+");
-        if (floatStrings.length < 16) {
-            logger.log(Level.SEVERE, "Matrix data has less than 16 values. Found: " + floatStrings.length);
+        if (count < 16) {
+            logger.log(Level.SEVERE, "Matrix data has less than 16 values. Found: " + count);
             return null;
         }
-
-        float[] matrix = new float[16];
-        for (int i = 0; i < 16; i++) {
-            matrix[i] = Float.parseFloat(floatStrings[i]);
-        }
         return matrix;
     }
 
@@ -1518,10 +1493,11 @@ public class ColladaParser {
             String tagName = parser.getName();
             switch (tagName) {
                 case "translate": {
-                    String[] values = parser.nextText().trim().split("\\s+");
-                    float x = Float.parseFloat(values[0]);
-                    float y = Float.parseFloat(values[1]);
-                    float z = Float.parseFloat(values[2]);
+                    float[] values = new float[3];
+                    scanner.readFloats(parser, values);
+                    float x = values[0];
+                    float y = values[1];
+                    float z = values[2];
                     float[] translationMatrix = new float[16];
                     Matrix.setIdentityM(translationMatrix, 0);
                     Matrix.translateM(translationMatrix, 0, x, y, z);
@@ -1529,11 +1505,12 @@ public class ColladaParser {
                     break;
                 }
                 case "rotate": {
-                    String[] values = parser.nextText().trim().split("\\s+");
-                    float x = Float.parseFloat(values[0]);
-                    float y = Float.parseFloat(values[1]);
-                    float z = Float.parseFloat(values[2]);
-                    float angle = Float.parseFloat(values[3]);
+                    float[] values = new float[4];
+                    scanner.readFloats(parser, values);
+                    float x = values[0];
+                    float y = values[1];
+                    float z = values[2];
+                    float angle = values[3];
                     float[] rotationMatrix = new float[16];
                     Matrix.setIdentityM(rotationMatrix, 0);
                     Matrix.setRotateM(rotationMatrix, 0, angle, x, y, z);
@@ -1541,10 +1518,11 @@ public class ColladaParser {
                     break;
                 }
                 case "scale": {
-                    String[] values = parser.nextText().trim().split("\\s+");
-                    float x = Float.parseFloat(values[0]);
-                    float y = Float.parseFloat(values[1]);
-                    float z = Float.parseFloat(values[2]);
+                    float[] values = new float[3];
+                    scanner.readFloats(parser, values);
+                    float x = values[0];
+                    float y = values[1];
+                    float z = values[2];
                     float[] scaleMatrix = new float[16];
                     Matrix.setIdentityM(scaleMatrix, 0);
                     Matrix.scaleM(scaleMatrix, 0, x, y, z);
@@ -1552,9 +1530,8 @@ public class ColladaParser {
                     break;
                 }
                 case "matrix": {
-                    String[] values = parser.nextText().trim().split("\\s+");
                     float[] matrix = new float[16];
-                    for (int i = 0; i < 16; i++) matrix[i] = Float.parseFloat(values[i]);
+                    scanner.readFloats(parser, matrix);
                     // COLLADA matrices are column-major, Android's are too. But we need to transpose
                     // when reading from the file because of the order.
                     float[] transposedMatrix = new float[16];
@@ -1646,51 +1623,20 @@ public class ColladaParser {
             return; // No animations to build
         }
 
-        // --- Assemble the parsed channels into KeyFrame objects ---
-
-        // 1. Find all unique timestamps across all channels
-        TreeSet<Float> uniqueTimestamps = new TreeSet<>();
+        // --- Build one track per channel ---
+        List<Track> tracks = new ArrayList<>();
         for (ChannelData channel : allChannels) {
-            for (float time : channel.times) {
-                uniqueTimestamps.add(time);
-            }
+            addTracks(tracks, channel);
         }
-        List<Float> keyTimes = new ArrayList<>(uniqueTimestamps);
-        if (keyTimes.isEmpty()) {
+        if (tracks.isEmpty()) {
             return;
         }
 
-
-        // 2. Create a KeyFrame for each unique timestamp
-        KeyFrame[] keyFrames = new KeyFrame[keyTimes.size()];
-        for (int i = 0; i < keyTimes.size(); i++) {
-            keyFrames[i] = new KeyFrame(keyTimes.get(i), new HashMap<>());
-        }
-
-        // 3. Populate each KeyFrame's pose map
-        for (ChannelData channel : allChannels) {
-            for (int i = 0; i < channel.times.length; i++) {
-                float time = channel.times[i];
-                int keyFrameIndex = keyTimes.indexOf(time);
-                if (keyFrameIndex == -1) continue;
-
-                KeyFrame keyFrame = keyFrames[keyFrameIndex];
-                Map<String, JointTransform> pose = keyFrame.getPose();
-
-                JointTransform jointTransform = pose.computeIfAbsent(channel.targetNodeId, k -> new JointTransform());
-
-                // Apply the transformation from this channel
-                applyTransform(jointTransform, channel, i);
-            }
-        }
-
-        // 4. Create the final Animation object
-        // For now, we create one animation clip containing all keyframes.
-        float duration = keyTimes.get(keyTimes.size() - 1);
-        Animation animation = new Animation("COLLADA_Animation", duration, keyFrames);
+        // For now, we create one animation clip containing all channels.
+        Animation animation = new Animation("COLLADA_Animation", tracks.toArray(new Track[0]));
         animations.add(animation); // Assuming you have a `List<Animation> animations` field in the parser
 
-        logger.info("Successfully parsed 1 animation clip with " + keyFrames.length + " keyframes.");
+        logger.info("Successfully parsed 1 animation clip with " + tracks.size() + " tracks.");
     }
 
     /**
@@ -1804,13 +1750,8 @@ public class ColladaParser {
     private float[] parseSourceData(XmlPullParser parser) throws Exception {
         while (parser.next() != XmlPullParser.END_TAG || !parser.getName().equals("source")) {
             if (parser.getEventType() == XmlPullParser.START_TAG && "float_array".equals(parser.getName())) {
-                String text = parser.nextText();
-                String[] floatStrings = text.trim().split("\\s+");
-                float[] data = new float[floatStrings.length];
-                for (int i = 0; i < floatStrings.length; i++) {
-                    data[i] = Float.parseFloat(floatStrings[i]);
-                }
-                return data;
+                String countStr = parser.getAttributeValue(null, "count");
+                return scanner.readFloats(parser, (countStr != null) ? Integer.parseInt(countStr) : -1);
             }
         }
         return null;
@@ -1818,76 +1759,80 @@ public class ColladaParser {
 
 
     /**
-     * Applies a single transformation from a channel to a JointTransform at a specific time index.
+     * Builds the tracks of a channel
      */
-    private void applyTransform(JointTransform jointTransform, ChannelData channel, int timeIndex) {
-        if (channel == null || channel.targetTransform == null || jointTransform == null) {
-            logger.warning("Skipping applyTransform due to null channel/target/transform");
+    private void addTracks(List<Track> tracks, ChannelData channel) {
+        if (channel.targetTransform == null || channel.times.length == 0) {
+            logger.warning("Skipping channel due to null target/times");
             return;
         }
 
-        int base = Math.max(0, timeIndex * Math.max(1, channel.stride));
-        float value = 0f;
-        if (channel.values != null && base < channel.values.length) {
-            value = channel.values[base];
+        final String id = channel.targetNodeId;
+        final float[] times = channel.times;
+        final int stride = Math.max(1, channel.stride);
+        if (channel.values.length < times.length * stride) {
+            logger.warning("Animation channel has unexpected length: stride=" + stride + " valuesLength=" + channel.values.length);
+            return;
         }
 
-        String target = channel.targetTransform.toUpperCase();
-
-        switch (target) {
-            case "ROTATEZ.ANGLE":
-            case "ROTATIONZ.ANGLE":
-                jointTransform.addRotation(null, null, value);
+        switch (channel.targetTransform.toUpperCase()) {
+            case "ROTATEX.ANGLE":
+            case "ROTATIONX.ANGLE":
+                tracks.add(new Track(id, Track.EULER, 0, 1, times, component(channel, 0), Track.Interpolation.LINEAR));
                 break;
             case "ROTATEY.ANGLE":
             case "ROTATIONY.ANGLE":
-                jointTransform.addRotation(null, value, null);
+                tracks.add(new Track(id, Track.EULER, 1, 1, times, component(channel, 0), Track.Interpolation.LINEAR));
                 break;
-            case "ROTATEX.ANGLE":
-            case "ROTATIONX.ANGLE":
-                jointTransform.addRotation(value, null, null);
+            case "ROTATEZ.ANGLE":
+            case "ROTATIONZ.ANGLE":
+                tracks.add(new Track(id, Track.EULER, 2, 1, times, component(channel, 0), Track.Interpolation.LINEAR));
                 break;
             case "TRANSLATE.X":
             case "LOCATION.X":
-                jointTransform.addLocation(value, null, null);
+                tracks.add(new Track(id, Track.TRANSLATION, 0, 1, times, component(channel, 0), Track.Interpolation.LINEAR));
                 break;
             case "TRANSLATE.Y":
             case "LOCATION.Y":
-                jointTransform.addLocation(null, value, null);
+                tracks.add(new Track(id, Track.TRANSLATION, 1, 1, times, component(channel, 0), Track.Interpolation.LINEAR));
                 break;
             case "TRANSLATE.Z":
             case "LOCATION.Z":
-                jointTransform.addLocation(null, null, value);
+                tracks.add(new Track(id, Track.TRANSLATION, 2, 1, times, component(channel, 0), Track.Interpolation.LINEAR));
                 break;
             case "SCALE":
-                if (channel.stride == 3 && channel.values != null && base + 2 < channel.values.length) {
-                    float[] scale = new float[3];
-                    System.arraycopy(channel.values, base, scale, 0, 3);
-                    jointTransform.setScale(scale);
+                if (stride == 3) {
+                    tracks.add(new Track(id, Track.SCALE, times, channel.values));
                 } else {
-                    // Fallback for uniform scale if stride is 1 or data missing
-                    jointTransform.setScale(new float[]{value, value, value});
+                    // Fallback for uniform scale
+                    final float[] uniform = component(channel, 0);
+                    final float[] scale = new float[times.length * 3];
+                    for (int i = 0; i < uniform.length; i++) {
+                        scale[i * 3] = scale[i * 3 + 1] = scale[i * 3 + 2] = uniform[i];
+                    }
+                    tracks.add(new Track(id, Track.SCALE, times, scale));
                 }
                 break;
             case "SCALE.X":
-                jointTransform.addScale(value, null, null);
+                tracks.add(new Track(id, Track.SCALE, 0, 1, times, component(channel, 0), Track.Interpolation.LINEAR));
                 break;
             case "SCALE.Y":
-                jointTransform.addScale(null, value, null);
+                tracks.add(new Track(id, Track.SCALE, 1, 1, times, component(channel, 0), Track.Interpolation.LINEAR));
                 break;
             case "SCALE.Z":
-                jointTransform.addScale(null, null, value);
+                tracks.add(new Track(id, Track.SCALE, 2, 1, times, component(channel, 0), Track.Interpolation.LINEAR));
                 break;
             case "MATRIX":
             case "TRANSFORM":
-                if (channel.values != null && channel.stride >= 16 && base + 16 <= channel.values.length) {
-                    float[] matrix = new float[16];
-                    System.arraycopy(channel.values, base, matrix, 0, 16);
-                    float[] transposed = new float[16];
-                    Matrix.transposeM(transposed, 0, matrix, 0);
-                    jointTransform.setTransform(transposed); // This will overwrite others, as expected for a matrix.
+                if (stride >= 16) {
+                    // collada matrices are row-major
+                    final float[] matrices = new float[times.length * 16];
+                    for (int i = 0; i < times.length; i++) {
+                        Matrix.transposeM(matrices, i * 16, channel.values, i * stride);
+                    }
+                    tracks.addAll(Arrays.asList(Track.ofMatrices(id, times, matrices)));
                 } else {
-                    logger.warning("Matrix animation channel has unexpected stride/length: stride=" + channel.stride + " valuesLength=" + (channel.values!=null?channel.values.length:0));
+                    logger.warning("Matrix animation channel has unexpected stride: stride=" + stride);
                 }
                 break;
             default:
@@ -1896,6 +1841,18 @@ public class ColladaParser {
         }
     }
 
+    /**
+     * @return the specified component of every value of the channel
+     */
+    private static float[] component(ChannelData channel, int component) {
+        final int stride = Math.max(1, channel.stride);
+        final float[] ret = new float[channel.times.length];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = channel.values[i * stride + component];
+        }
+        return ret;
+    }
+
     // Add this helper method somewhere within ColladaParser.java
 
     /**
@@ -1943,10 +1900,10 @@ public class ColladaParser {
             if(parser.getEventType() != XmlPullParser.START_TAG) continue;
 
             if("p".equals(parser.getName())) {
-                String[] indices = parser.nextText().trim().split("\\s+");
+                int[] indices = scanner.readInts(parser, -1);
                 localOuterBoundary = parseLoopIndices(indices, stride, vertexOffset, normalOffset, texOffset, colorOffset);
             } else if ("h".equals(parser.getName())) {
-                String[] indices = parser.nextText().trim().split("\\s+");
+                int[] indices = scanner.readInts(parser, -1);
                 localHoles.add(parseLoopIndices(indices, stride, vertexOffset, normalOffset, texOffset, colorOffset));
             }
         }
@@ -2029,14 +1986,14 @@ public class ColladaParser {
         }
     }
 
-    // Helper to parse a string array of indices into Vertex objects
-    private List<Vertex> parseLoopIndices(String[] indices, int stride, int vOff, int nOff, int tOff, int cOff) {
+    // Helper to parse an array of indices into Vertex objects
+    private List<Vertex> parseLoopIndices(int[] indices, int stride, int vOff, int nOff, int tOff, int cOff) {
         List<Vertex> loop = new ArrayList<>();
         for (int i = 0; i < indices.length; i += stride) {
-            Vertex v = new Vertex(Integer.parseInt(indices[i + vOff]));
-            if (nOff >= 0) v.setNormalIndex(Integer.parseInt(indices[i + nOff]));
-            if (tOff >= 0) v.setTextureIndex(Integer.parseInt(indices[i + tOff]));
-            if (cOff >= 0) v.setColorIndex(Integer.parseInt(indices[i + cOff]));
+            Vertex v = new Vertex(indices[i + vOff]);
+            if (nOff >= 0) v.setNormalIndex(indices[i + nOff]);
+            if (tOff >= 0) v.setTextureIndex(indices[i + tOff]);
+            if (cOff >= 0) v.setColorIndex(indices[i + cOff]);
             loop.add(v);
         }
         return loop;
@@ -14,7 +14,12 @@ struct fbx_model_t {
     std::vector<fbx_primitive_t> primitives;
     std::vector<void*> allocated_buffers;
 
-    fbx_model_t() : scene(nullptr) {}
+    // bones of all the skin deformers, and their inverse bind matrices (16 floats, column-major)
+    bool skeleton_ready;
+    std::vector<ufbx_node*> joints;
+    std::vector<float> inverse_bind_matrices;
+
+    fbx_model_t() : scene(nullptr), skeleton_ready(false) {}
 
     ~fbx_model_t() {
         if (scene) ufbx_free_scene(scene);
@@ -2,6 +2,8 @@
 #include <string>
 #include <android/log.h>
 #include <cinttypes>
+#include <cmath>
+#include <cstring>
 #include <vector>
 #include "ufbx.h"
 #include "fbx_model.h"
@@ -317,29 +319,257 @@ Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetIndexBuffer(
     return NULL;
 }
 
-extern "C" JNIEXPORT jstring JNICALL
-Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetTexturePath(
-        JNIEnv* env, jobject, jlong modelPtr, jint meshIndex) {
+// Copy the data to a buffer owned by the model, that is freed with the model
+static jobject new_model_buffer(JNIEnv* env, fbx_model_t* model, const void* data, size_t size) {
+    void* buffer = malloc(size > 0 ? size : 1);
+    memcpy(buffer, data, size);
+    model->allocated_buffers.push_back(buffer);
+    return env->NewDirectByteBuffer(buffer, (jlong)size);
+}
+
+// Copy the 4x3 matrix to a 4x4 column-major matrix
+static void put_matrix(float* dst, const ufbx_matrix* m) {
+    for (int col = 0; col < 4; col++) {
+        dst[col * 4] = (float)m->cols[col].x;
+        dst[col * 4 + 1] = (float)m->cols[col].y;
+        dst[col * 4 + 2] = (float)m->cols[col].z;
+        dst[col * 4 + 3] = col == 3 ? 1.0f : 0.0f;
+    }
+}
+
+/*
+ * Skeleton shared by all the meshes: the bones of all the skin deformers, in order of appearance.
+ * The vertices are already in world space, so the inverse bind matrix maps the world to the bone:
+ * geometry_to_bone * inverse(geometry_to_world). A bone used by several meshes takes the first binding.
+ */
+static void build_skeleton(fbx_model_t* model) {
+    if (model->skeleton_ready) return;
+    model->skeleton_ready = true;
+
+    for (size_t i = 0; i < model->scene->nodes.count; i++) {
+        ufbx_node* node = model->scene->nodes.data[i];
+        if (!node->mesh || node->mesh->skin_deformers.count == 0) continue;
+
+        const ufbx_matrix world_to_geometry = ufbx_matrix_invert(&node->geometry_to_world);
+        const ufbx_skin_deformer* skin = node->mesh->skin_deformers.data[0];
+        for (size_t c = 0; c < skin->clusters.count; c++) {
+            const ufbx_skin_cluster* cluster = skin->clusters.data[c];
+            if (!cluster->bone_node) continue;
+
+            bool found = false;
+            for (ufbx_node* joint : model->joints) {
+                if (joint == cluster->bone_node) {
+                    found = true;
+                    break;
+                }
+            }
+            if (found) continue;
+
+            const ufbx_matrix inverse_bind = ufbx_matrix_mul(&cluster->geometry_to_bone, &world_to_geometry);
+            model->joints.push_back(cluster->bone_node);
+            model->inverse_bind_matrices.resize(model->joints.size() * 16);
+            put_matrix(&model->inverse_bind_matrices[(model->joints.size() - 1) * 16], &inverse_bind);
+        }
+    }
+    LOGI("Skeleton joints: %zu", model->joints.size());
+}
+
+// Index of the bone in the skeleton, or -1 if it's not a bone
+static int find_joint(fbx_model_t* model, const ufbx_node* node) {
+    for (size_t i = 0; i < model->joints.size(); i++) {
+        if (model->joints[i] == node) return (int)i;
+    }
+    return -1;
+}
+
+/*
+ * Indexed mesh. The faces are triangulated and grouped by material, and the corners with the same
+ * attributes are merged with ufbx_generate_indices(), so every vertex is stored only once.
+ *
+ * Returns an Object[] with:
+ *   0: positions (3 floats), 1: normals (3 floats), 2: colors (4 floats), 3: texture coordinates (2 floats),
+ *   4: tangents (3 floats), 5: indices (unsigned short if there are up to 65536 vertices, unsigned int otherwise),
+ *   6: int[] with the material index, the first index and the number of indices of every material part,
+ *   7: joints (4 floats, index of the bone in the skeleton), 8: weights (4 floats, normalized).
+ * The attributes that don't exist are null.
+ */
+extern "C" JNIEXPORT jobjectArray JNICALL
+Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetIndexedMesh(
+        JNIEnv* env, jobject, jlong modelPtr, jint meshIndex, jboolean flipY) {
     fbx_model_t *model = (fbx_model_t*)modelPtr;
     ufbx_node* node = find_mesh_node(model, meshIndex);
-    if (!node || node->materials.count == 0) return NULL;
+    if (!node || !node->mesh) return NULL;
 
-    ufbx_material *mat = node->materials.data[0];
-    if (mat->fbx.diffuse_color.texture) {
-        return env->NewStringUTF(mat->fbx.diffuse_color.texture->relative_filename.data);
+    ufbx_mesh *mesh = node->mesh;
+    const size_t num_corners = mesh->num_triangles * 3;
+    if (num_corners == 0) return NULL;
+
+    const bool has_normals = mesh->vertex_normal.exists;
+    const bool has_colors = mesh->vertex_color.exists;
+    const bool has_uvs = mesh->vertex_uv.exists;
+    const bool has_tangents = mesh->vertex_tangent.exists;
+    const ufbx_skin_deformer* skin = mesh->skin_deformers.count > 0 ? mesh->skin_deformers.data[0] : NULL;
+
+    // joint of every cluster
+    std::vector<float> cluster_joints;
+    if (skin) {
+        build_skeleton(model);
+        for (size_t c = 0; c < skin->clusters.count; c++) {
+            const int joint = find_joint(model, skin->clusters.data[c]->bone_node);
+            cluster_joints.push_back(joint != -1 ? (float)joint : 0.0f);
+        }
     }
-    return NULL;
+
+    // corners of all the triangles, grouped by material
+    std::vector<float> positions(num_corners * 3);
+    std::vector<float> normals(has_normals ? num_corners * 3 : 0);
+    std::vector<float> colors(has_colors ? num_corners * 4 : 0);
+    std::vector<float> uvs(has_uvs ? num_corners * 2 : 0);
+    std::vector<float> tangents(has_tangents ? num_corners * 3 : 0);
+    std::vector<float> joints(skin ? num_corners * 4 : 0);
+    std::vector<float> weights(skin ? num_corners * 4 : 0);
+    std::vector<jint> parts;
+
+    const ufbx_matrix normal_matrix = ufbx_matrix_for_normals(&node->geometry_to_world);
+    std::vector<uint32_t> triangle_indices(mesh->max_face_triangles * 3);
+    size_t corner = 0;
+
+    const size_t num_parts = mesh->material_parts.count > 0 ? mesh->material_parts.count : 1;
+    for (size_t p = 0; p < num_parts; p++) {
+        const ufbx_mesh_part* part = mesh->material_parts.count > 0 ? &mesh->material_parts.data[p] : NULL;
+        const size_t num_faces = part ? part->num_faces : mesh->faces.count;
+        const size_t first = corner;
+
+        for (size_t f = 0; f < num_faces; f++) {
+            const ufbx_face face = mesh->faces.data[part ? part->face_indices.data[f] : f];
+            const uint32_t num_triangles = ufbx_triangulate_face(triangle_indices.data(), triangle_indices.size(), mesh, face);
+            for (uint32_t k = 0; k < num_triangles * 3; k++, corner++) {
+                const uint32_t index = triangle_indices[k];
+
+                const ufbx_vec3 pos = transform_pos(&node->geometry_to_world, ufbx_get_vertex_vec3(&mesh->vertex_position, index));
+                positions[corner * 3] = (float)pos.x;
+                positions[corner * 3 + 1] = (float)pos.y;
+                positions[corner * 3 + 2] = (float)pos.z;
+
+                if (has_normals) {
+                    const ufbx_vec3 norm = transform_norm(&normal_matrix, ufbx_get_vertex_vec3(&mesh->vertex_normal, index));
+                    normals[corner * 3] = (float)norm.x;
+                    normals[corner * 3 + 1] = (float)norm.y;
+                    normals[corner * 3 + 2] = (float)norm.z;
+                }
+                if (has_colors) {
+                    const ufbx_vec4 col = ufbx_get_vertex_vec4(&mesh->vertex_color, index);
+                    colors[corner * 4] = (float)col.x;
+                    colors[corner * 4 + 1] = (float)col.y;
+                    colors[corner * 4 + 2] = (float)col.z;
+                    colors[corner * 4 + 3] = (float)col.w;
+                }
+                if (has_uvs) {
+                    const ufbx_vec2 uv = ufbx_get_vertex_vec2(&mesh->vertex_uv, index);
+                    uvs[corner * 2] = (float)uv.x;
+                    uvs[corner * 2 + 1] = flipY ? 1.0f - (float)uv.y : (float)uv.y;
+                }
+                if (has_tangents) {
+                    const ufbx_vec3 tang = transform_norm(&normal_matrix, ufbx_get_vertex_vec3(&mesh->vertex_tangent, index));
+                    tangents[corner * 3] = (float)tang.x;
+                    tangents[corner * 3 + 1] = (float)tang.y;
+                    tangents[corner * 3 + 2] = (float)tang.z;
+                }
+                if (skin) {
+                    // the weights are sorted by decreasing weight, so the first 4 are the most important
+                    const ufbx_skin_vertex vertex = skin->vertices.data[mesh->vertex_indices.data[index]];
+                    const uint32_t num_weights = vertex.num_weights < 4 ? vertex.num_weights : 4;
+                    float total = 0.0f;
+                    for (uint32_t w = 0; w < num_weights; w++) {
+                        total += (float)skin->weights.data[vertex.weight_begin + w].weight;
+                    }
+                    for (uint32_t w = 0; w < 4; w++) {
+                        if (w < num_weights && total > 0.0f) {
+                            const ufbx_skin_weight weight = skin->weights.data[vertex.weight_begin + w];
+                            joints[corner * 4 + w] = cluster_joints[weight.cluster_index];
+                            weights[corner * 4 + w] = (float)weight.weight / total;
+                        } else {
+                            joints[corner * 4 + w] = 0.0f;
+                            weights[corner * 4 + w] = 0.0f;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (corner > first) {
+            parts.push_back(part ? (jint)part->index : 0);
+            parts.push_back((jint)first);
+            parts.push_back((jint)(corner - first));
+        }
+    }
+
+    if (corner == 0) return NULL;
+
+    // merge the equal corners. the streams are compacted in place
+    std::vector<ufbx_vertex_stream> streams;
+    streams.push_back({positions.data(), corner, 3 * sizeof(float)});
+    if (has_normals) streams.push_back({normals.data(), corner, 3 * sizeof(float)});
+    if (has_colors) streams.push_back({colors.data(), corner, 4 * sizeof(float)});
+    if (has_uvs) streams.push_back({uvs.data(), corner, 2 * sizeof(float)});
+    if (has_tangents) streams.push_back({tangents.data(), corner, 3 * sizeof(float)});
+    if (skin) {
+        streams.push_back({joints.data(), corner, 4 * sizeof(float)});
+        streams.push_back({weights.data(), corner, 4 * sizeof(float)});
+    }
+
+    std::vector<uint32_t> indices(corner);
+    ufbx_error error;
+    const size_t num_vertices = ufbx_generate_indices(streams.data(), streams.size(), indices.data(), corner, NULL, &error);
+    if (error.type != UFBX_ERROR_NONE) {
+        LOGE("Failed to generate indices: %s", error.description.data);
+        return NULL;
+    }
+    LOGI("Mesh %d indexed. Corners: %zu, vertices: %zu", (int)meshIndex, corner, num_vertices);
+
+    jobjectArray result = env->NewObjectArray(9, env->FindClass("java/lang/Object"), NULL);
+    env->SetObjectArrayElement(result, 0, new_model_buffer(env, model, positions.data(), num_vertices * 3 * sizeof(float)));
+    if (has_normals) env->SetObjectArrayElement(result, 1, new_model_buffer(env, model, normals.data(), num_vertices * 3 * sizeof(float)));
+    if (has_colors) env->SetObjectArrayElement(result, 2, new_model_buffer(env, model, colors.data(), num_vertices * 4 * sizeof(float)));
+    if (has_uvs) env->SetObjectArrayElement(result, 3, new_model_buffer(env, model, uvs.data(), num_vertices * 2 * sizeof(float)));
+    if (has_tangents) env->SetObjectArrayElement(result, 4, new_model_buffer(env, model, tangents.data(), num_vertices * 3 * sizeof(float)));
+
+    if (num_vertices <= 65536) {
+        std::vector<uint16_t> short_indices(indices.begin(), indices.end());
+        env->SetObjectArrayElement(result, 5, new_model_buffer(env, model, short_indices.data(), corner * sizeof(uint16_t)));
+    } else {
+        env->SetObjectArrayElement(result, 5, new_model_buffer(env, model, indices.data(), corner * sizeof(uint32_t)));
+    }
+
+    jintArray parts_array = env->NewIntArray((jsize)parts.size());
+    env->SetIntArrayRegion(parts_array, 0, (jsize)parts.size(), parts.data());
+    env->SetObjectArrayElement(result, 6, parts_array);
+
+    if (skin) {
+        env->SetObjectArrayElement(result, 7, new_model_buffer(env, model, joints.data(), num_vertices * 4 * sizeof(float)));
+        env->SetObjectArrayElement(result, 8, new_model_buffer(env, model, weights.data(), num_vertices * 4 * sizeof(float)));
+    }
+    return result;
 }
 
-extern "C" JNIEXPORT jbyteArray JNICALL
-Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetTextureEmbeddedData(
-        JNIEnv* env, jobject, jlong modelPtr, jint meshIndex) {
-    fbx_model_t *model = (fbx_model_t*)modelPtr;
+// Material of the node (instance materials first), or null if there is none
+static ufbx_material* find_material(fbx_model_t* model, int meshIndex, int materialIndex) {
     ufbx_node* node = find_mesh_node(model, meshIndex);
-    if (!node || node->materials.count == 0) return NULL;
+    if (!node || materialIndex < 0) return nullptr;
+    if ((size_t)materialIndex < node->materials.count) return node->materials.data[materialIndex];
+    if (node->mesh && (size_t)materialIndex < node->mesh->materials.count) return node->mesh->materials.data[materialIndex];
+    return nullptr;
+}
 
-    ufbx_material *mat = node->materials.data[0];
-    if (mat->fbx.diffuse_color.texture && mat->fbx.diffuse_color.texture->content.size > 0) {
+static jstring get_texture_path(JNIEnv* env, ufbx_material* mat) {
+    if (mat && mat->fbx.diffuse_color.texture) {
+        return env->NewStringUTF(mat->fbx.diffuse_color.texture->relative_filename.data);
+    }
+    return NULL;
+}
+
+static jbyteArray get_texture_embedded_data(JNIEnv* env, ufbx_material* mat) {
+    if (mat && mat->fbx.diffuse_color.texture && mat->fbx.diffuse_color.texture->content.size > 0) {
         ufbx_blob blob = mat->fbx.diffuse_color.texture->content;
         jbyteArray result = env->NewByteArray(blob.size);
         env->SetByteArrayRegion(result, 0, blob.size, (const jbyte*)blob.data);
@@ -348,14 +578,32 @@ Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetTextureEmbeddedDat
     return NULL;
 }
 
-extern "C" JNIEXPORT jfloatArray JNICALL
-Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetMaterialColor(
+extern "C" JNIEXPORT jstring JNICALL
+Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetTexturePath(
         JNIEnv* env, jobject, jlong modelPtr, jint meshIndex) {
-    fbx_model_t *model = (fbx_model_t*)modelPtr;
-    ufbx_node* node = find_mesh_node(model, meshIndex);
-    if (!node || node->materials.count == 0) return NULL;
+    return get_texture_path(env, find_material((fbx_model_t*)modelPtr, meshIndex, 0));
+}
 
-    ufbx_material *mat = node->materials.data[0];
+extern "C" JNIEXPORT jstring JNICALL
+Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetMaterialTexturePath(
+        JNIEnv* env, jobject, jlong modelPtr, jint meshIndex, jint materialIndex) {
+    return get_texture_path(env, find_material((fbx_model_t*)modelPtr, meshIndex, materialIndex));
+}
+
+extern "C" JNIEXPORT jbyteArray JNICALL
+Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetTextureEmbeddedData(
+        JNIEnv* env, jobject, jlong modelPtr, jint meshIndex) {
+    return get_texture_embedded_data(env, find_material((fbx_model_t*)modelPtr, meshIndex, 0));
+}
+
+extern "C" JNIEXPORT jbyteArray JNICALL
+Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetMaterialTextureEmbeddedData(
+        JNIEnv* env, jobject, jlong modelPtr, jint meshIndex, jint materialIndex) {
+    return get_texture_embedded_data(env, find_material((fbx_model_t*)modelPtr, meshIndex, materialIndex));
+}
+
+static jfloatArray get_material_color(JNIEnv* env, ufbx_material* mat) {
+    if (!mat) return NULL;
 
     // Default color (Diffuse)
     ufbx_vec3 col = mat->fbx.diffuse_color.value_vec3;
@@ -375,6 +623,18 @@ Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetMaterialColor(
     return result;
 }
 
+extern "C" JNIEXPORT jfloatArray JNICALL
+Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetMaterialColor(
+        JNIEnv* env, jobject, jlong modelPtr, jint meshIndex) {
+    return get_material_color(env, find_material((fbx_model_t*)modelPtr, meshIndex, 0));
+}
+
+extern "C" JNIEXPORT jfloatArray JNICALL
+Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetMaterialDiffuseColor(
+        JNIEnv* env, jobject, jlong modelPtr, jint meshIndex, jint materialIndex) {
+    return get_material_color(env, find_material((fbx_model_t*)modelPtr, meshIndex, materialIndex));
+}
+
 extern "C" JNIEXPORT jobject JNICALL
 Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetModelAttribute(
         JNIEnv *env, jobject thiz, jlong modelPtr, jstring attributeName) {
@@ -400,3 +660,190 @@ Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetVersion(
     if (!model || !model->scene) return 0;
     return (jint)model->scene->metadata.version;
 }
+
+// Copy the translation (3), rotation quaternion (4, xyzw) and scale (3)
+static void put_transform(float* dst, const ufbx_transform* t) {
+    dst[0] = (float)t->translation.x;
+    dst[1] = (float)t->translation.y;
+    dst[2] = (float)t->translation.z;
+    dst[3] = (float)t->rotation.x;
+    dst[4] = (float)t->rotation.y;
+    dst[5] = (float)t->rotation.z;
+    dst[6] = (float)t->rotation.w;
+    dst[7] = (float)t->scale.x;
+    dst[8] = (float)t->scale.y;
+    dst[9] = (float)t->scale.z;
+}
+
+/*
+ * Node hierarchy. The nodes are referenced by their index in the scene.
+ *
+ * Returns an Object[] with:
+ *   0: String[] names, 1: int[] parent index (-1 for the root),
+ *   2: float[] local transforms (10 floats per node: translation, rotation quaternion and scale).
+ */
+extern "C" JNIEXPORT jobjectArray JNICALL
+Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetNodes(
+        JNIEnv* env, jobject, jlong modelPtr) {
+    fbx_model_t *model = (fbx_model_t*)modelPtr;
+    if (!model || !model->scene) return NULL;
+
+    const size_t count = model->scene->nodes.count;
+    jobjectArray names = env->NewObjectArray((jsize)count, env->FindClass("java/lang/String"), NULL);
+    std::vector<jint> parents(count);
+    std::vector<float> transforms(count * 10);
+    for (size_t i = 0; i < count; i++) {
+        const ufbx_node* node = model->scene->nodes.data[i];
+        jstring name = env->NewStringUTF(node->name.data);
+        env->SetObjectArrayElement(names, (jsize)i, name);
+        env->DeleteLocalRef(name);
+        parents[i] = node->parent ? (jint)node->parent->typed_id : -1;
+        put_transform(&transforms[i * 10], &node->local_transform);
+    }
+
+    jintArray parents_array = env->NewIntArray((jsize)count);
+    env->SetIntArrayRegion(parents_array, 0, (jsize)count, parents.data());
+    jfloatArray transforms_array = env->NewFloatArray((jsize)transforms.size());
+    env->SetFloatArrayRegion(transforms_array, 0, (jsize)transforms.size(), transforms.data());
+
+    jobjectArray result = env->NewObjectArray(3, env->FindClass("java/lang/Object"), NULL);
+    env->SetObjectArrayElement(result, 0, names);
+    env->SetObjectArrayElement(result, 1, parents_array);
+    env->SetObjectArrayElement(result, 2, transforms_array);
+    return result;
+}
+
+/*
+ * Skeleton shared by the skinned meshes. The joints of the meshes index this skeleton.
+ *
+ * Returns an Object[] with:
+ *   0: int[] node index of every joint, 1: float[] inverse bind matrices (16 floats per joint, column-major),
+ * or null if there are no skinned meshes.
+ */
+extern "C" JNIEXPORT jobjectArray JNICALL
+Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetSkeleton(
+        JNIEnv* env, jobject, jlong modelPtr) {
+    fbx_model_t *model = (fbx_model_t*)modelPtr;
+    if (!model || !model->scene) return NULL;
+
+    build_skeleton(model);
+    if (model->joints.empty()) return NULL;
+
+    std::vector<jint> nodes;
+    for (const ufbx_node* joint : model->joints) {
+        nodes.push_back((jint)joint->typed_id);
+    }
+    jintArray nodes_array = env->NewIntArray((jsize)nodes.size());
+    env->SetIntArrayRegion(nodes_array, 0, (jsize)nodes.size(), nodes.data());
+    jfloatArray matrices_array = env->NewFloatArray((jsize)model->inverse_bind_matrices.size());
+    env->SetFloatArrayRegion(matrices_array, 0, (jsize)model->inverse_bind_matrices.size(), model->inverse_bind_matrices.data());
+
+    jobjectArray result = env->NewObjectArray(2, env->FindClass("java/lang/Object"), NULL);
+    env->SetObjectArrayElement(result, 0, nodes_array);
+    env->SetObjectArrayElement(result, 1, matrices_array);
+    return result;
+}
+
+extern "C" JNIEXPORT jobjectArray JNICALL
+Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetAnimationNames(
+        JNIEnv* env, jobject, jlong modelPtr) {
+    fbx_model_t *model = (fbx_model_t*)modelPtr;
+    if (!model || !model->scene) return NULL;
+
+    const size_t count = model->scene->anim_stacks.count;
+    jobjectArray names = env->NewObjectArray((jsize)count, env->FindClass("java/lang/String"), NULL);
+    for (size_t i = 0; i < count; i++) {
+        jstring name = env->NewStringUTF(model->scene->anim_stacks.data[i]->name.data);
+        env->SetObjectArrayElement(names, (jsize)i, name);
+        env->DeleteLocalRef(name);
+    }
+    return names;
+}
+
+// Copy the key times of a baked channel, in seconds
+template <typename T>
+static void put_key_times(std::vector<float>& times, const T& keys) {
+    for (size_t k = 0; k < keys.count; k++) {
+        times.push_back((float)keys.data[k].time);
+    }
+}
+
+/*
+ * Animation baked by ufbx. The keys are not resampled: every node has its own translation, rotation and scale keys,
+ * as baked by ufbx (linear keys are kept, the non-linear curves are resampled by ufbx, see ufbx_bake_opts).
+ *
+ * Returns an Object[] with:
+ *   0: int[] node index of every animated node,
+ *   1: int[] number of keys of every node and channel (3 per node: translation, rotation and scale),
+ *   2: times of the keys (float), in seconds from the start of the animation, in the same order,
+ *   3: values of the keys (float, 3 per translation key, 4 per rotation key (quaternion xyzw), 3 per scale key),
+ *      in the same order,
+ * or null if the animation has no nodes.
+ */
+extern "C" JNIEXPORT jobjectArray JNICALL
+Java_org_the3deer_android_engine_services_fbx_FBXParser_fbxGetAnimation(
+        JNIEnv* env, jobject, jlong modelPtr, jint animationIndex) {
+    fbx_model_t *model = (fbx_model_t*)modelPtr;
+    if (!model || !model->scene) return NULL;
+    if (animationIndex < 0 || (size_t)animationIndex >= model->scene->anim_stacks.count) return NULL;
+
+    const ufbx_anim_stack* stack = model->scene->anim_stacks.data[animationIndex];
+
+    ufbx_bake_opts opts = { 0 };
+    // the keys start at 0, like the other animations of the engine
+    opts.trim_start_time = true;
+    // drop the keys of the linear segments. the rotations are interpolated with nlerp, so they are kept
+    opts.key_reduction_enabled = true;
+    ufbx_error error;
+    ufbx_baked_anim* baked = ufbx_bake_anim(model->scene, stack->anim, &opts, &error);
+    if (!baked) {
+        LOGE("Failed to bake animation: %s", error.description.data);
+        return NULL;
+    }
+    if (baked->nodes.count == 0) {
+        ufbx_free_baked_anim(baked);
+        return NULL;
+    }
+
+    std::vector<jint> nodes;
+    std::vector<jint> counts;
+    std::vector<float> times;
+    std::vector<float> values;
+    for (size_t i = 0; i < baked->nodes.count; i++) {
+        const ufbx_baked_node& node = baked->nodes.data[i];
+        nodes.push_back((jint)node.typed_id);
+        counts.push_back((jint)node.translation_keys.count);
+        counts.push_back((jint)node.rotation_keys.count);
+        counts.push_back((jint)node.scale_keys.count);
+
+        put_key_times(times, node.translation_keys);
+        for (size_t k = 0; k < node.translation_keys.count; k++) {
+            const ufbx_vec3& v = node.translation_keys.data[k].value;
+            values.insert(values.end(), { (float)v.x, (float)v.y, (float)v.z });
+        }
+        put_key_times(times, node.rotation_keys);
+        for (size_t k = 0; k < node.rotation_keys.count; k++) {
+            const ufbx_quat& q = node.rotation_keys.data[k].value;
+            values.insert(values.end(), { (float)q.x, (float)q.y, (float)q.z, (float)q.w });
+        }
+        put_key_times(times, node.scale_keys);
+        for (size_t k = 0; k < node.scale_keys.count; k++) {
+            const ufbx_vec3& v = node.scale_keys.data[k].value;
+            values.insert(values.end(), { (float)v.x, (float)v.y, (float)v.z });
+        }
+    }
+    ufbx_free_baked_anim(baked);
+    LOGI("Animation %d baked. Nodes: %zu, keys: %zu", (int)animationIndex, nodes.size(), times.size());
+
+    jintArray nodes_array = env->NewIntArray((jsize)nodes.size());
+    env->SetIntArrayRegion(nodes_array, 0, (jsize)nodes.size(), nodes.data());
+    jintArray counts_array = env->NewIntArray((jsize)counts.size());
+    env->SetIntArrayRegion(counts_array, 0, (jsize)counts.size(), counts.data());
+
+    jobjectArray result = env->NewObjectArray(4, env->FindClass("java/lang/Object"), NULL);
+    env->SetObjectArrayElement(result, 0, nodes_array);
+    env->SetObjectArrayElement(result, 1, counts_array);
+    env->SetObjectArrayElement(result, 2, new_model_buffer(env, model, times.data(), times.size() * sizeof(float)));
+    env->SetObjectArrayElement(result, 3, new_model_buffer(env, model, values.data(), values.size() * sizeof(float)));
+    return result;
+}
@@ -29,6 +29,36 @@ public class FBXParser {
     public native String fbxGetTexturePath(long modelPtr, int primitiveIndex);
     public native byte[] fbxGetTextureEmbeddedData(long modelPtr, int primitiveIndex);
     public native float[] fbxGetMaterialColor(long modelPtr, int primitiveIndex);
+    public native String fbxGetMaterialTexturePath(long modelPtr, int primitiveIndex, int materialIndex);
+    public native byte[] fbxGetMaterialTextureEmbeddedData(long modelPtr, int primitiveIndex, int materialIndex);
+    public native float[] fbxGetMaterialDiffuseColor(long modelPtr, int primitiveIndex, int materialIndex);
+    /**
+     * Deduplicated vertices and the indices, grouped by material.
+     *
+     * @return positions, normals, colors, texture coordinates, tangents, indices (short or int),
+     * the parts (material index, first index and index count of every part), joints and weights (4 floats per vertex),
+     * or null if the mesh is empty
+     */
+    public native Object[] fbxGetIndexedMesh(long modelPtr, int primitiveIndex, boolean flipY);
+    /**
+     * @return the names (String[]), the parent indices (int[], -1 for the root) and the local transforms
+     * (float[], translation, rotation quaternion and scale of every node)
+     */
+    public native Object[] fbxGetNodes(long modelPtr);
+    /**
+     * @return the node indices of the joints (int[]) and the inverse bind matrices (float[]),
+     * or null if no mesh is skinned
+     */
+    public native Object[] fbxGetSkeleton(long modelPtr);
+    public native String[] fbxGetAnimationNames(long modelPtr);
+    /**
+     * Animation baked by ufbx, with the keys of every node and channel
+     *
+     * @return the animated node indices (int[]), the number of keys of every node and channel (int[], translation,
+     * rotation and scale of every node), the key times (ByteBuffer of floats) and the key values (ByteBuffer of
+     * floats, 3 per translation and scale key and 4 per rotation quaternion key), or null if nothing is animated
+     */
+    public native Object[] fbxGetAnimation(long modelPtr, int animationIndex);
 
     // FBX Application Interface
     public FBXModel parseModel(String filePath){
@@ -56,13 +86,20 @@ public class FBXParser {
         final List<FBXMesh> meshes = new ArrayList<>();
         for (int i = 0; i < meshCount; i++) {
             final FBXMesh mesh = new FBXMesh();
-            
-            mesh.setVerticesBuffer(fbxGetVertexBuffer(handler, i));
-            mesh.setIndicesBuffer(fbxGetIndexBuffer(handler, i));
-            mesh.setNormalsBuffer(fbxGetNormalsBuffer(handler, i));
-            mesh.setColorsBuffer(fbxGetColorsBuffer(handler, i));
+
             // Default to flipY = true as it's the common case for your app
-            mesh.setTexCoordsBuffer(fbxGetTexCoordsBuffer(handler, i, true));
+            final Object[] indexed = fbxGetIndexedMesh(handler, i, true);
+            if (indexed != null) {
+                mesh.setVerticesBuffer((Buffer) indexed[0]);
+                mesh.setNormalsBuffer((Buffer) indexed[1]);
+                mesh.setColorsBuffer((Buffer) indexed[2]);
+                mesh.setTexCoordsBuffer((Buffer) indexed[3]);
+                mesh.setTangentsBuffer((Buffer) indexed[4]);
+                mesh.setIndicesBuffer((Buffer) indexed[5]);
+                mesh.setParts((int[]) indexed[6]);
+                mesh.setJointsBuffer((Buffer) indexed[7]);
+                mesh.setWeightsBuffer((Buffer) indexed[8]);
+            }
             mesh.setTexturePath(fbxGetTexturePath(handler, i));
             mesh.setTextureEmbeddedData(fbxGetTextureEmbeddedData(handler, i));
             
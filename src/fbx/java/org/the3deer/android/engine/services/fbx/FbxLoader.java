@@ -2,20 +2,31 @@ package org.the3deer.android.engine.services.fbx;
 
 import android.opengl.GLES20;
 
+import org.the3deer.android.engine.animation.Animation;
+import org.the3deer.android.engine.animation.Track;
+import org.the3deer.android.engine.model.AnimatedModel;
+import org.the3deer.android.engine.model.Element;
+import org.the3deer.android.engine.model.Node;
 import org.the3deer.android.engine.model.Object3D;
 
 import org.the3deer.android.engine.model.Material;
 import org.the3deer.android.engine.model.Scene;
+import org.the3deer.android.engine.model.Skin;
 import org.the3deer.android.engine.model.Texture;
+import org.the3deer.android.engine.model.Transform;
 import org.the3deer.android.engine.services.LoadListener;
 import org.the3deer.android.engine.services.fbx.dto.FBXMesh;
 import org.the3deer.android.engine.services.fbx.dto.FBXModel;
+import org.the3deer.util.math.Quaternion;
 
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
@@ -24,6 +35,11 @@ public class FbxLoader {
 
     private static final Logger logger = Logger.getLogger(FbxLoader.class.getSimpleName());
 
+    /**
+     * The native indices are unsigned shorts up to this number of vertices, and ints above
+     */
+    private static final int MAX_SHORT_VERTICES = 65536;
+
     final FBXParser parser;
 
     public FbxLoader() {
@@ -47,6 +63,25 @@ public class FbxLoader {
             // build scene
             final Scene scene = new Scene("fbx_scene");
 
+            // build skeleton. the node hierarchy is only needed for skinning and animations
+            final Object[] skeleton = parser.fbxGetSkeleton(model.getNativeHandler());
+            final String[] animationNames = parser.fbxGetAnimationNames(model.getNativeHandler());
+            final boolean animated = animationNames != null && animationNames.length > 0;
+            List<Node> nodes = null;
+            Skin skin = null;
+            if (skeleton != null || animated) {
+                nodes = loadNodes(model);
+                for (Node node : nodes) {
+                    if (node.getParent() == null) {
+                        scene.getRootNodes().add(node);
+                    }
+                }
+            }
+            if (skeleton != null) {
+                skin = loadSkin(skeleton, nodes);
+                scene.getSkins().add(skin);
+            }
+
             // build objects
             for (int i = 0; i < meshCount; i++) {
                 final FBXMesh fbxMesh = model.getMesh(i);
@@ -82,51 +117,213 @@ public class FbxLoader {
                     texCoordsBuffer = tbb.asFloatBuffer();
                 }
 
-                // Texture Path & Embedded Data
-                Material material = null;
-                final String texturePath = fbxMesh.getTexturePath();
-                final byte[] textureEmbeddedData = parser.fbxGetTextureEmbeddedData(model.getNativeHandler(), i);
-
-                if (textureEmbeddedData != null) {
-                    logger.info("Embedded Texture found for mesh: " + i);
-                    material = new Material();
-                    material.setColorTexture(new Texture().setData(textureEmbeddedData));
-                } else if (texturePath != null && !texturePath.isEmpty()) {
-                    logger.info("External Texture Path: " + texturePath);
-                    material = new Material();
-                    material.setColorTexture(new Texture().setFile(texturePath));
-                }
+                // Elements, one per material
+                final List<Element> elements = new ArrayList<>();
+                final ByteBuffer ibb = (ByteBuffer) fbxMesh.getIndicesBuffer();
+                final int[] parts = fbxMesh.getParts();
+                if (ibb != null && parts != null) {
+                    ibb.order(ByteOrder.nativeOrder());
+                    final int vertexCount = vertexBuffer.capacity() / 3;
+                    final Buffer indices = vertexCount <= MAX_SHORT_VERTICES ? ibb.asShortBuffer() : ibb.asIntBuffer();
+                    for (int p = 0; p < parts.length; p += 3) {
+                        indices.limit(parts[p + 1] + parts[p + 2]);
+                        indices.position(parts[p + 1]);
+                        final Buffer elementIndices = indices instanceof ShortBuffer ?
+                                ((ShortBuffer) indices).slice() : ((IntBuffer) indices).slice();
+                        indices.clear();
 
-                // Fallback to Material Color if no texture
-                if (material == null) {
-                    float[] diffuseColor = parser.fbxGetMaterialColor(model.getNativeHandler(), i);
-                    if (diffuseColor != null) {
-                        material = new Material();
-                        material.setDiffuse(diffuseColor);
-                        material.setAlpha(diffuseColor[3]);
+                        final Element element = new Element("fbx_mesh_" + i + "_" + parts[p], elementIndices);
+                        element.setMaterial(loadMaterial(model, i, parts[p]));
+                        elements.add(element);
                     }
                 }
 
-                // IMPORTANT: We use the constructor WITHOUT indicesBuffer
-                // because our vertices are already "unrolled" in triangle order by ufbx.
-                final Object3D mesh = new Object3D(vertexBuffer);
+                // Skinning. The skins share the skeleton
+                final Object3D mesh;
+                if (skin != null && fbxMesh.getJointsBuffer() != null && fbxMesh.getWeightsBuffer() != null) {
+                    final ByteBuffer jbb = (ByteBuffer) fbxMesh.getJointsBuffer();
+                    final ByteBuffer wbb = (ByteBuffer) fbxMesh.getWeightsBuffer();
+                    jbb.order(ByteOrder.nativeOrder());
+                    wbb.order(ByteOrder.nativeOrder());
+
+                    final Skin meshSkin = skin.clone();
+                    meshSkin.setJoints(jbb.asFloatBuffer());
+                    meshSkin.setWeights(wbb.asFloatBuffer());
+                    mesh = new AnimatedModel(vertexBuffer).setSkin(meshSkin);
+                } else {
+                    mesh = new Object3D(vertexBuffer);
+                }
                 mesh.setId("fbx_mesh_" + i);
                 mesh.setNormalsBuffer(normalsBuffer);
                 mesh.setColorsBuffer(colorsBuffer);
                 mesh.setTextureCoordsArrayBuffer(texCoordsBuffer);
                 mesh.setDrawMode(GLES20.GL_TRIANGLES);
-                mesh.setIndexed(false);
-                mesh.setMaterial(material);
-                
+                mesh.setElements(elements);
+                mesh.setIndexed(true);
+
                 ret.add(mesh);
 
                 callback.onLoadObject(scene, mesh);
             }
 
+            // animations
+            if (animated) {
+                scene.setAnimations(loadAnimations(model, animationNames, nodes));
+            }
+
             // notify
             callback.onLoadScene(scene);
 
         }
         return ret;
     }
+
+    /**
+     * Build the node hierarchy. The node id is the index of the node in the model
+     *
+     * @param model the model
+     * @return all the nodes
+     */
+    private List<Node> loadNodes(FBXModel model) {
+        final Object[] data = parser.fbxGetNodes(model.getNativeHandler());
+        final String[] names = (String[]) data[0];
+        final int[] parents = (int[]) data[1];
+        final float[] transforms = (float[]) data[2];
+
+        final List<Node> nodes = new ArrayList<>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            final Node node = new Node(i);
+            node.setName(names[i] != null && !names[i].isEmpty() ? names[i] : "Node " + i);
+            final int offset = i * 10;
+            node.setLocalTransform(new Transform(
+                    toFloats(transforms, offset + 7, 3),
+                    new Quaternion(transforms[offset + 3], transforms[offset + 4], transforms[offset + 5], transforms[offset + 6]),
+                    toFloats(transforms, offset, 3)));
+            nodes.add(node);
+        }
+        for (int i = 0; i < parents.length; i++) {
+            if (parents[i] == -1) continue;
+            final Node parent = nodes.get(parents[i]);
+            parent.addChild(nodes.get(i));
+            nodes.get(i).setParent(parent);
+        }
+        logger.info("FBX nodes: " + nodes.size());
+        return nodes;
+    }
+
+    /**
+     * Build the skeleton shared by all the skinned meshes. The vertices are in world space,
+     * so the joints are traversed from the root of the model
+     *
+     * @param skeleton the joint node indices and the inverse bind matrices
+     * @param nodes    all the nodes
+     * @return the skin, without the joints and weights of the vertices
+     */
+    private Skin loadSkin(Object[] skeleton, List<Node> nodes) {
+        final int[] joints = (int[]) skeleton[0];
+        final float[] inverseBindMatrices = (float[]) skeleton[1];
+
+        final Skin skin = new Skin("fbx_skin", inverseBindMatrices, joints);
+        final String[] jointNames = new String[joints.length];
+        for (int j = 0; j < joints.length; j++) {
+            final Node jointNode = nodes.get(joints[j]);
+            jointNode.setJointIndex(j);
+            jointNames[j] = jointNode.getName();
+        }
+        skin.setJointNames(jointNames);
+        skin.setRootJoint(nodes.get(joints[0]).getRoot());
+
+        logger.info("FBX skeleton. Joints: " + joints.length);
+        return skin;
+    }
+
+    /**
+     * Build the animations from the keys baked by the native parser.
+     * Every node has its own translation, rotation and scale keys, that are copied into one track per channel
+     *
+     * @param model the model
+     * @param names the animation names
+     * @param nodes all the nodes
+     * @return the animations
+     */
+    private List<Animation> loadAnimations(FBXModel model, String[] names, List<Node> nodes) {
+        final List<Animation> animations = new ArrayList<>();
+        for (int a = 0; a < names.length; a++) {
+            final Object[] data = parser.fbxGetAnimation(model.getNativeHandler(), a);
+            if (data == null) continue;
+
+            final int[] animatedNodes = (int[]) data[0];
+            final int[] keyCounts = (int[]) data[1];
+            final FloatBuffer times = ((ByteBuffer) data[2]).order(ByteOrder.nativeOrder()).asFloatBuffer();
+            final FloatBuffer values = ((ByteBuffer) data[3]).order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+            // one track per node and channel. the channels without keys are taken from the bind pose
+            final List<Track> tracks = new ArrayList<>();
+            int keys = 0;
+            for (int n = 0; n < animatedNodes.length; n++) {
+                final String id = nodes.get(animatedNodes[n]).getId();
+                for (int c = 0; c < 3; c++) {
+                    final int count = keyCounts[n * 3 + c];
+                    final int path = c == 0 ? Track.TRANSLATION : c == 1 ? Track.ROTATION : Track.SCALE;
+                    final float[] trackTimes = new float[count];
+                    final float[] trackValues = new float[count * (path == Track.ROTATION ? 4 : 3)];
+                    times.get(trackTimes);
+                    values.get(trackValues);
+                    if (count > 0) {
+                        tracks.add(new Track(id, path, trackTimes, trackValues));
+                        keys += count;
+                    }
+                }
+            }
+            if (tracks.isEmpty()) continue;
+
+            final String name = names[a] != null && !names[a].isEmpty() ? names[a] : "Animation " + a;
+            animations.add(new Animation(name, tracks.toArray(new Track[0])));
+            logger.info("FBX animation: " + name + ", nodes: " + animatedNodes.length + ", keys: " + keys);
+        }
+        return animations;
+    }
+
+    private static Float[] toFloats(float[] src, int offset, int count) {
+        final Float[] ret = new Float[count];
+        for (int i = 0; i < count; i++) {
+            ret[i] = src[offset + i];
+        }
+        return ret;
+    }
+
+    /**
+     * Build the material from the texture (embedded or external) or from the diffuse color
+     *
+     * @param model         the model
+     * @param meshIndex     the mesh
+     * @param materialIndex the material of the mesh
+     * @return the material, or null if the mesh has no material
+     */
+    private Material loadMaterial(FBXModel model, int meshIndex, int materialIndex) {
+        Material material = null;
+        final String texturePath = parser.fbxGetMaterialTexturePath(model.getNativeHandler(), meshIndex, materialIndex);
+        final byte[] textureEmbeddedData = parser.fbxGetMaterialTextureEmbeddedData(model.getNativeHandler(), meshIndex, materialIndex);
+
+        if (textureEmbeddedData != null) {
+            logger.info("Embedded Texture found for mesh: " + meshIndex + ", material: " + materialIndex);
+            material = new Material();
+            material.setColorTexture(new Texture().setData(textureEmbeddedData));
+        } else if (texturePath != null && !texturePath.isEmpty()) {
+            logger.info("External Texture Path: " + texturePath);
+            material = new Material();
+            material.setColorTexture(new Texture().setFile(texturePath));
+        }
+
+        // Fallback to Material Color if no texture
+        if (material == null) {
+            float[] diffuseColor = parser.fbxGetMaterialDiffuseColor(model.getNativeHandler(), meshIndex, materialIndex);
+            if (diffuseColor != null) {
+                material = new Material();
+                material.setDiffuse(diffuseColor);
+                material.setAlpha(diffuseColor[3]);
+            }
+        }
+        return material;
+    }
 }
@@ -31,6 +31,7 @@ public final class FbxLoaderTask extends LoaderTask {
     protected List<Object3D> build() throws Exception {
         try {
             final List<Object3D> load = loader.load(uri, callback);
+            publishParsed(countVertices(load));
             final Scene sceneDefault = new Scene();
             sceneDefault.getObjects().addAll(load);
             return load;
@@ -13,6 +13,13 @@ public class FBXMesh {
     private Buffer colorsBuffer;
     private Buffer texCoordsBuffer;
     private Buffer tangentsBuffer;
+
+    // material index, first index and index count of every part
+    private int[] parts;
+
+    // skinning
+    private Buffer jointsBuffer;
+    private Buffer weightsBuffer;
     
     private String texturePath;
     private String normalTexturePath;
@@ -66,6 +73,33 @@ public class FBXMesh {
         this.tangentsBuffer = tangentsBuffer;
     }
 
+    /**
+     * @return the material index, the first index and the index count of every part
+     */
+    public int[] getParts() {
+        return parts;
+    }
+
+    public void setParts(int[] parts) {
+        this.parts = parts;
+    }
+
+    public Buffer getJointsBuffer() {
+        return jointsBuffer;
+    }
+
+    public void setJointsBuffer(Buffer jointsBuffer) {
+        this.jointsBuffer = jointsBuffer;
+    }
+
+    public Buffer getWeightsBuffer() {
+        return weightsBuffer;
+    }
+
+    public void setWeightsBuffer(Buffer weightsBuffer) {
+        this.weightsBuffer = weightsBuffer;
+    }
+
     public String getTexturePath() {
         return texturePath;
     }
@@ -165,6 +165,25 @@ public final class GltfAssetReader
         return read(rawGltfData);
     }
 
+    /**
+     * Read the glTF asset from the given byte buffer, which contains the
+     * whole file, from its current position up to its limit.<br>
+     * <br>
+     * In contrast to the {@link #readWithoutReferences(InputStream)} method,
+     * the data is not copied: The binary data of a binary glTF asset will 
+     * be a slice of the given buffer.
+     * 
+     * @param byteBuffer The byte buffer
+     * @return The {@link GltfAsset}
+     * @throws IOException If an IO error occurred
+     */
+    public GltfAsset readWithoutReferences(ByteBuffer byteBuffer) 
+        throws IOException
+    {
+        RawGltfData rawGltfData = RawGltfDataReader.read(byteBuffer);
+        return read(rawGltfData);
+    }
+
     /**
      * Read the {@link GltfAsset} from the given {@link RawGltfData}
      * 
@@ -174,33 +193,37 @@ public final class GltfAssetReader
      */
     GltfAsset read(RawGltfData rawGltfData) throws IOException
     {
-        GltfReader gltfReader = new GltfReader();
-        gltfReader.setJsonErrorConsumer(jsonErrorConsumer);        
         ByteBuffer jsonData = rawGltfData.getJsonData();
-        try (InputStream jsonInputStream =
-            Buffers.createByteBufferInputStream(jsonData))
+        int majorVersion = GltfStreamReader.readMajorVersion(jsonData);
+        if (majorVersion == 1)
         {
-            gltfReader.read(jsonInputStream);
-            int majorVersion = gltfReader.getMajorVersion();
-            if (majorVersion == 1)
+            GltfReader gltfReader = new GltfReader();
+            gltfReader.setJsonErrorConsumer(jsonErrorConsumer);        
+            try (InputStream jsonInputStream =
+                Buffers.createByteBufferInputStream(jsonData))
             {
+                gltfReader.read(jsonInputStream);
                 de.javagl.jgltf.impl.v1.GlTF gltfV1 = 
                     gltfReader.getAsGltfV1();
                 return new GltfAssetV1(gltfV1, 
                     rawGltfData.getBinaryData());
             }
-            else if (majorVersion == 2)
-            {
-                de.javagl.jgltf.impl.v2.GlTF gltfV2 = 
-                    gltfReader.getAsGltfV2();
-                return new GltfAssetV2(gltfV2, 
-                    rawGltfData.getBinaryData());
-            }
-            else
-            {
-                throw new IOException(
-                    "Unsupported major version: " + majorVersion);
-            }
+        }
+        else if (majorVersion == 2)
+        {
+            // The streaming reader avoids the intermediate JSON tree
+            // and the data binding, see GltfStreamReader
+            GltfStreamReader gltfStreamReader = 
+                new GltfStreamReader(jsonErrorConsumer);
+            de.javagl.jgltf.impl.v2.GlTF gltfV2 = 
+                gltfStreamReader.readV2(jsonData);
+            return new GltfAssetV2(gltfV2, 
+                rawGltfData.getBinaryData());
+        }
+        else
+        {
+            throw new IOException(
+                "Unsupported major version: " + majorVersion);
         }
     }
     
@@ -29,7 +29,13 @@ package de.javagl.jgltf.model.io;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Logger;
@@ -103,6 +109,97 @@ public class GltfReferenceResolver
         }
     }
     
+    /**
+     * Submits the {@link #resolve(GltfReference, Function) resolution} of
+     * each {@link GltfReference} of the given list to the given executor.<br>
+     * <br>
+     * The references are submitted in the order of the list, so with a 
+     * bounded executor, the first references are resolved first. The time
+     * that was required for resolving each reference is logged.
+     * 
+     * @param references The {@link GltfReference} objects
+     * @param uriResolver The function for resolving a URI string
+     * into a byte buffer. It must be thread-safe.
+     * @param executor The executor
+     * @return The futures of the resolution tasks, in the order of the list
+     */
+    public static List<Future<?>> resolveAllAsync(
+        Iterable<? extends GltfReference> references, 
+        Function<? super String, ? extends ByteBuffer> uriResolver,
+        ExecutorService executor)
+    {
+        Objects.requireNonNull(references, "The references may not be null");
+        Objects.requireNonNull(uriResolver, "The uriResolver may not be null");
+        Objects.requireNonNull(executor, "The executor may not be null");
+
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (GltfReference reference : references) 
+        {
+            futures.add(executor.submit(() -> 
+            {
+                long start = System.currentTimeMillis();
+                resolve(reference, uriResolver);
+                logger.info("Resolved " + reference.getName() + " (" 
+                    + reference.getUri() + ") in " 
+                    + (System.currentTimeMillis() - start) + " ms");
+            }));
+        }
+        return futures;
+    }
+
+    /**
+     * Waits until all the given resolution tasks are done.<br>
+     * <br>
+     * If the calling thread is interrupted, or one of the tasks fails, 
+     * the pending tasks are cancelled.
+     * 
+     * @param futures The futures, as returned by 
+     * {@link #resolveAllAsync(Iterable, Function, ExecutorService)}
+     * @throws InterruptedException If the calling thread was interrupted
+     * @throws CancellationException If one of the tasks was cancelled
+     */
+    public static void awaitAll(List<? extends Future<?>> futures) 
+        throws InterruptedException
+    {
+        Objects.requireNonNull(futures, "The futures may not be null");
+        try
+        {
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException | RuntimeException e)
+        {
+            cancelAll(futures);
+            throw e;
+        }
+        catch (ExecutionException e)
+        {
+            cancelAll(futures);
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(
+                "Could not resolve reference: " + cause, cause);
+        }
+    }
+
+    /**
+     * Cancels all the given resolution tasks that are not done yet
+     * 
+     * @param futures The futures
+     */
+    public static void cancelAll(List<? extends Future<?>> futures)
+    {
+        for (Future<?> future : futures)
+        {
+            future.cancel(true);
+        }
+    }
+    
     /**
      * Pass the {@link GltfReference#getUri() URI} of the given 
      * {@link GltfReference} to the given resolver function, 
@@ -0,0 +1,1125 @@
+package de.javagl.jgltf.model.io;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.AccessorSparse;
+import de.javagl.jgltf.impl.v2.AccessorSparseIndices;
+import de.javagl.jgltf.impl.v2.AccessorSparseValues;
+import de.javagl.jgltf.impl.v2.Animation;
+import de.javagl.jgltf.impl.v2.AnimationChannel;
+import de.javagl.jgltf.impl.v2.AnimationChannelTarget;
+import de.javagl.jgltf.impl.v2.AnimationSampler;
+import de.javagl.jgltf.impl.v2.Asset;
+import de.javagl.jgltf.impl.v2.Buffer;
+import de.javagl.jgltf.impl.v2.BufferView;
+import de.javagl.jgltf.impl.v2.Camera;
+import de.javagl.jgltf.impl.v2.CameraOrthographic;
+import de.javagl.jgltf.impl.v2.CameraPerspective;
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.impl.v2.GlTFChildOfRootProperty;
+import de.javagl.jgltf.impl.v2.GlTFProperty;
+import de.javagl.jgltf.impl.v2.Image;
+import de.javagl.jgltf.impl.v2.Material;
+import de.javagl.jgltf.impl.v2.MaterialNormalTextureInfo;
+import de.javagl.jgltf.impl.v2.MaterialOcclusionTextureInfo;
+import de.javagl.jgltf.impl.v2.MaterialPbrMetallicRoughness;
+import de.javagl.jgltf.impl.v2.Mesh;
+import de.javagl.jgltf.impl.v2.MeshPrimitive;
+import de.javagl.jgltf.impl.v2.Node;
+import de.javagl.jgltf.impl.v2.Sampler;
+import de.javagl.jgltf.impl.v2.Scene;
+import de.javagl.jgltf.impl.v2.Skin;
+import de.javagl.jgltf.impl.v2.Texture;
+import de.javagl.jgltf.impl.v2.TextureInfo;
+
+/**
+ * A reader for the JSON part of a version 2.0 glTF, based on the
+ * streaming Jackson {@link JsonParser}.<br>
+ * <br>
+ * The {@link GlTF} is filled in a single pass, without the intermediate
+ * tree and the reflection of the data binding. Models with many nodes
+ * and accessors are read several times faster, with a fraction of the
+ * garbage.<br>
+ * <br>
+ * The unknown properties and the <code>extras</code> are skipped, as well
+ * as the extensions that are not {@link #SUPPORTED_EXTENSIONS supported}.
+ * Invalid values are reported to the {@link JsonError} consumer, like
+ * in the data binding.
+ */
+final class GltfStreamReader
+{
+    /**
+     * The extensions that are kept. The payload of the others is skipped
+     */
+    static final Set<String> SUPPORTED_EXTENSIONS =
+        Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "KHR_draco_mesh_compression",
+            "EXT_meshopt_compression",
+            "KHR_texture_basisu",
+            "KHR_materials_volume")));
+
+    /**
+     * The factory for the parsers. It is thread-safe
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Reads a property of an object
+     *
+     * @param <T> The type of the object
+     */
+    private interface PropertyReader<T>
+    {
+        /**
+         * Read the value of the property. The parser is at the first token
+         * of the value
+         *
+         * @param name The property name
+         * @param target The object
+         * @return Whether the property is known
+         * @throws IOException If the value cannot be read
+         */
+        boolean read(String name, T target) throws IOException;
+    }
+
+    /**
+     * Reads an element of a list
+     *
+     * @param <T> The type of the element
+     */
+    private interface ElementReader<T>
+    {
+        /**
+         * Read the element at the current token
+         *
+         * @return The element
+         * @throws IOException If the JSON cannot be read
+         */
+        T read() throws IOException;
+    }
+
+    /**
+     * The consumer of the errors
+     */
+    private final Consumer<? super JsonError> jsonErrorConsumer;
+
+    /**
+     * The parser
+     */
+    private JsonParser parser;
+
+    /**
+     * Creates a new reader
+     *
+     * @param jsonErrorConsumer The consumer of the {@link JsonError}s.
+     * May be <code>null</code>
+     */
+    GltfStreamReader(Consumer<? super JsonError> jsonErrorConsumer)
+    {
+        this.jsonErrorConsumer = jsonErrorConsumer;
+    }
+
+    /**
+     * Returns the major version of the glTF, that is declared in the
+     * <code>asset</code>. Only the <code>asset</code> is read, and the
+     * other properties are skipped.
+     *
+     * @param jsonData The JSON data. Its position is not modified
+     * @return The major version. If there is no version, then 1 is returned
+     * @throws IOException If the JSON cannot be read
+     */
+    static int readMajorVersion(ByteBuffer jsonData) throws IOException
+    {
+        try (JsonParser p = createParser(jsonData))
+        {
+            if (p.nextToken() != JsonToken.START_OBJECT)
+            {
+                throw new IOException("Expected glTF object");
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME)
+            {
+                String name = p.getCurrentName();
+                JsonToken token = p.nextToken();
+                if (!"asset".equals(name) || token != JsonToken.START_OBJECT)
+                {
+                    p.skipChildren();
+                    continue;
+                }
+                while (p.nextToken() == JsonToken.FIELD_NAME)
+                {
+                    String assetName = p.getCurrentName();
+                    JsonToken assetToken = p.nextToken();
+                    if ("version".equals(assetName) && assetToken.isScalarValue())
+                    {
+                        return VersionUtils.computeMajorMinorPatch(
+                            p.getValueAsString("1.0"))[0];
+                    }
+                    p.skipChildren();
+                }
+                return 1;
+            }
+            return 1;
+        }
+    }
+
+    /**
+     * Read the {@link GlTF} from the given JSON data
+     *
+     * @param jsonData The JSON data. Its position is not modified
+     * @return The {@link GlTF}
+     * @throws IOException If the JSON cannot be read
+     */
+    GlTF readV2(ByteBuffer jsonData) throws IOException
+    {
+        try (JsonParser p = createParser(jsonData))
+        {
+            this.parser = p;
+            p.nextToken();
+            return readObject(new GlTF(), this::readGltf);
+        }
+        finally
+        {
+            this.parser = null;
+        }
+    }
+
+    /**
+     * Create a parser for the given data. Heap buffers are parsed in place
+     *
+     * @param jsonData The JSON data
+     * @return The parser
+     * @throws IOException If the parser cannot be created
+     */
+    private static JsonParser createParser(ByteBuffer jsonData)
+        throws IOException
+    {
+        if (jsonData.hasArray())
+        {
+            return JSON_FACTORY.createParser(jsonData.array(),
+                jsonData.arrayOffset() + jsonData.position(),
+                jsonData.remaining());
+        }
+        InputStream inputStream =
+            Buffers.createByteBufferInputStream(jsonData.duplicate());
+        return JSON_FACTORY.createParser(inputStream);
+    }
+
+    private boolean readGltf(String name, GlTF gltf) throws IOException
+    {
+        switch (name)
+        {
+            case "extensionsUsed":
+                gltf.setExtensionsUsed(readList(this::readString));
+                return true;
+            case "extensionsRequired":
+                gltf.setExtensionsRequired(readList(this::readString));
+                return true;
+            case "accessors":
+                gltf.setAccessors(readList(
+                    () -> readObject(new Accessor(), this::readAccessor)));
+                return true;
+            case "animations":
+                gltf.setAnimations(readList(
+                    () -> readObject(new Animation(), this::readAnimation)));
+                return true;
+            case "asset":
+                gltf.setAsset(readObject(new Asset(), this::readAsset));
+                return true;
+            case "buffers":
+                gltf.setBuffers(readList(
+                    () -> readObject(new Buffer(), this::readBuffer)));
+                return true;
+            case "bufferViews":
+                gltf.setBufferViews(readList(
+                    () -> readObject(new BufferView(), this::readBufferView)));
+                return true;
+            case "cameras":
+                gltf.setCameras(readList(
+                    () -> readObject(new Camera(), this::readCamera)));
+                return true;
+            case "images":
+                gltf.setImages(readList(
+                    () -> readObject(new Image(), this::readImage)));
+                return true;
+            case "materials":
+                gltf.setMaterials(readList(
+                    () -> readObject(new Material(), this::readMaterial)));
+                return true;
+            case "meshes":
+                gltf.setMeshes(readList(
+                    () -> readObject(new Mesh(), this::readMesh)));
+                return true;
+            case "nodes":
+                gltf.setNodes(readList(
+                    () -> readObject(new Node(), this::readNode)));
+                return true;
+            case "samplers":
+                gltf.setSamplers(readList(
+                    () -> readObject(new Sampler(), this::readSampler)));
+                return true;
+            case "scene":
+                gltf.setScene(readInt());
+                return true;
+            case "scenes":
+                gltf.setScenes(readList(
+                    () -> readObject(new Scene(), this::readScene)));
+                return true;
+            case "skins":
+                gltf.setSkins(readList(
+                    () -> readObject(new Skin(), this::readSkin)));
+                return true;
+            case "textures":
+                gltf.setTextures(readList(
+                    () -> readObject(new Texture(), this::readTexture)));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readAccessor(String name, Accessor accessor)
+        throws IOException
+    {
+        switch (name)
+        {
+            case "bufferView":
+                accessor.setBufferView(readInt());
+                return true;
+            case "byteOffset":
+                accessor.setByteOffset(readInt());
+                return true;
+            case "componentType":
+                accessor.setComponentType(readInt());
+                return true;
+            case "normalized":
+                accessor.setNormalized(readBoolean());
+                return true;
+            case "count":
+                accessor.setCount(readInt());
+                return true;
+            case "type":
+                accessor.setType(readString());
+                return true;
+            case "max":
+                accessor.setMax(readList(this::readNumber)
+                    .toArray(new Number[0]));
+                return true;
+            case "min":
+                accessor.setMin(readList(this::readNumber)
+                    .toArray(new Number[0]));
+                return true;
+            case "sparse":
+                accessor.setSparse(readObject(
+                    new AccessorSparse(), this::readAccessorSparse));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readAccessorSparse(String name, AccessorSparse sparse)
+        throws IOException
+    {
+        switch (name)
+        {
+            case "count":
+                sparse.setCount(readInt());
+                return true;
+            case "indices":
+                sparse.setIndices(readObject(new AccessorSparseIndices(),
+                    this::readAccessorSparseIndices));
+                return true;
+            case "values":
+                sparse.setValues(readObject(new AccessorSparseValues(),
+                    this::readAccessorSparseValues));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readAccessorSparseIndices(String name,
+        AccessorSparseIndices indices) throws IOException
+    {
+        switch (name)
+        {
+            case "bufferView":
+                indices.setBufferView(readInt());
+                return true;
+            case "byteOffset":
+                indices.setByteOffset(readInt());
+                return true;
+            case "componentType":
+                indices.setComponentType(readInt());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readAccessorSparseValues(String name,
+        AccessorSparseValues values) throws IOException
+    {
+        switch (name)
+        {
+            case "bufferView":
+                values.setBufferView(readInt());
+                return true;
+            case "byteOffset":
+                values.setByteOffset(readInt());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readAnimation(String name, Animation animation)
+        throws IOException
+    {
+        switch (name)
+        {
+            case "channels":
+                animation.setChannels(readList(() -> readObject(
+                    new AnimationChannel(), this::readAnimationChannel)));
+                return true;
+            case "samplers":
+                animation.setSamplers(readList(() -> readObject(
+                    new AnimationSampler(), this::readAnimationSampler)));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readAnimationChannel(String name,
+        AnimationChannel channel) throws IOException
+    {
+        switch (name)
+        {
+            case "sampler":
+                channel.setSampler(readInt());
+                return true;
+            case "target":
+                channel.setTarget(readObject(new AnimationChannelTarget(),
+                    this::readAnimationChannelTarget));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readAnimationChannelTarget(String name,
+        AnimationChannelTarget target) throws IOException
+    {
+        switch (name)
+        {
+            case "node":
+                target.setNode(readInt());
+                return true;
+            case "path":
+                target.setPath(readString());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readAnimationSampler(String name,
+        AnimationSampler sampler) throws IOException
+    {
+        switch (name)
+        {
+            case "input":
+                sampler.setInput(readInt());
+                return true;
+            case "interpolation":
+                sampler.setInterpolation(readString());
+                return true;
+            case "output":
+                sampler.setOutput(readInt());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readAsset(String name, Asset asset) throws IOException
+    {
+        switch (name)
+        {
+            case "copyright":
+                asset.setCopyright(readString());
+                return true;
+            case "generator":
+                asset.setGenerator(readString());
+                return true;
+            case "version":
+                asset.setVersion(readString());
+                return true;
+            case "minVersion":
+                asset.setMinVersion(readString());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readBuffer(String name, Buffer buffer) throws IOException
+    {
+        switch (name)
+        {
+            case "uri":
+                buffer.setUri(readString());
+                return true;
+            case "byteLength":
+                buffer.setByteLength(readInt());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readBufferView(String name, BufferView bufferView)
+        throws IOException
+    {
+        switch (name)
+        {
+            case "buffer":
+                bufferView.setBuffer(readInt());
+                return true;
+            case "byteOffset":
+                bufferView.setByteOffset(readInt());
+                return true;
+            case "byteLength":
+                bufferView.setByteLength(readInt());
+                return true;
+            case "byteStride":
+                bufferView.setByteStride(readInt());
+                return true;
+            case "target":
+                bufferView.setTarget(readInt());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readCamera(String name, Camera camera) throws IOException
+    {
+        switch (name)
+        {
+            case "orthographic":
+                camera.setOrthographic(readObject(new CameraOrthographic(),
+                    this::readCameraOrthographic));
+                return true;
+            case "perspective":
+                camera.setPerspective(readObject(new CameraPerspective(),
+                    this::readCameraPerspective));
+                return true;
+            case "type":
+                camera.setType(readString());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readCameraOrthographic(String name,
+        CameraOrthographic camera) throws IOException
+    {
+        switch (name)
+        {
+            case "xmag":
+                camera.setXmag(readFloat());
+                return true;
+            case "ymag":
+                camera.setYmag(readFloat());
+                return true;
+            case "zfar":
+                camera.setZfar(readFloat());
+                return true;
+            case "znear":
+                camera.setZnear(readFloat());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readCameraPerspective(String name,
+        CameraPerspective camera) throws IOException
+    {
+        switch (name)
+        {
+            case "aspectRatio":
+                camera.setAspectRatio(readFloat());
+                return true;
+            case "yfov":
+                camera.setYfov(readFloat());
+                return true;
+            case "zfar":
+                camera.setZfar(readFloat());
+                return true;
+            case "znear":
+                camera.setZnear(readFloat());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readImage(String name, Image image) throws IOException
+    {
+        switch (name)
+        {
+            case "uri":
+                image.setUri(readString());
+                return true;
+            case "mimeType":
+                image.setMimeType(readString());
+                return true;
+            case "bufferView":
+                image.setBufferView(readInt());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readMaterial(String name, Material material)
+        throws IOException
+    {
+        switch (name)
+        {
+            case "pbrMetallicRoughness":
+                material.setPbrMetallicRoughness(readObject(
+                    new MaterialPbrMetallicRoughness(),
+                    this::readMaterialPbrMetallicRoughness));
+                return true;
+            case "normalTexture":
+                material.setNormalTexture(readObject(
+                    new MaterialNormalTextureInfo(),
+                    this::readMaterialNormalTextureInfo));
+                return true;
+            case "occlusionTexture":
+                material.setOcclusionTexture(readObject(
+                    new MaterialOcclusionTextureInfo(),
+                    this::readMaterialOcclusionTextureInfo));
+                return true;
+            case "emissiveTexture":
+                material.setEmissiveTexture(readObject(
+                    new TextureInfo(), this::readTextureInfo));
+                return true;
+            case "emissiveFactor":
+                material.setEmissiveFactor(readFloats());
+                return true;
+            case "alphaMode":
+                material.setAlphaMode(readString());
+                return true;
+            case "alphaCutoff":
+                material.setAlphaCutoff(readFloat());
+                return true;
+            case "doubleSided":
+                material.setDoubleSided(readBoolean());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readMaterialPbrMetallicRoughness(String name,
+        MaterialPbrMetallicRoughness pbr) throws IOException
+    {
+        switch (name)
+        {
+            case "baseColorFactor":
+                pbr.setBaseColorFactor(readFloats());
+                return true;
+            case "baseColorTexture":
+                pbr.setBaseColorTexture(readObject(
+                    new TextureInfo(), this::readTextureInfo));
+                return true;
+            case "metallicFactor":
+                pbr.setMetallicFactor(readFloat());
+                return true;
+            case "roughnessFactor":
+                pbr.setRoughnessFactor(readFloat());
+                return true;
+            case "metallicRoughnessTexture":
+                pbr.setMetallicRoughnessTexture(readObject(
+                    new TextureInfo(), this::readTextureInfo));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readTextureInfo(String name, TextureInfo textureInfo)
+        throws IOException
+    {
+        switch (name)
+        {
+            case "index":
+                textureInfo.setIndex(readInt());
+                return true;
+            case "texCoord":
+                textureInfo.setTexCoord(readInt());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readMaterialNormalTextureInfo(String name,
+        MaterialNormalTextureInfo textureInfo) throws IOException
+    {
+        if ("scale".equals(name))
+        {
+            textureInfo.setScale(readFloat());
+            return true;
+        }
+        return readTextureInfo(name, textureInfo);
+    }
+
+    private boolean readMaterialOcclusionTextureInfo(String name,
+        MaterialOcclusionTextureInfo textureInfo) throws IOException
+    {
+        if ("strength".equals(name))
+        {
+            textureInfo.setStrength(readFloat());
+            return true;
+        }
+        return readTextureInfo(name, textureInfo);
+    }
+
+    private boolean readMesh(String name, Mesh mesh) throws IOException
+    {
+        switch (name)
+        {
+            case "primitives":
+                mesh.setPrimitives(readList(() -> readObject(
+                    new MeshPrimitive(), this::readMeshPrimitive)));
+                return true;
+            case "weights":
+                mesh.setWeights(readList(this::readFloat));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readMeshPrimitive(String name, MeshPrimitive primitive)
+        throws IOException
+    {
+        switch (name)
+        {
+            case "attributes":
+                primitive.setAttributes(readIndexMap());
+                return true;
+            case "indices":
+                primitive.setIndices(readInt());
+                return true;
+            case "material":
+                primitive.setMaterial(readInt());
+                return true;
+            case "mode":
+                primitive.setMode(readInt());
+                return true;
+            case "targets":
+                primitive.setTargets(readList(this::readIndexMap));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readNode(String name, Node node) throws IOException
+    {
+        switch (name)
+        {
+            case "camera":
+                node.setCamera(readInt());
+                return true;
+            case "children":
+                node.setChildren(readList(this::readInt));
+                return true;
+            case "skin":
+                node.setSkin(readInt());
+                return true;
+            case "matrix":
+                node.setMatrix(readFloats());
+                return true;
+            case "mesh":
+                node.setMesh(readInt());
+                return true;
+            case "rotation":
+                node.setRotation(readFloats());
+                return true;
+            case "scale":
+                node.setScale(readFloats());
+                return true;
+            case "translation":
+                node.setTranslation(readFloats());
+                return true;
+            case "weights":
+                node.setWeights(readList(this::readFloat));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readSampler(String name, Sampler sampler)
+        throws IOException
+    {
+        switch (name)
+        {
+            case "magFilter":
+                sampler.setMagFilter(readInt());
+                return true;
+            case "minFilter":
+                sampler.setMinFilter(readInt());
+                return true;
+            case "wrapS":
+                sampler.setWrapS(readInt());
+                return true;
+            case "wrapT":
+                sampler.setWrapT(readInt());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readScene(String name, Scene scene) throws IOException
+    {
+        if ("nodes".equals(name))
+        {
+            scene.setNodes(readList(this::readInt));
+            return true;
+        }
+        return false;
+    }
+
+    private boolean readSkin(String name, Skin skin) throws IOException
+    {
+        switch (name)
+        {
+            case "inverseBindMatrices":
+                skin.setInverseBindMatrices(readInt());
+                return true;
+            case "skeleton":
+                skin.setSkeleton(readInt());
+                return true;
+            case "joints":
+                skin.setJoints(readList(this::readInt));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readTexture(String name, Texture texture)
+        throws IOException
+    {
+        switch (name)
+        {
+            case "sampler":
+                texture.setSampler(readInt());
+                return true;
+            case "source":
+                texture.setSource(readInt());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Read the object at the current token. The common properties
+     * (<code>name</code>, <code>extensions</code>) are read here, and
+     * the unknown ones are skipped. The parser is left at the end
+     * of the object
+     *
+     * @param <T> The type of the object
+     * @param target The object
+     * @param propertyReader The reader of the properties of the object
+     * @return The object
+     * @throws IOException If the JSON cannot be read
+     */
+    private <T extends GlTFProperty> T readObject(T target,
+        PropertyReader<T> propertyReader) throws IOException
+    {
+        expect(JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL)
+            {
+                continue;
+            }
+            try
+            {
+                if (propertyReader.read(name, target))
+                {
+                    continue;
+                }
+                if ("name".equals(name) &&
+                    target instanceof GlTFChildOfRootProperty)
+                {
+                    ((GlTFChildOfRootProperty) target).setName(readString());
+                }
+                else if ("extensions".equals(name))
+                {
+                    target.setExtensions(readExtensions());
+                }
+                else
+                {
+                    parser.skipChildren();
+                }
+            }
+            catch (IllegalArgumentException | NullPointerException e)
+            {
+                // Invalid value, rejected by the setter. The value
+                // was already read
+                if (jsonErrorConsumer != null)
+                {
+                    jsonErrorConsumer.accept(new JsonError(
+                        e.getMessage(), parser.getParsingContext(), e));
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Read the supported extensions of the current object
+     *
+     * @return The extensions, or <code>null</code> if none is supported
+     * @throws IOException If the JSON cannot be read
+     */
+    private Map<String, Object> readExtensions() throws IOException
+    {
+        expect(JsonToken.START_OBJECT);
+        Map<String, Object> extensions = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if (!SUPPORTED_EXTENSIONS.contains(name))
+            {
+                parser.skipChildren();
+                continue;
+            }
+            if (extensions == null)
+            {
+                extensions = new LinkedHashMap<>();
+            }
+            extensions.put(name, readValue());
+        }
+        return extensions;
+    }
+
+    /**
+     * Read any value, like the untyped data binding: objects are
+     * maps, arrays are lists
+     *
+     * @return The value
+     * @throws IOException If the JSON cannot be read
+     */
+    private Object readValue() throws IOException
+    {
+        switch (parser.currentToken())
+        {
+            case START_OBJECT:
+            {
+                Map<String, Object> map = new LinkedHashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME)
+                {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    map.put(name, readValue());
+                }
+                return map;
+            }
+            case START_ARRAY:
+            {
+                List<Object> list = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY)
+                {
+                    list.add(readValue());
+                }
+                return list;
+            }
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                throw new IOException("Unexpected token "
+                    + parser.currentToken() + " at "
+                    + parser.getCurrentLocation());
+        }
+    }
+
+    private <T> List<T> readList(ElementReader<T> elementReader)
+        throws IOException
+    {
+        expect(JsonToken.START_ARRAY);
+        List<T> list = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY)
+        {
+            list.add(elementReader.read());
+        }
+        return list;
+    }
+
+    private Map<String, Integer> readIndexMap() throws IOException
+    {
+        expect(JsonToken.START_OBJECT);
+        Map<String, Integer> map = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            map.put(name, readInt());
+        }
+        return map;
+    }
+
+    private float[] readFloats() throws IOException
+    {
+        expect(JsonToken.START_ARRAY);
+        float[] values = new float[16];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY)
+        {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = readFloat();
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    private Integer readInt() throws IOException
+    {
+        if (parser.currentToken() == JsonToken.VALUE_STRING)
+        {
+            return parseString(Integer::valueOf);
+        }
+        expectNumber();
+        return parser.getIntValue();
+    }
+
+    private Float readFloat() throws IOException
+    {
+        if (parser.currentToken() == JsonToken.VALUE_STRING)
+        {
+            return parseString(Float::valueOf);
+        }
+        expectNumber();
+        return parser.getFloatValue();
+    }
+
+    private Number readNumber() throws IOException
+    {
+        if (parser.currentToken() == JsonToken.VALUE_STRING)
+        {
+            return parseString(text -> text.indexOf('.') < 0
+                && text.indexOf('e') < 0 && text.indexOf('E') < 0
+                ? (Number) Long.valueOf(text) : (Number) Double.valueOf(text));
+        }
+        expectNumber();
+        return parser.getNumberValue();
+    }
+
+    /**
+     * Parse a number written as a string, like <code>"byteOffset":"4"</code>.
+     * Some exporters write them, and the data binding coerces them
+     *
+     * @param <T> The type of the number
+     * @param parse The function that parses the text
+     * @return The number
+     * @throws IOException If the string is not a number
+     */
+    private <T extends Number> T parseString(Function<String, T> parse)
+        throws IOException
+    {
+        try
+        {
+            return parse.apply(parser.getText().trim());
+        }
+        catch (NumberFormatException e)
+        {
+            throw unexpected("number");
+        }
+    }
+
+    private Boolean readBoolean() throws IOException
+    {
+        JsonToken token = parser.currentToken();
+        if (token != JsonToken.VALUE_TRUE && token != JsonToken.VALUE_FALSE)
+        {
+            throw unexpected("boolean");
+        }
+        return token == JsonToken.VALUE_TRUE;
+    }
+
+    private String readString() throws IOException
+    {
+        if (parser.currentToken() != JsonToken.VALUE_STRING)
+        {
+            throw unexpected("string");
+        }
+        return parser.getText();
+    }
+
+    private void expectNumber() throws IOException
+    {
+        if (!parser.currentToken().isNumeric())
+        {
+            throw unexpected("number");
+        }
+    }
+
+    private void expect(JsonToken token) throws IOException
+    {
+        if (parser.currentToken() != token)
+        {
+            throw unexpected(token.asString());
+        }
+    }
+
+    private IOException unexpected(String expected)
+    {
+        return new IOException("Expected " + expected + " but found "
+            + parser.currentToken() + " at " + parser.getCurrentLocation());
+    }
+}
@@ -79,10 +79,28 @@ public class RawGltfDataReader
     public static RawGltfData read(InputStream inputStream) throws IOException
     {
         byte rawData[] = IO.readStream(inputStream);
-        if (rawData.length >= 8)
+        return read(ByteBuffer.wrap(rawData));
+    }
+    
+    /**
+     * Read the raw glTF data from the given byte buffer, which contains
+     * the whole file, from its current position up to its limit.<br>
+     * <br>
+     * The data is not copied: The JSON data and the binary data of the 
+     * returned {@link RawGltfData} are slices of the given buffer. So when
+     * the given buffer is a direct buffer, then the buffer data of a 
+     * binary glTF will also be a direct buffer.
+     * 
+     * @param byteBuffer The byte buffer
+     * @return The {@link RawGltfData}
+     * @throws IOException If an IO error occurs
+     */
+    public static RawGltfData read(ByteBuffer byteBuffer) throws IOException
+    {
+        ByteBuffer data = Buffers.createSlice(byteBuffer)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        if (data.capacity() >= 8)
         {
-            ByteBuffer data = 
-                ByteBuffer.wrap(rawData).order(ByteOrder.LITTLE_ENDIAN);
             IntBuffer intData = data.asIntBuffer();
             int magic = intData.get(0);
             if (magic == MAGIC_BINARY_GLTF_HEADER)
@@ -100,8 +118,7 @@ public class RawGltfDataReader
                     "Unknown binary glTF version: " + version);
             }
         }
-        ByteBuffer jsonData = Buffers.create(rawData);
-        return new RawGltfData(jsonData, null);
+        return new RawGltfData(data, null);
     }
     
     /**
@@ -26,14 +26,19 @@
  */
 package de.javagl.jgltf.model.v2;
 
+import org.the3deer.android.engine.services.LoaderTask;
+import org.the3deer.android.engine.services.gltf.MeshoptDecoder;
 import org.the3deer.android.util.AndroidUtils;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 
@@ -847,6 +852,12 @@ public class GltfModelCreatorV2
                 {
                     if (uri == null)
                     {
+                        // The fallback buffer of the EXT_meshopt_compression
+                        // extension may have no data at all
+                        if (isMeshoptFallback(buffer))
+                        {
+                            continue;
+                        }
                         logger.warning("Buffer " + i + " does not have "
                             + "a uri. Binary chunks that are not the main GLB "
                             + "buffer are not supported.");
@@ -881,6 +892,166 @@ public class GltfModelCreatorV2
             BufferModel bufferModel = gltfModel.getBufferModel(bufferIndex);
             bufferViewModel.setBufferModel(bufferModel);
         }
+        
+        decodeMeshoptBufferViews(bufferViews);
+    }
+    
+    /**
+     * Returns whether the given {@link Buffer} is the fallback buffer of
+     * the EXT_meshopt_compression extension
+     * 
+     * @param buffer The {@link Buffer}
+     * @return Whether the buffer is a fallback buffer
+     */
+    private static boolean isMeshoptFallback(Buffer buffer)
+    {
+        Map<String, Object> extensions = buffer.getExtensions();
+        if (extensions == null)
+        {
+            return false;
+        }
+        Object extension = extensions.get(MeshoptDecoder.EXTENSION);
+        if (!(extension instanceof Map<?, ?>))
+        {
+            return false;
+        }
+        return Boolean.TRUE.equals(((Map<?, ?>) extension).get("fallback"));
+    }
+    
+    /**
+     * Decode the {@link BufferView} instances that are compressed with
+     * the EXT_meshopt_compression extension.<br>
+     * <br>
+     * The {@link BufferViewModel} of each compressed view is assigned a new
+     * {@link BufferModel} that contains the decoded data, so that the 
+     * accessors see the decoded data. The views are decoded in parallel,
+     * in the shared pool of the loaders (see {@link LoaderTask#invokeAll}).
+     * 
+     * @param bufferViews The {@link BufferView} instances
+     */
+    private void decodeMeshoptBufferViews(List<BufferView> bufferViews)
+    {
+        List<Integer> indices = new ArrayList<Integer>();
+        for (int i = 0; i < bufferViews.size(); i++)
+        {
+            Map<String, Object> extensions = bufferViews.get(i).getExtensions();
+            if (extensions != null && 
+                extensions.get(MeshoptDecoder.EXTENSION) instanceof Map<?, ?>)
+            {
+                indices.add(i);
+            }
+        }
+        if (indices.isEmpty())
+        {
+            return;
+        }
+        
+        long start = System.currentTimeMillis();
+        List<Callable<ByteBuffer>> jobs = 
+            new ArrayList<Callable<ByteBuffer>>(indices.size());
+        for (Integer index : indices)
+        {
+            Map<?, ?> extension = (Map<?, ?>) bufferViews.get(index)
+                .getExtensions().get(MeshoptDecoder.EXTENSION);
+            jobs.add(() -> decodeMeshoptBufferView(index, extension));
+        }
+        try
+        {
+            // The buffer views are decoded in the shared pool of the loaders
+            List<ByteBuffer> decodedBuffers = LoaderTask.invokeAll(jobs);
+            
+            long decodedBytes = 0;
+            for (int i = 0; i < indices.size(); i++)
+            {
+                ByteBuffer decoded = decodedBuffers.get(i);
+                decodedBytes += decoded.capacity();
+                
+                DefaultBufferModel bufferModel = new DefaultBufferModel();
+                bufferModel.setBufferData(decoded);
+                DefaultBufferViewModel bufferViewModel = 
+                    gltfModel.getBufferViewModel(indices.get(i));
+                bufferViewModel.setBufferModel(bufferModel);
+                bufferViewModel.setByteOffset(0);
+                bufferViewModel.setByteLength(decoded.capacity());
+            }
+            logger.info("Decoded " + indices.size() + " meshopt buffer views ("
+                + decodedBytes + " bytes) in " 
+                + (System.currentTimeMillis() - start) + " ms");
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                "Interrupted while decoding meshopt buffer views", e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    /**
+     * Decode the data of a {@link BufferView} that is compressed with 
+     * the EXT_meshopt_compression extension
+     * 
+     * @param index The index of the {@link BufferView}
+     * @param extension The extension object
+     * @return The decoded data
+     * @throws IllegalArgumentException If the data can not be decoded
+     */
+    private ByteBuffer decodeMeshoptBufferView(int index, Map<?, ?> extension)
+    {
+        int bufferIndex = getInt(extension, "buffer", 0);
+        int byteOffset = getInt(extension, "byteOffset", 0);
+        int byteLength = getInt(extension, "byteLength", 0);
+        int byteStride = getInt(extension, "byteStride", 0);
+        int count = getInt(extension, "count", 0);
+        Object mode = extension.get("mode");
+        Object filter = extension.get("filter");
+        
+        ByteBuffer bufferData = 
+            gltfModel.getBufferModel(bufferIndex).getBufferData();
+        if (bufferData == null || 
+            byteOffset + byteLength > bufferData.capacity())
+        {
+            throw new IllegalArgumentException("BufferView " + index 
+                + " refers to missing meshopt data in buffer " + bufferIndex);
+        }
+        try
+        {
+            ByteBuffer source = 
+                Buffers.createSlice(bufferData, byteOffset, byteLength);
+            return MeshoptDecoder.decode((String) mode, (String) filter, 
+                count, byteStride, source);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Failed to decode BufferView "
+                + index + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Returns the integer value of the given property of an extension object
+     * 
+     * @param extension The extension object
+     * @param name The property name
+     * @param defaultValue The value if the property is not present
+     * @return The value
+     */
+    private static int getInt(Map<?, ?> extension, String name, 
+        int defaultValue)
+    {
+        Object value = extension.get(name);
+        if (value instanceof Number)
+        {
+            return ((Number) value).intValue();
+        }
+        return defaultValue;
     }
     
 
@@ -1092,6 +1263,10 @@ public class GltfModelCreatorV2
             // The source may be null when the image data is provided
             // by an extension.
             Integer imageIndex = texture.getSource();
+            if (imageIndex == null)
+            {
+                imageIndex = getExtensionSource(texture, "KHR_texture_basisu");
+            }
             if (imageIndex != null)
             {
                 DefaultImageModel imageModel = 
@@ -1101,6 +1276,36 @@ public class GltfModelCreatorV2
         }
     }
     
+    /**
+     * Returns the image index of a texture extension that provides the
+     * image (i.e. a KTX2 image, with the mime type <code>image/ktx2</code>)
+     * 
+     * @param texture The texture
+     * @param extensionName The extension name
+     * @return The image index, or <code>null</code> if the texture doesn't
+     * have the extension
+     */
+    private static Integer getExtensionSource(
+        Texture texture, String extensionName)
+    {
+        Map<String, Object> extensions = texture.getExtensions();
+        if (extensions == null)
+        {
+            return null;
+        }
+        Object extension = extensions.get(extensionName);
+        if (!(extension instanceof Map))
+        {
+            return null;
+        }
+        Object source = ((Map<?, ?>) extension).get("source");
+        if (source instanceof Number)
+        {
+            return ((Number) source).intValue();
+        }
+        return null;
+    }
+
     /**
      * Initialize the {@link ImageModel} instances
      */
@@ -1113,6 +1318,8 @@ public class GltfModelCreatorV2
             DefaultImageModel imageModel = gltfModel.getImageModel(i);
             transferGltfChildOfRootPropertyElements(image, imageModel);
             
+            // the external images may still be resolving (see GltfReferenceResolver#resolveAllAsync)
+            boolean hasImageData = true;
             Integer bufferViewIndex = image.getBufferView();
             if (bufferViewIndex != null)
             {
@@ -1133,6 +1340,7 @@ public class GltfModelCreatorV2
                 {
                     ByteBuffer imageData = gltfAsset.getReferenceData(uri);
                     imageModel.setImageData(imageData);
+                    hasImageData = imageData != null;
                 }
             }
 
@@ -1143,12 +1351,12 @@ public class GltfModelCreatorV2
             }
 
             // android way
-            if (mimeType == null){
+            if (mimeType == null && hasImageData){
                 mimeType = AndroidUtils.decodeMimeType(imageModel.getImageData());
             }
 
             // If the MIME type was not set, then detect it from the image data
-            if (mimeType == null)
+            if (mimeType == null && hasImageData)
             {
                 ByteBuffer imageData = imageModel.getImageData();
                 mimeType =
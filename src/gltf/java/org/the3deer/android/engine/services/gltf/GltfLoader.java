@@ -1,14 +1,12 @@
 package org.the3deer.android.engine.services.gltf;
 
-import android.graphics.Bitmap;
 import android.opengl.GLES20;
 
 import org.the3deer.android.engine.model.Object3D;
 
-import org.the3deer.android.util.AndroidUtils;
+import org.the3deer.android.util.ContentUtils;
 import org.the3deer.android.engine.animation.Animation;
-import org.the3deer.android.engine.animation.JointTransform;
-import org.the3deer.android.engine.animation.KeyFrame;
+import org.the3deer.android.engine.animation.Track;
 import org.the3deer.android.engine.model.AnimatedModel;
 import org.the3deer.android.engine.model.Camera;
 import org.the3deer.android.engine.model.Material;
@@ -20,6 +18,8 @@ import org.the3deer.android.engine.model.Skin;
 import org.the3deer.android.engine.model.Texture;
 import org.the3deer.android.engine.model.Transform;
 import org.the3deer.android.engine.services.LoadListener;
+import org.the3deer.android.engine.services.LoadProgress;
+import org.the3deer.android.engine.services.LoaderTask;
 import org.the3deer.android.engine.services.gltf.dto.GltfAnimationDto;
 import org.the3deer.android.engine.services.gltf.dto.GltfCameraDto;
 import org.the3deer.android.engine.services.gltf.dto.GltfChannelDto;
@@ -32,11 +32,17 @@ import org.the3deer.android.engine.services.gltf.dto.GltfSamplerDto;
 import org.the3deer.android.engine.services.gltf.dto.GltfSceneData;
 import org.the3deer.android.engine.services.gltf.dto.GltfSceneDto;
 import org.the3deer.android.engine.services.gltf.dto.GltfSkinDto;
+import org.the3deer.android.engine.util.KtxTexture;
+import org.the3deer.android.engine.util.TexturePreparer;
 import org.the3deer.util.math.Quaternion;
 
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -46,96 +52,226 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import de.javagl.jgltf.model.AnimationModel;
 import de.javagl.jgltf.model.GltfModel;
 import de.javagl.jgltf.model.GltfModels;
-import de.javagl.jgltf.model.io.Buffers;
 import de.javagl.jgltf.model.io.GltfAsset;
 import de.javagl.jgltf.model.io.GltfAssetReader;
+import de.javagl.jgltf.model.io.GltfReference;
 import de.javagl.jgltf.model.io.GltfReferenceResolver;
 import de.javagl.jgltf.model.io.IO;
+import de.javagl.jgltf.model.io.UriResolvers;
+import de.javagl.jgltf.model.io.v2.GltfAssetV2;
 
 public class GltfLoader {
 
     private static final Logger logger = Logger.getLogger(GltfLoader.class.getSimpleName());
 
+    /**
+     * Textures of a material: color, normal, emissive and thickness
+     */
+    private static final int TEXTURES_PER_MATERIAL = 4;
+
     public GltfLoader() {
     }
 
     public GltfSceneData load(URI url, LoadListener callback) throws Exception {
 
-        try (InputStream stream = url.toURL().openStream()) {
-            logger.info("Loading and parsing model file... " + url);
-            callback.onProgress("Parsing " + url);
+        logger.info("Loading and parsing model file... " + url);
+        callback.onProgress("Parsing " + url);
 
-            GltfAssetReader gltfAssetReader = new GltfAssetReader();
-            GltfAsset gltfAsset = gltfAssetReader.readWithoutReferences(stream);
-            URI baseUri = IO.getParent(URI.create(url.toString()));
-            GltfReferenceResolver.resolveAll(gltfAsset.getReferences(), baseUri);
-            GltfModel gltfModel = GltfModels.create(gltfAsset);
-            GltfParser parser = new GltfParser(gltfAsset, gltfModel);
-            GltfDto dto = parser.parse();
+        GltfAsset gltfAsset = readAsset(url);
+        URI baseUri = IO.getParent(URI.create(url.toString()));
+        GltfDto dto = parse(gltfAsset, baseUri);
 
-            logger.info("Building engine objects from DTO...");
-            callback.onProgress("Building objects");
+        logger.info("Building engine objects from DTO...");
+        callback.onProgress("Building objects");
+        callback.onProgress(new LoadProgress(LoadProgress.Stage.POST_PROCESS, getBytes(gltfAsset), -1, getVertices(dto)));
 
 
-            // basic
-            List<Material> materials = buildMaterialsFromDto(dto);
+        // basic
+        List<Material> materials = buildMaterialsFromDto(dto);
 
-            // meshes / primitives mapping
-            Map<Integer, List<Object3D>> originalMeshes = buildMeshesFromDto(dto, materials);
-            if (originalMeshes.isEmpty()){
-                logger.warning("No meshes found in the DTO.");
-                throw new Exception("No meshes found in the DTO.");
-            }
+        // meshes / primitives mapping
+        Map<Integer, List<Object3D>> originalMeshes = buildMeshesFromDto(dto, materials);
+        if (originalMeshes.isEmpty()){
+            logger.warning("No meshes found in the DTO.");
+            throw new Exception("No meshes found in the DTO.");
+        }
 
-            // cameras
-            List<Camera> cameras = buildCamerasFromDto(dto);
+        // cameras
+        List<Camera> cameras = buildCamerasFromDto(dto);
 
-            // node to mesh mapping
-            Map<Integer, List<Object3D>> meshInstances = buildMeshInstances(dto, originalMeshes);
-            if (meshInstances.isEmpty()){
-                logger.warning("No meshes were linked in the DTO. No mesh instances were created.");
-                throw new Exception("No meshes were linked in the DTO. No mesh instances were created.");
-            }
+        // node to mesh mapping
+        Map<Integer, List<Object3D>> meshInstances = buildMeshInstances(dto, originalMeshes);
+        if (meshInstances.isEmpty()){
+            logger.warning("No meshes were linked in the DTO. No mesh instances were created.");
+            throw new Exception("No meshes were linked in the DTO. No mesh instances were created.");
+        }
 
-            // nodes - includes linking (mesh, skin, camera)
-            List<Node> nodes = buildNodesFromDto(dto, meshInstances, cameras);
+        // nodes - includes linking (mesh, skin, camera)
+        List<Node> nodes = buildNodesFromDto(dto, meshInstances, cameras);
 
-            // skins
-            List<Skin> originalSkins = buildSkinsFromDto(dto);
+        // skins
+        List<Skin> originalSkins = buildSkinsFromDto(dto);
 
-            // node to skin mapping
-            Map<Integer, List<Skin>> skinsMap = buildSkinInstances(dto, originalSkins, nodes, meshInstances);
+        // node to skin mapping
+        Map<Integer, List<Skin>> skinsMap = buildSkinInstances(dto, originalSkins, nodes, meshInstances);
 
-            // load animations
-            List<Animation> animations = loadAnimations(dto, nodes);
+        // load animations
+        List<Animation> animations = loadAnimations(dto, nodes);
 
-            // collect meshes
-            List<Object3D> allMeshes = new ArrayList<>();
-            for (List<Object3D> meshList : meshInstances.values()) {
-                allMeshes.addAll(meshList);
-            }
+        // collect meshes
+        List<Object3D> allMeshes = new ArrayList<>();
+        for (List<Object3D> meshList : meshInstances.values()) {
+            allMeshes.addAll(meshList);
+        }
+
+        // collect skins
+        List<Skin> allSkins = new ArrayList<>();
+        for (List<Skin> skins : skinsMap.values()){
+            allSkins.addAll(skins);
+        }
+
+        return new GltfSceneData(dto, nodes, allMeshes, materials, allSkins, animations, cameras);
+    }
+
+    /**
+     * @return the size of the binary chunk and the external buffers and images
+     */
+    private static long getBytes(GltfAsset gltfAsset) {
+        long ret = gltfAsset.getBinaryData() != null ? gltfAsset.getBinaryData().capacity() : 0;
+        for (ByteBuffer data : gltfAsset.getReferenceDatas().values()) {
+            ret += data.capacity();
+        }
+        return ret;
+    }
 
-            // collect skins
-            List<Skin> allSkins = new ArrayList<>();
-            for (List<Skin> skins : skinsMap.values()){
-                allSkins.addAll(skins);
+    private static long getVertices(GltfDto dto) {
+        long ret = 0;
+        for (GltfMeshDto mesh : dto.meshes) {
+            for (GltfPrimitiveDto primitive : mesh.primitives) {
+                if (primitive.positions != null) {
+                    ret += primitive.positions.getCount();
+                }
             }
+        }
+        return ret;
+    }
 
-            return new GltfSceneData(dto, nodes, allMeshes, materials, allSkins, animations, cameras);
+    /**
+     * Resolve the external references and parse the model.
+     * <p>
+     * The references are resolved concurrently, in the shared pool of the loaders. The buffers are submitted first, and the model is parsed as soon
+     * as they are available, while the images are still being resolved.
+     * If the thread is interrupted, the pending references are cancelled.
+     */
+    private static GltfDto parse(GltfAsset gltfAsset, URI baseUri) throws InterruptedException {
+        final List<GltfReference> bufferReferences;
+        final List<GltfReference> imageReferences;
+        if (gltfAsset instanceof GltfAssetV2) {
+            bufferReferences = ((GltfAssetV2) gltfAsset).getBufferReferences();
+            imageReferences = ((GltfAssetV2) gltfAsset).getImageReferences();
+        } else {
+            bufferReferences = gltfAsset.getReferences();
+            imageReferences = Collections.emptyList();
+        }
+
+        // the references are resolved in the shared pool of the loaders
+        final ExecutorService executor = LoaderTask.getWorkers();
+        List<Future<?>> buffers = Collections.emptyList();
+        List<Future<?>> images = Collections.emptyList();
+        try {
+            final long start = System.currentTimeMillis();
+            final Function<String, ByteBuffer> uriResolver = UriResolvers.createBaseUriResolver(baseUri);
+            buffers = GltfReferenceResolver.resolveAllAsync(bufferReferences, uriResolver, executor);
+            images = GltfReferenceResolver.resolveAllAsync(imageReferences, uriResolver, executor);
+            GltfReferenceResolver.awaitAll(buffers);
+            logger.info("Resolved " + bufferReferences.size() + " buffers in " + (System.currentTimeMillis() - start) + " ms");
+
+            final GltfModel gltfModel = GltfModels.create(gltfAsset);
+            final GltfParser parser = new GltfParser(gltfAsset, gltfModel);
+            return parser.parse(images);
+        } finally {
+            // the pool is shared: cancel the pending references only
+            GltfReferenceResolver.cancelAll(buffers);
+            GltfReferenceResolver.cancelAll(images);
+        }
+    }
+
+    /**
+     * Read the asset without resolving the references.
+     * Local files are read into a direct buffer, so the accessors of a binary glTF can be views of it
+     * (see {@link GltfUtil#isZeroCopy()}). Otherwise the stream is read into the heap.
+     */
+    private static GltfAsset readAsset(URI uri) throws IOException {
+        final GltfAssetReader gltfAssetReader = new GltfAssetReader();
+        final ByteBuffer data = readDirect(uri);
+        if (data != null) {
+            return gltfAssetReader.readWithoutReferences(data);
+        }
+        try (InputStream stream = uri.toURL().openStream()) {
+            return gltfAssetReader.readWithoutReferences(stream);
         }
     }
 
-    private List<Material> buildMaterialsFromDto(GltfDto dto) {
+    /**
+     * Read the whole file into a direct buffer.
+     * The file is not memory mapped because the buffers of the model must be writable (i.e. {@link org.the3deer.android.engine.util.Rescaler})
+     *
+     * @return the file contents, or null if the file is not on local storage
+     */
+    private static ByteBuffer readDirect(URI uri) {
+        if (!GltfUtil.isZeroCopy()) return null;
+        try (FileChannel channel = ContentUtils.getFileChannel(uri)) {
+            if (channel == null) return null;
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) return null;
+
+            final ByteBuffer ret = ByteBuffer.allocateDirect((int) size);
+            while (ret.hasRemaining()) {
+                if (channel.read(ret) < 0) {
+                    throw new EOFException("Expected " + size + " bytes, but found " + ret.position());
+                }
+            }
+            ret.flip();
+            return ret;
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "File can't be read into a direct buffer. Using stream. " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Build the materials. The textures of all the materials are created concurrently, in the shared pool of the loaders
+     *
+     * @throws InterruptedException if the loading was cancelled while creating the textures
+     * @throws ExecutionException   if the creation of a texture failed with an error
+     */
+    private List<Material> buildMaterialsFromDto(GltfDto dto) throws InterruptedException, ExecutionException {
         if (dto.materials == null || dto.materials.isEmpty()) {
             return Collections.emptyList();
         }
 
+        // create textures: color, normal, emissive and thickness of every material
+        final List<Callable<Texture>> jobs = new ArrayList<>(dto.materials.size() * TEXTURES_PER_MATERIAL);
+        for (int i = 0; i < dto.materials.size(); i++) {
+            GltfMaterialDto materialDto = dto.materials.get(i);
+            jobs.add(createTextureJob(materialDto.name, "color", materialDto.baseColorTexture));
+            jobs.add(createTextureJob(materialDto.name, "normal", materialDto.normalTexture));
+            jobs.add(createTextureJob(materialDto.name, "emissive", materialDto.emissiveTexture));
+            jobs.add(createTextureJob(materialDto.name, "thickness", materialDto.thicknessTexture));
+        }
+        final List<Texture> textures = LoaderTask.invokeAll(jobs);
+
         List<Material> materials = new ArrayList<>(dto.materials.size());
         for (int i = 0; i < dto.materials.size(); i++) {
             GltfMaterialDto materialDto = dto.materials.get(i);
@@ -153,47 +289,31 @@ public class GltfLoader {
             }
 
             // Base color texture
-            if (materialDto.baseColorTexture != null) {
-                try {
-                    Bitmap bitmap = AndroidUtils.decodeBitmap(Buffers.createByteBufferInputStream(materialDto.baseColorTexture));
-                    material.setColorTexture(new Texture(materialDto.name + "_color", bitmap));
-                } catch (Exception e) {
-                    logger.log(Level.SEVERE, "Failed to decode base color texture for material: " + materialDto.name, e);
-                }
+            final Texture colorTexture = textures.get(i * TEXTURES_PER_MATERIAL);
+            if (colorTexture != null) {
+                material.setColorTexture(colorTexture);
             }
 
             // Normal map
-            if (materialDto.normalTexture != null) {
-                try {
-                    Bitmap bitmap = AndroidUtils.decodeBitmap(Buffers.createByteBufferInputStream(materialDto.normalTexture));
-                    material.setNormalTexture(new Texture(materialDto.name + "_normal", bitmap));
-                } catch (Exception e) {
-                    logger.log(Level.SEVERE, "Failed to decode normal texture for material: " + materialDto.name, e);
-                }
+            final Texture normalTexture = textures.get(i * TEXTURES_PER_MATERIAL + 1);
+            if (normalTexture != null) {
+                material.setNormalTexture(normalTexture);
             }
 
             // Emissive map and factor
             material.setEmissiveFactor(materialDto.emissiveFactor);
-            if (materialDto.emissiveTexture != null) {
-                try {
-                    Bitmap bitmap = AndroidUtils.decodeBitmap(Buffers.createByteBufferInputStream(materialDto.emissiveTexture));
-                    material.setEmissiveTexture(new Texture(materialDto.name + "_emissive", bitmap));
-                } catch (Exception e) {
-                    logger.log(Level.SEVERE, "Failed to decode emissive texture for material: " + materialDto.name, e);
-                }
+            final Texture emissiveTexture = textures.get(i * TEXTURES_PER_MATERIAL + 2);
+            if (emissiveTexture != null) {
+                material.setEmissiveTexture(emissiveTexture);
             }
 
             // KHR_materials_volume properties
             material.setThicknessFactor(materialDto.thicknessFactor);
             material.setAttenuationDistance(materialDto.attenuationDistance);
             material.setAttenuationColor(materialDto.attenuationColor);
-            if (materialDto.thicknessTexture != null) {
-                try {
-                    Bitmap bitmap = AndroidUtils.decodeBitmap(Buffers.createByteBufferInputStream(materialDto.thicknessTexture));
-                    material.setTransmissionTexture(new Texture(materialDto.name + "_thickness", bitmap));
-                } catch (Exception e) {
-                    logger.log(Level.SEVERE, "Failed to decode thickness texture for material: " + materialDto.name, e);
-                }
+            final Texture thicknessTexture = textures.get(i * TEXTURES_PER_MATERIAL + 3);
+            if (thicknessTexture != null) {
+                material.setTransmissionTexture(thicknessTexture);
             }
 
             materials.add(material);
@@ -202,6 +322,42 @@ public class GltfLoader {
         return materials;
     }
 
+    /**
+     * @param materialName the name of the material
+     * @param type         the type of texture (i.e. color)
+     * @param imageData    the image data, or null if the material has no texture of this type
+     * @return the job that creates the texture. The result is null if there is no image or it can't be read
+     */
+    private static Callable<Texture> createTextureJob(String materialName, String type, ByteBuffer imageData) {
+        return () -> {
+            if (imageData == null) {
+                return null;
+            }
+            try {
+                return createTexture(materialName + "_" + type, imageData);
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Failed to read " + type + " texture for material: " + materialName, e);
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Create the texture from the image data. KTX and KTX2 images (<code>image/ktx2</code>) are parsed,
+     * so their levels are uploaded as they are. Other formats are kept encoded: the {@link TexturePreparer}
+     * decodes them later, downscaled to the load plan, and they can be decoded again if the GL context is lost
+     *
+     * @param name      the texture name
+     * @param imageData the image data
+     * @return the texture
+     */
+    private static Texture createTexture(String name, ByteBuffer imageData) {
+        if (KtxTexture.isKtx(imageData)) {
+            return new Texture(name, null).setKtx(KtxTexture.read(imageData));
+        }
+        return new Texture(name, null).setBuffer(imageData);
+    }
+
     private List<Camera> buildCamerasFromDto(GltfDto dto) {
         if (dto.cameras == null || dto.cameras.isEmpty()) {
             return null;
@@ -378,10 +534,10 @@ public class GltfLoader {
 
                 AnimatedModel model = new AnimatedModel();
                 model.setId(meshDto.name != null ? meshDto.name + "_" + i : "mesh_" + i);
-                model.setVertexBuffer((FloatBuffer) primitiveDto.positions);
-                model.setNormalsBuffer((FloatBuffer) primitiveDto.normals);
-                model.setTangentBuffer(primitiveDto.tangents);
-                model.setTextureCoordsArrayBuffer((FloatBuffer) primitiveDto.texCoords);
+                model.setPositionsAttribute(primitiveDto.positions);
+                model.setNormalsAttribute(primitiveDto.normals);
+                model.setTangentsAttribute(primitiveDto.tangents);
+                model.setTexCoordsAttribute(primitiveDto.texCoords);
                 model.setColorsBuffer(primitiveDto.colors);
                 model.setIndexBuffer(primitiveDto.indices);
                 model.setIndexed(primitiveDto.indices != null);
@@ -577,82 +733,57 @@ public class GltfLoader {
             // animation name
             final String animName = animDto.name != null ? animDto.name : "Animation " + a;
 
-            // initialize keyframes
-            final List<KeyFrame> keyframes = new ArrayList<>();
-
             // check samplers
             if (animDto.samplers == null || animDto.samplers.isEmpty()){
                 logger.warning("Animation " + animDto.name + " has no samplers.");
                 continue;
             }
 
-            // 1. Identify all unique timestamps across all channels
-            final TreeSet<Float> timestamps = new TreeSet<>();
+            // one track per channel
+            final List<Track> tracks = new ArrayList<>();
             for (GltfChannelDto channel : animDto.channels) {
-                GltfSamplerDto sampler = animDto.samplers.get(channel.samplerIndex);
-                if (sampler.input != null) {
-                    sampler.input.rewind();
-                    while (sampler.input.hasRemaining()) {
-                        timestamps.add(sampler.input.get());
+                final GltfSamplerDto sampler = animDto.samplers.get(channel.samplerIndex);
+                if (sampler.input == null || sampler.output == null || sampler.input.limit() == 0) continue;
+
+                final int path;
+                if ("translation".equals(channel.targetPath)) path = Track.TRANSLATION;
+                else if ("rotation".equals(channel.targetPath)) path = Track.ROTATION;
+                else if ("scale".equals(channel.targetPath)) path = Track.SCALE;
+                else {
+                    logger.config("Unsupported animation path: " + channel.targetPath);
+                    continue;
+                }
+                final int stride = path == Track.ROTATION ? 4 : 3;
+
+                final FloatBuffer input = sampler.input.duplicate();
+                input.rewind();
+                final float[] times = new float[input.remaining()];
+                input.get(times);
+
+                final float[] values = new float[times.length * stride];
+                final FloatBuffer output = sampler.output.duplicate();
+                output.rewind();
+                if (sampler.interpolation == AnimationModel.Interpolation.CUBICSPLINE) {
+                    // in-tangent, value, out-tangent: keep the values, interpolated linearly
+                    for (int k = 0; k < times.length; k++) {
+                        output.position((k * 3 + 1) * stride);
+                        output.get(values, k * stride, stride);
                     }
+                } else {
+                    output.get(values);
                 }
-            }
 
-            // 2. Create pose for each timestamp
-            for (float time : timestamps) {
-                keyframes.add(new KeyFrame(time, new HashMap<>()));
+                final Track.Interpolation interpolation = sampler.interpolation == AnimationModel.Interpolation.STEP ?
+                        Track.Interpolation.STEP : Track.Interpolation.LINEAR;
+                final Node node = nodes.get(channel.targetNodeIndex);
+                tracks.add(new Track(node.getId(), path, 0, stride, times, values, interpolation));
             }
 
-            // 3. Fill pose with channel data
-            for (GltfChannelDto channel : animDto.channels) {
-                GltfSamplerDto sampler = animDto.samplers.get(channel.samplerIndex);
-                Node node = nodes.get(channel.targetNodeIndex);
-
-                sampler.input.rewind();
-                sampler.output.rewind();
-
-                for (KeyFrame keyFrame : keyframes) {
-                    float time = keyFrame.getTime();
-
-                    // Find value for this time or interpolate
-                    // For now, let's assume gltf keyframes align with our timestamps (common)
-                    // or just take the first matching or closest one.
-                    float[] value = null;
-                    sampler.input.rewind();
-                    int index = -1;
-                    float minDiff = Float.MAX_VALUE;
-                    for (int i = 0; sampler.input.hasRemaining(); i++){
-                        float t = sampler.input.get();
-                        float diff = Math.abs(t - time);
-                        if (diff < 0.001f){
-                            index = i;
-                            break;
-                        }
-                    }
-
-                    if (index != -1){
-                        int stride = 0;
-                        if ("translation".equals(channel.targetPath) || "scale".equals(channel.targetPath)) stride = 3;
-                        else if ("rotation".equals(channel.targetPath)) stride = 4;
-
-                        if (stride > 0){
-                            value = new float[stride];
-                            sampler.output.position(index * stride);
-                            sampler.output.get(value);
-                        }
-                    }
-
-                    if (value != null){
-                        JointTransform jt = keyFrame.getTransforms().computeIfAbsent(node.getId(), k -> new JointTransform());
-                        if ("translation".equals(channel.targetPath)) jt.setLocation(value);
-                        else if ("rotation".equals(channel.targetPath)) jt.setRotation(new Quaternion(value));
-                        else if ("scale".equals(channel.targetPath)) jt.setScale(value);
-                    }
-                }
+            if (tracks.isEmpty()) {
+                logger.warning("Animation " + animName + " has no supported channels.");
+                continue;
             }
-
-            float duration = timestamps.isEmpty() ? 0 : timestamps.last();
-            animations.add(new Animation(animName, duration, keyframes.toArray(new KeyFrame[0])));
+            animations.add(new Animation(animName, tracks.toArray(new Track[0])));
         }
         return animations;
     }
@@ -714,16 +845,11 @@ public class GltfLoader {
                     List<Animation> sceneAnimations = new ArrayList<>();
                     for (Animation anim : sceneData.animations) {
                         boolean belongsToScene = false;
-                        if (anim.getKeyFrames() != null && anim.getKeyFrames().length > 0) {
-                            Map<String, JointTransform> firstPose = anim.getKeyFrames()[0].getPose();
-                            if (firstPose != null) {
-                                for (String jointId : firstPose.keySet()) {
-                                    if (sceneNodeIds.contains(jointId)) {
-                                        belongsToScene = true;
-                                        logger.config("Found animation belonging to the scene.");
-                                        break;
-                                    }
-                                }
+                        for (String jointId : anim.getTargets()) {
+                            if (sceneNodeIds.contains(jointId)) {
+                                belongsToScene = true;
+                                logger.config("Found animation belonging to the scene.");
+                                break;
                             }
                         }
 
@@ -2,18 +2,44 @@ package org.the3deer.android.engine.services.gltf;
 
 import androidx.annotation.NonNull;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.the3deer.android.engine.model.Object3D;
 import org.the3deer.android.engine.model.Scene;
 import org.the3deer.android.engine.services.LoadListener;
+import org.the3deer.android.engine.services.LoadPlanner;
 import org.the3deer.android.engine.services.LoaderTask;
 import org.the3deer.android.engine.services.gltf.dto.GltfSceneData;
+import org.the3deer.android.engine.util.KtxTexture;
+import org.the3deer.android.util.ContentUtils;
+import org.the3deer.util.io.ByteBufferInputStream;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class GltfLoaderTask extends LoaderTask {
 
+    /**
+     * "glTF" in little endian
+     */
+    private static final int GLB_MAGIC = 0x46546C67;
+    /**
+     * Bytes read from the external images to get their size
+     */
+    private static final int IMAGE_HEADER_BYTES = 64 * 1024;
+    /**
+     * Size assumed for the images whose size can't be read
+     */
+    private static final int DEFAULT_IMAGE_SIZE = 1024;
+
     public GltfLoaderTask(URI url, LoadListener callback) {
         super(url, callback);
     }
@@ -39,6 +65,153 @@ public class GltfLoaderTask extends LoaderTask {
         return loadNew;
     }
 
+    /**
+     * Estimate the model from the accessors of the meshes and the headers of the images.
+     * Only the json is parsed. The images in the binary chunk and the external ones are read partially
+     */
+    @Override
+    protected LoadPlanner.Estimate estimate() throws IOException {
+        final ByteBuffer data = ContentUtils.map(uri);
+        if (data == null) return null;
+        data.order(ByteOrder.LITTLE_ENDIAN);
+
+        // glb: json chunk and binary chunk
+        ByteBuffer json = data;
+        ByteBuffer bin = null;
+        if (data.remaining() >= 20 && data.getInt(0) == GLB_MAGIC) {
+            final int jsonLength = data.getInt(12);
+            json = slice(data, 20, jsonLength);
+            final int binHeader = 20 + jsonLength;
+            if (data.limit() >= binHeader + 8) {
+                bin = slice(data, binHeader + 8, Math.min(data.getInt(binHeader), data.limit() - binHeader - 8));
+            }
+        }
+        final JsonNode root = new ObjectMapper().readTree(new ByteBufferInputStream(json));
+
+        // meshes
+        final JsonNode accessors = root.path("accessors");
+        final Set<Integer> vertexAccessors = new HashSet<>();
+        final Set<Integer> indexAccessors = new HashSet<>();
+        long vertices = 0;
+        for (JsonNode mesh : root.path("meshes")) {
+            for (JsonNode primitive : mesh.path("primitives")) {
+                final JsonNode position = primitive.path("attributes").path("POSITION");
+                if (position.isInt() && vertexAccessors.add(position.asInt())) {
+                    vertices += accessors.path(position.asInt()).path("count").asLong();
+                }
+                for (JsonNode attribute : primitive.path("attributes")) {
+                    if (attribute.isInt()) vertexAccessors.add(attribute.asInt());
+                }
+                if (primitive.path("indices").isInt()) {
+                    indexAccessors.add(primitive.path("indices").asInt());
+                }
+            }
+        }
+        long attributeBytes = 0;
+        for (int accessor : vertexAccessors) {
+            final JsonNode node = accessors.path(accessor);
+            attributeBytes += node.path("count").asLong() * getComponents(node.path("type").asText()) * 4;
+        }
+        long indices = 0;
+        for (int accessor : indexAccessors) {
+            indices += accessors.path(accessor).path("count").asLong();
+        }
+
+        final LoadPlanner.Estimate ret = new LoadPlanner.Estimate()
+                .setVertices(vertices)
+                .setIndices(indices)
+                .setFloatsPerVertex(vertices > 0 ? (int) Math.max(3, attributeBytes / 4 / vertices) : 8)
+                // the file is read into memory, and the accessors are views of it
+                .setTemporaryBytes(data.limit());
+
+        // images
+        final JsonNode bufferViews = root.path("bufferViews");
+        for (JsonNode image : root.path("images")) {
+            int[] size = null;
+            try {
+                if (image.path("bufferView").isInt() && bin != null) {
+                    final JsonNode bufferView = bufferViews.path(image.path("bufferView").asInt());
+                    final int offset = bufferView.path("byteOffset").asInt(0);
+                    final int length = bufferView.path("byteLength").asInt(0);
+                    if (bufferView.path("buffer").asInt(0) == 0 && offset + length <= bin.limit()) {
+                        size = getImageSize(slice(bin, offset, length));
+                    }
+                } else if (image.path("uri").isTextual() && !image.path("uri").asText().startsWith("data:")) {
+                    try (InputStream is = ContentUtils.getInputStream(uri.resolve(image.path("uri").asText()))) {
+                        final byte[] header = new byte[IMAGE_HEADER_BYTES];
+                        int read = 0, count;
+                        while (read < header.length && (count = is.read(header, read, header.length - read)) > 0) {
+                            read += count;
+                        }
+                        size = getImageSize(ByteBuffer.wrap(header, 0, read).slice());
+                    }
+                }
+            } catch (Exception e) {
+                logger.fine("Image size unknown: " + e.getMessage());
+            }
+            if (size == null) size = new int[]{DEFAULT_IMAGE_SIZE, DEFAULT_IMAGE_SIZE};
+            ret.addTexture(size[0], size[1]);
+        }
+        return ret;
+    }
+
+    private static int getComponents(String type) {
+        switch (type) {
+            case "SCALAR":
+                return 1;
+            case "VEC2":
+                return 2;
+            case "VEC3":
+                return 3;
+            case "MAT4":
+                return 16;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * Read the size from the header of a PNG, JPEG or KTX image
+     *
+     * @return the width and height, or null if it's not found
+     */
+    private static int[] getImageSize(ByteBuffer image) {
+        final ByteBuffer data = image.order(ByteOrder.BIG_ENDIAN);
+        final int length = data.limit();
+
+        // png: IHDR is the first chunk
+        if (length >= 24 && data.getInt(0) == 0x89504E47) {
+            return new int[]{data.getInt(16), data.getInt(20)};
+        }
+
+        // jpeg: look for the start of frame marker
+        if (length >= 4 && (data.getShort(0) & 0xFFFF) == 0xFFD8) {
+            int i = 2;
+            while (i + 9 < length) {
+                if ((data.get(i) & 0xFF) != 0xFF) return null;
+                final int marker = data.get(i + 1) & 0xFF;
+                if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                    return new int[]{data.getShort(i + 7) & 0xFFFF, data.getShort(i + 5) & 0xFFFF};
+                }
+                i += 2 + (data.getShort(i + 2) & 0xFFFF);
+            }
+            return null;
+        }
+
+        if (KtxTexture.isKtx(data)) {
+            final KtxTexture ktx = KtxTexture.read(data);
+            return new int[]{ktx.getWidth(), ktx.getHeight()};
+        }
+        return null;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        final ByteBuffer ret = buffer.duplicate();
+        ret.position(offset);
+        ret.limit(offset + length);
+        return ret.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
     @NonNull
     private List<Scene> buildNew() throws Exception {
         GltfLoader loader = new GltfLoader();
@@ -1,5 +1,6 @@
 package org.the3deer.android.engine.services.gltf;
 
+import org.the3deer.android.engine.services.LoaderTask;
 import org.the3deer.android.engine.services.gltf.dto.GltfAnimationDto;
 import org.the3deer.android.engine.services.gltf.dto.GltfCameraDto;
 import org.the3deer.android.engine.services.gltf.dto.GltfChannelDto;
@@ -11,12 +12,18 @@ import org.the3deer.android.engine.services.gltf.dto.GltfPrimitiveDto;
 import org.the3deer.android.engine.services.gltf.dto.GltfSamplerDto;
 import org.the3deer.android.engine.services.gltf.dto.GltfSceneDto;
 import org.the3deer.android.engine.services.gltf.dto.GltfSkinDto;
+import org.the3deer.android.engine.services.gltf.draco.DracoDecoder;
+import org.the3deer.android.engine.services.gltf.draco.DracoMesh;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,6 +33,7 @@ import de.javagl.jgltf.model.CameraModel;
 import de.javagl.jgltf.model.CameraOrthographicModel;
 import de.javagl.jgltf.model.CameraPerspectiveModel;
 import de.javagl.jgltf.model.GltfModel;
+import de.javagl.jgltf.model.ImageModel;
 import de.javagl.jgltf.model.MaterialModel;
 import de.javagl.jgltf.model.MeshModel;
 import de.javagl.jgltf.model.MeshPrimitiveModel;
@@ -33,7 +41,10 @@ import de.javagl.jgltf.model.NodeModel;
 import de.javagl.jgltf.model.SceneModel;
 import de.javagl.jgltf.model.SkinModel;
 import de.javagl.jgltf.model.TextureModel;
+import de.javagl.jgltf.model.impl.DefaultImageModel;
 import de.javagl.jgltf.model.io.GltfAsset;
+import de.javagl.jgltf.model.io.GltfReferenceResolver;
+import de.javagl.jgltf.model.io.IO;
 import de.javagl.jgltf.model.v1.MaterialModelV1;
 import de.javagl.jgltf.model.v2.MaterialModelV2;
 
@@ -50,8 +61,22 @@ public class GltfParser {
         this.gltfModel = gltfModel;
     }
 
-    public GltfDto parse(){
+    /**
+     * Parse the model.
+     * The meshes are parsed while the external images are still being resolved.
+     *
+     * @param pendingImages the resolution of the external images (see {@link GltfReferenceResolver#resolveAllAsync})
+     * @return the parsed model
+     * @throws InterruptedException if the thread was interrupted while waiting for the images
+     */
+    public GltfDto parse(List<? extends Future<?>> pendingImages) throws InterruptedException {
         parseMeshes();
+        if (!pendingImages.isEmpty()) {
+            final long start = System.currentTimeMillis();
+            GltfReferenceResolver.awaitAll(pendingImages);
+            logger.info("Waited " + (System.currentTimeMillis() - start) + " ms for the images");
+            updateImageModels();
+        }
         parseMaterials();
         parseCameras();
         parseNodes();
@@ -61,10 +86,24 @@ public class GltfParser {
         return dto;
     }
 
+    /**
+     * Set the data of the external images that were not resolved yet when the model was created
+     */
+    private void updateImageModels() {
+        for (ImageModel imageModel : gltfModel.getImageModels()) {
+            if (imageModel instanceof DefaultImageModel && imageModel.getBufferViewModel() == null
+                    && imageModel.getUri() != null && !IO.isDataUriString(imageModel.getUri())) {
+                ((DefaultImageModel) imageModel).setImageData(gltfAsset.getReferenceData(imageModel.getUri()));
+            }
+        }
+    }
+
     private void parseMeshes() {
         List<MeshModel> meshModels = gltfModel.getMeshModels();
         dto.meshes = new ArrayList<>(meshModels.size());
 
+        final Map<MeshPrimitiveModel, DracoMesh> dracoMeshes = decodeDracoPrimitives(meshModels);
+
         for (MeshModel meshModel : meshModels) {
             GltfMeshDto meshDto = new GltfMeshDto();
             meshDto.name = meshModel.getName();
@@ -73,26 +112,33 @@ public class GltfParser {
             for (MeshPrimitiveModel primitiveModel : meshModel.getMeshPrimitiveModels()) {
                 GltfPrimitiveDto primitiveDto = new GltfPrimitiveDto();
 
+                final DracoMesh dracoMesh = dracoMeshes.get(primitiveModel);
+                if (dracoMesh != null) {
+                    parseDracoPrimitive(primitiveModel, dracoMesh, primitiveDto);
+                    meshDto.primitives.add(primitiveDto);
+                    continue;
+                }
+
                 primitiveDto.indices = GltfUtil.createIndicesBuffer(primitiveModel.getIndices());
 
                 AccessorModel posAccessor = primitiveModel.getAttributes().get("POSITION");
                 if (posAccessor != null) {
-                    primitiveDto.positions = GltfUtil.createFloatBuffer(posAccessor);
+                    primitiveDto.positions = GltfUtil.createAttribute(posAccessor);
                 }
 
                 AccessorModel normalAccessor = primitiveModel.getAttributes().get("NORMAL");
                 if (normalAccessor != null) {
-                    primitiveDto.normals = GltfUtil.createFloatBuffer(normalAccessor);
+                    primitiveDto.normals = GltfUtil.createAttribute(normalAccessor);
                 }
 
                 AccessorModel tangentAccessor = primitiveModel.getAttributes().get("TANGENT");
                 if (tangentAccessor != null) {
-                    primitiveDto.tangents = GltfUtil.createFloatBuffer(tangentAccessor);
+                    primitiveDto.tangents = GltfUtil.createAttribute(tangentAccessor);
                 }
 
                 AccessorModel texCoordsAccessor = primitiveModel.getAttributes().get("TEXCOORD_0");
                 if (texCoordsAccessor != null) {
-                    primitiveDto.texCoords = GltfUtil.createFloatBuffer(texCoordsAccessor);
+                    primitiveDto.texCoords = GltfUtil.createAttribute(texCoordsAccessor);
                 }
 
                 AccessorModel colorsAccessor = primitiveModel.getAttributes().get("COLOR_0");
@@ -122,6 +168,120 @@ public class GltfParser {
         }
     }
 
+    /**
+     * Decode the primitives compressed with the KHR_draco_mesh_compression extension.
+     * The meshes are decoded in parallel, each one on its own job in the shared pool of the loaders.
+     *
+     * @param meshModels the meshes
+     * @return the decoded mesh of every compressed primitive
+     */
+    private Map<MeshPrimitiveModel, DracoMesh> decodeDracoPrimitives(List<MeshModel> meshModels) {
+        final List<MeshPrimitiveModel> primitives = new ArrayList<>();
+        for (MeshModel meshModel : meshModels) {
+            for (MeshPrimitiveModel primitiveModel : meshModel.getMeshPrimitiveModels()) {
+                if (getDracoExtension(primitiveModel) != null) {
+                    primitives.add(primitiveModel);
+                }
+            }
+        }
+        if (primitives.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final long start = System.currentTimeMillis();
+        final Map<MeshPrimitiveModel, DracoMesh> ret = new HashMap<>();
+        final List<Callable<DracoMesh>> jobs = new ArrayList<>(primitives.size());
+        for (MeshPrimitiveModel primitiveModel : primitives) {
+            final Object bufferView = getDracoExtension(primitiveModel).get("bufferView");
+            if (!(bufferView instanceof Number)) {
+                throw new IllegalArgumentException("Invalid " + DracoDecoder.EXTENSION + " bufferView: " + bufferView);
+            }
+            final ByteBuffer data = gltfModel.getBufferViewModels()
+                    .get(((Number) bufferView).intValue()).getBufferViewData();
+            jobs.add(() -> DracoDecoder.decode(data));
+        }
+        try {
+            // the meshes are decoded in the shared pool of the loaders
+            final List<DracoMesh> meshes = LoaderTask.invokeAll(jobs);
+            for (int i = 0; i < primitives.size(); i++) {
+                ret.put(primitives.get(i), meshes.get(i));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while decoding draco meshes", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to decode draco mesh", e.getCause());
+        }
+        logger.info("Decoded " + primitives.size() + " draco primitives in " + (System.currentTimeMillis() - start) + " ms");
+        return ret;
+    }
+
+    private static Map<String, Object> getDracoExtension(MeshPrimitiveModel primitiveModel) {
+        final Map<String, Object> extensions = primitiveModel.getExtensions();
+        if (extensions == null) {
+            return null;
+        }
+        final Object extension = extensions.get(DracoDecoder.EXTENSION);
+        return extension instanceof Map ? (Map<String, Object>) extension : null;
+    }
+
+    /**
+     * Fill the primitive with the decoded draco mesh.
+     * The accessors of the primitive still provide the component type of the indices and the normalized flag.
+     */
+    private void parseDracoPrimitive(MeshPrimitiveModel primitiveModel, DracoMesh dracoMesh, GltfPrimitiveDto primitiveDto) {
+        final AccessorModel indicesAccessor = primitiveModel.getIndices();
+        primitiveDto.indices = GltfUtil.createIndicesBuffer(dracoMesh.getIndices(),
+                indicesAccessor != null ? indicesAccessor.getComponentType() : 5125);
+
+        if (primitiveModel.getMaterialModel() != null) {
+            primitiveDto.materialIndex = gltfModel.getMaterialModels().indexOf(primitiveModel.getMaterialModel());
+        }
+
+        final Map<String, Object> attributes = (Map<String, Object>) getDracoExtension(primitiveModel).get("attributes");
+        if (attributes == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            if (!(entry.getValue() instanceof Number)) continue;
+            final DracoMesh.Attribute attribute = dracoMesh.getAttribute(((Number) entry.getValue()).intValue());
+            if (attribute == null) {
+                logger.warning("Draco attribute not found: " + entry.getKey() + "=" + entry.getValue());
+                continue;
+            }
+            final AccessorModel accessor = primitiveModel.getAttributes().get(entry.getKey());
+            final boolean normalized = attribute.isNormalized() || (accessor != null && accessor.isNormalized());
+            switch (entry.getKey()) {
+                case "POSITION":
+                    primitiveDto.positions = GltfUtil.createAttribute(attribute, dracoMesh.getNumPoints(), normalized);
+                    break;
+                case "NORMAL":
+                    primitiveDto.normals = GltfUtil.createAttribute(attribute, dracoMesh.getNumPoints(), normalized);
+                    break;
+                case "TANGENT":
+                    primitiveDto.tangents = GltfUtil.createAttribute(attribute, dracoMesh.getNumPoints(), normalized);
+                    break;
+                case "TEXCOORD_0":
+                    primitiveDto.texCoords = GltfUtil.createAttribute(attribute, dracoMesh.getNumPoints(), normalized);
+                    break;
+                case "COLOR_0":
+                    primitiveDto.colors = GltfUtil.createBuffer(attribute);
+                    break;
+                case "JOINTS_0":
+                    primitiveDto.jointIds = GltfUtil.createBuffer(attribute);
+                    primitiveDto.jointIdsComponents = attribute.getComponents();
+                    break;
+                case "WEIGHTS_0":
+                    primitiveDto.weights = GltfUtil.createNormalizedWeightsBuffer(attribute);
+                    primitiveDto.weightsComponents = attribute.getComponents();
+                    break;
+            }
+        }
+    }
+
     private void parseMaterials() {
 
         List<MaterialModel> materialModels = gltfModel.getMaterialModels();
@@ -2,17 +2,143 @@ package org.the3deer.android.engine.services.gltf;
 
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.the3deer.android.engine.model.VertexAttribute;
+import org.the3deer.android.engine.services.gltf.draco.DracoMesh;
+
+import de.javagl.jgltf.model.AccessorByteData;
 import de.javagl.jgltf.model.AccessorData;
 import de.javagl.jgltf.model.AccessorModel;
+import de.javagl.jgltf.model.AccessorShortData;
+import de.javagl.jgltf.model.BufferViewModel;
+import de.javagl.jgltf.model.io.Buffers;
 
 public final class GltfUtil {
 
     private static final Logger logger = Logger.getLogger(GltfUtil.class.getSimpleName());
 
+    /**
+     * Whether tightly packed accessors are views of the buffer data, instead of copies
+     */
+    private static boolean zeroCopy = true;
+
+    /**
+     * Enable or disable the zero-copy mode.
+     * When enabled, the accessors that don't need any conversion are views of the buffer data,
+     * so the file is not duplicated in memory. The views share the memory of the file,
+     * so the file buffer is not released until all the views are released.
+     *
+     * @param zeroCopy true to create views, false to always copy the data
+     */
+    public static void setZeroCopy(boolean zeroCopy) {
+        GltfUtil.zeroCopy = zeroCopy;
+    }
+
+    public static boolean isZeroCopy() {
+        return zeroCopy;
+    }
+
+    /**
+     * Creates a view of the accessor data, without copying it.
+     * This is only possible when the data is tightly packed (not interleaved nor padded), the buffer is direct
+     * (binary chunk of a local GLB file or external .bin) and the platform is little endian, like glTF.
+     * Sparse accessors are resolved by jgltf into their own dense buffer, so they can be viewed too.
+     *
+     * @return the view, in native order, or null if the data has to be copied
+     */
+    static ByteBuffer createView(AccessorModel accessor) {
+        if (!zeroCopy || ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) return null;
+
+        final BufferViewModel bufferViewModel = accessor.getBufferViewModel();
+        if (bufferViewModel == null) return null;
+
+        final int elementSize = accessor.getElementSizeInBytes();
+        if (accessor.getByteStride() != elementSize || accessor.getPaddedElementSizeInBytes() != elementSize) {
+            return null;
+        }
+        if (accessor.getByteOffset() % accessor.getComponentSizeInBytes() != 0) {
+            return null;
+        }
+
+        // this also applies the sparse substitution, if any
+        final ByteBuffer data = bufferViewModel.getBufferViewData();
+        final int length = accessor.getCount() * elementSize;
+        if (data == null || !data.isDirect() || accessor.getByteOffset() + length > data.capacity()) {
+            return null;
+        }
+
+        return Buffers.createSlice(data, accessor.getByteOffset(), length).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Creates a strided view of the accessor data, without copying it.
+     * Quantized attributes are always padded, because each vertex must be aligned to 4 bytes,
+     * so the view keeps the stride of the buffer view, to be used as is by the GPU.
+     *
+     * @return the view, in native order, or null if the data has to be copied
+     */
+    private static ByteBuffer createStridedView(AccessorModel accessor) {
+        if (!zeroCopy || ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) return null;
+
+        final BufferViewModel bufferViewModel = accessor.getBufferViewModel();
+        if (bufferViewModel == null || accessor.getCount() == 0) return null;
+        if (accessor.getByteOffset() % accessor.getComponentSizeInBytes() != 0
+                || accessor.getByteStride() % accessor.getComponentSizeInBytes() != 0) {
+            return null;
+        }
+
+        final ByteBuffer data = bufferViewModel.getBufferViewData();
+        final int length = (accessor.getCount() - 1) * accessor.getByteStride() + accessor.getElementSizeInBytes();
+        if (data == null || !data.isDirect() || accessor.getByteOffset() + length > data.capacity()) {
+            return null;
+        }
+
+        return Buffers.createSlice(data, accessor.getByteOffset(), length).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Creates a vertex attribute (POSITION, NORMAL, TANGENT, TEXCOORD_n).
+     * Float data is returned as a {@link FloatBuffer} (see {@link #createFloatBuffer(AccessorModel)}).
+     * Quantized data (KHR_mesh_quantization) keeps its component type and normalized flag,
+     * so it's not expanded to floats.
+     */
+    public static VertexAttribute createAttribute(AccessorModel accessor) {
+        if (accessor == null) return null;
+
+        final int components = accessor.getElementType().getNumComponents();
+        final int componentType = accessor.getComponentType();
+        if (componentType == VertexAttribute.FLOAT) {
+            return new VertexAttribute(createFloatBuffer(accessor), components);
+        }
+
+        ByteBuffer data = createStridedView(accessor);
+        int byteStride = accessor.getByteStride();
+        if (data == null) {
+            // tightly packed copy
+            data = accessor.getAccessorData().createByteBuffer();
+            byteStride = accessor.getElementSizeInBytes();
+        }
+        return new VertexAttribute(data, accessor.getCount(), components, componentType, accessor.isNormalized(), byteStride);
+    }
+
+    /**
+     * Creates a buffer with the accessor data. It is a view of the buffer data if possible (see {@link #createView(AccessorModel)}),
+     * otherwise the data is copied into a new direct buffer.
+     */
+    private static ByteBuffer createByteBuffer(AccessorModel accessor) {
+        final ByteBuffer view = createView(accessor);
+        if (view != null) {
+            return view;
+        }
+        return accessor.getAccessorData().createByteBuffer();
+    }
+
     /**
      * Creates a new NIO Buffer for vertex indices from the given glTF AccessorModel.
      * This method correctly handles byte, short, and int component types using GL constants.
@@ -20,10 +146,9 @@ public final class GltfUtil {
     public static Buffer createIndicesBuffer(AccessorModel indicesAccessor) {
         if (indicesAccessor == null) return null;
 
-        AccessorData accessorData = indicesAccessor.getAccessorData();
         // Use the GL integer constant for robust checking
-        final int glComponentType = accessorData.getGlComponentType();
-        ByteBuffer byteBuffer = accessorData.createByteBuffer();
+        final int glComponentType = indicesAccessor.getComponentType();
+        ByteBuffer byteBuffer = createByteBuffer(indicesAccessor);
 
         switch (glComponentType) {
             case 5121: // GL_UNSIGNED_BYTE
@@ -43,8 +168,52 @@ public final class GltfUtil {
      */
     static FloatBuffer createFloatBuffer(AccessorModel accessor) {
         if (accessor == null) return null;
-        // This is simple because we assume these are always floats
-        return accessor.getAccessorData().createByteBuffer().asFloatBuffer();
+        if (accessor.getComponentType() == 5126) { // GL_FLOAT
+            return createByteBuffer(accessor).asFloatBuffer();
+        }
+        // integer components have to be converted
+        return createConvertedFloatBuffer(accessor);
+    }
+
+    /**
+     * Converts the integer components to floats.
+     * Normalized components are mapped to [0,1] (unsigned) or [-1,1] (signed), as defined by the glTF spec.
+     */
+    private static FloatBuffer createConvertedFloatBuffer(AccessorModel accessor) {
+        final AccessorData accessorData = accessor.getAccessorData();
+        final int total = accessorData.getTotalNumComponents();
+        final FloatBuffer ret = ByteBuffer.allocateDirect(total * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+        final float max;
+        final boolean unsigned;
+        if (accessorData instanceof AccessorByteData) {
+            final AccessorByteData data = (AccessorByteData) accessorData;
+            unsigned = data.isUnsigned();
+            max = unsigned ? 255f : 127f;
+            for (int i = 0; i < total; i++) {
+                ret.put(data.getInt(i));
+            }
+        } else if (accessorData instanceof AccessorShortData) {
+            final AccessorShortData data = (AccessorShortData) accessorData;
+            unsigned = data.isUnsigned();
+            max = unsigned ? 65535f : 32767f;
+            for (int i = 0; i < total; i++) {
+                ret.put(data.getInt(i));
+            }
+        } else {
+            logger.log(Level.SEVERE, "Invalid component type for floats: " + accessor.getComponentType());
+            throw new IllegalArgumentException("Invalid component type for floats: " + accessor.getComponentType());
+        }
+
+        if (accessor.isNormalized()) {
+            for (int i = 0; i < total; i++) {
+                final float value = ret.get(i) / max;
+                ret.put(i, unsigned ? value : Math.max(value, -1f));
+            }
+        }
+
+        ret.position(0);
+        return ret;
     }
 
     public static FloatBuffer createVerticesBuffer(AccessorModel positionsAccessor) {
@@ -70,9 +239,8 @@ public final class GltfUtil {
     public static Buffer createJointsBuffer(AccessorModel jointsAccessor) {
         if (jointsAccessor == null) return null;
 
-        AccessorData accessorData = jointsAccessor.getAccessorData();
-        final int glComponentType = accessorData.getGlComponentType();
-        ByteBuffer byteBuffer = accessorData.createByteBuffer();
+        final int glComponentType = jointsAccessor.getComponentType();
+        ByteBuffer byteBuffer = createByteBuffer(jointsAccessor);
 
         switch (glComponentType) {
             case 5121: // GL_UNSIGNED_BYTE
@@ -93,9 +261,8 @@ public final class GltfUtil {
     public static Buffer createColorsBuffer(AccessorModel colorsAccessor) {
         if (colorsAccessor == null) return null;
 
-        AccessorData accessorData = colorsAccessor.getAccessorData();
-        final int glComponentType = accessorData.getGlComponentType();
-        ByteBuffer byteBuffer = accessorData.createByteBuffer();
+        final int glComponentType = colorsAccessor.getComponentType();
+        ByteBuffer byteBuffer = createByteBuffer(colorsAccessor);
 
         switch (glComponentType) {
             case 5121: // GL_UNSIGNED_BYTE
@@ -114,13 +281,142 @@ public final class GltfUtil {
         if (accessor == null) {
             return null;
         }
-        AccessorData accessorData = accessor.getAccessorData();
-        ByteBuffer byteBuffer = accessorData.createByteBuffer();
+        final int glComponentType = accessor.getComponentType();
+        switch (glComponentType) {
+            case 5126: // FLOAT
+                return createByteBuffer(accessor).asFloatBuffer();
+            case 5121: // UNSIGNED_BYTE (normalized)
+            case 5123: // UNSIGNED_SHORT (normalized)
+                return createConvertedFloatBuffer(accessor);
+            default:
+                logger.log(Level.SEVERE,  "Invalid component type for weights: " + glComponentType);
+                throw new IllegalArgumentException("Invalid component type for weights: " + glComponentType);
+        }
+    }
+
+    /**
+     * Creates a {@link VertexAttribute} from a decoded draco attribute.
+     * The 8 and 16 bit components are kept as they are, the rest are converted to floats.
+     */
+    static VertexAttribute createAttribute(DracoMesh.Attribute attribute, int count, boolean normalized) {
+        final int components = attribute.getComponents();
+        final int componentType = attribute.getComponentType();
+        switch (componentType) {
+            case VertexAttribute.FLOAT:
+                return new VertexAttribute(attribute.getData().asFloatBuffer(), components);
+            case VertexAttribute.BYTE:
+            case VertexAttribute.UNSIGNED_BYTE:
+                return new VertexAttribute(attribute.getData(), count, components, componentType, normalized, components);
+            case VertexAttribute.SHORT:
+            case VertexAttribute.UNSIGNED_SHORT:
+                return new VertexAttribute(attribute.getData(), count, components, componentType, normalized, components * 2);
+            default:
+                return new VertexAttribute(createFloatBuffer(attribute, normalized), components);
+        }
+    }
+
+    /**
+     * Converts the draco integer components to floats.
+     * Normalized components are mapped to [0,1] (unsigned) or [-1,1] (signed), as defined by the glTF spec.
+     */
+    private static FloatBuffer createFloatBuffer(DracoMesh.Attribute attribute, boolean normalized) {
+        final ByteBuffer data = attribute.getData();
+        final int componentType = attribute.getComponentType();
+        final int size = componentType == VertexAttribute.BYTE || componentType == VertexAttribute.UNSIGNED_BYTE ? 1
+                : componentType == VertexAttribute.SHORT || componentType == VertexAttribute.UNSIGNED_SHORT ? 2 : 4;
+        final int total = data.capacity() / size;
+        final FloatBuffer ret = ByteBuffer.allocateDirect(total * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        final float max;
+        switch (componentType) {
+            case VertexAttribute.BYTE:
+                max = 127f;
+                for (int i = 0; i < total; i++) ret.put(data.get(i));
+                break;
+            case VertexAttribute.UNSIGNED_BYTE:
+                max = 255f;
+                for (int i = 0; i < total; i++) ret.put(data.get(i) & 0xFF);
+                break;
+            case VertexAttribute.SHORT:
+                max = 32767f;
+                for (int i = 0; i < total; i++) ret.put(data.getShort(i * 2));
+                break;
+            case VertexAttribute.UNSIGNED_SHORT:
+                max = 65535f;
+                for (int i = 0; i < total; i++) ret.put(data.getShort(i * 2) & 0xFFFF);
+                break;
+            case 0x1404: // GL_INT
+                max = 2147483647f;
+                for (int i = 0; i < total; i++) ret.put(data.getInt(i * 4));
+                break;
+            case 0x1405: // GL_UNSIGNED_INT
+                max = 4294967295f;
+                for (int i = 0; i < total; i++) ret.put(data.getInt(i * 4) & 0xFFFFFFFFL);
+                break;
+            default:
+                return data.asFloatBuffer();
+        }
+        if (normalized) {
+            final boolean unsigned = componentType == VertexAttribute.UNSIGNED_BYTE
+                    || componentType == VertexAttribute.UNSIGNED_SHORT || componentType == 0x1405;
+            for (int i = 0; i < total; i++) {
+                final float value = ret.get(i) / max;
+                ret.put(i, unsigned ? value : Math.max(value, -1f));
+            }
+        }
+        ret.position(0);
+        return ret;
+    }
 
-        final int glComponentType = accessorData.getGlComponentType();
+    /**
+     * Creates the indices buffer of a draco mesh, with the component type declared by the indices accessor
+     */
+    static Buffer createIndicesBuffer(IntBuffer indices, int glComponentType) {
+        final int count = indices.capacity();
+        switch (glComponentType) {
+            case 5121: { // GL_UNSIGNED_BYTE
+                final ByteBuffer ret = ByteBuffer.allocateDirect(count).order(ByteOrder.nativeOrder());
+                for (int i = 0; i < count; i++) ret.put(i, (byte) indices.get(i));
+                return ret;
+            }
+            case 5123: { // GL_UNSIGNED_SHORT
+                final ShortBuffer ret = ByteBuffer.allocateDirect(count * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+                for (int i = 0; i < count; i++) ret.put(i, (short) indices.get(i));
+                return ret;
+            }
+            case 5125: // GL_UNSIGNED_INT
+                return indices;
+            default:
+                logger.log(Level.SEVERE,  "Invalid component type for indices: " + glComponentType);
+                throw new IllegalArgumentException("Invalid component type for indices: " + glComponentType);
+        }
+    }
+
+    /**
+     * Creates a Buffer for the joint IDs or the colors of a draco mesh. Components can be bytes, shorts or floats.
+     */
+    static Buffer createBuffer(DracoMesh.Attribute attribute) {
+        final int glComponentType = attribute.getComponentType();
+        switch (glComponentType) {
+            case 5121: // GL_UNSIGNED_BYTE
+                return attribute.getData();
+            case 5123: // GL_UNSIGNED_SHORT
+                return attribute.getData().asShortBuffer();
+            case 5126: // GL_FLOAT
+                return attribute.getData().asFloatBuffer();
+            default:
+                logger.log(Level.SEVERE,  "Invalid draco component type: " + glComponentType);
+                throw new IllegalArgumentException("Invalid draco component type: " + glComponentType);
+        }
+    }
+
+    public static FloatBuffer createNormalizedWeightsBuffer(DracoMesh.Attribute attribute) {
+        final int glComponentType = attribute.getComponentType();
         switch (glComponentType) {
             case 5126: // FLOAT
-                return byteBuffer.asFloatBuffer();
+                return attribute.getData().asFloatBuffer();
+            case 5121: // UNSIGNED_BYTE (normalized)
+            case 5123: // UNSIGNED_SHORT (normalized)
+                return createFloatBuffer(attribute, true);
             default:
                 logger.log(Level.SEVERE,  "Invalid component type for weights: " + glComponentType);
                 throw new IllegalArgumentException("Invalid component type for weights: " + glComponentType);
@@ -0,0 +1,596 @@
+package org.the3deer.android.engine.services.gltf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Decoder for the glTF EXT_meshopt_compression extension.
+ * <p>
+ * It implements the meshoptimizer codecs used by the extension:
+ * <ul>
+ *     <li>ATTRIBUTES: vertex codec (byte groups with zigzag deltas)</li>
+ *     <li>TRIANGLES: index codec (edge and vertex fifos)</li>
+ *     <li>INDICES: index sequence codec</li>
+ * </ul>
+ * and the OCTAHEDRAL, QUATERNION and EXPONENTIAL filters that are applied to the decoded attributes.
+ * <p>
+ * The decoded data is little endian, as any other glTF buffer.
+ *
+ * @author andresoviedo
+ * @see <a href="https://github.com/KhronosGroup/glTF/tree/main/extensions/2.0/Vendor/EXT_meshopt_compression">EXT_meshopt_compression</a>
+ */
+public final class MeshoptDecoder {
+
+    public static final String EXTENSION = "EXT_meshopt_compression";
+
+    public static final String MODE_ATTRIBUTES = "ATTRIBUTES";
+    public static final String MODE_TRIANGLES = "TRIANGLES";
+    public static final String MODE_INDICES = "INDICES";
+
+    public static final String FILTER_NONE = "NONE";
+    public static final String FILTER_OCTAHEDRAL = "OCTAHEDRAL";
+    public static final String FILTER_QUATERNION = "QUATERNION";
+    public static final String FILTER_EXPONENTIAL = "EXPONENTIAL";
+
+    // vertex codec
+    private static final int VERTEX_HEADER = 0xa0;
+    private static final int VERTEX_BLOCK_SIZE_BYTES = 8192;
+    private static final int VERTEX_BLOCK_MAX_SIZE = 256;
+    private static final int BYTE_GROUP_SIZE = 16;
+    private static final int BYTE_GROUP_DECODE_LIMIT = 24;
+    private static final int TAIL_MAX_SIZE = 32;
+
+    // index codecs
+    private static final int INDEX_HEADER = 0xe0;
+    private static final int SEQUENCE_HEADER = 0xd0;
+
+    private MeshoptDecoder() {
+    }
+
+    /**
+     * Decode a buffer view
+     *
+     * @param mode   one of {@link #MODE_ATTRIBUTES}, {@link #MODE_TRIANGLES} or {@link #MODE_INDICES}
+     * @param filter one of {@link #FILTER_NONE}, {@link #FILTER_OCTAHEDRAL}, {@link #FILTER_QUATERNION},
+     *               {@link #FILTER_EXPONENTIAL} or null
+     * @param count  number of elements
+     * @param stride size of each element, in bytes
+     * @param source the compressed data
+     * @return the decoded data (count * stride bytes) in a new direct buffer
+     * @throws IllegalArgumentException if the data is malformed or the parameters are not supported
+     */
+    public static ByteBuffer decode(String mode, String filter, int count, int stride, ByteBuffer source) {
+        final byte[] data = new byte[source.remaining()];
+        source.duplicate().get(data);
+
+        final ByteBuffer target = ByteBuffer.allocateDirect(count * stride).order(ByteOrder.LITTLE_ENDIAN);
+        if (MODE_ATTRIBUTES.equals(mode)) {
+            decodeVertexBuffer(target, count, stride, data);
+            decodeFilter(filter, target, count, stride);
+        } else if (MODE_TRIANGLES.equals(mode)) {
+            decodeIndexBuffer(target, count, stride, data);
+        } else if (MODE_INDICES.equals(mode)) {
+            decodeIndexSequence(target, count, stride, data);
+        } else {
+            throw new IllegalArgumentException("Unsupported meshopt mode: " + mode);
+        }
+        return target;
+    }
+
+    /**
+     * Decode vertex data encoded with the vertex codec (ATTRIBUTES mode)
+     *
+     * @param target     the buffer where to write the vertices, starting at position 0
+     * @param count      number of vertices
+     * @param vertexSize size of each vertex, in bytes. It must be a multiple of 4 and up to 256
+     * @param data       the compressed data
+     */
+    public static void decodeVertexBuffer(ByteBuffer target, int count, int vertexSize, byte[] data) {
+        if (vertexSize <= 0 || vertexSize > 256 || vertexSize % 4 != 0) {
+            throw new IllegalArgumentException("Invalid vertex size: " + vertexSize);
+        }
+        if (data.length < 1 + vertexSize) {
+            throw new IllegalArgumentException("Vertex data too small: " + data.length);
+        }
+        final int header = data[0] & 0xff;
+        if ((header & 0xf0) != VERTEX_HEADER) {
+            throw new IllegalArgumentException("Invalid vertex codec header: " + header);
+        }
+        final int version = header & 0x0f;
+        if (version > 0) {
+            throw new IllegalArgumentException("Unsupported vertex codec version: " + version);
+        }
+
+        // the stream ends with the first vertex (the base of the deltas), padded to 32 bytes.
+        // the padding allows reading a full byte group without checking the end of the data
+        final int tailSize = Math.max(vertexSize, TAIL_MAX_SIZE);
+        final byte[] lastVertex = new byte[vertexSize];
+        System.arraycopy(data, data.length - vertexSize, lastVertex, 0, vertexSize);
+
+        final int blockSize = getVertexBlockSize(vertexSize);
+        final byte[] buffer = new byte[VERTEX_BLOCK_MAX_SIZE];
+        final byte[] transposed = new byte[VERTEX_BLOCK_SIZE_BYTES];
+
+        int position = 1;
+        for (int offset = 0; offset < count; offset += blockSize) {
+            final int size = Math.min(blockSize, count - offset);
+            position = decodeVertexBlock(data, position, data.length, buffer, transposed, size, vertexSize, lastVertex);
+            target.position(offset * vertexSize);
+            target.put(transposed, 0, size * vertexSize);
+        }
+        target.position(0);
+
+        if (position != data.length - tailSize) {
+            throw new IllegalArgumentException("Invalid vertex data. Unexpected size: " + data.length);
+        }
+    }
+
+    private static int getVertexBlockSize(int vertexSize) {
+        int ret = VERTEX_BLOCK_SIZE_BYTES / vertexSize;
+        ret &= ~(BYTE_GROUP_SIZE - 1);
+        return Math.min(ret, VERTEX_BLOCK_MAX_SIZE);
+    }
+
+    private static int decodeVertexBlock(byte[] data, int position, int end, byte[] buffer, byte[] transposed,
+                                         int count, int vertexSize, byte[] lastVertex) {
+        final int countAligned = (count + BYTE_GROUP_SIZE - 1) & ~(BYTE_GROUP_SIZE - 1);
+        for (int k = 0; k < vertexSize; k++) {
+            position = decodeBytes(data, position, end, buffer, countAligned);
+
+            // zigzag deltas
+            int p = lastVertex[k];
+            for (int i = 0, offset = k; i < count; i++, offset += vertexSize) {
+                final int v = buffer[i] & 0xff;
+                p += (-(v & 1)) ^ (v >>> 1);
+                transposed[offset] = (byte) p;
+            }
+            lastVertex[k] = (byte) p;
+        }
+        return position;
+    }
+
+    private static int decodeBytes(byte[] data, int position, int end, byte[] buffer, int size) {
+        // 2 bits per group to select the encoding
+        final int headerSize = (size / BYTE_GROUP_SIZE + 3) / 4;
+        if (end - position < headerSize) {
+            throw new IllegalArgumentException("Invalid vertex data. Unexpected end of data");
+        }
+        final int header = position;
+        position += headerSize;
+
+        for (int i = 0; i < size; i += BYTE_GROUP_SIZE) {
+            if (end - position < BYTE_GROUP_DECODE_LIMIT) {
+                throw new IllegalArgumentException("Invalid vertex data. Unexpected end of data");
+            }
+            final int group = i / BYTE_GROUP_SIZE;
+            final int bitsLog2 = (data[header + group / 4] >> ((group % 4) * 2)) & 3;
+            position = decodeBytesGroup(data, position, buffer, i, bitsLog2);
+        }
+        return position;
+    }
+
+    private static int decodeBytesGroup(byte[] data, int position, byte[] buffer, int offset, int bitsLog2) {
+        switch (bitsLog2) {
+            case 0:
+                for (int i = 0; i < BYTE_GROUP_SIZE; i++) {
+                    buffer[offset + i] = 0;
+                }
+                return position;
+            case 1:
+                return decodeBitsGroup(data, position, buffer, offset, 2);
+            case 2:
+                return decodeBitsGroup(data, position, buffer, offset, 4);
+            default:
+                System.arraycopy(data, position, buffer, offset, BYTE_GROUP_SIZE);
+                return position + BYTE_GROUP_SIZE;
+        }
+    }
+
+    /**
+     * Decode 16 values packed with the specified bits, followed by the values that didn't fit (all bits set)
+     */
+    private static int decodeBitsGroup(byte[] data, int position, byte[] buffer, int offset, int bits) {
+        final int perByte = 8 / bits;
+        final int mask = (1 << bits) - 1;
+        int var = position + BYTE_GROUP_SIZE / perByte;
+        for (int i = 0; i < BYTE_GROUP_SIZE; i += perByte) {
+            final int packed = data[position++] & 0xff;
+            for (int j = 0; j < perByte; j++) {
+                final int enc = (packed >> (8 - bits * (j + 1))) & mask;
+                if (enc == mask) {
+                    buffer[offset + i + j] = data[var++];
+                } else {
+                    buffer[offset + i + j] = (byte) enc;
+                }
+            }
+        }
+        return var;
+    }
+
+    /**
+     * Decode triangle indices encoded with the index codec (TRIANGLES mode)
+     *
+     * @param target    the buffer where to write the indices
+     * @param count     number of indices. It must be a multiple of 3
+     * @param indexSize 2 or 4
+     * @param data      the compressed data
+     */
+    public static void decodeIndexBuffer(ByteBuffer target, int count, int indexSize, byte[] data) {
+        if (count % 3 != 0) {
+            throw new IllegalArgumentException("Invalid index count: " + count);
+        }
+        if (indexSize != 2 && indexSize != 4) {
+            throw new IllegalArgumentException("Invalid index size: " + indexSize);
+        }
+        if (data.length < 1 + count / 3 + 16) {
+            throw new IllegalArgumentException("Index data too small: " + data.length);
+        }
+        final int header = data[0] & 0xff;
+        if ((header & 0xf0) != INDEX_HEADER) {
+            throw new IllegalArgumentException("Invalid index codec header: " + header);
+        }
+        final int version = header & 0x0f;
+        if (version > 1) {
+            throw new IllegalArgumentException("Unsupported index codec version: " + version);
+        }
+
+        final int[] edgeFifo = new int[32];
+        final int[] vertexFifo = new int[16];
+        Arrays.fill(edgeFifo, -1);
+        Arrays.fill(vertexFifo, -1);
+        int edgeFifoOffset = 0;
+        int vertexFifoOffset = 0;
+
+        int next = 0;
+        int last = 0;
+
+        final int fecMax = version >= 1 ? 13 : 15;
+
+        // triangle codes, followed by the data, followed by the 16 bytes of the auxiliary code table
+        int code = 1;
+        final int[] position = {code + count / 3};
+        final int safeEnd = data.length - 16;
+        final int codeAuxTable = safeEnd;
+
+        for (int i = 0; i < count; i += 3) {
+            if (position[0] > safeEnd) {
+                throw new IllegalArgumentException("Invalid index data. Unexpected end of data");
+            }
+
+            final int codeTri = data[code++] & 0xff;
+
+            if (codeTri < 0xf0) {
+                // edge from the fifo + vertex
+                final int fe = codeTri >> 4;
+                final int edge = ((edgeFifoOffset - 1 - fe) & 15) * 2;
+                final int a = edgeFifo[edge];
+                final int b = edgeFifo[edge + 1];
+
+                final int fec = codeTri & 15;
+                final int c;
+                if (fec < fecMax) {
+                    // next vertex or vertex from the fifo
+                    c = fec == 0 ? next : vertexFifo[(vertexFifoOffset - 1 - fec) & 15];
+                    if (fec == 0) {
+                        next++;
+                        vertexFifo[vertexFifoOffset] = c;
+                        vertexFifoOffset = (vertexFifoOffset + 1) & 15;
+                    }
+                } else {
+                    // 13, 14 are -1, 1 deltas. 15 is an explicit index
+                    c = last = fec != 15 ? last + (fec - (fec ^ 3)) : decodeIndex(data, position, last);
+                    vertexFifo[vertexFifoOffset] = c;
+                    vertexFifoOffset = (vertexFifoOffset + 1) & 15;
+                }
+
+                writeTriangle(target, i, indexSize, a, b, c);
+
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, c, b);
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, a, c);
+            } else if (codeTri < 0xfe) {
+                // 3 vertices, with the fifo offsets in the table
+                final int codeAux = data[codeAuxTable + (codeTri & 15)] & 0xff;
+                final int feb = codeAux >> 4;
+                final int fec = codeAux & 15;
+
+                final int a = next++;
+
+                final boolean feb0 = feb == 0;
+                final int b = feb0 ? next : vertexFifo[(vertexFifoOffset - feb) & 15];
+                if (feb0) next++;
+
+                final boolean fec0 = fec == 0;
+                final int c = fec0 ? next : vertexFifo[(vertexFifoOffset - fec) & 15];
+                if (fec0) next++;
+
+                writeTriangle(target, i, indexSize, a, b, c);
+
+                vertexFifo[vertexFifoOffset] = a;
+                vertexFifoOffset = (vertexFifoOffset + 1) & 15;
+                if (feb0) {
+                    vertexFifo[vertexFifoOffset] = b;
+                    vertexFifoOffset = (vertexFifoOffset + 1) & 15;
+                }
+                if (fec0) {
+                    vertexFifo[vertexFifoOffset] = c;
+                    vertexFifoOffset = (vertexFifoOffset + 1) & 15;
+                }
+
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, b, a);
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, c, b);
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, a, c);
+            } else {
+                // 3 vertices, with the fifo offsets in the next byte
+                final int codeAux = data[position[0]++] & 0xff;
+
+                final int fea = codeTri == 0xfe ? 0 : 15;
+                final int feb = codeAux >> 4;
+                final int fec = codeAux & 15;
+
+                // reset
+                if (codeAux == 0) {
+                    next = 0;
+                }
+
+                int a = fea == 0 ? next++ : 0;
+                int b = feb == 0 ? next++ : vertexFifo[(vertexFifoOffset - feb) & 15];
+                int c = fec == 0 ? next++ : vertexFifo[(vertexFifoOffset - fec) & 15];
+
+                if (fea == 15) {
+                    a = last = decodeIndex(data, position, last);
+                }
+                if (feb == 15) {
+                    b = last = decodeIndex(data, position, last);
+                }
+                if (fec == 15) {
+                    c = last = decodeIndex(data, position, last);
+                }
+
+                writeTriangle(target, i, indexSize, a, b, c);
+
+                vertexFifo[vertexFifoOffset] = a;
+                vertexFifoOffset = (vertexFifoOffset + 1) & 15;
+                if (feb == 0 || feb == 15) {
+                    vertexFifo[vertexFifoOffset] = b;
+                    vertexFifoOffset = (vertexFifoOffset + 1) & 15;
+                }
+                if (fec == 0 || fec == 15) {
+                    vertexFifo[vertexFifoOffset] = c;
+                    vertexFifoOffset = (vertexFifoOffset + 1) & 15;
+                }
+
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, b, a);
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, c, b);
+                edgeFifoOffset = pushEdge(edgeFifo, edgeFifoOffset, a, c);
+            }
+        }
+
+        // all the data must be consumed, up to the code table
+        if (position[0] != safeEnd) {
+            throw new IllegalArgumentException("Invalid index data. Unexpected size: " + data.length);
+        }
+    }
+
+    private static int pushEdge(int[] fifo, int offset, int a, int b) {
+        fifo[offset * 2] = a;
+        fifo[offset * 2 + 1] = b;
+        return (offset + 1) & 15;
+    }
+
+    private static void writeTriangle(ByteBuffer target, int i, int indexSize, int a, int b, int c) {
+        if (indexSize == 2) {
+            target.putShort(i * 2, (short) a);
+            target.putShort(i * 2 + 2, (short) b);
+            target.putShort(i * 2 + 4, (short) c);
+        } else {
+            target.putInt(i * 4, a);
+            target.putInt(i * 4 + 4, b);
+            target.putInt(i * 4 + 8, c);
+        }
+    }
+
+    /**
+     * Decode indices encoded with the index sequence codec (INDICES mode)
+     *
+     * @param target    the buffer where to write the indices
+     * @param count     number of indices
+     * @param indexSize 2 or 4
+     * @param data      the compressed data
+     */
+    public static void decodeIndexSequence(ByteBuffer target, int count, int indexSize, byte[] data) {
+        if (indexSize != 2 && indexSize != 4) {
+            throw new IllegalArgumentException("Invalid index size: " + indexSize);
+        }
+        if (data.length < 1 + count + 4) {
+            throw new IllegalArgumentException("Index data too small: " + data.length);
+        }
+        final int header = data[0] & 0xff;
+        if ((header & 0xf0) != SEQUENCE_HEADER) {
+            throw new IllegalArgumentException("Invalid index sequence header: " + header);
+        }
+        final int version = header & 0x0f;
+        if (version > 1) {
+            throw new IllegalArgumentException("Unsupported index sequence version: " + version);
+        }
+
+        final int[] position = {1};
+        final int safeEnd = data.length - 4;
+
+        // 2 baselines, selected by the lowest bit
+        int last0 = 0;
+        int last1 = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (position[0] >= safeEnd) {
+                throw new IllegalArgumentException("Invalid index data. Unexpected end of data");
+            }
+            int v = decodeVByte(data, position);
+            final boolean current = (v & 1) != 0;
+            v >>>= 1;
+            final int delta = (v >>> 1) ^ -(v & 1);
+            final int index;
+            if (current) {
+                index = last1 += delta;
+            } else {
+                index = last0 += delta;
+            }
+            if (indexSize == 2) {
+                target.putShort(i * 2, (short) index);
+            } else {
+                target.putInt(i * 4, index);
+            }
+        }
+
+        if (position[0] != safeEnd) {
+            throw new IllegalArgumentException("Invalid index data. Unexpected size: " + data.length);
+        }
+    }
+
+    private static int decodeIndex(byte[] data, int[] position, int last) {
+        final int v = decodeVByte(data, position);
+        return last + ((v >>> 1) ^ -(v & 1));
+    }
+
+    private static int decodeVByte(byte[] data, int[] position) {
+        int p = position[0];
+        final int lead = data[p++] & 0xff;
+        if (lead < 128) {
+            position[0] = p;
+            return lead;
+        }
+
+        // up to 5 groups of 7 bits
+        int ret = lead & 127;
+        int shift = 7;
+        for (int i = 0; i < 4; i++) {
+            final int group = data[p++] & 0xff;
+            ret |= (group & 127) << shift;
+            shift += 7;
+            if (group < 128) break;
+        }
+        position[0] = p;
+        return ret;
+    }
+
+    /**
+     * Apply the filter to the decoded vertices
+     *
+     * @param filter the filter, or null
+     * @param target the decoded vertices
+     * @param count  number of vertices
+     * @param stride size of each vertex, in bytes
+     */
+    public static void decodeFilter(String filter, ByteBuffer target, int count, int stride) {
+        if (filter == null || FILTER_NONE.equals(filter)) {
+            return;
+        }
+        if (FILTER_OCTAHEDRAL.equals(filter)) {
+            if (stride == 4) {
+                decodeFilterOct8(target, count);
+            } else if (stride == 8) {
+                decodeFilterOct16(target, count);
+            } else {
+                throw new IllegalArgumentException("Invalid stride for octahedral filter: " + stride);
+            }
+        } else if (FILTER_QUATERNION.equals(filter)) {
+            if (stride != 8) {
+                throw new IllegalArgumentException("Invalid stride for quaternion filter: " + stride);
+            }
+            decodeFilterQuat(target, count);
+        } else if (FILTER_EXPONENTIAL.equals(filter)) {
+            if (stride % 4 != 0) {
+                throw new IllegalArgumentException("Invalid stride for exponential filter: " + stride);
+            }
+            decodeFilterExp(target, count * (stride / 4));
+        } else {
+            throw new IllegalArgumentException("Unsupported meshopt filter: " + filter);
+        }
+    }
+
+    private static void decodeFilterOct8(ByteBuffer data, int count) {
+        final float[] xyz = new float[3];
+        for (int i = 0; i < count; i++) {
+            final int offset = i * 4;
+            decodeOct(data.get(offset), data.get(offset + 1), data.get(offset + 2), 127f, xyz);
+            data.put(offset, (byte) round(xyz[0]));
+            data.put(offset + 1, (byte) round(xyz[1]));
+            data.put(offset + 2, (byte) round(xyz[2]));
+        }
+    }
+
+    private static void decodeFilterOct16(ByteBuffer data, int count) {
+        final float[] xyz = new float[3];
+        for (int i = 0; i < count; i++) {
+            final int offset = i * 8;
+            decodeOct(data.getShort(offset), data.getShort(offset + 2), data.getShort(offset + 4), 32767f, xyz);
+            data.putShort(offset, (short) round(xyz[0]));
+            data.putShort(offset + 2, (short) round(xyz[1]));
+            data.putShort(offset + 4, (short) round(xyz[2]));
+        }
+    }
+
+    /**
+     * Reconstruct the unit vector from the octahedral coordinates.
+     * The third component stores the value used to encode 1.0
+     */
+    private static void decodeOct(float x, float y, float one, float max, float[] ret) {
+        float z = one - Math.abs(x) - Math.abs(y);
+
+        // fixup octahedral coordinates for z < 0
+        final float t = Math.min(z, 0f);
+        x += x >= 0f ? t : -t;
+        y += y >= 0f ? t : -t;
+
+        final float s = max / (float) Math.sqrt(x * x + y * y + z * z);
+        ret[0] = x * s;
+        ret[1] = y * s;
+        ret[2] = z * s;
+    }
+
+    private static void decodeFilterQuat(ByteBuffer data, int count) {
+        final float scale = 1f / (float) Math.sqrt(2);
+        for (int i = 0; i < count; i++) {
+            final int offset = i * 8;
+            final short last = data.getShort(offset + 6);
+
+            // the scale is stored in the high bits of the last component
+            final float ss = scale / (last | 3);
+
+            final float x = data.getShort(offset) * ss;
+            final float y = data.getShort(offset + 2) * ss;
+            final float z = data.getShort(offset + 4) * ss;
+
+            // reconstruct w. clamp to 0 to avoid NaN due to precision errors
+            final float ww = 1f - x * x - y * y - z * z;
+            final float w = (float) Math.sqrt(Math.max(ww, 0f));
+
+            // the index of the max component (w) is stored in the 2 lowest bits
+            final int qc = last & 3;
+            data.putShort(offset + ((qc + 1) & 3) * 2, (short) round(x * 32767f));
+            data.putShort(offset + ((qc + 2) & 3) * 2, (short) round(y * 32767f));
+            data.putShort(offset + ((qc + 3) & 3) * 2, (short) round(z * 32767f));
+            data.putShort(offset + qc * 2, (short) (int) (w * 32767f + 0.5f));
+        }
+    }
+
+    private static void decodeFilterExp(ByteBuffer data, int count) {
+        for (int i = 0; i < count; i++) {
+            final int v = data.getInt(i * 4);
+
+            // 24 bit signed mantissa, 8 bit signed exponent
+            final int m = (v << 8) >> 8;
+            final int e = v >> 24;
+
+            // ldexp(m, e)
+            data.putFloat(i * 4, Float.intBitsToFloat((e + 127) << 23) * m);
+        }
+    }
+
+    /**
+     * Rounded signed float to int
+     */
+    private static int round(float value) {
+        return (int) (value + (value >= 0f ? 0.5f : -0.5f));
+    }
+}
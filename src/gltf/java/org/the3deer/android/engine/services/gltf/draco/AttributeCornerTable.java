@@ -0,0 +1,121 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+import java.util.Arrays;
+
+/**
+ * Connectivity of an attribute that has seams (i.e. texture coordinates), on top of the mesh {@link CornerTable}.
+ * <p>
+ * The seam edges behave like boundaries, so the vertices on both sides of a seam are different attribute vertices.
+ *
+ * @author andresoviedo
+ */
+final class AttributeCornerTable extends CornerTable {
+
+    private final CornerTable table;
+    private final boolean[] isEdgeOnSeam;
+    private final boolean[] isVertexOnSeam;
+    private final int[] cornerToVertex;
+    private int[] vertexToLeftMostCorner;
+    private int numVertices;
+
+    AttributeCornerTable(CornerTable table) {
+        this.table = table;
+        this.isEdgeOnSeam = new boolean[table.numCorners()];
+        this.isVertexOnSeam = new boolean[table.numVertices()];
+        this.cornerToVertex = new int[table.numCorners()];
+        this.vertexToLeftMostCorner = new int[0];
+    }
+
+    /**
+     * Mark the edge opposite to the corner as a seam
+     */
+    void addSeamEdge(int corner) {
+        isEdgeOnSeam[corner] = true;
+        isVertexOnSeam[table.vertex(next(corner))] = true;
+        isVertexOnSeam[table.vertex(previous(corner))] = true;
+        final int opposite = table.opposite(corner);
+        if (opposite != INVALID) {
+            isEdgeOnSeam[opposite] = true;
+            isVertexOnSeam[table.vertex(next(opposite))] = true;
+            isVertexOnSeam[table.vertex(previous(opposite))] = true;
+        }
+    }
+
+    /**
+     * Split the mesh vertices along the seams, once all the seams have been added
+     */
+    void recomputeVertices() {
+        Arrays.fill(cornerToVertex, INVALID);
+        vertexToLeftMostCorner = new int[Math.max(16, table.numVertices())];
+        numVertices = 0;
+        for (int v = 0; v < table.numVertices(); v++) {
+            final int c = table.leftMostCorner(v);
+            if (c == INVALID) continue;
+            int vertexId = addVertex(INVALID);
+            int firstCorner = c;
+            if (isVertexOnSeam[v]) {
+                // find the first corner on the seam, swinging left
+                int corner = swingLeft(firstCorner);
+                while (corner != INVALID) {
+                    firstCorner = corner;
+                    corner = swingLeft(corner);
+                    if (corner == c) {
+                        throw new IllegalArgumentException("Invalid draco attribute seams");
+                    }
+                }
+            }
+            cornerToVertex[firstCorner] = vertexId;
+            vertexToLeftMostCorner[vertexId] = firstCorner;
+            int corner = table.swingRight(firstCorner);
+            while (corner != INVALID && corner != firstCorner) {
+                if (isEdgeOnSeam[next(corner)]) {
+                    vertexId = addVertex(corner);
+                }
+                cornerToVertex[corner] = vertexId;
+                corner = table.swingRight(corner);
+            }
+        }
+    }
+
+    private int addVertex(int leftMostCorner) {
+        if (numVertices == vertexToLeftMostCorner.length) {
+            vertexToLeftMostCorner = Arrays.copyOf(vertexToLeftMostCorner, numVertices * 2);
+        }
+        vertexToLeftMostCorner[numVertices] = leftMostCorner;
+        return numVertices++;
+    }
+
+    /**
+     * @return whether the vertex of the corner is on any seam of this attribute
+     */
+    boolean isCornerOnSeam(int corner) {
+        return isVertexOnSeam[table.vertex(corner)];
+    }
+
+    @Override
+    int numFaces() {
+        return table.numFaces();
+    }
+
+    @Override
+    int numVertices() {
+        return numVertices;
+    }
+
+    @Override
+    int vertex(int corner) {
+        if (corner == INVALID) return INVALID;
+        return cornerToVertex[corner];
+    }
+
+    @Override
+    int opposite(int corner) {
+        if (corner == INVALID || isEdgeOnSeam[corner]) return INVALID;
+        return table.opposite(corner);
+    }
+
+    @Override
+    int leftMostCorner(int vertex) {
+        return vertexToLeftMostCorner[vertex];
+    }
+}
@@ -0,0 +1,142 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+import java.util.Arrays;
+
+/**
+ * Connectivity of a triangle mesh, as decoded by the edgebreaker.
+ * <p>
+ * Every face has 3 consecutive corners. Each corner is mapped to a vertex and to its opposite corner
+ * (the corner of the adjacent face that doesn't share the edge), if any. Each vertex stores its left most corner,
+ * so the corners around a vertex can be visited by swinging left and right.
+ * <p>
+ * {@link #INVALID} is used for missing corners and vertices.
+ *
+ * @author andresoviedo
+ */
+class CornerTable {
+
+    static final int INVALID = -1;
+
+    private final int[] cornerToVertex;
+    private final int[] oppositeCorners;
+    private int[] vertexCorners;
+    private int numVertices;
+
+    /**
+     * @param numFaces     number of faces
+     * @param verticesHint expected number of vertices
+     */
+    CornerTable(int numFaces, int verticesHint) {
+        cornerToVertex = new int[numFaces * 3];
+        oppositeCorners = new int[numFaces * 3];
+        Arrays.fill(cornerToVertex, INVALID);
+        Arrays.fill(oppositeCorners, INVALID);
+        vertexCorners = new int[Math.max(16, verticesHint)];
+    }
+
+    /**
+     * Constructor for the subclasses that override the connectivity accessors
+     */
+    CornerTable() {
+        cornerToVertex = null;
+        oppositeCorners = null;
+    }
+
+    static int next(int corner) {
+        if (corner == INVALID) return INVALID;
+        return corner % 3 == 2 ? corner - 2 : corner + 1;
+    }
+
+    static int previous(int corner) {
+        if (corner == INVALID) return INVALID;
+        return corner % 3 == 0 ? corner + 2 : corner - 1;
+    }
+
+    int numFaces() {
+        return cornerToVertex.length / 3;
+    }
+
+    int numCorners() {
+        return numFaces() * 3;
+    }
+
+    int numVertices() {
+        return numVertices;
+    }
+
+    int vertex(int corner) {
+        if (corner == INVALID) return INVALID;
+        return cornerToVertex[corner];
+    }
+
+    int opposite(int corner) {
+        if (corner == INVALID) return INVALID;
+        return oppositeCorners[corner];
+    }
+
+    int leftMostCorner(int vertex) {
+        return vertexCorners[vertex];
+    }
+
+    /**
+     * @return the next corner around the vertex of the given corner, in clockwise direction
+     */
+    final int swingRight(int corner) {
+        return previous(opposite(previous(corner)));
+    }
+
+    /**
+     * @return the next corner around the vertex of the given corner, in counter clockwise direction
+     */
+    final int swingLeft(int corner) {
+        return next(opposite(next(corner)));
+    }
+
+    /**
+     * @return the opposite corner in the adjacent face on the left, or {@link #INVALID}
+     */
+    final int getLeftCorner(int corner) {
+        if (corner == INVALID) return INVALID;
+        return opposite(previous(corner));
+    }
+
+    /**
+     * @return the opposite corner in the adjacent face on the right, or {@link #INVALID}
+     */
+    final int getRightCorner(int corner) {
+        if (corner == INVALID) return INVALID;
+        return opposite(next(corner));
+    }
+
+    boolean isOnBoundary(int vertex) {
+        final int corner = leftMostCorner(vertex);
+        return corner == INVALID || swingLeft(corner) == INVALID;
+    }
+
+    void setOppositeCorners(int corner, int opposite) {
+        oppositeCorners[corner] = opposite;
+        oppositeCorners[opposite] = corner;
+    }
+
+    void mapCornerToVertex(int corner, int vertex) {
+        cornerToVertex[corner] = vertex;
+    }
+
+    void setLeftMostCorner(int vertex, int corner) {
+        if (vertex != INVALID) {
+            vertexCorners[vertex] = corner;
+        }
+    }
+
+    void makeVertexIsolated(int vertex) {
+        vertexCorners[vertex] = INVALID;
+    }
+
+    int addNewVertex() {
+        if (numVertices == vertexCorners.length) {
+            vertexCorners = Arrays.copyOf(vertexCorners, numVertices * 2);
+        }
+        vertexCorners[numVertices] = INVALID;
+        return numVertices++;
+    }
+}
@@ -0,0 +1,178 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+/**
+ * Little endian reader over the draco bitstream.
+ * <p>
+ * Besides the byte oriented methods, it supports a bit mode (see {@link #startBitDecoding(boolean)})
+ * where the bits are read from the least significant bit of every byte.
+ *
+ * @author andresoviedo
+ */
+final class DecoderBuffer {
+
+    private final byte[] data;
+    private final int limit;
+    private int position;
+
+    // bit mode
+    private boolean bitMode;
+    private int bitStart;
+    private long bitOffset;
+
+    DecoderBuffer(byte[] data, int offset, int limit) {
+        this.data = data;
+        this.position = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * @return a new reader starting at the current position of this one
+     */
+    DecoderBuffer copy() {
+        return new DecoderBuffer(data, position, limit);
+    }
+
+    byte[] data() {
+        return data;
+    }
+
+    int position() {
+        return position;
+    }
+
+    int remaining() {
+        return limit - position;
+    }
+
+    void advance(long bytes) {
+        if (bytes < 0 || bytes > remaining()) {
+            throw new IllegalArgumentException("Unexpected end of draco data");
+        }
+        position += (int) bytes;
+    }
+
+    private void require(int bytes) {
+        if (bitMode) {
+            throw new IllegalStateException("Buffer is in bit mode");
+        }
+        if (bytes > limit - position) {
+            throw new IllegalArgumentException("Unexpected end of draco data");
+        }
+    }
+
+    int decodeUInt8() {
+        require(1);
+        return data[position++] & 0xFF;
+    }
+
+    int decodeInt8() {
+        require(1);
+        return data[position++];
+    }
+
+    int decodeUInt16() {
+        require(2);
+        final int ret = (data[position] & 0xFF) | (data[position + 1] & 0xFF) << 8;
+        position += 2;
+        return ret;
+    }
+
+    int decodeInt32() {
+        require(4);
+        final int ret = (data[position] & 0xFF) | (data[position + 1] & 0xFF) << 8
+                | (data[position + 2] & 0xFF) << 16 | data[position + 3] << 24;
+        position += 4;
+        return ret;
+    }
+
+    float decodeFloat32() {
+        return Float.intBitsToFloat(decodeInt32());
+    }
+
+    /**
+     * Decode the specified number of bytes as an unsigned little endian integer (up to 4 bytes)
+     */
+    int decodeBytes(int bytes) {
+        require(bytes);
+        int ret = 0;
+        for (int i = 0; i < bytes; i++) {
+            ret |= (data[position++] & 0xFF) << (8 * i);
+        }
+        return ret;
+    }
+
+    void decode(byte[] dst, int offset, int length) {
+        require(length);
+        System.arraycopy(data, position, dst, offset, length);
+        position += length;
+    }
+
+    /**
+     * Decode an unsigned varint (7 bits per byte, least significant group first)
+     */
+    long decodeVarint64() {
+        long ret = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int in = decodeUInt8();
+            ret |= (long) (in & 0x7F) << shift;
+            if ((in & 0x80) == 0) {
+                return ret;
+            }
+        }
+        throw new IllegalArgumentException("Invalid draco varint");
+    }
+
+    /**
+     * Decode an unsigned varint that must fit in a (positive) int, like counts and sizes
+     */
+    int decodeVarint() {
+        final long ret = decodeVarint64();
+        if (ret > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Draco value out of range: " + ret);
+        }
+        return (int) ret;
+    }
+
+    /**
+     * Switch to bit mode
+     *
+     * @param decodeSize whether the size of the bit data is encoded (as varint) before the bits
+     * @return the decoded size, in bytes, or 0 if not decoded
+     */
+    long startBitDecoding(boolean decodeSize) {
+        long size = 0;
+        if (decodeSize) {
+            size = decodeVarint64();
+        }
+        bitMode = true;
+        bitStart = position;
+        bitOffset = 0;
+        return size;
+    }
+
+    /**
+     * Read the specified number of bits. Bits beyond the end of the data are read as 0
+     */
+    int decodeLeastSignificantBits(int nbits) {
+        if (!bitMode) {
+            throw new IllegalStateException("Buffer is not in bit mode");
+        }
+        int ret = 0;
+        for (int bit = 0; bit < nbits; bit++) {
+            final long byteOffset = bitStart + (bitOffset >> 3);
+            if (byteOffset < limit) {
+                ret |= ((data[(int) byteOffset] >> (int) (bitOffset & 7)) & 1) << bit;
+                bitOffset++;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Leave the bit mode, skipping the bytes that were (partially) read
+     */
+    void endBitDecoding() {
+        bitMode = false;
+        position = (int) Math.min(limit, bitStart + ((bitOffset + 7) >> 3));
+    }
+}
@@ -0,0 +1,335 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pure java decoder of the Draco compressed meshes, as used by the glTF KHR_draco_mesh_compression extension.
+ * <p>
+ * It supports the bitstream version 2.2 (the one written by the current encoders) with both the sequential and the
+ * edgebreaker (standard and valence) connectivity, and all the prediction schemes used for the mesh attributes.
+ * <p>
+ * The decoder has no state shared between calls, so several meshes can be decoded concurrently.
+ *
+ * @author andresoviedo
+ * @see <a href="https://github.com/KhronosGroup/glTF/tree/main/extensions/2.0/Khronos/KHR_draco_mesh_compression">KHR_draco_mesh_compression</a>
+ * @see <a href="https://google.github.io/draco/spec/">Draco Bitstream Specification</a>
+ */
+public final class DracoDecoder {
+
+    public static final String EXTENSION = "KHR_draco_mesh_compression";
+
+    private static final byte[] MAGIC = {'D', 'R', 'A', 'C', 'O'};
+    private static final int VERSION_MAJOR = 2;
+    private static final int VERSION_MINOR = 2;
+
+    private static final int TRIANGULAR_MESH = 1;
+    private static final int SEQUENTIAL = 0;
+    private static final int EDGEBREAKER = 1;
+    private static final int METADATA_FLAG = 0x8000;
+
+    // sequential connectivity
+    private static final int COMPRESSED_INDICES = 0;
+
+    // GL component types
+    private static final int GL_BYTE = 0x1400;
+    private static final int GL_UNSIGNED_BYTE = 0x1401;
+    private static final int GL_SHORT = 0x1402;
+    private static final int GL_UNSIGNED_SHORT = 0x1403;
+    private static final int GL_INT = 0x1404;
+    private static final int GL_UNSIGNED_INT = 0x1405;
+    private static final int GL_FLOAT = 0x1406;
+
+    private int[] cornerToPoint;
+    private int numPoints;
+    private EdgebreakerDecoder edgebreaker;
+    private final List<PointAttribute> attributes = new ArrayList<>();
+
+    private DracoDecoder() {
+    }
+
+    /**
+     * Decode the draco mesh
+     *
+     * @param data the encoded mesh, from its position to its limit
+     * @return the decoded mesh
+     * @throws IllegalArgumentException if the data is not a valid draco mesh or uses unsupported features
+     */
+    public static DracoMesh decode(ByteBuffer data) {
+        final byte[] bytes;
+        final int offset;
+        if (data.hasArray()) {
+            bytes = data.array();
+            offset = data.arrayOffset() + data.position();
+        } else {
+            bytes = new byte[data.remaining()];
+            data.duplicate().get(bytes);
+            offset = 0;
+        }
+        final DecoderBuffer buffer = new DecoderBuffer(bytes, offset, offset + data.remaining());
+        try {
+            return new DracoDecoder().decodeMesh(buffer);
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Invalid draco data", e);
+        }
+    }
+
+    private DracoMesh decodeMesh(DecoderBuffer buffer) {
+        // header
+        for (byte b : MAGIC) {
+            if (buffer.decodeUInt8() != b) {
+                throw new IllegalArgumentException("Not a draco file");
+            }
+        }
+        final int major = buffer.decodeUInt8();
+        final int minor = buffer.decodeUInt8();
+        if (major != VERSION_MAJOR || minor != VERSION_MINOR) {
+            throw new IllegalArgumentException("Unsupported draco version: " + major + "." + minor);
+        }
+        final int encoderType = buffer.decodeUInt8();
+        if (encoderType != TRIANGULAR_MESH) {
+            throw new IllegalArgumentException("Unsupported draco geometry type: " + encoderType);
+        }
+        final int method = buffer.decodeUInt8();
+        final int flags = buffer.decodeUInt16();
+        if ((flags & METADATA_FLAG) != 0) {
+            skipMetadata(buffer);
+        }
+
+        // connectivity
+        if (method == SEQUENTIAL) {
+            decodeSequentialConnectivity(buffer);
+        } else if (method == EDGEBREAKER) {
+            edgebreaker = new EdgebreakerDecoder();
+            buffer = edgebreaker.decodeConnectivity(buffer);
+            cornerToPoint = edgebreaker.cornerToPoint();
+            numPoints = edgebreaker.numPoints();
+        } else {
+            throw new IllegalArgumentException("Unsupported draco encoding method: " + method);
+        }
+
+        decodeAttributes(buffer);
+        return createMesh();
+    }
+
+    private static void skipMetadata(DecoderBuffer buffer) {
+        final int numAttributeMetadata = buffer.decodeVarint();
+        for (int i = 0; i < numAttributeMetadata; i++) {
+            // attribute unique id
+            buffer.decodeVarint();
+            skipMetadataElement(buffer);
+        }
+        // geometry metadata
+        skipMetadataElement(buffer);
+    }
+
+    private static void skipMetadataElement(DecoderBuffer buffer) {
+        long pending = 1;
+        boolean root = true;
+        while (pending-- > 0) {
+            if (!root) {
+                // name of the sub element
+                buffer.advance(buffer.decodeUInt8());
+            }
+            root = false;
+            final int numEntries = buffer.decodeVarint();
+            for (int i = 0; i < numEntries; i++) {
+                buffer.advance(buffer.decodeUInt8());
+                final int dataSize = buffer.decodeVarint();
+                if (dataSize == 0) {
+                    throw new IllegalArgumentException("Invalid draco metadata");
+                }
+                buffer.advance(dataSize);
+            }
+            final int numSubElements = buffer.decodeVarint();
+            if (numSubElements > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid draco metadata");
+            }
+            pending += numSubElements;
+        }
+    }
+
+    private void decodeSequentialConnectivity(DecoderBuffer buffer) {
+        final long numFaces = buffer.decodeVarint();
+        final long numPoints = buffer.decodeVarint();
+        if (numFaces > 0xffffffffL / 3 || numFaces > buffer.remaining() / 3 || numPoints > numFaces * 3) {
+            throw new IllegalArgumentException("Invalid draco sequential connectivity");
+        }
+        this.numPoints = (int) numPoints;
+        final int numIndices = (int) numFaces * 3;
+        cornerToPoint = new int[numIndices];
+
+        final int connectivityMethod = buffer.decodeUInt8();
+        if (connectivityMethod == COMPRESSED_INDICES) {
+            // zigzag coded differences with the previous index
+            SymbolDecoding.decodeSymbols(numIndices, 1, buffer, cornerToPoint);
+            int lastIndex = 0;
+            for (int i = 0; i < numIndices; i++) {
+                final int encoded = cornerToPoint[i];
+                int diff = encoded >>> 1;
+                if ((encoded & 1) != 0) {
+                    if (diff > lastIndex) {
+                        throw new IllegalArgumentException("Invalid draco index");
+                    }
+                    diff = -diff;
+                } else if (diff > Integer.MAX_VALUE - lastIndex) {
+                    throw new IllegalArgumentException("Invalid draco index");
+                }
+                lastIndex += diff;
+                cornerToPoint[i] = lastIndex;
+            }
+        } else if (numPoints < 256) {
+            for (int i = 0; i < numIndices; i++) {
+                cornerToPoint[i] = buffer.decodeUInt8();
+            }
+        } else if (numPoints < 1 << 16) {
+            for (int i = 0; i < numIndices; i++) {
+                cornerToPoint[i] = buffer.decodeUInt16();
+            }
+        } else if (numPoints < 1 << 21) {
+            for (int i = 0; i < numIndices; i++) {
+                cornerToPoint[i] = buffer.decodeVarint();
+            }
+        } else {
+            for (int i = 0; i < numIndices; i++) {
+                cornerToPoint[i] = buffer.decodeInt32();
+            }
+        }
+
+        for (int index : cornerToPoint) {
+            if (index < 0 || index >= numPoints) {
+                throw new IllegalArgumentException("Invalid draco index: " + index);
+            }
+        }
+    }
+
+    private void decodeAttributes(DecoderBuffer buffer) {
+        final int numDecoders = buffer.decodeUInt8();
+        final EdgebreakerDecoder.Sequencer[] sequencers = new EdgebreakerDecoder.Sequencer[numDecoders];
+        if (edgebreaker != null) {
+            for (int i = 0; i < numDecoders; i++) {
+                sequencers[i] = edgebreaker.createAttributesDecoder(i, buffer);
+            }
+        }
+
+        // attribute descriptors
+        final SequentialAttributeDecoder[][] decoders = new SequentialAttributeDecoder[numDecoders][];
+        for (int i = 0; i < numDecoders; i++) {
+            final int numAttributes = buffer.decodeVarint();
+            if (numAttributes == 0 || numAttributes > 5L * buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid draco number of attributes: " + numAttributes);
+            }
+            final PointAttribute[] decoderAttributes = new PointAttribute[numAttributes];
+            for (int j = 0; j < numAttributes; j++) {
+                final int type = buffer.decodeUInt8();
+                final int dataType = buffer.decodeUInt8();
+                final int components = buffer.decodeUInt8();
+                final boolean normalized = buffer.decodeUInt8() > 0;
+                if (type > DracoMesh.GENERIC || dataType < PointAttribute.DT_INT8 || dataType > PointAttribute.DT_BOOL
+                        || components == 0) {
+                    throw new IllegalArgumentException("Invalid draco attribute");
+                }
+                final int uniqueId = buffer.decodeVarint();
+                decoderAttributes[j] = new PointAttribute(type, dataType, components, normalized, uniqueId);
+                attributes.add(decoderAttributes[j]);
+            }
+            decoders[i] = new SequentialAttributeDecoder[numAttributes];
+            for (int j = 0; j < numAttributes; j++) {
+                decoders[i][j] = SequentialAttributeDecoder.create(buffer.decodeUInt8(), decoderAttributes[j]);
+            }
+        }
+
+        PointAttribute position = null;
+        for (PointAttribute attribute : attributes) {
+            if (attribute.type == DracoMesh.POSITION) {
+                position = attribute;
+                break;
+            }
+        }
+
+        // attribute values
+        for (int i = 0; i < numDecoders; i++) {
+            final int[] pointIds;
+            final int[] indexMap;
+            final PredictionScheme.MeshData meshData;
+            if (edgebreaker != null) {
+                pointIds = edgebreaker.generateSequence(sequencers[i]);
+                indexMap = edgebreaker.pointToValueMap(sequencers[i]);
+                meshData = edgebreaker.meshData(sequencers[i]);
+            } else {
+                pointIds = new int[numPoints];
+                for (int p = 0; p < numPoints; p++) {
+                    pointIds[p] = p;
+                }
+                indexMap = null;
+                meshData = null;
+            }
+
+            final SequentialAttributeDecoder[] decoderList = decoders[i];
+            for (SequentialAttributeDecoder decoder : decoderList) {
+                decoder.attribute.indexMap = indexMap;
+            }
+            for (SequentialAttributeDecoder decoder : decoderList) {
+                decoder.decodePortableAttribute(pointIds, buffer, meshData, position);
+            }
+            for (SequentialAttributeDecoder decoder : decoderList) {
+                decoder.decodeDataNeededByPortableTransform(buffer);
+            }
+            for (SequentialAttributeDecoder decoder : decoderList) {
+                decoder.transformAttributeToOriginalFormat();
+            }
+        }
+    }
+
+    private DracoMesh createMesh() {
+        final IntBuffer indices = ByteBuffer.allocateDirect(cornerToPoint.length * 4)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        indices.put(cornerToPoint);
+        indices.position(0);
+
+        final Map<Integer, DracoMesh.Attribute> ret = new LinkedHashMap<>();
+        for (PointAttribute attribute : attributes) {
+            final int stride = attribute.byteStride();
+            final ByteBuffer data = ByteBuffer.allocateDirect(numPoints * stride).order(ByteOrder.nativeOrder());
+            final byte[] values = attribute.values.array();
+            if (attribute.indexMap == null) {
+                data.put(values, 0, Math.min(numPoints, attribute.numValues) * stride);
+            } else {
+                for (int p = 0; p < numPoints; p++) {
+                    data.put(values, attribute.indexMap[p] * stride, stride);
+                }
+            }
+            data.position(0);
+            ret.put(attribute.uniqueId, new DracoMesh.Attribute(attribute.uniqueId, attribute.type,
+                    attribute.components, toGlComponentType(attribute.dataType), attribute.normalized, data));
+        }
+        return new DracoMesh(indices, numPoints, ret);
+    }
+
+    private static int toGlComponentType(int dataType) {
+        switch (dataType) {
+            case PointAttribute.DT_INT8:
+                return GL_BYTE;
+            case PointAttribute.DT_UINT8:
+            case PointAttribute.DT_BOOL:
+                return GL_UNSIGNED_BYTE;
+            case PointAttribute.DT_INT16:
+                return GL_SHORT;
+            case PointAttribute.DT_UINT16:
+                return GL_UNSIGNED_SHORT;
+            case PointAttribute.DT_INT32:
+                return GL_INT;
+            case PointAttribute.DT_UINT32:
+                return GL_UNSIGNED_INT;
+            case PointAttribute.DT_FLOAT32:
+                return GL_FLOAT;
+            default:
+                throw new IllegalArgumentException("Unsupported draco data type: " + dataType);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Mesh decoded by the {@link DracoDecoder}.
+ * <p>
+ * The triangles are indexed, and the attributes have one value per point, in direct buffers
+ * (native order) ready to be uploaded to the GPU.
+ *
+ * @author andresoviedo
+ */
+public final class DracoMesh {
+
+    // draco attribute types
+    public static final int POSITION = 0;
+    public static final int NORMAL = 1;
+    public static final int COLOR = 2;
+    public static final int TEX_COORD = 3;
+    public static final int GENERIC = 4;
+
+    private final IntBuffer indices;
+    private final int numPoints;
+    private final Map<Integer, Attribute> attributes;
+
+    DracoMesh(IntBuffer indices, int numPoints, Map<Integer, Attribute> attributes) {
+        this.indices = indices;
+        this.numPoints = numPoints;
+        this.attributes = Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * @return the triangle indices (3 per face)
+     */
+    public IntBuffer getIndices() {
+        return indices;
+    }
+
+    public int getNumPoints() {
+        return numPoints;
+    }
+
+    /**
+     * @param uniqueId the id of the attribute, as referenced by the KHR_draco_mesh_compression extension
+     * @return the attribute, or null if it doesn't exist
+     */
+    public Attribute getAttribute(int uniqueId) {
+        return attributes.get(uniqueId);
+    }
+
+    public Map<Integer, Attribute> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Decoded attribute
+     */
+    public static final class Attribute {
+
+        private final int uniqueId;
+        private final int type;
+        private final int components;
+        private final int componentType;
+        private final boolean normalized;
+        private final ByteBuffer data;
+
+        Attribute(int uniqueId, int type, int components, int componentType, boolean normalized, ByteBuffer data) {
+            this.uniqueId = uniqueId;
+            this.type = type;
+            this.components = components;
+            this.componentType = componentType;
+            this.normalized = normalized;
+            this.data = data;
+        }
+
+        public int getUniqueId() {
+            return uniqueId;
+        }
+
+        /**
+         * @return the draco attribute type, i.e. {@link #POSITION}
+         */
+        public int getType() {
+            return type;
+        }
+
+        public int getComponents() {
+            return components;
+        }
+
+        /**
+         * @return the GL component type (i.e. GL_FLOAT)
+         */
+        public int getComponentType() {
+            return componentType;
+        }
+
+        public boolean isNormalized() {
+            return normalized;
+        }
+
+        /**
+         * @return the values of every point, tightly packed
+         */
+        public ByteBuffer getData() {
+            return data;
+        }
+    }
+}
@@ -0,0 +1,797 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decoder of the mesh connectivity encoded with the edgebreaker method.
+ * <p>
+ * The encoder traverses the mesh and emits one symbol (C, L, R, S or E) for every face. The decoder processes
+ * the symbols in reverse order, rebuilding the {@link CornerTable}. The symbols are either stored directly
+ * (standard traversal) or entropy coded using the valence of the vertices as context (valence traversal).
+ * <p>
+ * Attributes with seams (i.e. texture coordinates) have their own connectivity ({@link AttributeCornerTable}),
+ * and the mesh points are the unique combinations of the vertices of all those tables.
+ *
+ * @author andresoviedo
+ */
+final class EdgebreakerDecoder {
+
+    // traversal types
+    private static final int STANDARD = 0;
+    private static final int VALENCE = 2;
+
+    // topology symbols
+    private static final int TOPOLOGY_C = 0;
+    private static final int TOPOLOGY_S = 1;
+    private static final int TOPOLOGY_L = 3;
+    private static final int TOPOLOGY_R = 5;
+    private static final int TOPOLOGY_E = 7;
+
+    // attribute decoder types
+    private static final int VERTEX_ATTRIBUTE = 0;
+    private static final int CORNER_ATTRIBUTE = 1;
+
+    private static final int RIGHT_FACE_EDGE = 1;
+
+    /**
+     * Connectivity of the attributes decoded by an attribute decoder, other than the positions
+     */
+    private static final class AttributeData {
+        int decoderId = -1;
+        int[] seamCorners = new int[16];
+        int numSeamCorners;
+        AttributeCornerTable table;
+        MeshTraversal.EncodingData encodingData;
+
+        void addSeamCorner(int corner) {
+            if (numSeamCorners == seamCorners.length) {
+                seamCorners = Arrays.copyOf(seamCorners, numSeamCorners * 2);
+            }
+            seamCorners[numSeamCorners++] = corner;
+        }
+    }
+
+    /**
+     * Sequencer of an attribute decoder: the traversed table and the resulting mapping of the values
+     */
+    static final class Sequencer {
+        final CornerTable table;
+        final MeshTraversal.EncodingData encodingData;
+        final int traversalMethod;
+
+        Sequencer(CornerTable table, MeshTraversal.EncodingData encodingData, int traversalMethod) {
+            this.table = table;
+            this.encodingData = encodingData;
+            this.traversalMethod = traversalMethod;
+        }
+    }
+
+    private CornerTable table;
+    private AttributeData[] attributeData;
+    private boolean[] isVertHole;
+    private MeshTraversal.EncodingData posEncodingData;
+    private boolean posDecoderAssigned;
+
+    // topology split events, consumed from the back
+    private int[] splitSourceSymbols;
+    private int[] splitSymbols;
+    private int[] splitSourceEdges;
+    private int numSplits;
+
+    // output
+    private int[] cornerToPoint;
+    private int numPoints;
+
+    int[] cornerToPoint() {
+        return cornerToPoint;
+    }
+
+    int numPoints() {
+        return numPoints;
+    }
+
+    int numFaces() {
+        return table.numFaces();
+    }
+
+    /**
+     * Decode the connectivity
+     *
+     * @param buffer the source, just after the header (and metadata)
+     * @return the source to continue with, positioned after the connectivity
+     */
+    DecoderBuffer decodeConnectivity(DecoderBuffer buffer) {
+        final int traversalType = buffer.decodeUInt8();
+        if (traversalType != STANDARD && traversalType != VALENCE) {
+            throw new IllegalArgumentException("Unsupported draco edgebreaker traversal: " + traversalType);
+        }
+
+        final int numEncodedVertices = buffer.decodeVarint();
+        final int numFaces = buffer.decodeVarint();
+        if (numFaces > Integer.MAX_VALUE / 3 || numEncodedVertices > numFaces * 3) {
+            throw new IllegalArgumentException("Invalid draco edgebreaker header");
+        }
+        final int numAttributeData = buffer.decodeUInt8();
+        final int numEncodedSymbols = buffer.decodeVarint();
+        if (numFaces < numEncodedSymbols || numFaces > numEncodedSymbols + numEncodedSymbols / 3) {
+            throw new IllegalArgumentException("Invalid draco edgebreaker symbols");
+        }
+        final int numEncodedSplitSymbols = buffer.decodeVarint();
+        if (numEncodedSplitSymbols > numEncodedSymbols) {
+            throw new IllegalArgumentException("Invalid draco edgebreaker split symbols");
+        }
+
+        table = new CornerTable(numFaces, numEncodedVertices + numEncodedSplitSymbols);
+        attributeData = new AttributeData[numAttributeData];
+        for (int i = 0; i < numAttributeData; i++) {
+            attributeData[i] = new AttributeData();
+        }
+
+        // all vertices are boundaries until a C symbol (or an interior start face) says otherwise
+        isVertHole = new boolean[numEncodedVertices + numEncodedSplitSymbols];
+        Arrays.fill(isVertHole, true);
+
+        decodeTopologySplitEvents(buffer);
+
+        final TraversalDecoder traversal = traversalType == STANDARD ? new StandardTraversal() : new ValenceTraversal();
+        final DecoderBuffer end = traversal.start(buffer.copy(), numEncodedVertices + numEncodedSplitSymbols, numAttributeData);
+
+        final int numConnectivityVertices = decodeConnectivity(traversal, numEncodedSymbols);
+
+        // attribute seams
+        if (numAttributeData > 0) {
+            for (int c = 0; c < table.numCorners(); c += 3) {
+                decodeAttributeConnectivitiesOnFace(traversal, c);
+            }
+        }
+        for (AttributeData data : attributeData) {
+            data.table = new AttributeCornerTable(table);
+            for (int i = 0; i < data.numSeamCorners; i++) {
+                data.table.addSeamEdge(data.seamCorners[i]);
+            }
+            data.table.recomputeVertices();
+            data.seamCorners = null;
+        }
+
+        posEncodingData = new MeshTraversal.EncodingData(table.numVertices());
+        for (AttributeData data : attributeData) {
+            data.encodingData = new MeshTraversal.EncodingData(Math.max(data.table.numVertices(), table.numVertices()));
+        }
+
+        assignPointsToCorners(numConnectivityVertices);
+        return end;
+    }
+
+    private void decodeTopologySplitEvents(DecoderBuffer buffer) {
+        final int count = buffer.decodeVarint();
+        if (count > table.numFaces()) {
+            throw new IllegalArgumentException("Invalid draco topology splits");
+        }
+        splitSourceSymbols = new int[count];
+        splitSymbols = new int[count];
+        splitSourceEdges = new int[count];
+        numSplits = count;
+        if (count == 0) return;
+
+        int lastSourceSymbol = 0;
+        for (int i = 0; i < count; i++) {
+            final int sourceSymbol = buffer.decodeVarint() + lastSourceSymbol;
+            final int delta = buffer.decodeVarint();
+            if (sourceSymbol < 0 || delta > sourceSymbol) {
+                throw new IllegalArgumentException("Invalid draco topology splits");
+            }
+            splitSourceSymbols[i] = sourceSymbol;
+            splitSymbols[i] = sourceSymbol - delta;
+            lastSourceSymbol = sourceSymbol;
+        }
+        buffer.startBitDecoding(false);
+        for (int i = 0; i < count; i++) {
+            splitSourceEdges[i] = buffer.decodeLeastSignificantBits(1);
+        }
+        buffer.endBitDecoding();
+    }
+
+    /**
+     * @return the index of the split event of the given (encoder) symbol, or -1 if there is none
+     */
+    private int nextTopologySplit(int encoderSymbolId) {
+        if (numSplits == 0) return -1;
+        final int source = splitSourceSymbols[numSplits - 1];
+        if (source > encoderSymbolId) {
+            // the split was missed, the data is corrupted
+            throw new IllegalArgumentException("Invalid draco topology splits");
+        }
+        if (source != encoderSymbolId) return -1;
+        return --numSplits;
+    }
+
+    private void setOppositeCorners(int corner0, int corner1) {
+        table.setOppositeCorners(corner0, corner1);
+    }
+
+    private static IllegalArgumentException invalidConnectivity() {
+        return new IllegalArgumentException("Invalid draco edgebreaker connectivity");
+    }
+
+    /**
+     * Rebuild the corner table from the symbols
+     *
+     * @return the number of vertices
+     */
+    private int decodeConnectivity(TraversalDecoder traversal, int numSymbols) {
+        // active edges, identified by their opposite corner
+        final IntArrayStack activeCorners = new IntArrayStack();
+        // symbol id -> corner of the edge created by a topology split
+        final Map<Integer, Integer> splitActiveCorners = new HashMap<>();
+        // vertices merged by the S symbols, removed at the end if there are no attribute seams
+        final IntArrayStack invalidVertices = new IntArrayStack();
+        final boolean removeInvalidVertices = attributeData.length == 0;
+
+        final int maxNumVertices = isVertHole.length;
+        int numFaces = 0;
+        for (int symbolId = 0; symbolId < numSymbols; symbolId++) {
+            final int face = numFaces++;
+            boolean checkTopologySplit = false;
+            final int symbol = traversal.decodeSymbol();
+            final int corner = 3 * face;
+            if (symbol == TOPOLOGY_C) {
+                // new face between the active edge and the next edge around its vertex
+                if (activeCorners.isEmpty()) throw invalidConnectivity();
+                final int cornerA = activeCorners.peek();
+                final int vertexX = table.vertex(CornerTable.next(cornerA));
+                final int cornerB = CornerTable.next(table.leftMostCorner(vertexX));
+                if (cornerA == cornerB || table.opposite(cornerA) != CornerTable.INVALID
+                        || table.opposite(cornerB) != CornerTable.INVALID) {
+                    throw invalidConnectivity();
+                }
+                setOppositeCorners(cornerA, corner + 1);
+                setOppositeCorners(cornerB, corner + 2);
+
+                final int vertAPrev = table.vertex(CornerTable.previous(cornerA));
+                final int vertBNext = table.vertex(CornerTable.next(cornerB));
+                if (vertexX == vertAPrev || vertexX == vertBNext) {
+                    throw invalidConnectivity();
+                }
+                table.mapCornerToVertex(corner, vertexX);
+                table.mapCornerToVertex(corner + 1, vertBNext);
+                table.mapCornerToVertex(corner + 2, vertAPrev);
+                table.setLeftMostCorner(vertAPrev, corner + 2);
+                isVertHole[vertexX] = false;
+                activeCorners.set(corner);
+            } else if (symbol == TOPOLOGY_R || symbol == TOPOLOGY_L) {
+                // new face attached to the active edge, with a new vertex
+                if (activeCorners.isEmpty()) throw invalidConnectivity();
+                final int cornerA = activeCorners.peek();
+                if (table.opposite(cornerA) != CornerTable.INVALID) throw invalidConnectivity();
+
+                final int oppCorner, cornerL, cornerR;
+                if (symbol == TOPOLOGY_R) {
+                    oppCorner = corner + 2;
+                    cornerL = corner + 1;
+                    cornerR = corner;
+                } else {
+                    oppCorner = corner + 1;
+                    cornerL = corner;
+                    cornerR = corner + 2;
+                }
+                setOppositeCorners(oppCorner, cornerA);
+                final int newVertex = table.addNewVertex();
+                if (table.numVertices() > maxNumVertices) throw invalidConnectivity();
+
+                table.mapCornerToVertex(oppCorner, newVertex);
+                table.setLeftMostCorner(newVertex, oppCorner);
+
+                final int vertexR = table.vertex(CornerTable.previous(cornerA));
+                table.mapCornerToVertex(cornerR, vertexR);
+                table.setLeftMostCorner(vertexR, cornerR);
+
+                table.mapCornerToVertex(cornerL, table.vertex(CornerTable.next(cornerA)));
+                activeCorners.set(corner);
+                checkTopologySplit = true;
+            } else if (symbol == TOPOLOGY_S) {
+                // new face merging the 2 last active edges
+                if (activeCorners.isEmpty()) throw invalidConnectivity();
+                final int cornerB = activeCorners.pop();
+                final Integer splitCorner = splitActiveCorners.get(symbolId);
+                if (splitCorner != null) {
+                    activeCorners.push(splitCorner);
+                }
+                if (activeCorners.isEmpty()) throw invalidConnectivity();
+                final int cornerA = activeCorners.peek();
+                if (cornerA == cornerB || table.opposite(cornerA) != CornerTable.INVALID
+                        || table.opposite(cornerB) != CornerTable.INVALID) {
+                    throw invalidConnectivity();
+                }
+                setOppositeCorners(cornerA, corner + 2);
+                setOppositeCorners(cornerB, corner + 1);
+
+                final int vertexP = table.vertex(CornerTable.previous(cornerA));
+                table.mapCornerToVertex(corner, vertexP);
+                table.mapCornerToVertex(corner + 1, table.vertex(CornerTable.next(cornerA)));
+                final int vertBPrev = table.vertex(CornerTable.previous(cornerB));
+                table.mapCornerToVertex(corner + 2, vertBPrev);
+                table.setLeftMostCorner(vertBPrev, corner + 2);
+
+                int cornerN = CornerTable.next(cornerB);
+                final int vertexN = table.vertex(cornerN);
+                traversal.mergeVertices(vertexP, vertexN);
+                table.setLeftMostCorner(vertexP, table.leftMostCorner(vertexN));
+
+                // the corners of the vertex "n" now belong to "p"
+                final int firstCorner = cornerN;
+                while (cornerN != CornerTable.INVALID) {
+                    table.mapCornerToVertex(cornerN, vertexP);
+                    cornerN = table.swingLeft(cornerN);
+                    if (cornerN == firstCorner) throw invalidConnectivity();
+                }
+                table.makeVertexIsolated(vertexN);
+                if (removeInvalidVertices) {
+                    invalidVertices.push(vertexN);
+                }
+                activeCorners.set(corner);
+            } else if (symbol == TOPOLOGY_E) {
+                // new isolated face, with 3 new vertices
+                final int firstVertex = table.addNewVertex();
+                table.mapCornerToVertex(corner, firstVertex);
+                table.mapCornerToVertex(corner + 1, table.addNewVertex());
+                table.mapCornerToVertex(corner + 2, table.addNewVertex());
+                if (table.numVertices() > maxNumVertices) throw invalidConnectivity();
+
+                table.setLeftMostCorner(firstVertex, corner);
+                table.setLeftMostCorner(firstVertex + 1, corner + 1);
+                table.setLeftMostCorner(firstVertex + 2, corner + 2);
+                activeCorners.push(corner);
+                checkTopologySplit = true;
+            } else {
+                throw new IllegalArgumentException("Invalid draco edgebreaker symbol: " + symbol);
+            }
+
+            traversal.newActiveCornerReached(activeCorners.peek());
+
+            if (checkTopologySplit) {
+                // the faces of L, R and E symbols may be connected to a later S symbol
+                final int encoderSymbolId = numSymbols - symbolId - 1;
+                int split;
+                while ((split = nextTopologySplit(encoderSymbolId)) != -1) {
+                    final int activeTopCorner = activeCorners.peek();
+                    final int newActiveCorner = splitSourceEdges[split] == RIGHT_FACE_EDGE
+                            ? CornerTable.next(activeTopCorner) : CornerTable.previous(activeTopCorner);
+                    final int decoderSplitSymbolId = numSymbols - splitSymbols[split] - 1;
+                    splitActiveCorners.put(decoderSplitSymbolId, newActiveCorner);
+                }
+            }
+        }
+        if (table.numVertices() > maxNumVertices) throw invalidConnectivity();
+
+        // connect the start faces to the faces of the active stack
+        while (!activeCorners.isEmpty()) {
+            final int corner = activeCorners.pop();
+            final boolean interiorFace = traversal.decodeStartFaceConfiguration();
+            if (interiorFace) {
+                if (numFaces >= table.numFaces()) throw invalidConnectivity();
+
+                final int vertN = table.vertex(CornerTable.next(corner));
+                final int cornerB = CornerTable.next(table.leftMostCorner(vertN));
+                final int vertX = table.vertex(CornerTable.next(cornerB));
+                final int cornerC = CornerTable.next(table.leftMostCorner(vertX));
+                if (corner == cornerB || corner == cornerC || cornerB == cornerC) throw invalidConnectivity();
+                if (table.opposite(corner) != CornerTable.INVALID || table.opposite(cornerB) != CornerTable.INVALID
+                        || table.opposite(cornerC) != CornerTable.INVALID) {
+                    throw invalidConnectivity();
+                }
+                final int vertP = table.vertex(CornerTable.next(cornerC));
+
+                final int newCorner = 3 * numFaces++;
+                setOppositeCorners(newCorner, corner);
+                setOppositeCorners(newCorner + 1, cornerB);
+                setOppositeCorners(newCorner + 2, cornerC);
+
+                table.mapCornerToVertex(newCorner, vertX);
+                table.mapCornerToVertex(newCorner + 1, vertP);
+                table.mapCornerToVertex(newCorner + 2, vertN);
+                for (int ci = 0; ci < 3; ci++) {
+                    isVertHole[table.vertex(newCorner + ci)] = false;
+                }
+            }
+        }
+        if (numFaces != table.numFaces()) throw invalidConnectivity();
+
+        int numVertices = table.numVertices();
+        // move the last valid vertices to the isolated ones, so all vertices in [0, numVertices) are valid
+        for (int i = 0; i < invalidVertices.size(); i++) {
+            final int invalidVertex = invalidVertices.get(i);
+            int srcVertex = numVertices - 1;
+            while (table.leftMostCorner(srcVertex) == CornerTable.INVALID) {
+                srcVertex = --numVertices - 1;
+            }
+            if (srcVertex < invalidVertex) continue;
+
+            final int start = table.leftMostCorner(srcVertex);
+            int c = start;
+            boolean leftTraversal = true;
+            while (c != CornerTable.INVALID) {
+                if (table.vertex(c) != srcVertex) throw invalidConnectivity();
+                table.mapCornerToVertex(c, invalidVertex);
+                if (leftTraversal) {
+                    c = table.swingLeft(c);
+                    if (c == CornerTable.INVALID) {
+                        c = table.swingRight(start);
+                        leftTraversal = false;
+                    } else if (c == start) {
+                        c = CornerTable.INVALID;
+                    }
+                } else {
+                    c = table.swingRight(c);
+                }
+            }
+            table.setLeftMostCorner(invalidVertex, table.leftMostCorner(srcVertex));
+            table.makeVertexIsolated(srcVertex);
+            isVertHole[invalidVertex] = isVertHole[srcVertex];
+            isVertHole[srcVertex] = false;
+            numVertices--;
+        }
+        return numVertices;
+    }
+
+    private void decodeAttributeConnectivitiesOnFace(TraversalDecoder traversal, int corner) {
+        final int[] corners = {corner, CornerTable.next(corner), CornerTable.previous(corner)};
+        final int face = corner / 3;
+        for (int c = 0; c < 3; c++) {
+            final int oppCorner = table.opposite(corners[c]);
+            if (oppCorner == CornerTable.INVALID) {
+                // boundary edges are always seams
+                for (AttributeData data : attributeData) {
+                    data.addSeamCorner(corners[c]);
+                }
+                continue;
+            }
+            // the edge was already processed with the opposite face
+            if (oppCorner / 3 < face) continue;
+
+            for (int i = 0; i < attributeData.length; i++) {
+                if (traversal.decodeAttributeSeam(i)) {
+                    attributeData[i].addSeamCorner(corners[c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Create the points, as the unique combinations of the mesh vertex and the attribute vertices
+     */
+    private void assignPointsToCorners(int numConnectivityVertices) {
+        final int numCorners = table.numCorners();
+        cornerToPoint = new int[numCorners];
+        if (attributeData.length == 0) {
+            // points are the vertices
+            for (int c = 0; c < numCorners; c++) {
+                cornerToPoint[c] = table.vertex(c);
+            }
+            numPoints = numConnectivityVertices;
+            return;
+        }
+
+        int points = 0;
+        for (int v = 0; v < table.numVertices(); v++) {
+            int c = table.leftMostCorner(v);
+            if (c == CornerTable.INVALID) continue;
+            int firstCorner = c;
+            if (!isVertHole[v]) {
+                // interior vertex: start from the first seam of any attribute
+                for (AttributeData data : attributeData) {
+                    if (!data.table.isCornerOnSeam(c)) continue;
+                    final int vertex = data.table.vertex(c);
+                    int current = table.swingRight(c);
+                    boolean seamFound = false;
+                    while (current != c) {
+                        if (current == CornerTable.INVALID) throw invalidConnectivity();
+                        if (data.table.vertex(current) != vertex) {
+                            firstCorner = current;
+                            seamFound = true;
+                            break;
+                        }
+                        current = table.swingRight(current);
+                    }
+                    if (seamFound) break;
+                }
+            }
+
+            // new point for every change of any attribute vertex, going clockwise
+            c = firstCorner;
+            cornerToPoint[c] = points++;
+            int prev = c;
+            c = table.swingRight(c);
+            while (c != CornerTable.INVALID && c != firstCorner) {
+                boolean seam = false;
+                for (AttributeData data : attributeData) {
+                    if (data.table.vertex(c) != data.table.vertex(prev)) {
+                        seam = true;
+                        break;
+                    }
+                }
+                cornerToPoint[c] = seam ? points++ : cornerToPoint[prev];
+                prev = c;
+                c = table.swingRight(c);
+            }
+        }
+        numPoints = points;
+    }
+
+    /**
+     * Read the identifier of an attribute decoder and create the sequencer of its values
+     *
+     * @param decoderId the attribute decoder
+     * @param buffer    the source
+     * @return the sequencer
+     */
+    Sequencer createAttributesDecoder(int decoderId, DecoderBuffer buffer) {
+        final int attDataId = buffer.decodeInt8();
+        final int decoderType = buffer.decodeUInt8();
+        if (attDataId >= 0) {
+            if (attDataId >= attributeData.length || attributeData[attDataId].decoderId >= 0) {
+                throw new IllegalArgumentException("Invalid draco attribute data: " + attDataId);
+            }
+            attributeData[attDataId].decoderId = decoderId;
+        } else {
+            if (posDecoderAssigned) {
+                throw new IllegalArgumentException("Invalid draco attribute data: " + attDataId);
+            }
+            posDecoderAssigned = true;
+        }
+
+        final int traversalMethod = buffer.decodeUInt8();
+        if (traversalMethod != MeshTraversal.DEPTH_FIRST && traversalMethod != MeshTraversal.PREDICTION_DEGREE) {
+            throw new IllegalArgumentException("Unsupported draco traversal method: " + traversalMethod);
+        }
+
+        if (decoderType == VERTEX_ATTRIBUTE) {
+            // traversal of the mesh connectivity
+            final MeshTraversal.EncodingData encodingData = attDataId < 0
+                    ? posEncodingData : attributeData[attDataId].encodingData;
+            return new Sequencer(table, encodingData, traversalMethod);
+        } else if (decoderType == CORNER_ATTRIBUTE) {
+            // traversal of the attribute connectivity
+            if (traversalMethod != MeshTraversal.DEPTH_FIRST || attDataId < 0) {
+                throw new IllegalArgumentException("Invalid draco corner attribute decoder");
+            }
+            final AttributeData data = attributeData[attDataId];
+            return new Sequencer(data.table, data.encodingData, traversalMethod);
+        } else {
+            throw new IllegalArgumentException("Unsupported draco attribute decoder type: " + decoderType);
+        }
+    }
+
+    /**
+     * @return the points of the values, in encoding order
+     */
+    int[] generateSequence(Sequencer sequencer) {
+        return MeshTraversal.traverse(sequencer.table, cornerToPoint, sequencer.encodingData, sequencer.traversalMethod);
+    }
+
+    /**
+     * @return the value index of every point
+     */
+    int[] pointToValueMap(Sequencer sequencer) {
+        final int[] map = new int[numPoints];
+        final int[] vertexToValue = sequencer.encodingData.vertexToValue;
+        for (int c = 0; c < cornerToPoint.length; c++) {
+            final int vertex = sequencer.table.vertex(c);
+            if (vertex == CornerTable.INVALID) throw invalidConnectivity();
+            final int value = vertexToValue[vertex];
+            final int point = cornerToPoint[c];
+            if (point >= numPoints || value < 0 || value >= numPoints) throw invalidConnectivity();
+            map[point] = value;
+        }
+        return map;
+    }
+
+    PredictionScheme.MeshData meshData(Sequencer sequencer) {
+        final MeshTraversal.EncodingData data = sequencer.encodingData;
+        return new PredictionScheme.MeshData(sequencer.table, data.vertexToValue, data.valueToCorner, data.numValues);
+    }
+
+    /**
+     * Source of the symbols, start faces and attribute seams
+     */
+    private abstract class TraversalDecoder {
+
+        private final RAnsBitDecoder startFaceDecoder = new RAnsBitDecoder();
+        private RAnsBitDecoder[] seamDecoders;
+
+        /**
+         * @return the buffer positioned after the traversal data
+         */
+        abstract DecoderBuffer start(DecoderBuffer buffer, int numVertices, int numAttributeData);
+
+        abstract int decodeSymbol();
+
+        void newActiveCornerReached(int corner) {
+        }
+
+        void mergeVertices(int dest, int source) {
+        }
+
+        final void decodeStartFaces(DecoderBuffer buffer) {
+            startFaceDecoder.startDecoding(buffer);
+        }
+
+        final void decodeAttributeSeams(DecoderBuffer buffer, int numAttributeData) {
+            seamDecoders = new RAnsBitDecoder[numAttributeData];
+            for (int i = 0; i < numAttributeData; i++) {
+                seamDecoders[i] = new RAnsBitDecoder();
+                seamDecoders[i].startDecoding(buffer);
+            }
+        }
+
+        final boolean decodeStartFaceConfiguration() {
+            return startFaceDecoder.decodeNextBit();
+        }
+
+        final boolean decodeAttributeSeam(int attribute) {
+            return seamDecoders[attribute].decodeNextBit();
+        }
+    }
+
+    /**
+     * Symbols stored with a prefix code: C = 0, other symbols = 1 followed by 2 bits
+     */
+    private final class StandardTraversal extends TraversalDecoder {
+
+        private DecoderBuffer symbolBuffer;
+
+        @Override
+        DecoderBuffer start(DecoderBuffer buffer, int numVertices, int numAttributeData) {
+            symbolBuffer = buffer;
+            final long traversalSize = symbolBuffer.startBitDecoding(true);
+            final DecoderBuffer ret = symbolBuffer.copy();
+            ret.advance(traversalSize);
+            decodeStartFaces(ret);
+            decodeAttributeSeams(ret, numAttributeData);
+            return ret;
+        }
+
+        @Override
+        int decodeSymbol() {
+            final int symbol = symbolBuffer.decodeLeastSignificantBits(1);
+            if (symbol == TOPOLOGY_C) {
+                return symbol;
+            }
+            return symbol | (symbolBuffer.decodeLeastSignificantBits(2) << 1);
+        }
+    }
+
+    /**
+     * Symbols entropy coded using the valence of the next vertex of the active corner as context
+     */
+    private final class ValenceTraversal extends TraversalDecoder {
+
+        private static final int MIN_VALENCE = 2;
+        private static final int MAX_VALENCE = 7;
+
+        private final int[] symbolToTopology = {TOPOLOGY_C, TOPOLOGY_S, TOPOLOGY_L, TOPOLOGY_R, TOPOLOGY_E};
+
+        private int[] vertexValences;
+        private int[][] contextSymbols;
+        private int[] contextCounters;
+        private int activeContext = -1;
+        private int lastSymbol = -1;
+
+        @Override
+        DecoderBuffer start(DecoderBuffer buffer, int numVertices, int numAttributeData) {
+            decodeStartFaces(buffer);
+            decodeAttributeSeams(buffer, numAttributeData);
+
+            vertexValences = new int[numVertices];
+            final int numContexts = MAX_VALENCE - MIN_VALENCE + 1;
+            contextSymbols = new int[numContexts][];
+            contextCounters = new int[numContexts];
+            for (int i = 0; i < numContexts; i++) {
+                final int numSymbols = buffer.decodeVarint();
+                if (numSymbols > table.numFaces()) {
+                    throw new IllegalArgumentException("Invalid draco valence context");
+                }
+                contextSymbols[i] = new int[numSymbols];
+                if (numSymbols > 0) {
+                    SymbolDecoding.decodeSymbols(numSymbols, 1, buffer, contextSymbols[i]);
+                    // symbols are processed from the back
+                    contextCounters[i] = numSymbols;
+                }
+            }
+            return buffer;
+        }
+
+        @Override
+        int decodeSymbol() {
+            if (activeContext != -1) {
+                final int counter = --contextCounters[activeContext];
+                if (counter < 0) throw invalidConnectivity();
+                final int symbolId = contextSymbols[activeContext][counter];
+                if (symbolId < 0 || symbolId >= symbolToTopology.length) throw invalidConnectivity();
+                lastSymbol = symbolToTopology[symbolId];
+            } else {
+                // the first symbol is always E
+                lastSymbol = TOPOLOGY_E;
+            }
+            return lastSymbol;
+        }
+
+        @Override
+        void newActiveCornerReached(int corner) {
+            final int next = CornerTable.next(corner);
+            final int prev = CornerTable.previous(corner);
+            switch (lastSymbol) {
+                case TOPOLOGY_C:
+                case TOPOLOGY_S:
+                    vertexValences[table.vertex(next)] += 1;
+                    vertexValences[table.vertex(prev)] += 1;
+                    break;
+                case TOPOLOGY_R:
+                    vertexValences[table.vertex(corner)] += 1;
+                    vertexValences[table.vertex(next)] += 1;
+                    vertexValences[table.vertex(prev)] += 2;
+                    break;
+                case TOPOLOGY_L:
+                    vertexValences[table.vertex(corner)] += 1;
+                    vertexValences[table.vertex(next)] += 2;
+                    vertexValences[table.vertex(prev)] += 1;
+                    break;
+                case TOPOLOGY_E:
+                    vertexValences[table.vertex(corner)] += 2;
+                    vertexValences[table.vertex(next)] += 2;
+                    vertexValences[table.vertex(prev)] += 2;
+                    break;
+                default:
+                    break;
+            }
+            final int valence = vertexValences[table.vertex(next)];
+            activeContext = Math.max(MIN_VALENCE, Math.min(MAX_VALENCE, valence)) - MIN_VALENCE;
+        }
+
+        @Override
+        void mergeVertices(int dest, int source) {
+            vertexValences[dest] += vertexValences[source];
+        }
+    }
+
+    /**
+     * Growable stack of ints
+     */
+    private static final class IntArrayStack {
+
+        private int[] values = new int[64];
+        private int size;
+
+        void push(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int pop() {
+            return values[--size];
+        }
+
+        int peek() {
+            return values[size - 1];
+        }
+
+        void set(int value) {
+            values[size - 1] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
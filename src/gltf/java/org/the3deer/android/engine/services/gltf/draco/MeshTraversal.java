@@ -0,0 +1,261 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+import java.util.Arrays;
+
+/**
+ * Traversal of the mesh that defines the order in which the attribute values were encoded.
+ * <p>
+ * Every time a new vertex is reached, a new attribute value is assigned to it (see {@link EncodingData}).
+ * Two traversals are supported: depth first and max prediction degree (that prefers the vertices
+ * that can be predicted from more neighbours).
+ *
+ * @author andresoviedo
+ */
+final class MeshTraversal {
+
+    static final int DEPTH_FIRST = 0;
+    static final int PREDICTION_DEGREE = 1;
+
+    private static final int MAX_PRIORITY = 3;
+
+    /**
+     * Mapping between the vertices of the traversed table and the encoded attribute values
+     */
+    static final class EncodingData {
+
+        // vertex -> encoded value
+        int[] vertexToValue;
+        // encoded value -> corner where the vertex was reached
+        int[] valueToCorner;
+        int numValues;
+
+        EncodingData(int numVertices) {
+            vertexToValue = new int[numVertices];
+            Arrays.fill(vertexToValue, -1);
+            valueToCorner = new int[Math.max(16, numVertices)];
+        }
+
+        private void add(int vertex, int corner) {
+            if (numValues == valueToCorner.length) {
+                valueToCorner = Arrays.copyOf(valueToCorner, numValues * 2);
+            }
+            valueToCorner[numValues] = corner;
+            vertexToValue[vertex] = numValues++;
+        }
+    }
+
+    private final CornerTable table;
+    private final int[] cornerToPoint;
+    private final EncodingData data;
+    private final boolean[] visitedFaces;
+    private final boolean[] visitedVertices;
+
+    private int[] pointIds;
+
+    private MeshTraversal(CornerTable table, int[] cornerToPoint, EncodingData data) {
+        this.table = table;
+        this.cornerToPoint = cornerToPoint;
+        this.data = data;
+        this.visitedFaces = new boolean[table.numFaces()];
+        this.visitedVertices = new boolean[table.numVertices()];
+        this.pointIds = new int[Math.max(16, table.numVertices())];
+    }
+
+    /**
+     * Traverse the mesh, starting from every face in order
+     *
+     * @param table         the connectivity (of the mesh or of the attribute)
+     * @param cornerToPoint the point of every corner of the mesh
+     * @param data          the data to fill
+     * @param method        {@link #DEPTH_FIRST} or {@link #PREDICTION_DEGREE}
+     * @return the point of every encoded value, in encoding order
+     */
+    static int[] traverse(CornerTable table, int[] cornerToPoint, EncodingData data, int method) {
+        final MeshTraversal traversal = new MeshTraversal(table, cornerToPoint, data);
+        if (method == DEPTH_FIRST) {
+            for (int f = 0; f < table.numFaces(); f++) {
+                traversal.depthFirst(3 * f);
+            }
+        } else {
+            traversal.predictionDegree();
+        }
+        return Arrays.copyOf(traversal.pointIds, data.numValues);
+    }
+
+    private boolean isFaceVisited(int corner) {
+        return corner == CornerTable.INVALID || visitedFaces[corner / 3];
+    }
+
+    private void visitVertex(int vertex, int corner) {
+        if (vertex == CornerTable.INVALID) {
+            throw new IllegalArgumentException("Invalid draco connectivity");
+        }
+        if (visitedVertices[vertex]) return;
+        visitedVertices[vertex] = true;
+        if (data.numValues == pointIds.length) {
+            pointIds = Arrays.copyOf(pointIds, data.numValues * 2);
+        }
+        pointIds[data.numValues] = cornerToPoint[corner];
+        data.add(vertex, corner);
+    }
+
+    private void depthFirst(int startCorner) {
+        if (isFaceVisited(startCorner)) return;
+
+        // the first face may have vertices not processed yet
+        visitVertex(table.vertex(CornerTable.next(startCorner)), CornerTable.next(startCorner));
+        visitVertex(table.vertex(CornerTable.previous(startCorner)), CornerTable.previous(startCorner));
+
+        IntStack stack = new IntStack();
+        stack.push(startCorner);
+        while (!stack.isEmpty()) {
+            int corner = stack.peek();
+            if (isFaceVisited(corner)) {
+                stack.pop();
+                continue;
+            }
+            while (true) {
+                visitedFaces[corner / 3] = true;
+                final int vertex = table.vertex(corner);
+                if (vertex == CornerTable.INVALID) {
+                    throw new IllegalArgumentException("Invalid draco connectivity");
+                }
+                if (!visitedVertices[vertex]) {
+                    final boolean onBoundary = table.isOnBoundary(vertex);
+                    visitVertex(vertex, corner);
+                    if (!onBoundary) {
+                        corner = table.getRightCorner(corner);
+                        continue;
+                    }
+                }
+                // the vertex was already visited or it's on a boundary. Visit the neighbour faces
+                final int rightCorner = table.getRightCorner(corner);
+                final int leftCorner = table.getLeftCorner(corner);
+                if (isFaceVisited(rightCorner)) {
+                    if (isFaceVisited(leftCorner)) {
+                        stack.pop();
+                        break;
+                    }
+                    corner = leftCorner;
+                } else {
+                    if (isFaceVisited(leftCorner)) {
+                        corner = rightCorner;
+                    } else {
+                        // visit both faces, the right one first
+                        stack.set(leftCorner);
+                        stack.push(rightCorner);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void predictionDegree() {
+        if (table.numVertices() == 0) return;
+        final int[] degree = new int[table.numVertices()];
+        final IntStack[] stacks = new IntStack[MAX_PRIORITY];
+        for (int i = 0; i < MAX_PRIORITY; i++) {
+            stacks[i] = new IntStack();
+        }
+
+        for (int f = 0; f < table.numFaces(); f++) {
+            int corner = 3 * f;
+            stacks[0].push(corner);
+            int bestPriority = 0;
+
+            visitVertex(table.vertex(CornerTable.next(corner)), CornerTable.next(corner));
+            visitVertex(table.vertex(CornerTable.previous(corner)), CornerTable.previous(corner));
+            visitVertex(table.vertex(corner), corner);
+
+            while (true) {
+                // pop the next corner with the best priority
+                corner = CornerTable.INVALID;
+                for (int i = bestPriority; i < MAX_PRIORITY; i++) {
+                    if (!stacks[i].isEmpty()) {
+                        corner = stacks[i].pop();
+                        bestPriority = i;
+                        break;
+                    }
+                }
+                if (corner == CornerTable.INVALID) break;
+                if (isFaceVisited(corner)) continue;
+
+                while (true) {
+                    visitedFaces[corner / 3] = true;
+                    visitVertex(table.vertex(corner), corner);
+
+                    final int rightCorner = table.getRightCorner(corner);
+                    final int leftCorner = table.getLeftCorner(corner);
+                    final boolean rightVisited = isFaceVisited(rightCorner);
+                    final boolean leftVisited = isFaceVisited(leftCorner);
+
+                    if (!leftVisited) {
+                        final int priority = computePriority(leftCorner, degree);
+                        if (rightVisited && priority <= bestPriority) {
+                            // the left face would be the next one anyway
+                            corner = leftCorner;
+                            continue;
+                        }
+                        stacks[priority].push(leftCorner);
+                        if (priority < bestPriority) bestPriority = priority;
+                    }
+                    if (!rightVisited) {
+                        final int priority = computePriority(rightCorner, degree);
+                        if (priority <= bestPriority) {
+                            corner = rightCorner;
+                            continue;
+                        }
+                        stacks[priority].push(rightCorner);
+                        if (priority < bestPriority) bestPriority = priority;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 0 if the tip vertex was already visited, 1 if it can be predicted from more than one face, 2 otherwise
+     */
+    private int computePriority(int corner, int[] degree) {
+        final int vertex = table.vertex(corner);
+        int priority = 0;
+        if (!visitedVertices[vertex]) {
+            priority = ++degree[vertex] > 1 ? 1 : 2;
+        }
+        return Math.min(priority, MAX_PRIORITY - 1);
+    }
+
+    /**
+     * Growable stack of ints
+     */
+    private static final class IntStack {
+
+        private int[] values = new int[64];
+        private int size;
+
+        void push(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int pop() {
+            return values[--size];
+        }
+
+        int peek() {
+            return values[size - 1];
+        }
+
+        void set(int value) {
+            values[size - 1] = value;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
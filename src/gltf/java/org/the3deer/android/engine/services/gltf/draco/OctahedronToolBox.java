@@ -0,0 +1,166 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+/**
+ * Octahedral encoding of unit vectors (normals).
+ * <p>
+ * The vector is projected onto an octahedron that is unfolded into a square, so it's stored as 2 quantized
+ * coordinates (s, t). The points inside the central diamond are on the right hemisphere (x &gt;= 0), and the points
+ * outside are on the left one.
+ *
+ * @author andresoviedo
+ */
+final class OctahedronToolBox {
+
+    private int quantizationBits = -1;
+    private int maxQuantizedValue;
+    private int maxValue;
+    private int centerValue;
+
+    void setQuantizationBits(int bits) {
+        if (bits < 2 || bits > 30) {
+            throw new IllegalArgumentException("Invalid draco octahedral quantization: " + bits);
+        }
+        quantizationBits = bits;
+        maxQuantizedValue = (1 << bits) - 1;
+        maxValue = maxQuantizedValue - 1;
+        centerValue = maxValue / 2;
+    }
+
+    int quantizationBits() {
+        return quantizationBits;
+    }
+
+    int maxQuantizedValue() {
+        return maxQuantizedValue;
+    }
+
+    int centerValue() {
+        return centerValue;
+    }
+
+    /**
+     * Scale the vector so the sum of the absolute values of its components is the center value
+     */
+    void canonicalizeIntegerVector(int[] vec) {
+        final long absSum = (long) Math.abs(vec[0]) + Math.abs(vec[1]) + Math.abs(vec[2]);
+        if (absSum == 0) {
+            vec[0] = centerValue;
+        } else {
+            vec[0] = (int) ((long) vec[0] * centerValue / absSum);
+            vec[1] = (int) ((long) vec[1] * centerValue / absSum);
+            if (vec[2] >= 0) {
+                vec[2] = centerValue - Math.abs(vec[0]) - Math.abs(vec[1]);
+            } else {
+                vec[2] = -(centerValue - Math.abs(vec[0]) - Math.abs(vec[1]));
+            }
+        }
+    }
+
+    /**
+     * Convert a canonicalized vector to its octahedral coordinates
+     *
+     * @param vec the vector (see {@link #canonicalizeIntegerVector(int[])})
+     * @param out the (s,t) coordinates
+     */
+    void integerVectorToQuantizedOctahedralCoords(int[] vec, int[] out) {
+        int s, t;
+        if (vec[0] >= 0) {
+            // right hemisphere
+            s = vec[1] + centerValue;
+            t = vec[2] + centerValue;
+        } else {
+            // left hemisphere
+            s = vec[1] < 0 ? Math.abs(vec[2]) : maxValue - Math.abs(vec[2]);
+            t = vec[2] < 0 ? Math.abs(vec[1]) : maxValue - Math.abs(vec[1]);
+        }
+
+        // points on the border of the square that encode the same normal
+        if ((s == 0 && t == 0) || (s == 0 && t == maxValue) || (s == maxValue && t == 0)) {
+            s = maxValue;
+            t = maxValue;
+        } else if (s == 0 && t > centerValue) {
+            t = centerValue - (t - centerValue);
+        } else if (s == maxValue && t < centerValue) {
+            t = centerValue + (centerValue - t);
+        } else if (t == maxValue && s < centerValue) {
+            s = centerValue + (centerValue - s);
+        } else if (t == 0 && s > centerValue) {
+            s = centerValue - (s - centerValue);
+        }
+        out[0] = s;
+        out[1] = t;
+    }
+
+    /**
+     * Convert the quantized octahedral coordinates to a unit vector
+     */
+    void quantizedOctahedralCoordsToUnitVector(int s, int t, float[] out, int offset) {
+        final float scale = 2f / maxValue;
+        float y = s * scale - 1f;
+        float z = t * scale - 1f;
+        final float x = 1f - Math.abs(y) - Math.abs(z);
+
+        // x is negative outside of the diamond (left hemisphere)
+        final float xOffset = -Math.min(x, 0f);
+        y += y < 0 ? xOffset : -xOffset;
+        z += z < 0 ? xOffset : -xOffset;
+
+        final float normSquared = x * x + y * y + z * z;
+        if (normSquared < 1e-6f) {
+            out[offset] = 0;
+            out[offset + 1] = 0;
+            out[offset + 2] = 0;
+        } else {
+            final float d = (float) (1 / Math.sqrt(normSquared));
+            out[offset] = x * d;
+            out[offset + 1] = y * d;
+            out[offset + 2] = z * d;
+        }
+    }
+
+    boolean isInDiamond(int s, int t) {
+        return Math.abs(s) + Math.abs(t) <= centerValue;
+    }
+
+    /**
+     * Reflect the point (centered at the origin) across the border of the diamond
+     */
+    void invertDiamond(int[] st) {
+        int signS, signT;
+        if (st[0] >= 0 && st[1] >= 0) {
+            signS = 1;
+            signT = 1;
+        } else if (st[0] <= 0 && st[1] <= 0) {
+            signS = -1;
+            signT = -1;
+        } else {
+            signS = st[0] > 0 ? 1 : -1;
+            signT = st[1] > 0 ? 1 : -1;
+        }
+
+        final int cornerS = signS * centerValue;
+        final int cornerT = signT * centerValue;
+        int us = st[0] + st[0] - cornerS;
+        int ut = st[1] + st[1] - cornerT;
+        if (signS * signT >= 0) {
+            final int temp = us;
+            us = -ut;
+            ut = -temp;
+        } else {
+            final int temp = us;
+            us = ut;
+            ut = temp;
+        }
+        st[0] = (us + cornerS) / 2;
+        st[1] = (ut + cornerT) / 2;
+    }
+
+    /**
+     * Wrap the (centered) coordinate into the [-center, center] range
+     */
+    int modMax(int x) {
+        if (x > centerValue) return x - maxQuantizedValue;
+        if (x < -centerValue) return x + maxQuantizedValue;
+        return x;
+    }
+}
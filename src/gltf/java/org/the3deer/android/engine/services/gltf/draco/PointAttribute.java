@@ -0,0 +1,92 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Attribute being decoded.
+ * <p>
+ * The values are decoded first in their portable form (integers, one per component) and then transformed to
+ * their original format (i.e. dequantized floats). Several points may share the same value, so each point
+ * is mapped to its value index.
+ *
+ * @author andresoviedo
+ */
+final class PointAttribute {
+
+    // draco data types
+    static final int DT_INT8 = 1;
+    static final int DT_UINT8 = 2;
+    static final int DT_INT16 = 3;
+    static final int DT_UINT16 = 4;
+    static final int DT_INT32 = 5;
+    static final int DT_UINT32 = 6;
+    static final int DT_INT64 = 7;
+    static final int DT_UINT64 = 8;
+    static final int DT_FLOAT32 = 9;
+    static final int DT_FLOAT64 = 10;
+    static final int DT_BOOL = 11;
+
+    final int type;
+    final int dataType;
+    final int components;
+    final boolean normalized;
+    final int uniqueId;
+
+    // point -> value index, or null for the identity mapping
+    int[] indexMap;
+
+    // portable values
+    int[] portable;
+    int portableComponents;
+
+    // final values, in native order
+    ByteBuffer values;
+    int numValues;
+
+    PointAttribute(int type, int dataType, int components, boolean normalized, int uniqueId) {
+        this.type = type;
+        this.dataType = dataType;
+        this.components = components;
+        this.normalized = normalized;
+        this.uniqueId = uniqueId;
+    }
+
+    int mappedIndex(int point) {
+        return indexMap == null ? point : indexMap[point];
+    }
+
+    int byteStride() {
+        return components * dataTypeLength(dataType);
+    }
+
+    /**
+     * Allocate the final values
+     */
+    void reset(int numValues) {
+        this.numValues = numValues;
+        this.values = ByteBuffer.allocate(numValues * byteStride()).order(ByteOrder.nativeOrder());
+    }
+
+    static int dataTypeLength(int dataType) {
+        switch (dataType) {
+            case DT_INT8:
+            case DT_UINT8:
+            case DT_BOOL:
+                return 1;
+            case DT_INT16:
+            case DT_UINT16:
+                return 2;
+            case DT_INT32:
+            case DT_UINT32:
+            case DT_FLOAT32:
+                return 4;
+            case DT_INT64:
+            case DT_UINT64:
+            case DT_FLOAT64:
+                return 8;
+            default:
+                throw new IllegalArgumentException("Invalid draco data type: " + dataType);
+        }
+    }
+}
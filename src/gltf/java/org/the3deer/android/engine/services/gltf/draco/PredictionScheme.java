@@ -0,0 +1,625 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+import java.util.Arrays;
+
+/**
+ * Prediction scheme used to restore the attribute values from the decoded corrections.
+ * <p>
+ * The values are predicted from the values decoded before (delta coding) or, for meshes, from the values of the
+ * neighbour vertices (parallelograms, texture coordinates projection, normals of the surrounding triangles).
+ *
+ * @author andresoviedo
+ */
+abstract class PredictionScheme {
+
+    // prediction methods
+    static final int NONE = -2;
+    static final int DIFFERENCE = 0;
+    static final int PARALLELOGRAM = 1;
+    static final int MULTI_PARALLELOGRAM = 2;
+    static final int TEX_COORDS_DEPRECATED = 3;
+    static final int CONSTRAINED_MULTI_PARALLELOGRAM = 4;
+    static final int TEX_COORDS_PORTABLE = 5;
+    static final int GEOMETRIC_NORMAL = 6;
+
+    private static final int MAX_NUM_PARALLELOGRAMS = 4;
+
+    final PredictionTransform transform;
+
+    PredictionScheme(PredictionTransform transform) {
+        this.transform = transform;
+    }
+
+    /**
+     * @return whether the scheme needs the position attribute, see {@link #setPositionAttribute(PointAttribute)}
+     */
+    boolean needsPositions() {
+        return false;
+    }
+
+    void setPositionAttribute(PointAttribute position) {
+    }
+
+    boolean areCorrectionsPositive() {
+        return transform.areCorrectionsPositive();
+    }
+
+    void decodePredictionData(DecoderBuffer buffer) {
+        transform.decodeTransformData(buffer);
+    }
+
+    /**
+     * Restore the original values in place
+     *
+     * @param data          the corrections, replaced with the original values
+     * @param size          number of values (entries * components)
+     * @param components    number of components per entry
+     * @param entryToPoint  the point of every entry
+     */
+    abstract void computeOriginalValues(int[] data, int size, int components, int[] entryToPoint);
+
+    /**
+     * Connectivity needed by the mesh prediction schemes
+     */
+    static final class MeshData {
+
+        final CornerTable table;
+        final int[] vertexToData;
+        final int[] dataToCorner;
+        final int numData;
+
+        MeshData(CornerTable table, int[] vertexToData, int[] dataToCorner, int numData) {
+            this.table = table;
+            this.vertexToData = vertexToData;
+            this.dataToCorner = dataToCorner;
+            this.numData = numData;
+        }
+    }
+
+    /**
+     * Create the prediction scheme
+     *
+     * @param method    the prediction method
+     * @param transform the transform
+     * @param meshData  the mesh connectivity, or null if the geometry is not an edgebreaker mesh
+     * @return the scheme
+     */
+    static PredictionScheme create(int method, PredictionTransform transform, MeshData meshData) {
+        if (method == DIFFERENCE || meshData == null) {
+            return new Delta(transform);
+        }
+        switch (method) {
+            case PARALLELOGRAM:
+                return new Parallelogram(transform, meshData);
+            case MULTI_PARALLELOGRAM:
+                return new MultiParallelogram(transform, meshData);
+            case CONSTRAINED_MULTI_PARALLELOGRAM:
+                return new ConstrainedMultiParallelogram(transform, meshData);
+            case TEX_COORDS_PORTABLE:
+                return new TexCoordsPortable(transform, meshData);
+            case GEOMETRIC_NORMAL:
+                return new GeometricNormal(transform, meshData);
+            default:
+                throw new IllegalArgumentException("Unsupported draco prediction scheme: " + method);
+        }
+    }
+
+    /**
+     * Every value is predicted from the previous one
+     */
+    static final class Delta extends PredictionScheme {
+
+        Delta(PredictionTransform transform) {
+            super(transform);
+        }
+
+        @Override
+        void computeOriginalValues(int[] data, int size, int components, int[] entryToPoint) {
+            transform.init(components);
+            transform.computeOriginalValue(new int[components], 0, data, 0, data, 0);
+            for (int i = components; i < size; i += components) {
+                transform.computeOriginalValue(data, i - components, data, i, data, i);
+            }
+        }
+    }
+
+    /**
+     * Base class for the schemes that use the mesh connectivity
+     */
+    abstract static class MeshPrediction extends PredictionScheme {
+
+        final MeshData meshData;
+
+        MeshPrediction(PredictionTransform transform, MeshData meshData) {
+            super(transform);
+            this.meshData = meshData;
+        }
+
+        /**
+         * Predict the value of the entry with the parallelogram formed by the triangle opposite to the corner:
+         * next + previous - opposite
+         *
+         * @return false if any of the vertices of the parallelogram is not decoded yet
+         */
+        final boolean computeParallelogramPrediction(int entry, int corner, int[] data, int components, int[] out) {
+            final CornerTable table = meshData.table;
+            final int oppositeCorner = table.opposite(corner);
+            if (oppositeCorner == CornerTable.INVALID) return false;
+            final int[] vertexToData = meshData.vertexToData;
+            final int opp = vertexToData[table.vertex(oppositeCorner)];
+            final int next = vertexToData[table.vertex(CornerTable.next(oppositeCorner))];
+            final int prev = vertexToData[table.vertex(CornerTable.previous(oppositeCorner))];
+            if (opp < entry && next < entry && prev < entry) {
+                final int oppOffset = opp * components;
+                final int nextOffset = next * components;
+                final int prevOffset = prev * components;
+                for (int c = 0; c < components; c++) {
+                    out[c] = (int) ((long) data[nextOffset + c] + data[prevOffset + c] - data[oppOffset + c]);
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    static final class Parallelogram extends MeshPrediction {
+
+        Parallelogram(PredictionTransform transform, MeshData meshData) {
+            super(transform, meshData);
+        }
+
+        @Override
+        void computeOriginalValues(int[] data, int size, int components, int[] entryToPoint) {
+            transform.init(components);
+            final int[] predicted = new int[components];
+            transform.computeOriginalValue(predicted, 0, data, 0, data, 0);
+            for (int p = 1; p < meshData.numData; p++) {
+                final int corner = meshData.dataToCorner[p];
+                final int offset = p * components;
+                if (computeParallelogramPrediction(p, corner, data, components, predicted)) {
+                    transform.computeOriginalValue(predicted, 0, data, offset, data, offset);
+                } else {
+                    // delta coding from the previous value
+                    transform.computeOriginalValue(data, offset - components, data, offset, data, offset);
+                }
+            }
+        }
+    }
+
+    /**
+     * Average of all the parallelograms around the vertex
+     */
+    static final class MultiParallelogram extends MeshPrediction {
+
+        MultiParallelogram(PredictionTransform transform, MeshData meshData) {
+            super(transform, meshData);
+        }
+
+        @Override
+        void computeOriginalValues(int[] data, int size, int components, int[] entryToPoint) {
+            transform.init(components);
+            final CornerTable table = meshData.table;
+            final int[] predicted = new int[components];
+            final int[] parallelogram = new int[components];
+            transform.computeOriginalValue(predicted, 0, data, 0, data, 0);
+            for (int p = 1; p < meshData.numData; p++) {
+                final int startCorner = meshData.dataToCorner[p];
+                int corner = startCorner;
+                int count = 0;
+                Arrays.fill(predicted, 0);
+                while (corner != CornerTable.INVALID) {
+                    if (computeParallelogramPrediction(p, corner, data, components, parallelogram)) {
+                        for (int c = 0; c < components; c++) {
+                            predicted[c] += parallelogram[c];
+                        }
+                        count++;
+                    }
+                    corner = table.swingRight(corner);
+                    if (corner == startCorner) {
+                        corner = CornerTable.INVALID;
+                    }
+                }
+                final int offset = p * components;
+                if (count == 0) {
+                    transform.computeOriginalValue(data, offset - components, data, offset, data, offset);
+                } else {
+                    for (int c = 0; c < components; c++) {
+                        predicted[c] /= count;
+                    }
+                    transform.computeOriginalValue(predicted, 0, data, offset, data, offset);
+                }
+            }
+        }
+    }
+
+    /**
+     * Average of the parallelograms around the vertex that are not flagged as crease edges
+     */
+    static final class ConstrainedMultiParallelogram extends MeshPrediction {
+
+        private final boolean[][] isCreaseEdge = new boolean[MAX_NUM_PARALLELOGRAMS][];
+
+        ConstrainedMultiParallelogram(PredictionTransform transform, MeshData meshData) {
+            super(transform, meshData);
+        }
+
+        @Override
+        void decodePredictionData(DecoderBuffer buffer) {
+            for (int i = 0; i < MAX_NUM_PARALLELOGRAMS; i++) {
+                final int numFlags = buffer.decodeVarint();
+                if (numFlags > meshData.table.numCorners()) {
+                    throw new IllegalArgumentException("Invalid draco crease edges");
+                }
+                isCreaseEdge[i] = new boolean[numFlags];
+                if (numFlags > 0) {
+                    final RAnsBitDecoder decoder = new RAnsBitDecoder();
+                    decoder.startDecoding(buffer);
+                    for (int j = 0; j < numFlags; j++) {
+                        isCreaseEdge[i][j] = decoder.decodeNextBit();
+                    }
+                }
+            }
+            super.decodePredictionData(buffer);
+        }
+
+        @Override
+        void computeOriginalValues(int[] data, int size, int components, int[] entryToPoint) {
+            transform.init(components);
+            final CornerTable table = meshData.table;
+            final int[][] predicted = new int[MAX_NUM_PARALLELOGRAMS][components];
+            final int[] multiPredicted = new int[components];
+            final int[] creasePosition = new int[MAX_NUM_PARALLELOGRAMS];
+            transform.computeOriginalValue(predicted[0], 0, data, 0, data, 0);
+
+            for (int p = 1; p < meshData.numData; p++) {
+                final int startCorner = meshData.dataToCorner[p];
+                int corner = startCorner;
+                int count = 0;
+                boolean firstPass = true;
+                while (corner != CornerTable.INVALID) {
+                    if (computeParallelogramPrediction(p, corner, data, components, predicted[count])) {
+                        if (++count == MAX_NUM_PARALLELOGRAMS) break;
+                    }
+                    // swing left and, when a boundary is reached, swing right from the start corner
+                    corner = firstPass ? table.swingLeft(corner) : table.swingRight(corner);
+                    if (corner == startCorner) break;
+                    if (corner == CornerTable.INVALID && firstPass) {
+                        firstPass = false;
+                        corner = table.swingRight(startCorner);
+                    }
+                }
+
+                int used = 0;
+                if (count > 0) {
+                    Arrays.fill(multiPredicted, 0);
+                    final int context = count - 1;
+                    for (int i = 0; i < count; i++) {
+                        final int position = creasePosition[context]++;
+                        if (position >= isCreaseEdge[context].length) {
+                            throw new IllegalArgumentException("Invalid draco crease edges");
+                        }
+                        if (!isCreaseEdge[context][position]) {
+                            used++;
+                            for (int c = 0; c < components; c++) {
+                                multiPredicted[c] += predicted[i][c];
+                            }
+                        }
+                    }
+                }
+                final int offset = p * components;
+                if (used == 0) {
+                    transform.computeOriginalValue(data, offset - components, data, offset, data, offset);
+                } else {
+                    for (int c = 0; c < components; c++) {
+                        multiPredicted[c] /= used;
+                    }
+                    transform.computeOriginalValue(multiPredicted, 0, data, offset, data, offset);
+                }
+            }
+        }
+    }
+
+    /**
+     * Base class for the schemes that use the (portable) positions
+     */
+    abstract static class PositionPrediction extends MeshPrediction {
+
+        private PointAttribute position;
+        int[] entryToPoint;
+
+        PositionPrediction(PredictionTransform transform, MeshData meshData) {
+            super(transform, meshData);
+        }
+
+        @Override
+        boolean needsPositions() {
+            return true;
+        }
+
+        @Override
+        void setPositionAttribute(PointAttribute position) {
+            if (position.portableComponents != 3) {
+                throw new IllegalArgumentException("Invalid draco position attribute for prediction");
+            }
+            this.position = position;
+        }
+
+        final void getPositionForEntry(int entry, long[] out) {
+            final int offset = position.mappedIndex(entryToPoint[entry]) * 3;
+            out[0] = position.portable[offset];
+            out[1] = position.portable[offset + 1];
+            out[2] = position.portable[offset + 2];
+        }
+    }
+
+    /**
+     * Texture coordinates predicted by projecting the triangle positions to the UV space of the 2 known corners
+     */
+    static final class TexCoordsPortable extends PositionPrediction {
+
+        private boolean[] orientations;
+        private int numOrientations;
+
+        private final long[] tipPos = new long[3];
+        private final long[] nextPos = new long[3];
+        private final long[] prevPos = new long[3];
+        private final int[] predicted = new int[2];
+
+        TexCoordsPortable(PredictionTransform transform, MeshData meshData) {
+            super(transform, meshData);
+        }
+
+        @Override
+        void decodePredictionData(DecoderBuffer buffer) {
+            final int count = buffer.decodeInt32();
+            if (count < 0 || count > meshData.table.numCorners()) {
+                throw new IllegalArgumentException("Invalid draco texture coordinates orientations");
+            }
+            orientations = new boolean[count];
+            numOrientations = count;
+            boolean last = true;
+            final RAnsBitDecoder decoder = new RAnsBitDecoder();
+            decoder.startDecoding(buffer);
+            for (int i = 0; i < count; i++) {
+                if (!decoder.decodeNextBit()) {
+                    last = !last;
+                }
+                orientations[i] = last;
+            }
+            super.decodePredictionData(buffer);
+        }
+
+        @Override
+        void computeOriginalValues(int[] data, int size, int components, int[] entryToPoint) {
+            if (components != 2) {
+                throw new IllegalArgumentException("Invalid draco texture coordinates");
+            }
+            this.entryToPoint = entryToPoint;
+            transform.init(components);
+            for (int p = 0; p < meshData.numData; p++) {
+                computePredictedValue(meshData.dataToCorner[p], data, p);
+                transform.computeOriginalValue(predicted, 0, data, p * 2, data, p * 2);
+            }
+        }
+
+        private void computePredictedValue(int corner, int[] data, int entry) {
+            final CornerTable table = meshData.table;
+            final int nextEntry = meshData.vertexToData[table.vertex(CornerTable.next(corner))];
+            final int prevEntry = meshData.vertexToData[table.vertex(CornerTable.previous(corner))];
+
+            if (prevEntry < entry && nextEntry < entry) {
+                final long nU = data[nextEntry * 2];
+                final long nV = data[nextEntry * 2 + 1];
+                final long pU = data[prevEntry * 2];
+                final long pV = data[prevEntry * 2 + 1];
+                if (pU == nU && pV == nV) {
+                    // degenerated UV triangle
+                    predicted[0] = (int) pU;
+                    predicted[1] = (int) pV;
+                    return;
+                }
+
+                getPositionForEntry(entry, tipPos);
+                getPositionForEntry(nextEntry, nextPos);
+                getPositionForEntry(prevEntry, prevPos);
+
+                // project the tip onto the edge next-prev: X = N + s * PN
+                final long pnX = prevPos[0] - nextPos[0];
+                final long pnY = prevPos[1] - nextPos[1];
+                final long pnZ = prevPos[2] - nextPos[2];
+                final long pnNorm2 = pnX * pnX + pnY * pnY + pnZ * pnZ;
+                if (pnNorm2 != 0) {
+                    final long cnX = tipPos[0] - nextPos[0];
+                    final long cnY = tipPos[1] - nextPos[1];
+                    final long cnZ = tipPos[2] - nextPos[2];
+                    final long cnDotPn = pnX * cnX + pnY * cnY + pnZ * cnZ;
+
+                    final long pnU = pU - nU;
+                    final long pnV = pV - nV;
+
+                    // operations are done in a space scaled by pnNorm2, to keep the precision
+                    final long nUvAbsMax = Math.max(Math.abs(nU), Math.abs(nV));
+                    if (nUvAbsMax > Long.MAX_VALUE / pnNorm2) {
+                        throw new IllegalArgumentException("Draco texture coordinates prediction overflow");
+                    }
+                    final long pnUvAbsMax = Math.max(Math.abs(pnU), Math.abs(pnV));
+                    if (pnUvAbsMax != 0 && cnDotPn > Long.MAX_VALUE / pnUvAbsMax) {
+                        throw new IllegalArgumentException("Draco texture coordinates prediction overflow");
+                    }
+                    final long xU = nU * pnNorm2 + cnDotPn * pnU;
+                    final long xV = nV * pnNorm2 + cnDotPn * pnV;
+                    final long pnAbsMax = Math.max(Math.max(Math.abs(pnX), Math.abs(pnY)), Math.abs(pnZ));
+                    if (cnDotPn > Long.MAX_VALUE / pnAbsMax) {
+                        throw new IllegalArgumentException("Draco texture coordinates prediction overflow");
+                    }
+
+                    // distance from the tip to its projection
+                    final long xX = nextPos[0] + (cnDotPn * pnX) / pnNorm2;
+                    final long xY = nextPos[1] + (cnDotPn * pnY) / pnNorm2;
+                    final long xZ = nextPos[2] + (cnDotPn * pnZ) / pnNorm2;
+                    final long cxX = tipPos[0] - xX;
+                    final long cxY = tipPos[1] - xY;
+                    final long cxZ = tipPos[2] - xZ;
+                    final long cxNorm2 = cxX * cxX + cxY * cxY + cxZ * cxZ;
+
+                    // rotate PN_UV by 90 degrees and scale it by |CX| * |PN|
+                    final long norm = intSqrt(cxNorm2 * pnNorm2);
+                    final long cxU = pnV * norm;
+                    final long cxV = -pnU * norm;
+
+                    if (numOrientations == 0) {
+                        throw new IllegalArgumentException("Invalid draco texture coordinates orientations");
+                    }
+                    final boolean orientation = orientations[--numOrientations];
+                    if (orientation) {
+                        predicted[0] = (int) ((xU + cxU) / pnNorm2);
+                        predicted[1] = (int) ((xV + cxV) / pnNorm2);
+                    } else {
+                        predicted[0] = (int) ((xU - cxU) / pnNorm2);
+                        predicted[1] = (int) ((xV - cxV) / pnNorm2);
+                    }
+                    return;
+                }
+            }
+
+            // not enough data to use the positions, so fall back to delta coding
+            int offset = 0;
+            if (prevEntry < entry) {
+                offset = prevEntry * 2;
+            }
+            if (nextEntry < entry) {
+                offset = nextEntry * 2;
+            } else if (entry > 0) {
+                offset = (entry - 1) * 2;
+            } else {
+                predicted[0] = 0;
+                predicted[1] = 0;
+                return;
+            }
+            predicted[0] = data[offset];
+            predicted[1] = data[offset + 1];
+        }
+
+        /**
+         * Integer square root (floor)
+         */
+        private static long intSqrt(long number) {
+            if (number == 0) return 0;
+            // initial estimate from the position of the highest bit
+            long actNumber = number;
+            long squareRoot = 1;
+            while (actNumber >= 2) {
+                squareRoot *= 2;
+                actNumber /= 4;
+            }
+            // Newton iterations
+            do {
+                squareRoot = (squareRoot + number / squareRoot) / 2;
+            } while (squareRoot * squareRoot > number);
+            return squareRoot;
+        }
+    }
+
+    /**
+     * Normals predicted from the area weighted normals of the triangles around the vertex
+     */
+    static final class GeometricNormal extends PositionPrediction {
+
+        private final RAnsBitDecoder flipNormalDecoder = new RAnsBitDecoder();
+        private final OctahedronToolBox toolBox = new OctahedronToolBox();
+
+        private final long[] centerPos = new long[3];
+        private final long[] nextPos = new long[3];
+        private final long[] prevPos = new long[3];
+        private final int[] normal = new int[3];
+        private final int[] octahedral = new int[2];
+
+        GeometricNormal(PredictionTransform transform, MeshData meshData) {
+            super(transform, meshData);
+            if (!(transform instanceof PredictionTransform.OctahedronCanonicalized)) {
+                throw new IllegalArgumentException("Unsupported draco transform for normals");
+            }
+        }
+
+        @Override
+        void decodePredictionData(DecoderBuffer buffer) {
+            transform.decodeTransformData(buffer);
+            flipNormalDecoder.startDecoding(buffer);
+        }
+
+        @Override
+        void computeOriginalValues(int[] data, int size, int components, int[] entryToPoint) {
+            if (components != 2) {
+                throw new IllegalArgumentException("Invalid draco normals");
+            }
+            this.entryToPoint = entryToPoint;
+            transform.init(components);
+            toolBox.setQuantizationBits(((PredictionTransform.OctahedronCanonicalized) transform).toolBox.quantizationBits());
+            for (int p = 0; p < meshData.numData; p++) {
+                computePredictedValue(meshData.dataToCorner[p]);
+                toolBox.canonicalizeIntegerVector(normal);
+                if (flipNormalDecoder.decodeNextBit()) {
+                    normal[0] = -normal[0];
+                    normal[1] = -normal[1];
+                    normal[2] = -normal[2];
+                }
+                toolBox.integerVectorToQuantizedOctahedralCoords(normal, octahedral);
+                transform.computeOriginalValue(octahedral, 0, data, p * 2, data, p * 2);
+            }
+        }
+
+        private void getPositionForCorner(int corner, long[] out) {
+            getPositionForEntry(meshData.vertexToData[meshData.table.vertex(corner)], out);
+        }
+
+        private void computePredictedValue(int corner) {
+            final CornerTable table = meshData.table;
+            getPositionForCorner(corner, centerPos);
+
+            // sum of the (area weighted) normals of the triangles around the vertex
+            long nx = 0, ny = 0, nz = 0;
+            int current = corner;
+            boolean leftTraversal = true;
+            while (current != CornerTable.INVALID) {
+                getPositionForCorner(CornerTable.next(current), nextPos);
+                getPositionForCorner(CornerTable.previous(current), prevPos);
+                final long dnX = nextPos[0] - centerPos[0];
+                final long dnY = nextPos[1] - centerPos[1];
+                final long dnZ = nextPos[2] - centerPos[2];
+                final long dpX = prevPos[0] - centerPos[0];
+                final long dpY = prevPos[1] - centerPos[1];
+                final long dpZ = prevPos[2] - centerPos[2];
+                nx += dnY * dpZ - dnZ * dpY;
+                ny += dnZ * dpX - dnX * dpZ;
+                nz += dnX * dpY - dnY * dpX;
+
+                // next corner around the vertex
+                if (leftTraversal) {
+                    current = table.swingLeft(current);
+                    if (current == CornerTable.INVALID) {
+                        // boundary reached, continue to the right from the start
+                        current = table.swingRight(corner);
+                        leftTraversal = false;
+                    } else if (current == corner) {
+                        current = CornerTable.INVALID;
+                    }
+                } else {
+                    current = table.swingRight(current);
+                }
+            }
+
+            // keep the values in the int range
+            final long upperBound = 1 << 29;
+            final long absSum = Math.abs(nx) + Math.abs(ny) + Math.abs(nz);
+            if (absSum > upperBound) {
+                final long quotient = absSum / upperBound;
+                nx /= quotient;
+                ny /= quotient;
+                nz /= quotient;
+            }
+            normal[0] = (int) nx;
+            normal[1] = (int) ny;
+            normal[2] = (int) nz;
+        }
+    }
+}
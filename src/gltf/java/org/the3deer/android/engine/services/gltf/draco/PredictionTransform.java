@@ -0,0 +1,176 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+/**
+ * Transform applied by the prediction schemes to combine the predicted values and the decoded corrections.
+ *
+ * @author andresoviedo
+ */
+abstract class PredictionTransform {
+
+    // transform types
+    static final int WRAP = 1;
+    static final int NORMAL_OCTAHEDRON = 2;
+    static final int NORMAL_OCTAHEDRON_CANONICALIZED = 3;
+
+    int numComponents;
+
+    void init(int numComponents) {
+        this.numComponents = numComponents;
+    }
+
+    abstract void decodeTransformData(DecoderBuffer buffer);
+
+    /**
+     * @return whether the corrections are encoded as positive values, so they are not zigzag coded
+     */
+    abstract boolean areCorrectionsPositive();
+
+    /**
+     * Compute the original value from the predicted value and the correction.
+     * The arrays may be the same, as long as the predicted value is not the output value.
+     */
+    abstract void computeOriginalValue(int[] pred, int predOffset, int[] corr, int corrOffset, int[] out, int outOffset);
+
+    /**
+     * Wraps the values in the range of the encoded values, so the corrections can be kept small
+     */
+    static final class Wrap extends PredictionTransform {
+
+        private int minValue;
+        private int maxValue;
+        private int maxDif;
+        private int[] clamped = new int[0];
+
+        @Override
+        void init(int numComponents) {
+            super.init(numComponents);
+            clamped = new int[numComponents];
+        }
+
+        @Override
+        void decodeTransformData(DecoderBuffer buffer) {
+            minValue = buffer.decodeInt32();
+            maxValue = buffer.decodeInt32();
+            final long dif = (long) maxValue - minValue;
+            if (dif < 0 || dif >= Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid draco wrap transform");
+            }
+            maxDif = 1 + (int) dif;
+        }
+
+        @Override
+        boolean areCorrectionsPositive() {
+            return false;
+        }
+
+        @Override
+        void computeOriginalValue(int[] pred, int predOffset, int[] corr, int corrOffset, int[] out, int outOffset) {
+            for (int i = 0; i < numComponents; i++) {
+                clamped[i] = Math.min(maxValue, Math.max(minValue, pred[predOffset + i]));
+            }
+            for (int i = 0; i < numComponents; i++) {
+                int value = clamped[i] + corr[corrOffset + i];
+                if (value > maxValue) {
+                    value -= maxDif;
+                } else if (value < minValue) {
+                    value += maxDif;
+                }
+                out[outOffset + i] = value;
+            }
+        }
+    }
+
+    /**
+     * Transform for octahedral coordinates (normals) that rotates the prediction to the bottom left quadrant,
+     * so the corrections are more likely to be small positive values
+     */
+    static final class OctahedronCanonicalized extends PredictionTransform {
+
+        final OctahedronToolBox toolBox = new OctahedronToolBox();
+        private final int[] pred = new int[2];
+        private final int[] orig = new int[2];
+
+        @Override
+        void decodeTransformData(DecoderBuffer buffer) {
+            final int maxQuantizedValue = buffer.decodeInt32();
+            // center value, not used
+            buffer.decodeInt32();
+            if (maxQuantizedValue <= 0 || maxQuantizedValue % 2 == 0) {
+                throw new IllegalArgumentException("Invalid draco octahedron transform: " + maxQuantizedValue);
+            }
+            toolBox.setQuantizationBits(32 - Integer.numberOfLeadingZeros(maxQuantizedValue));
+        }
+
+        @Override
+        boolean areCorrectionsPositive() {
+            return true;
+        }
+
+        @Override
+        void computeOriginalValue(int[] predValues, int predOffset, int[] corr, int corrOffset, int[] out, int outOffset) {
+            final int center = toolBox.centerValue();
+            pred[0] = predValues[predOffset] - center;
+            pred[1] = predValues[predOffset + 1] - center;
+
+            final boolean inDiamond = toolBox.isInDiamond(pred[0], pred[1]);
+            if (!inDiamond) {
+                toolBox.invertDiamond(pred);
+            }
+            final boolean inBottomLeft = isInBottomLeft(pred);
+            final int rotation = getRotationCount(pred);
+            if (!inBottomLeft) {
+                rotate(pred, rotation);
+            }
+
+            orig[0] = toolBox.modMax(pred[0] + corr[corrOffset]);
+            orig[1] = toolBox.modMax(pred[1] + corr[corrOffset + 1]);
+            if (!inBottomLeft) {
+                rotate(orig, (4 - rotation) % 4);
+            }
+            if (!inDiamond) {
+                toolBox.invertDiamond(orig);
+            }
+            out[outOffset] = orig[0] + center;
+            out[outOffset + 1] = orig[1] + center;
+        }
+
+        private static boolean isInBottomLeft(int[] p) {
+            if (p[0] == 0 && p[1] == 0) return true;
+            return p[0] < 0 && p[1] <= 0;
+        }
+
+        private static int getRotationCount(int[] p) {
+            final int x = p[0];
+            final int y = p[1];
+            if (x == 0) {
+                if (y == 0) return 0;
+                return y > 0 ? 3 : 1;
+            } else if (x > 0) {
+                return y >= 0 ? 2 : 1;
+            } else {
+                return y <= 0 ? 0 : 3;
+            }
+        }
+
+        private static void rotate(int[] p, int rotation) {
+            final int x = p[0];
+            final int y = p[1];
+            switch (rotation) {
+                case 1:
+                    p[0] = y;
+                    p[1] = -x;
+                    break;
+                case 2:
+                    p[0] = -x;
+                    p[1] = -y;
+                    break;
+                case 3:
+                    p[0] = -y;
+                    p[1] = x;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+/**
+ * Binary decoder using the rANS coding with 8 bit probabilities (rABS).
+ * <p>
+ * The data is read backwards, from the end of the encoded block.
+ *
+ * @author andresoviedo
+ */
+final class RAnsBitDecoder {
+
+    private static final int L_BASE = 4096;
+    private static final int IO_BASE = 256;
+    private static final int P8_PRECISION = 256;
+
+    private byte[] buf;
+    private int start;
+    private int offset;
+    private int state;
+    private int probZero;
+
+    /**
+     * Read the header of the block and skip it in the source buffer
+     */
+    void startDecoding(DecoderBuffer source) {
+        probZero = source.decodeUInt8();
+        final int size = source.decodeVarint();
+        if (size > source.remaining()) {
+            throw new IllegalArgumentException("Invalid draco bit block size: " + size);
+        }
+        buf = source.data();
+        start = source.position();
+        initState(size);
+        source.advance(size);
+    }
+
+    private void initState(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Empty draco bit block");
+        }
+        final int last = buf[start + size - 1] & 0xFF;
+        switch (last >> 6) {
+            case 0:
+                offset = size - 1;
+                state = last & 0x3F;
+                break;
+            case 1:
+                if (size < 2) throw new IllegalArgumentException("Invalid draco bit block");
+                offset = size - 2;
+                state = readLittleEndian(offset, 2) & 0x3FFF;
+                break;
+            case 2:
+                if (size < 3) throw new IllegalArgumentException("Invalid draco bit block");
+                offset = size - 3;
+                state = readLittleEndian(offset, 3) & 0x3FFFFF;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid draco bit block");
+        }
+        state += L_BASE;
+        if (state >= L_BASE * IO_BASE) {
+            throw new IllegalArgumentException("Invalid draco bit block");
+        }
+    }
+
+    private int readLittleEndian(int position, int bytes) {
+        int ret = 0;
+        for (int i = 0; i < bytes; i++) {
+            ret |= (buf[start + position + i] & 0xFF) << (8 * i);
+        }
+        return ret;
+    }
+
+    boolean decodeNextBit() {
+        final int p = P8_PRECISION - probZero;
+        if (state < L_BASE && offset > 0) {
+            state = state * IO_BASE + (buf[start + --offset] & 0xFF);
+        }
+        final int x = state;
+        final int quot = x / P8_PRECISION;
+        final int rem = x % P8_PRECISION;
+        final int xn = quot * p;
+        if (rem < p) {
+            state = xn + rem;
+            return true;
+        }
+        state = x - xn - p;
+        return false;
+    }
+}
@@ -0,0 +1,278 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decoder of the values of one attribute, in the order defined by the points sequence.
+ * <p>
+ * The values are decoded in 3 steps, so the attributes can depend on the portable values of the others
+ * (i.e. the texture coordinates are predicted from the quantized positions):
+ * <ol>
+ *     <li>{@link #decodePortableAttribute(int[], DecoderBuffer, PredictionScheme.MeshData, PointAttribute)}</li>
+ *     <li>{@link #decodeDataNeededByPortableTransform(DecoderBuffer)}</li>
+ *     <li>{@link #transformAttributeToOriginalFormat()}</li>
+ * </ol>
+ *
+ * @author andresoviedo
+ */
+abstract class SequentialAttributeDecoder {
+
+    // decoder types
+    static final int GENERIC = 0;
+    static final int INTEGER = 1;
+    static final int QUANTIZATION = 2;
+    static final int NORMALS = 3;
+
+    final PointAttribute attribute;
+
+    SequentialAttributeDecoder(PointAttribute attribute) {
+        this.attribute = attribute;
+    }
+
+    static SequentialAttributeDecoder create(int decoderType, PointAttribute attribute) {
+        switch (decoderType) {
+            case GENERIC:
+                return new Generic(attribute);
+            case INTEGER:
+                return new Integers(attribute);
+            case QUANTIZATION:
+                return new Quantization(attribute);
+            case NORMALS:
+                return new Normals(attribute);
+            default:
+                throw new IllegalArgumentException("Unsupported draco attribute decoder: " + decoderType);
+        }
+    }
+
+    /**
+     * Decode the values of the attribute in their portable form
+     *
+     * @param pointIds the point of every value, in decoding order
+     * @param buffer   the source
+     * @param meshData the connectivity for the mesh predictions, or null
+     * @param position the position attribute, for the predictions that need it
+     */
+    void decodePortableAttribute(int[] pointIds, DecoderBuffer buffer, PredictionScheme.MeshData meshData, PointAttribute position) {
+        attribute.reset(pointIds.length);
+        decodeValues(pointIds, buffer, meshData, position);
+    }
+
+    abstract void decodeValues(int[] pointIds, DecoderBuffer buffer, PredictionScheme.MeshData meshData, PointAttribute position);
+
+    void decodeDataNeededByPortableTransform(DecoderBuffer buffer) {
+    }
+
+    void transformAttributeToOriginalFormat() {
+    }
+
+    /**
+     * Values stored in their original format, without compression
+     */
+    static final class Generic extends SequentialAttributeDecoder {
+
+        Generic(PointAttribute attribute) {
+            super(attribute);
+        }
+
+        @Override
+        void decodeValues(int[] pointIds, DecoderBuffer buffer, PredictionScheme.MeshData meshData, PointAttribute position) {
+            final ByteBuffer values = attribute.values;
+            final int length = pointIds.length * attribute.byteStride();
+            if (length > buffer.remaining()) {
+                throw new IllegalArgumentException("Unexpected end of draco data");
+            }
+            buffer.decode(values.array(), values.arrayOffset(), length);
+        }
+    }
+
+    /**
+     * Integer values coded as entropy coded corrections of a prediction
+     */
+    static class Integers extends SequentialAttributeDecoder {
+
+        Integers(PointAttribute attribute) {
+            super(attribute);
+        }
+
+        int numValueComponents() {
+            return attribute.components;
+        }
+
+        PredictionTransform createTransform(int transformType) {
+            if (transformType != PredictionTransform.WRAP) {
+                throw new IllegalArgumentException("Unsupported draco prediction transform: " + transformType);
+            }
+            return new PredictionTransform.Wrap();
+        }
+
+        @Override
+        final void decodeValues(int[] pointIds, DecoderBuffer buffer, PredictionScheme.MeshData meshData, PointAttribute position) {
+            final int method = buffer.decodeInt8();
+            if (method < PredictionScheme.NONE || method > PredictionScheme.GEOMETRIC_NORMAL) {
+                throw new IllegalArgumentException("Invalid draco prediction scheme: " + method);
+            }
+            PredictionScheme scheme = null;
+            if (method != PredictionScheme.NONE) {
+                final PredictionTransform transform = createTransform(buffer.decodeInt8());
+                scheme = PredictionScheme.create(method, transform, meshData);
+                if (scheme.needsPositions()) {
+                    if (position == null || position.portable == null) {
+                        throw new IllegalArgumentException("Draco prediction needs the quantized positions");
+                    }
+                    scheme.setPositionAttribute(position);
+                }
+            }
+
+            final int components = numValueComponents();
+            final int numValues = pointIds.length * components;
+            final int[] values = new int[numValues];
+            if (buffer.decodeUInt8() > 0) {
+                SymbolDecoding.decodeSymbols(numValues, components, buffer, values);
+            } else {
+                final int numBytes = buffer.decodeUInt8();
+                if (numBytes > 4 || (long) numBytes * numValues > buffer.remaining()) {
+                    throw new IllegalArgumentException("Invalid draco raw values");
+                }
+                for (int i = 0; i < numValues; i++) {
+                    values[i] = buffer.decodeBytes(numBytes);
+                }
+            }
+
+            if (numValues > 0 && (scheme == null || !scheme.areCorrectionsPositive())) {
+                // zigzag coded
+                for (int i = 0; i < numValues; i++) {
+                    final int value = values[i];
+                    values[i] = (value >>> 1) ^ -(value & 1);
+                }
+            }
+
+            if (scheme != null) {
+                scheme.decodePredictionData(buffer);
+                if (numValues > 0) {
+                    scheme.computeOriginalValues(values, numValues, components, pointIds);
+                }
+            }
+
+            attribute.portable = values;
+            attribute.portableComponents = components;
+        }
+
+        @Override
+        void transformAttributeToOriginalFormat() {
+            final int[] portable = attribute.portable;
+            final ByteBuffer values = attribute.values;
+            final int total = attribute.numValues * attribute.components;
+            switch (attribute.dataType) {
+                case PointAttribute.DT_INT8:
+                case PointAttribute.DT_UINT8:
+                    for (int i = 0; i < total; i++) {
+                        values.put(i, (byte) portable[i]);
+                    }
+                    break;
+                case PointAttribute.DT_INT16:
+                case PointAttribute.DT_UINT16:
+                    for (int i = 0; i < total; i++) {
+                        values.putShort(i * 2, (short) portable[i]);
+                    }
+                    break;
+                case PointAttribute.DT_INT32:
+                case PointAttribute.DT_UINT32:
+                    for (int i = 0; i < total; i++) {
+                        values.putInt(i * 4, portable[i]);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid draco integer attribute type: " + attribute.dataType);
+            }
+        }
+    }
+
+    /**
+     * Float values quantized to integers
+     */
+    static final class Quantization extends Integers {
+
+        private float[] minValues;
+        private float range;
+        private int quantizationBits;
+
+        Quantization(PointAttribute attribute) {
+            super(attribute);
+            if (attribute.dataType != PointAttribute.DT_FLOAT32) {
+                throw new IllegalArgumentException("Invalid draco quantized attribute type: " + attribute.dataType);
+            }
+        }
+
+        @Override
+        void decodeDataNeededByPortableTransform(DecoderBuffer buffer) {
+            minValues = new float[attribute.components];
+            for (int i = 0; i < minValues.length; i++) {
+                minValues[i] = buffer.decodeFloat32();
+            }
+            range = buffer.decodeFloat32();
+            quantizationBits = buffer.decodeUInt8();
+            if (quantizationBits < 1 || quantizationBits > 30) {
+                throw new IllegalArgumentException("Invalid draco quantization: " + quantizationBits);
+            }
+        }
+
+        @Override
+        void transformAttributeToOriginalFormat() {
+            final int[] portable = attribute.portable;
+            final ByteBuffer values = attribute.values;
+            final int components = attribute.components;
+            final float delta = range / ((1 << quantizationBits) - 1);
+            for (int i = 0, idx = 0; i < attribute.numValues; i++) {
+                for (int c = 0; c < components; c++, idx++) {
+                    values.putFloat(idx * 4, portable[idx] * delta + minValues[c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unit vectors coded as octahedral coordinates
+     */
+    static final class Normals extends Integers {
+
+        private final OctahedronToolBox toolBox = new OctahedronToolBox();
+
+        Normals(PointAttribute attribute) {
+            super(attribute);
+            if (attribute.components != 3 || attribute.dataType != PointAttribute.DT_FLOAT32) {
+                throw new IllegalArgumentException("Invalid draco normals attribute");
+            }
+        }
+
+        @Override
+        int numValueComponents() {
+            return 2;
+        }
+
+        @Override
+        PredictionTransform createTransform(int transformType) {
+            if (transformType != PredictionTransform.NORMAL_OCTAHEDRON_CANONICALIZED) {
+                throw new IllegalArgumentException("Unsupported draco normals transform: " + transformType);
+            }
+            return new PredictionTransform.OctahedronCanonicalized();
+        }
+
+        @Override
+        void decodeDataNeededByPortableTransform(DecoderBuffer buffer) {
+            toolBox.setQuantizationBits(buffer.decodeUInt8());
+        }
+
+        @Override
+        void transformAttributeToOriginalFormat() {
+            final int[] portable = attribute.portable;
+            final ByteBuffer values = attribute.values;
+            final float[] normal = new float[3];
+            for (int i = 0; i < attribute.numValues; i++) {
+                toolBox.quantizedOctahedralCoordsToUnitVector(portable[i * 2], portable[i * 2 + 1], normal, 0);
+                values.putFloat(i * 12, normal[0]);
+                values.putFloat(i * 12 + 4, normal[1]);
+                values.putFloat(i * 12 + 8, normal[2]);
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+/**
+ * Decoder of the entropy coded symbols (unsigned integers) used by draco for the indices,
+ * the valence contexts and the attribute values.
+ * <p>
+ * The symbols are coded with rANS, either directly (raw scheme) or as a bit length coded with rANS
+ * followed by the raw bits of the value (tagged scheme).
+ *
+ * @author andresoviedo
+ */
+final class SymbolDecoding {
+
+    private static final int TAGGED = 0;
+    private static final int RAW = 1;
+
+    private static final int IO_BASE = 256;
+
+    private SymbolDecoding() {
+    }
+
+    /**
+     * Decode the specified number of symbols
+     *
+     * @param numValues     number of symbols
+     * @param numComponents number of components per value (symbols sharing the same tag, in tagged scheme)
+     * @param buffer        source buffer
+     * @param out           output values
+     */
+    static void decodeSymbols(int numValues, int numComponents, DecoderBuffer buffer, int[] out) {
+        if (numValues == 0) {
+            return;
+        }
+        final int scheme = buffer.decodeUInt8();
+        if (scheme == TAGGED) {
+            decodeTaggedSymbols(numValues, numComponents, buffer, out);
+        } else if (scheme == RAW) {
+            decodeRawSymbols(numValues, buffer, out);
+        } else {
+            throw new IllegalArgumentException("Unsupported draco symbol coding: " + scheme);
+        }
+    }
+
+    private static void decodeTaggedSymbols(int numValues, int numComponents, DecoderBuffer buffer, int[] out) {
+        final RAnsSymbolDecoder tagDecoder = new RAnsSymbolDecoder(5);
+        tagDecoder.create(buffer);
+        tagDecoder.startDecoding(buffer);
+        if (tagDecoder.numSymbols == 0) {
+            throw new IllegalArgumentException("Invalid draco tagged symbols");
+        }
+
+        // the raw bits follow the tags
+        buffer.startBitDecoding(false);
+        int valueId = 0;
+        for (int i = 0; i < numValues; i += numComponents) {
+            final int bitLength = tagDecoder.decodeSymbol();
+            for (int j = 0; j < numComponents; j++) {
+                out[valueId++] = buffer.decodeLeastSignificantBits(bitLength);
+            }
+        }
+        buffer.endBitDecoding();
+    }
+
+    private static void decodeRawSymbols(int numValues, DecoderBuffer buffer, int[] out) {
+        final int maxBitLength = buffer.decodeUInt8();
+        if (maxBitLength < 1 || maxBitLength > 18) {
+            throw new IllegalArgumentException("Invalid draco symbol bit length: " + maxBitLength);
+        }
+        final RAnsSymbolDecoder decoder = new RAnsSymbolDecoder(maxBitLength);
+        decoder.create(buffer);
+        if (decoder.numSymbols == 0) {
+            throw new IllegalArgumentException("Invalid draco raw symbols");
+        }
+        decoder.startDecoding(buffer);
+        for (int i = 0; i < numValues; i++) {
+            out[i] = decoder.decodeSymbol();
+        }
+    }
+
+    /**
+     * rANS decoder of symbols with a probability table
+     */
+    private static final class RAnsSymbolDecoder {
+
+        private final int precision;
+        private final int lBase;
+
+        private int numSymbols;
+        private int[] probabilities;
+        private int[] cumulative;
+        private int[] lookup;
+
+        private byte[] buf;
+        private int start;
+        private int offset;
+        private int state;
+
+        RAnsSymbolDecoder(int uniqueSymbolsBitLength) {
+            final int precisionBits = Math.min(20, Math.max(12, (3 * uniqueSymbolsBitLength) / 2));
+            this.precision = 1 << precisionBits;
+            this.lBase = precision * 4;
+        }
+
+        /**
+         * Decode the probability table
+         */
+        void create(DecoderBuffer buffer) {
+            numSymbols = buffer.decodeVarint();
+            if (numSymbols > buffer.remaining() * 64L) {
+                throw new IllegalArgumentException("Invalid draco number of symbols: " + numSymbols);
+            }
+            probabilities = new int[numSymbols];
+            for (int i = 0; i < numSymbols; i++) {
+                final int probData = buffer.decodeUInt8();
+                // the 2 lower bits are the number of extra bytes, or 3 for a run of zero probabilities
+                final int token = probData & 3;
+                if (token == 3) {
+                    final int zeros = probData >> 2;
+                    if (i + zeros >= numSymbols) {
+                        throw new IllegalArgumentException("Invalid draco probability table");
+                    }
+                    i += zeros;
+                } else {
+                    int prob = probData >> 2;
+                    for (int b = 0; b < token; b++) {
+                        prob |= buffer.decodeUInt8() << (8 * (b + 1) - 2);
+                    }
+                    probabilities[i] = prob;
+                }
+            }
+            if (numSymbols > 0) {
+                buildLookupTable();
+            }
+        }
+
+        private void buildLookupTable() {
+            lookup = new int[precision];
+            cumulative = new int[numSymbols];
+            int cumProb = 0;
+            for (int i = 0; i < numSymbols; i++) {
+                cumulative[i] = cumProb;
+                final int next = cumProb + probabilities[i];
+                if (next > precision || next < cumProb) {
+                    throw new IllegalArgumentException("Invalid draco probability table");
+                }
+                for (int j = cumProb; j < next; j++) {
+                    lookup[j] = i;
+                }
+                cumProb = next;
+            }
+            if (cumProb != precision) {
+                throw new IllegalArgumentException("Invalid draco probability table");
+            }
+        }
+
+        /**
+         * Read the size of the encoded data and skip it in the source buffer
+         */
+        void startDecoding(DecoderBuffer buffer) {
+            final long size = buffer.decodeVarint64();
+            if (size > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid draco symbols size: " + size);
+            }
+            buf = buffer.data();
+            start = buffer.position();
+            buffer.advance(size);
+
+            final int length = (int) size;
+            if (length < 1) {
+                throw new IllegalArgumentException("Empty draco symbols block");
+            }
+            final int last = buf[start + length - 1] & 0xFF;
+            final int bytes = (last >> 6) + 1;
+            if (length < bytes) {
+                throw new IllegalArgumentException("Invalid draco symbols block");
+            }
+            offset = length - bytes;
+            int value = 0;
+            for (int i = 0; i < bytes; i++) {
+                value |= (buf[start + offset + i] & 0xFF) << (8 * i);
+            }
+            state = (value & ((1 << (8 * bytes - 2)) - 1)) + lBase;
+            if (state < 0 || state >= lBase * IO_BASE) {
+                throw new IllegalArgumentException("Invalid draco symbols block");
+            }
+        }
+
+        int decodeSymbol() {
+            while (state < lBase && offset > 0) {
+                state = state * IO_BASE + (buf[start + --offset] & 0xFF);
+            }
+            final int quo = state / precision;
+            final int rem = state % precision;
+            final int symbol = lookup[rem];
+            state = quo * probabilities[symbol] + rem - cumulative[symbol];
+            return symbol;
+        }
+    }
+}
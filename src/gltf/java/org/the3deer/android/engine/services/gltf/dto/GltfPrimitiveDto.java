@@ -1,14 +1,16 @@
 package org.the3deer.android.engine.services.gltf.dto;
 
+import org.the3deer.android.engine.model.VertexAttribute;
+
 import java.nio.Buffer;
 import java.nio.FloatBuffer;
 
 public class GltfPrimitiveDto {
-    // Geometry Data
+    // Geometry Data (attributes may be quantized)
     public Buffer indices;
-    public Buffer positions;
-    public Buffer normals;
-    public Buffer texCoords;
+    public VertexAttribute positions;
+    public VertexAttribute normals;
+    public VertexAttribute texCoords;
 
     // Skinning Data
     public Buffer jointIds;
@@ -21,5 +23,5 @@ public class GltfPrimitiveDto {
     public Integer materialIndex;
 
     // Special effects
-    public FloatBuffer tangents;
+    public VertexAttribute tangents;
 }
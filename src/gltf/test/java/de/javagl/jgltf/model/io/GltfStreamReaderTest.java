@@ -0,0 +1,135 @@
+package de.javagl.jgltf.model.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import de.javagl.jgltf.impl.v2.Accessor;
+import de.javagl.jgltf.impl.v2.BufferView;
+import de.javagl.jgltf.impl.v2.Camera;
+import de.javagl.jgltf.impl.v2.GlTF;
+import de.javagl.jgltf.model.io.v2.GltfReaderV2;
+
+/**
+ * Tests that the {@link GltfStreamReader} reads the same values as the
+ * data binding of the {@link GltfReaderV2}
+ */
+public class GltfStreamReaderTest
+{
+    /**
+     * A document where some exporters wrote the numbers as strings
+     */
+    private static final String STRING_NUMBERS = "{"
+        + "\"asset\":{\"version\":\"2.0\"},"
+        + "\"scene\":\"0\","
+        + "\"buffers\":[{\"byteLength\":\"48\"}],"
+        + "\"bufferViews\":[{\"buffer\":\"0\",\"byteOffset\":\"4\","
+        + "\"byteLength\":\" 36 \",\"target\":34962}],"
+        + "\"accessors\":[{\"bufferView\":0,\"byteOffset\":\"0\","
+        + "\"componentType\":\"5126\",\"count\":\"3\",\"type\":\"VEC3\","
+        + "\"min\":[\"-1\",-2.5,\"0.5\"],\"max\":[1,\"2.5e0\",\"3\"]}],"
+        + "\"cameras\":[{\"type\":\"perspective\",\"perspective\":"
+        + "{\"yfov\":\"0.8\",\"znear\":\"0.01\"}}]"
+        + "}";
+
+    @Test
+    public void numbersWrittenAsStrings() throws IOException
+    {
+        GlTF gltf = readStream(STRING_NUMBERS);
+
+        assertEquals(Integer.valueOf(0), gltf.getScene());
+        assertEquals(Integer.valueOf(48),
+            gltf.getBuffers().get(0).getByteLength());
+
+        BufferView bufferView = gltf.getBufferViews().get(0);
+        assertEquals(Integer.valueOf(0), bufferView.getBuffer());
+        assertEquals(Integer.valueOf(4), bufferView.getByteOffset());
+        assertEquals(Integer.valueOf(36), bufferView.getByteLength());
+        assertEquals(Integer.valueOf(34962), bufferView.getTarget());
+
+        Accessor accessor = gltf.getAccessors().get(0);
+        assertEquals(Integer.valueOf(0), accessor.getByteOffset());
+        assertEquals(Integer.valueOf(5126), accessor.getComponentType());
+        assertEquals(Integer.valueOf(3), accessor.getCount());
+        assertArrayEquals(new float[] { -1, -2.5f, 0.5f },
+            toFloats(accessor.getMin()), 0);
+        assertArrayEquals(new float[] { 1, 2.5f, 3 },
+            toFloats(accessor.getMax()), 0);
+
+        Camera camera = gltf.getCameras().get(0);
+        assertEquals(0.8f, camera.getPerspective().getYfov(), 0);
+        assertEquals(0.01f, camera.getPerspective().getZnear(), 0);
+    }
+
+    @Test
+    public void numbersWrittenAsStringsMatchTheDataBinding()
+        throws IOException
+    {
+        GlTF expected = readDataBinding(STRING_NUMBERS);
+        GlTF actual = readStream(STRING_NUMBERS);
+
+        assertEquals(expected.getScene(), actual.getScene());
+        BufferView expectedView = expected.getBufferViews().get(0);
+        BufferView actualView = actual.getBufferViews().get(0);
+        assertEquals(expectedView.getBuffer(), actualView.getBuffer());
+        assertEquals(expectedView.getByteOffset(), actualView.getByteOffset());
+        assertEquals(expectedView.getByteLength(), actualView.getByteLength());
+
+        Accessor expectedAccessor = expected.getAccessors().get(0);
+        Accessor actualAccessor = actual.getAccessors().get(0);
+        assertEquals(expectedAccessor.getComponentType(),
+            actualAccessor.getComponentType());
+        assertEquals(expectedAccessor.getCount(), actualAccessor.getCount());
+        assertArrayEquals(toFloats(expectedAccessor.getMin()),
+            toFloats(actualAccessor.getMin()), 0);
+        assertArrayEquals(toFloats(expectedAccessor.getMax()),
+            toFloats(actualAccessor.getMax()), 0);
+        assertEquals(expected.getCameras().get(0).getPerspective().getYfov(),
+            actual.getCameras().get(0).getPerspective().getYfov());
+    }
+
+    @Test
+    public void stringThatIsNotANumberIsRejected()
+    {
+        try
+        {
+            readStream("{\"asset\":{\"version\":\"2.0\"},"
+                + "\"bufferViews\":[{\"buffer\":0,\"byteLength\":\"many\"}]}");
+            fail("Expected an IOException");
+        }
+        catch (IOException e)
+        {
+            // Expected
+        }
+    }
+
+    private static GlTF readStream(String json) throws IOException
+    {
+        return new GltfStreamReader(null).readV2(
+            ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static GlTF readDataBinding(String json) throws IOException
+    {
+        GltfReaderV2 reader = new GltfReaderV2();
+        return reader.read(new ByteArrayInputStream(
+            json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static float[] toFloats(Number[] numbers)
+    {
+        float[] result = new float[numbers.length];
+        for (int i = 0; i < numbers.length; i++)
+        {
+            result[i] = numbers[i].floatValue();
+        }
+        return result;
+    }
+}
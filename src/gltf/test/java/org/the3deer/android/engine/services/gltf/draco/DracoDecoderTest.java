@@ -0,0 +1,341 @@
+package org.the3deer.android.engine.services.gltf.draco;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Decodes a quad (2 triangles, 4 points) compressed with the sequential and the edgebreaker methods.
+ * <p>
+ * The streams are written as the reference encoder writes them (see {@link Bitstream}), and the expected points
+ * are the ones the reference decoder gives for them: the edgebreaker connectivity and the depth first traversal
+ * define the order of the values, so the corrections below are listed in that order.
+ */
+public class DracoDecoderTest {
+
+    private static final int POSITION_ID = 0;
+    private static final int NORMAL_ID = 1;
+    private static final int TEX_COORD_ID = 2;
+
+    // quantized positions (8 bits) of the points 0..3, and their values once dequantized (min -64,-64,1, range 127.5)
+    private static final float[] POSITIONS = {
+            -64, -64, 1,
+            63.5f, -64, 1,
+            -64, 63.5f, 1,
+            63.5f, 63.5f, 1};
+
+    // octahedral coordinates (8 bits) (127,254), (127,127), (254,127) and (0,127)
+    private static final float[] NORMALS = {
+            0, 0, 1,
+            1, 0, 0,
+            0, 1, 0,
+            0, -1, 0};
+
+    private static final int[] INDICES = {0, 1, 2, 2, 1, 3};
+
+    /**
+     * Sequential connectivity with compressed indices, positions predicted from the previous value and entropy
+     * coded, normals without prediction and texture coordinates stored as floats
+     */
+    @Test
+    public void sequentialMesh() {
+        final Bitstream stream = header(0);
+
+        // connectivity: faces, points, compressed indices (index deltas with the sign in the lowest bit)
+        stream.varint(2).varint(4).uint8(0);
+        stream.symbols(3, new int[]{1024, 0, 1024, 1024, 1024}, 0, 2, 2, 0, 3, 4);
+
+        // 1 attributes decoder with 3 attributes: position, normal and tex coord
+        stream.uint8(1);
+        stream.varint(3);
+        stream.uint8(DracoMesh.POSITION).uint8(PointAttribute.DT_FLOAT32).uint8(3).uint8(0).varint(POSITION_ID);
+        stream.uint8(DracoMesh.NORMAL).uint8(PointAttribute.DT_FLOAT32).uint8(3).uint8(0).varint(NORMAL_ID);
+        stream.uint8(DracoMesh.TEX_COORD).uint8(PointAttribute.DT_FLOAT32).uint8(2).uint8(0).varint(TEX_COORD_ID);
+        stream.uint8(SequentialAttributeDecoder.QUANTIZATION).uint8(SequentialAttributeDecoder.NORMALS)
+                .uint8(SequentialAttributeDecoder.GENERIC);
+
+        // positions (0,0,0) (255,0,0) (0,255,0) (255,255,0): differences, wrapped in [0, 255] and zigzag coded
+        stream.int8(PredictionScheme.DIFFERENCE).int8(PredictionTransform.WRAP).uint8(1);
+        stream.symbols(2, new int[]{2048, 1536, 512}, 0, 0, 0, 1, 0, 0, 2, 1, 0, 1, 0, 0);
+        stream.int32(0).int32(255);
+
+        // normals: no prediction, zigzag coded
+        stream.int8(PredictionScheme.NONE).uint8(0).uint8(2);
+        stream.uint16(254).uint16(508).uint16(254).uint16(254).uint16(508).uint16(254).uint16(0).uint16(254);
+
+        // tex coords
+        stream.float32(0).float32(1).float32(1).float32(1).float32(0).float32(0).float32(1).float32(0);
+
+        // dequantization of the positions, and octahedral quantization
+        stream.float32(-64).float32(-64).float32(1).float32(127.5f).uint8(8);
+        stream.uint8(8);
+
+        final DracoMesh mesh = DracoDecoder.decode(stream.toByteBuffer());
+
+        assertEquals(4, mesh.getNumPoints());
+        assertArrayEquals(INDICES, toArray(mesh.getIndices()));
+        assertAttribute(mesh, POSITION_ID, DracoMesh.POSITION, 3, POSITIONS, 0);
+        assertAttribute(mesh, NORMAL_ID, DracoMesh.NORMAL, 3, NORMALS, 1e-6f);
+        assertAttribute(mesh, TEX_COORD_ID, DracoMesh.TEX_COORD, 2, new float[]{0, 1, 1, 1, 0, 0, 1, 0}, 0);
+    }
+
+    /**
+     * Edgebreaker connectivity (symbols E and R), positions predicted with the parallelogram,
+     * normals without prediction and texture coordinates predicted from the previous value
+     */
+    @Test
+    public void edgebreakerMesh() {
+        final Bitstream stream = header(1);
+
+        // standard traversal, 4 vertices, 2 faces, no attribute seams, 2 symbols, no splits
+        stream.uint8(0).varint(4).varint(2).uint8(0).varint(2).varint(0);
+        stream.varint(0);
+
+        // symbols: E (1 + 11) then R (1 + 10). The first face is (0,1,2) and the R face (2,1,3)
+        stream.bits(1, 1, 1, 1, 0, 1);
+        // start face: not interior
+        stream.rabs(false);
+
+        // 1 attributes decoder, for the positions (no attribute data), traversing the vertices depth first.
+        // The values are in the order the traversal reaches the points: 1, 2, 0, 3
+        stream.uint8(1);
+        stream.int8(-1).uint8(0).uint8(MeshTraversal.DEPTH_FIRST);
+        stream.varint(3);
+        stream.uint8(DracoMesh.POSITION).uint8(PointAttribute.DT_FLOAT32).uint8(3).uint8(0).varint(POSITION_ID);
+        stream.uint8(DracoMesh.NORMAL).uint8(PointAttribute.DT_FLOAT32).uint8(3).uint8(0).varint(NORMAL_ID);
+        stream.uint8(DracoMesh.TEX_COORD).uint8(PointAttribute.DT_FLOAT32).uint8(2).uint8(0).varint(TEX_COORD_ID);
+        stream.uint8(SequentialAttributeDecoder.QUANTIZATION).uint8(SequentialAttributeDecoder.NORMALS)
+                .uint8(SequentialAttributeDecoder.QUANTIZATION);
+
+        // positions: the first 3 values have no parallelogram, so they are differences. The point 3 is
+        // predicted from the face (2,1,0): 1 + 2 - 0, so its correction is 0
+        stream.int8(PredictionScheme.PARALLELOGRAM).int8(PredictionTransform.WRAP).uint8(0).uint8(1);
+        stream.uint8(1).uint8(0).uint8(0);
+        stream.uint8(2).uint8(1).uint8(0);
+        stream.uint8(0).uint8(2).uint8(0);
+        stream.uint8(0).uint8(0).uint8(0);
+        stream.int32(0).int32(255);
+
+        // normals of the points 1, 2, 0 and 3, zigzag coded
+        stream.int8(PredictionScheme.NONE).uint8(0).uint8(2);
+        stream.uint16(254).uint16(254).uint16(508).uint16(254).uint16(254).uint16(508).uint16(0).uint16(254);
+
+        // tex coords (1023,0) (0,1023) (0,0) (512,768) of the points 1, 2, 0 and 3: differences wrapped in [0, 1023]
+        stream.int8(PredictionScheme.DIFFERENCE).int8(PredictionTransform.WRAP).uint8(0).uint8(2);
+        stream.uint16(1).uint16(0).uint16(2).uint16(1).uint16(0).uint16(2).uint16(1023).uint16(511);
+        stream.int32(0).int32(1023);
+
+        // dequantization of the positions, octahedral quantization and dequantization of the tex coords
+        stream.float32(-64).float32(-64).float32(1).float32(127.5f).uint8(8);
+        stream.uint8(8);
+        stream.float32(0).float32(0).float32(1023 / 1024f).uint8(10);
+
+        // the data doesn't start at the beginning of the buffer, like in a glb
+        final ByteBuffer data = stream.toByteBuffer();
+        final ByteBuffer direct = ByteBuffer.allocateDirect(data.remaining() + 8);
+        direct.position(8);
+        direct.put(data);
+        direct.position(8);
+        final DracoMesh mesh = DracoDecoder.decode(direct);
+
+        assertEquals(8, direct.position());
+        assertEquals(4, mesh.getNumPoints());
+        assertArrayEquals(INDICES, toArray(mesh.getIndices()));
+        assertAttribute(mesh, POSITION_ID, DracoMesh.POSITION, 3, POSITIONS, 0);
+        assertAttribute(mesh, NORMAL_ID, DracoMesh.NORMAL, 3, NORMALS, 1e-6f);
+        assertAttribute(mesh, TEX_COORD_ID, DracoMesh.TEX_COORD, 2,
+                new float[]{0, 0, 1023 / 1024f, 0, 0, 1023 / 1024f, 0.5f, 0.75f}, 0);
+    }
+
+    @Test
+    public void truncatedMeshIsRejected() {
+        final Bitstream stream = header(0);
+        stream.varint(2).varint(4).uint8(1).uint8(0).uint8(1);
+        try {
+            DracoDecoder.decode(stream.toByteBuffer());
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static Bitstream header(int method) {
+        // version 2.2, triangular mesh, no metadata
+        return new Bitstream().ascii("DRACO").uint8(2).uint8(2).uint8(1).uint8(method).uint16(0);
+    }
+
+    private static void assertAttribute(DracoMesh mesh, int uniqueId, int type, int components, float[] expected,
+                                        float delta) {
+        final DracoMesh.Attribute attribute = mesh.getAttribute(uniqueId);
+        assertEquals(type, attribute.getType());
+        assertEquals(components, attribute.getComponents());
+        assertEquals(0x1406, attribute.getComponentType());
+        final FloatBuffer values = attribute.getData().asFloatBuffer();
+        final float[] actual = new float[values.remaining()];
+        values.get(actual);
+        assertArrayEquals(Arrays.toString(actual), expected, actual, delta);
+    }
+
+    private static int[] toArray(IntBuffer buffer) {
+        final int[] ret = new int[buffer.remaining()];
+        buffer.duplicate().get(ret);
+        return ret;
+    }
+
+    /**
+     * Writer of the draco primitives: little endian numbers, varints, bits and the rANS coded data
+     */
+    private static final class Bitstream {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Bitstream ascii(String value) {
+            final byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+            out.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        Bitstream uint8(int value) {
+            out.write(value);
+            return this;
+        }
+
+        Bitstream int8(int value) {
+            return uint8(value & 0xFF);
+        }
+
+        Bitstream uint16(int value) {
+            return uint8(value).uint8(value >> 8);
+        }
+
+        Bitstream int32(int value) {
+            return uint16(value).uint16(value >> 16);
+        }
+
+        Bitstream float32(float value) {
+            return int32(Float.floatToIntBits(value));
+        }
+
+        Bitstream varint(long value) {
+            while (value >= 0x80) {
+                uint8((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            return uint8((int) value);
+        }
+
+        /**
+         * Bits read from the least significant one of every byte, preceded by their size in bytes
+         */
+        Bitstream bits(int... bits) {
+            final byte[] bytes = new byte[(bits.length + 7) / 8];
+            for (int i = 0; i < bits.length; i++) {
+                bytes[i / 8] |= bits[i] << (i % 8);
+            }
+            varint(bytes.length);
+            out.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        /**
+         * Bits coded with rABS, with the probability of the zeros computed like the reference encoder does
+         */
+        Bitstream rabs(boolean... bits) {
+            int zeros = 0;
+            for (boolean bit : bits) {
+                if (!bit) zeros++;
+            }
+            final long zeroProbRaw = (long) (zeros / (double) Math.max(1, bits.length) * 256.0 + 0.5);
+            int probZero = zeroProbRaw < 255 ? (int) zeroProbRaw : 255;
+            if (probZero == 0) probZero = 1;
+
+            final int lBase = 4096;
+            final int p = 256 - probZero;
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            int state = lBase;
+            for (int i = bits.length - 1; i >= 0; i--) {
+                final int ls = bits[i] ? p : probZero;
+                if (state >= lBase / 256 * 256 * ls) {
+                    data.write(state % 256);
+                    state /= 256;
+                }
+                state = state / ls * 256 + state % ls + (bits[i] ? 0 : p);
+            }
+            writeState(data, state - lBase);
+
+            uint8(probZero).varint(data.size());
+            out.write(data.toByteArray(), 0, data.size());
+            return this;
+        }
+
+        /**
+         * Symbols coded with rANS (raw scheme), with the specified probability table
+         *
+         * @param maxBitLength  bit length of the biggest symbol
+         * @param probabilities probability of every symbol, summing the precision (4096 for up to 8 bits)
+         * @param symbols       the symbols
+         */
+        Bitstream symbols(int maxBitLength, int[] probabilities, int... symbols) {
+            uint8(1).uint8(maxBitLength).varint(probabilities.length);
+            final int[] cumulative = new int[probabilities.length];
+            int total = 0;
+            for (int i = 0; i < probabilities.length; i++) {
+                final int prob = probabilities[i];
+                if (prob == 0) {
+                    // run of 1 zero probability
+                    uint8(3);
+                } else if (prob < 1 << 6) {
+                    uint8(prob << 2);
+                } else {
+                    uint8(((prob & 0x3F) << 2) | 1).uint8(prob >> 6);
+                }
+                cumulative[i] = total;
+                total += prob;
+            }
+            final int precision = 1 << Math.max(12, Math.min(20, 3 * maxBitLength / 2));
+            assertEquals("probabilities", precision, total);
+
+            final long lBase = 4L * precision;
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            long state = lBase;
+            for (int i = symbols.length - 1; i >= 0; i--) {
+                final int prob = probabilities[symbols[i]];
+                while (state >= lBase / precision * 256 * prob) {
+                    data.write((int) (state % 256));
+                    state /= 256;
+                }
+                state = state / prob * precision + state % prob + cumulative[symbols[i]];
+            }
+            writeState(data, (int) (state - lBase));
+
+            varint(data.size());
+            out.write(data.toByteArray(), 0, data.size());
+            return this;
+        }
+
+        /**
+         * The final state of the coder, with its size in bytes (minus 1) in the 2 upper bits
+         */
+        private static void writeState(ByteArrayOutputStream data, int state) {
+            final int bytes = state < 1 << 6 ? 1 : state < 1 << 14 ? 2 : state < 1 << 22 ? 3 : 4;
+            final int value = state + ((bytes - 1) << (8 * bytes - 2));
+            for (int i = 0; i < bytes; i++) {
+                data.write(value >>> (8 * i));
+            }
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
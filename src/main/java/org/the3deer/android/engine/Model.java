@@ -3,6 +3,7 @@ package org.the3deer.android.engine;
 import org.the3deer.android.engine.camera.CameraUtils;
 import org.the3deer.android.engine.model.Camera;
 import org.the3deer.android.engine.model.Dimensions;
+import org.the3deer.android.engine.model.Element;
 import org.the3deer.android.engine.model.Material;
 import org.the3deer.android.engine.model.ModelEvent;
 import org.the3deer.android.engine.model.Node;
@@ -11,8 +12,11 @@ import org.the3deer.android.engine.model.Scene;
 import org.the3deer.android.engine.model.Screen;
 import org.the3deer.android.engine.model.Texture;
 import org.the3deer.android.engine.services.LoadListener;
+import org.the3deer.android.engine.services.LoadPlanner;
 import org.the3deer.android.engine.services.LoaderRegistry;
 import org.the3deer.android.engine.services.LoaderTask;
+import org.the3deer.android.engine.util.KtxTexture;
+import org.the3deer.android.engine.util.TexturePreparer;
 import org.the3deer.android.util.ContentUtils;
 import org.the3deer.util.event.EventManager;
 import org.the3deer.util.io.IOUtils;
@@ -20,10 +24,15 @@ import org.the3deer.util.io.IOUtils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -84,6 +93,9 @@ public class Model implements LoadListener {
     // other variables
     private long startTime;
 
+    // current loading, so it can be cancelled
+    private volatile LoaderTask loaderTask;
+
     public Model(URI uri, String name, String type) {
         this(uri, name, type, null);
     }
@@ -242,12 +254,22 @@ public class Model implements LoadListener {
         // update model
         setStatus(Model.Status.LOADING, "Loading model: " + modelUri);
 
-        // if the model is a zip file, we need to extract it to the cache directory
+        // if the model is a zip file, the entries are read from the zip when they are referenced
+        URI zipUri = null;
         if ("zip".equalsIgnoreCase(modelType) || modelUri.toString().toLowerCase().endsWith(".zip")) {
 
-            // extract zip to disk
-            final Map<String, URI> zipFiles = ContentUtils.extract(modelUri);
+            final Map<String, URI> zipFiles = new LinkedHashMap<>();
+            zipUri = ContentUtils.openZip(modelUri);
+            if (zipUri != null) {
+                for (String name : ContentUtils.getZipEntries(zipUri)) {
+                    zipFiles.put(name, ContentUtils.getZipEntryUri(zipUri, name));
+                }
+            } else {
+                // not a local file (i.e. an asset). extract it to disk
+                zipFiles.putAll(ContentUtils.extract(modelUri));
+            }
             if (zipFiles.isEmpty()) {
+                if (zipUri != null) ContentUtils.closeZip(zipUri);
                 throw new IOException("Failed to extract zip file or zip is empty: " + modelUri);
             }
 
@@ -270,6 +292,7 @@ public class Model implements LoadListener {
                 switch (fileExtension) {
                     case ".obj":
                     case ".stl":
+                    case ".ply":
                     case ".dae":
                     case ".gltf":
                     case ".fbx":
@@ -283,15 +306,26 @@ public class Model implements LoadListener {
             if (modelFile != null) {
                 modelUri = modelFile;
                 this.uriModel = modelFile;
-                logger.info("Using model from cache: " + modelFile);
+                logger.info("Using model from zip: " + modelFile);
 
                 // Set current directory for relative path resolution
-                ContentUtils.setCurrentDir(new java.io.File(modelFile.getPath()).getParentFile());
+                if (zipUri == null) {
+                    ContentUtils.setCurrentDir(new java.io.File(modelFile.getPath()).getParentFile());
+                }
             } else {
+                if (zipUri != null) ContentUtils.closeZip(zipUri);
                 throw new IllegalArgumentException("No supported model found in zip: " + modelUri);
             }
         }
 
+        try {
+            load(modelUri, modelType);
+        } finally {
+            if (zipUri != null) ContentUtils.closeZip(zipUri);
+        }
+    }
+
+    private void load(URI modelUri, String modelType) {
         final LoaderTask loaderTask = LoaderRegistry.get(modelType, modelUri, this);
         if (loaderTask != null) {
 
@@ -303,7 +337,16 @@ public class Model implements LoadListener {
             }
 
             logger.info("Loading " + modelType + " object from: " + modelUri);
-            loaderTask.execute(false);
+            this.loaderTask = loaderTask;
+            try {
+                loaderTask.execute(false);
+            } finally {
+                this.loaderTask = null;
+            }
+            if (loaderTask.isCancelled()) {
+                setStatus(Status.WARNING, "Loading cancelled");
+                return;
+            }
 
             // log success
             logger.info("Loading model finished -------------------------------------- ");
@@ -393,6 +436,27 @@ public class Model implements LoadListener {
             }
         }
 
+        // apply the load plan, so the model fits in memory
+        final LoaderTask task = this.loaderTask;
+        final LoadPlanner.Plan plan = task != null ? task.getPlan() : LoadPlanner.Plan.FULL;
+        if (plan.isQuantized()) {
+            logger.info("Quantizing attributes... objects: " + objects.size());
+            for (Object3D object : objects) {
+                object.quantize();
+            }
+        }
+
+        // decode the textures here (loader thread), so the GL thread only uploads them
+        // the materials are shared by the objects and their elements, so every one is prepared once
+        final Set<Material> prepared = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Object3D object : objects) {
+            prepareTextures(object.getMaterial(), prepared, plan.getMaxTextureSize());
+            if (object.getElements() == null) continue;
+            for (Element element : object.getElements()) {
+                prepareTextures(element.getMaterial(), prepared, plan.getMaxTextureSize());
+            }
+        }
+
 
         // show object errors
         List<String> allErrors = new ArrayList<>();
@@ -474,6 +538,21 @@ public class Model implements LoadListener {
         CURRENT.remove();
     }
 
+    /**
+     * Decode the textures of the material, unless it was already prepared
+     *
+     * @param material the material of an object or of one of its elements. It may be null
+     * @param prepared the materials already prepared, compared by identity
+     * @param size     max width or height of the textures
+     */
+    private static void prepareTextures(Material material, Set<Material> prepared, int size) {
+        if (material == null || !prepared.add(material)) return;
+        TexturePreparer.prepare(material.getColorTexture(), size);
+        TexturePreparer.prepare(material.getNormalTexture(), size);
+        TexturePreparer.prepare(material.getEmissiveTexture(), size);
+        TexturePreparer.prepare(material.getTransmissionTexture(), size);
+    }
+
     private void loadTextureDatas(Texture texture) {
 
         // check texture
@@ -481,7 +560,7 @@ public class Model implements LoadListener {
         ;
 
         // check texture data
-        if (texture.getData() != null) return; // already loaded
+        if (texture.getData() != null || texture.getKtx() != null) return; // already loaded
 
         // check file
         if (texture.getFile() == null) return;
@@ -501,6 +580,22 @@ public class Model implements LoadListener {
         // debug
         logger.info("Loading texture file: " + textureFile);
 
+        // compressed textures are memory mapped, so the levels are not copied
+        final String lowerCaseFile = textureFile.toLowerCase(Locale.ROOT);
+        if (lowerCaseFile.endsWith(".ktx") || lowerCaseFile.endsWith(".ktx2")) {
+            try {
+                final ByteBuffer mapped = ContentUtils.map(textureUri);
+                if (mapped != null) {
+                    texture.setUri(textureUri);
+                    texture.setKtx(KtxTexture.read(mapped));
+                    logger.info("Texture successfully mapped: " + textureFile + ", " + texture.getKtx());
+                    return;
+                }
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Error mapping texture file '" + textureFile + "': " + ex.getMessage());
+            }
+        }
+
         // download texture
         try (InputStream stream = ContentUtils.getInputStream(textureUri)) {
 
@@ -522,6 +617,11 @@ public class Model implements LoadListener {
     }
 
     public void dispose() {
+        // stop loading, if the model is removed before it's loaded
+        final LoaderTask current = this.loaderTask;
+        if (current != null) {
+            current.cancel();
+        }
         this.messages.clear();
     }
 
@@ -4,13 +4,15 @@ package org.the3deer.android.engine.animation;
 import org.the3deer.android.engine.model.AnimatedModel;
 import org.the3deer.android.engine.model.Node;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
  * 
  * Represents an animation that can applied to an {@link AnimatedModel} . It
- * contains the length of the animation in seconds, and a list of
- * {@link KeyFrame}s.
+ * contains the length of the animation in seconds, and either a list of
+ * {@link Track}s (one per joint and channel) or a list of {@link KeyFrame}s (legacy).
  * 
  * @author andresoviedo
  * 
@@ -23,6 +25,10 @@ public class Animation {
 	private final String name;//in seconds
 	private final float length;//in seconds
 	private final KeyFrame[] keyFrames;
+	private final Track[] tracks;
+	// the nodes animated, and the index of the node of every track
+	private final String[] targets;
+	private final int[] trackTargets;
 	private boolean initialized;
 	private Node rootNode;
 
@@ -36,6 +42,34 @@ public class Animation {
 		this.name = name;
 		this.keyFrames = frames;
 		this.length = lengthInSeconds;
+		this.tracks = null;
+		this.targets = null;
+		this.trackTargets = null;
+	}
+
+	/**
+	 * @param name
+	 * @param tracks the tracks, one per joint and channel. The length of the animation is the end of the longest track
+	 */
+	public Animation(String name, Track[] tracks) {
+		this.name = name;
+		this.keyFrames = null;
+		this.tracks = tracks;
+
+		float length = 0;
+		final List<String> targets = new ArrayList<>();
+		this.trackTargets = new int[tracks.length];
+		for (int i = 0; i < tracks.length; i++) {
+			length = Math.max(length, tracks[i].getEndTime());
+			int target = targets.indexOf(tracks[i].getTarget());
+			if (target == -1) {
+				target = targets.size();
+				targets.add(tracks[i].getTarget());
+			}
+			this.trackTargets[i] = target;
+		}
+		this.length = length;
+		this.targets = targets.toArray(new String[0]);
 	}
 
 	public String getName() {
@@ -74,7 +108,34 @@ public class Animation {
 		return keyFrames;
 	}
 
+	/**
+	 * @return the tracks, or null if this is a keyframe animation
+	 */
+	public Track[] getTracks() {
+		return tracks;
+	}
+
+	/**
+	 * @return the ids of the nodes animated by the tracks
+	 */
+	public String[] getTargets() {
+		return targets;
+	}
+
+	/**
+	 * @param track the track index
+	 * @return the index in {@link #getTargets()} of the node animated by the track
+	 */
+	public int getTrackTarget(int track) {
+		return trackTargets[track];
+	}
+
 	public void debugKeyFrames(){
+		if (tracks != null) {
+			for (int i=0; i<tracks.length && i<10; i++){
+				logger.finest("Track["+i+"] : " + tracks[i]);
+			}
+		}
 		if (keyFrames == null) return;
 
 		for (int i=0; i<keyFrames.length; i++){
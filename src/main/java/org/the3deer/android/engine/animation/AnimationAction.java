@@ -0,0 +1,271 @@
+package org.the3deer.android.engine.animation;
+
+/**
+ * The playback of one {@link Animation} in an {@link AnimationMixer}.
+ * <p>
+ * Every action has its own clock, so the clips blended can run at different speeds, and a weight,
+ * that can be faded in or out over time. Actions are created with {@link AnimationMixer#clipAction(Animation, int)}.
+ * <pre>
+ * final AnimationAction walk = mixer.clipAction(walkAnimation);
+ * walk.play();
+ * ...
+ * walk.crossFadeTo(mixer.clipAction(runAnimation), 0.3f);
+ * </pre>
+ *
+ * @author andresoviedo
+ */
+public final class AnimationAction {
+
+    private final Animation animation;
+    private final int layer;
+
+    // clock
+    private float time;
+    private float speed = 1;
+    private boolean loop = true;
+    private boolean clampWhenFinished;
+    private boolean playing;
+    private boolean finished;
+
+    // weight & fade
+    private float weight = 1;
+    private float fadeTarget;
+    private float fadeRate;
+    private boolean stopWhenFaded;
+
+    // binding: the node of every target (or -1), the target of every track and the keyframe found in the previous frame
+    int[] targetNodes;
+    int[] trackNodes;
+    boolean[] targetEuler;
+    int[] cursors;
+
+    AnimationAction(Animation animation, int layer) {
+        this.animation = animation;
+        this.layer = layer;
+    }
+
+    public Animation getAnimation() {
+        return animation;
+    }
+
+    /**
+     * @return the index of the layer of the mixer where the action is blended
+     */
+    public int getLayer() {
+        return layer;
+    }
+
+    /**
+     * Start (or resume) the playback. A finished one-shot action is restarted
+     */
+    public AnimationAction play() {
+        if (finished) {
+            time = speed < 0 ? animation.getLength() : 0;
+            finished = false;
+        }
+        playing = true;
+        return this;
+    }
+
+    /**
+     * Pause the playback, keeping the time
+     */
+    public AnimationAction pause() {
+        playing = false;
+        return this;
+    }
+
+    /**
+     * Stop the playback, rewind the clock and cancel any fade
+     */
+    public AnimationAction stop() {
+        playing = false;
+        finished = false;
+        time = 0;
+        fadeRate = 0;
+        stopWhenFaded = false;
+        return this;
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * @return true if the action is a one-shot and it reached the end of the animation
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public float getTime() {
+        return time;
+    }
+
+    /**
+     * @param time the time of the animation, in seconds
+     */
+    public AnimationAction setTime(float time) {
+        this.time = time;
+        return this;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @param speed the playback speed. 1 is the normal speed, negative values play the animation backwards
+     */
+    public AnimationAction setSpeed(float speed) {
+        this.speed = speed;
+        return this;
+    }
+
+    public boolean isLoop() {
+        return loop;
+    }
+
+    /**
+     * @param loop true to repeat the animation, false to play it once
+     */
+    public AnimationAction setLoop(boolean loop) {
+        this.loop = loop;
+        return this;
+    }
+
+    /**
+     * @param clampWhenFinished true to hold the last frame of a one-shot action, false to stop it
+     */
+    public AnimationAction setClampWhenFinished(boolean clampWhenFinished) {
+        this.clampWhenFinished = clampWhenFinished;
+        return this;
+    }
+
+    public float getWeight() {
+        return weight;
+    }
+
+    /**
+     * @param weight the weight of the action in its layer, usually 0 to 1. Cancels any fade
+     */
+    public AnimationAction setWeight(float weight) {
+        this.weight = weight;
+        this.fadeRate = 0;
+        this.stopWhenFaded = false;
+        return this;
+    }
+
+    /**
+     * Change the weight linearly over time
+     *
+     * @param weight   the final weight
+     * @param duration the duration of the fade, in seconds
+     */
+    public AnimationAction fadeTo(float weight, float duration) {
+        stopWhenFaded = false;
+        if (duration <= 0 || weight == this.weight) {
+            this.weight = weight;
+            this.fadeRate = 0;
+        } else {
+            this.fadeTarget = weight;
+            this.fadeRate = (weight - this.weight) / duration;
+        }
+        return this;
+    }
+
+    /**
+     * Play the action, fading its weight to 1.
+     * <p>
+     * If the action is already playing (i.e. it's being faded out), the fade starts from its current weight,
+     * so a quick crossfade back and forth doesn't pop. Otherwise it starts from 0
+     *
+     * @param duration the duration of the fade, in seconds
+     */
+    public AnimationAction fadeIn(float duration) {
+        if (!playing) {
+            weight = 0;
+        }
+        fadeTo(1, duration);
+        return play();
+    }
+
+    /**
+     * Fade the weight to 0, and then stop the action
+     *
+     * @param duration the duration of the fade, in seconds
+     */
+    public AnimationAction fadeOut(float duration) {
+        fadeTo(0, duration);
+        if (weight == 0) {
+            stop();
+        } else {
+            stopWhenFaded = true;
+        }
+        return this;
+    }
+
+    /**
+     * Fade out this action while fading in the other one
+     *
+     * @param other    the action to play. It should be in the same layer
+     * @param duration the duration of the crossfade, in seconds
+     * @return the other action
+     */
+    public AnimationAction crossFadeTo(AnimationAction other, float duration) {
+        if (other != this) {
+            fadeOut(duration);
+            other.fadeIn(duration);
+        }
+        return other;
+    }
+
+    /**
+     * Advance the clock and the fade
+     *
+     * @param delta the elapsed time, in seconds
+     */
+    void advance(float delta) {
+        if (!playing) return;
+
+        if (fadeRate != 0) {
+            weight += fadeRate * delta;
+            if (fadeRate > 0 ? weight >= fadeTarget : weight <= fadeTarget) {
+                weight = fadeTarget;
+                fadeRate = 0;
+                if (stopWhenFaded) {
+                    stop();
+                    return;
+                }
+            }
+        }
+
+        final float length = animation.getLength();
+        if (length <= 0) {
+            time = 0;
+            return;
+        }
+        time += delta * speed;
+        if (loop) {
+            time %= length;
+            if (time < 0) time += length;
+        } else if (time >= length || time < 0) {
+            time = time < 0 ? 0 : length;
+            finished = true;
+            if (!clampWhenFinished) {
+                playing = false;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AnimationAction{" +
+                "animation='" + animation.getName() + '\'' +
+                ", layer=" + layer +
+                ", time=" + time +
+                ", weight=" + weight +
+                ", playing=" + playing +
+                '}';
+    }
+}
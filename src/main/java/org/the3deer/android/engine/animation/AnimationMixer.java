@@ -0,0 +1,653 @@
+package org.the3deer.android.engine.animation;
+
+import org.the3deer.android.engine.model.Node;
+import org.the3deer.util.math.Quaternion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Blends several {@link Animation}s on the same hierarchy of nodes.
+ * <p>
+ * The animations are played by {@link AnimationAction}s, that are grouped in {@link Layer}s:
+ * <ul>
+ *     <li>The actions of a layer are blended by weight. If the weights sum less than 1, the rest is
+ *     taken from the pose of the layers below (the bind pose for the first layer)</li>
+ *     <li>An override layer replaces the pose of the layers below, by the weight of the layer</li>
+ *     <li>An additive layer adds the difference between its animations and the bind pose</li>
+ *     <li>A layer can be masked, so it only affects some joints, i.e. the upper body</li>
+ * </ul>
+ * The blending is done on the local transform vectors (see {@link Track}) of all the nodes, that are
+ * resolved to dense indices when the mixer is bound to the scene. So the update doesn't allocate memory.
+ * <p>
+ * Only {@link Animation}s made of {@link Track}s can be mixed.
+ *
+ * @author andresoviedo
+ */
+public final class AnimationMixer {
+
+    private static final Logger logger = Logger.getLogger(AnimationMixer.class.getSimpleName());
+
+    // longest step of the clock, so the animations don't jump after a pause (i.e. the app was in background)
+    private static final float MAX_DELTA = 0.25f;
+
+    /**
+     * A group of actions blended together
+     */
+    public static final class Layer {
+
+        private final boolean additive;
+        private final List<AnimationAction> actions = new ArrayList<>();
+        private float weight = 1;
+        // joint id -> weight. the weight applies to the joint and its descendants
+        private final Map<String, Float> jointWeights = new LinkedHashMap<>();
+        // per node: the weight of the mask. null if not masked
+        private float[] mask;
+        private boolean maskDirty;
+
+        private Layer(boolean additive) {
+            this.additive = additive;
+        }
+
+        public boolean isAdditive() {
+            return additive;
+        }
+
+        public float getWeight() {
+            return weight;
+        }
+
+        /**
+         * @param weight the influence of the layer, 0 to 1
+         */
+        public Layer setWeight(float weight) {
+            this.weight = weight;
+            return this;
+        }
+
+        /**
+         * Mask the layer. Once a joint is set, the joints not set (nor any of their ancestors) are not affected by the layer
+         *
+         * @param jointId the id or name of the joint
+         * @param weight  the weight of the layer for the joint and its descendants, 0 to 1
+         */
+        public Layer setJointWeight(String jointId, float weight) {
+            jointWeights.put(jointId, weight);
+            maskDirty = true;
+            return this;
+        }
+
+        /**
+         * Remove the mask, so all the joints are affected by the layer
+         */
+        public Layer clearMask() {
+            jointWeights.clear();
+            maskDirty = true;
+            return this;
+        }
+
+        public List<AnimationAction> getActions() {
+            return actions;
+        }
+    }
+
+    private final List<Layer> layers = new ArrayList<>();
+    private float timeScale = 1;
+    private long lastUpdate = -1;
+
+    // the scene bound: all the nodes, in depth-first order, and the parent of every node (or -1)
+    private List<Node> boundRootNodes;
+    private Node[] nodes;
+    private int[] parents;
+    private Map<Node, Integer> nodeIndices;
+
+    // per node: the local transform vectors. float[nodes * Track.SIZE]
+    private float[] bindTransforms;
+    private float[] sample;
+    private float[] accumulated;
+    private float[] result;
+    // per node: the weight accumulated in the current layer, and the layer stamp
+    private float[] accumulatedWeights;
+    private int[] stamps;
+    private int stamp;
+    // the nodes touched by the current layer
+    private int[] touched;
+    // per node: whether it's animated by any action
+    private boolean[] animated;
+    // per node: the local matrix. float[nodes * 16]
+    private float[] pose;
+
+    public AnimationMixer() {
+        layers.add(new Layer(false));
+    }
+
+    /**
+     * @return the layer, where 0 is the base layer
+     */
+    public Layer getLayer(int index) {
+        return layers.get(index);
+    }
+
+    public int getLayerCount() {
+        return layers.size();
+    }
+
+    /**
+     * Add a layer on top of the others
+     *
+     * @param additive true to add the animations to the layers below, false to override them
+     * @return the layer
+     */
+    public Layer addLayer(boolean additive) {
+        final Layer layer = new Layer(additive);
+        layers.add(layer);
+        return layer;
+    }
+
+    /**
+     * @param timeScale the speed of all the actions. 1 is the normal speed
+     */
+    public void setTimeScale(float timeScale) {
+        this.timeScale = timeScale;
+    }
+
+    public float getTimeScale() {
+        return timeScale;
+    }
+
+    /**
+     * @return the action of the animation in the base layer
+     */
+    public AnimationAction clipAction(Animation animation) {
+        return clipAction(animation, 0);
+    }
+
+    /**
+     * Get or create the action of an animation. The action is created stopped
+     *
+     * @param animation the animation, made of {@link Track}s
+     * @param layer     the index of the layer
+     * @return the action
+     */
+    public AnimationAction clipAction(Animation animation, int layer) {
+        if (animation.getTracks() == null) {
+            throw new IllegalArgumentException("Animation '" + animation.getName() + "' has no tracks");
+        }
+        final List<AnimationAction> actions = layers.get(layer).actions;
+        for (int i = 0; i < actions.size(); i++) {
+            if (actions.get(i).getAnimation() == animation) {
+                return actions.get(i);
+            }
+        }
+        final AnimationAction action = new AnimationAction(animation, layer);
+        if (nodes != null) {
+            bindAction(action);
+        }
+        actions.add(action);
+        return action;
+    }
+
+    /**
+     * Crossfade from all the actions playing in the base layer to the animation
+     *
+     * @param animation the animation to play
+     * @param duration  the duration of the crossfade, in seconds
+     * @return the action of the animation
+     */
+    public AnimationAction crossFadeTo(Animation animation, float duration) {
+        final AnimationAction next = clipAction(animation);
+        final List<AnimationAction> actions = layers.get(0).actions;
+        boolean fading = false;
+        for (int i = 0; i < actions.size(); i++) {
+            final AnimationAction action = actions.get(i);
+            if (action != next && action.isPlaying()) {
+                action.fadeOut(duration);
+                fading = true;
+            }
+        }
+        if (fading) {
+            next.fadeIn(duration);
+        } else {
+            next.setWeight(1).play();
+        }
+        return next;
+    }
+
+    /**
+     * Stop all the actions
+     */
+    public void stopAll() {
+        for (int l = 0; l < layers.size(); l++) {
+            final List<AnimationAction> actions = layers.get(l).actions;
+            for (int i = 0; i < actions.size(); i++) {
+                actions.get(i).stop();
+            }
+        }
+    }
+
+    /**
+     * @return true if any action is playing
+     */
+    public boolean isPlaying() {
+        for (int l = 0; l < layers.size(); l++) {
+            final List<AnimationAction> actions = layers.get(l).actions;
+            for (int i = 0; i < actions.size(); i++) {
+                if (actions.get(i).isPlaying()) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Advance the actions by the time elapsed since the previous update, and pose the nodes
+     *
+     * @param rootNodes the root nodes of the scene
+     */
+    public void update(List<Node> rootNodes) {
+        final long now = System.nanoTime();
+        final float delta = lastUpdate == -1 ? 0 : Math.min((now - lastUpdate) / 1000000000f, MAX_DELTA);
+        lastUpdate = now;
+        update(rootNodes, delta);
+    }
+
+    /**
+     * Advance the actions, and pose the nodes.
+     * <p>
+     * The mixer is bound again if the hierarchy changed since the previous update (nodes added, removed or moved),
+     * even if the list of root nodes is the same instance
+     *
+     * @param rootNodes the root nodes of the scene
+     * @param delta     the elapsed time, in seconds
+     */
+    public void update(List<Node> rootNodes, float delta) {
+        if (rootNodes == null || rootNodes.isEmpty()) return;
+
+        if (!isBound(rootNodes)) {
+            bind(rootNodes);
+        }
+        delta *= timeScale;
+
+        System.arraycopy(bindTransforms, 0, result, 0, result.length);
+        Arrays.fill(animated, false);
+
+        for (int l = 0; l < layers.size(); l++) {
+            final Layer layer = layers.get(l);
+            if (layer.maskDirty) {
+                updateMask(layer);
+            }
+
+            stamp++;
+            int count = 0;
+            for (int i = 0; i < layer.actions.size(); i++) {
+                final AnimationAction action = layer.actions.get(i);
+                action.advance(delta);
+                if (!action.isPlaying() || action.getWeight() <= 0 || layer.weight <= 0) {
+                    continue;
+                }
+                sample(action);
+                if (layer.additive) {
+                    addAction(action, layer);
+                } else {
+                    count = accumulateAction(action, count);
+                }
+            }
+            if (!layer.additive) {
+                blendLayer(layer, count);
+            }
+        }
+
+        for (int n = 0; n < nodes.length; n++) {
+            final Node node = nodes[n];
+            if (animated[n]) {
+                normalize(result, n * Track.SIZE + Track.ROTATION);
+                Animator.toMatrix(result, n * Track.SIZE, false, pose, n * 16);
+                node.setAnimatedLocalTransform(pose, n * 16);
+            } else {
+                node.setAnimatedLocalTransform(node.getLocalTransform() != null ? node.getLocalTransform().getTransform() : null);
+            }
+        }
+    }
+
+    /**
+     * Check the hierarchy against the nodes bound. The children lists can be changed without notice,
+     * so the nodes are compared one by one, in the same depth-first order of the binding
+     *
+     * @return true if the hierarchy has the same nodes, in the same order
+     */
+    private boolean isBound(List<Node> rootNodes) {
+        if (nodes == null) return false;
+        int index = 0;
+        for (int i = 0; i < rootNodes.size() && index != -1; i++) {
+            index = matchNodes(rootNodes.get(i), index);
+        }
+        return index == nodes.length;
+    }
+
+    /**
+     * @return the index of the node that follows the subtree, or -1 if the subtree doesn't match the nodes bound
+     */
+    private int matchNodes(Node node, int index) {
+        if (index >= nodes.length || nodes[index] != node) return -1;
+        index++;
+        final List<Node> children = node.getChildren();
+        for (int i = 0; i < children.size() && index != -1; i++) {
+            index = matchNodes(children.get(i), index);
+        }
+        return index;
+    }
+
+    /**
+     * Binds the mixer to the scene: resolves all the nodes to dense indices, and allocates the buffers
+     */
+    private void bind(List<Node> rootNodes) {
+
+        final List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < rootNodes.size(); i++) {
+            Animator.collectNodes(rootNodes.get(i), nodes);
+        }
+        this.nodes = nodes.toArray(new Node[0]);
+        this.nodeIndices = new IdentityHashMap<>();
+        for (int i = 0; i < this.nodes.length; i++) {
+            nodeIndices.put(this.nodes[i], i);
+        }
+        // the parents are taken from the hierarchy, since the loaders don't always set Node.getParent()
+        this.parents = new int[this.nodes.length];
+        Arrays.fill(parents, -1);
+        for (int i = 0; i < this.nodes.length; i++) {
+            final List<Node> children = this.nodes[i].getChildren();
+            for (int c = 0; c < children.size(); c++) {
+                final Integer child = nodeIndices.get(children.get(c));
+                if (child != null) parents[child] = i;
+            }
+        }
+
+        final int size = this.nodes.length * Track.SIZE;
+        this.bindTransforms = new float[size];
+        this.sample = new float[size];
+        this.accumulated = new float[size];
+        this.result = new float[size];
+        this.accumulatedWeights = new float[this.nodes.length];
+        this.stamps = new int[this.nodes.length];
+        this.touched = new int[this.nodes.length];
+        this.animated = new boolean[this.nodes.length];
+        this.pose = new float[this.nodes.length * 16];
+
+        for (int n = 0; n < this.nodes.length; n++) {
+            final Node node = this.nodes[n];
+            final int offset = n * Track.SIZE;
+
+            // identity
+            bindTransforms[offset + Track.ROTATION + 3] = 1;
+            bindTransforms[offset + Track.SCALE] = 1;
+            bindTransforms[offset + Track.SCALE + 1] = 1;
+            bindTransforms[offset + Track.SCALE + 2] = 1;
+
+            if (node.getLocalTransform() == null) continue;
+
+            Animator.copy(node.getBindLocalTranslation(), bindTransforms, offset + Track.TRANSLATION);
+            Animator.copy(node.getBindLocalScale(), bindTransforms, offset + Track.SCALE);
+            Animator.copy(node.getBindLocalRotation(), bindTransforms, offset + Track.EULER);
+            final Quaternion rotation = node.getBindLocalQuaternion();
+            if (rotation != null) {
+                bindTransforms[offset + Track.ROTATION] = rotation.getX();
+                bindTransforms[offset + Track.ROTATION + 1] = rotation.getY();
+                bindTransforms[offset + Track.ROTATION + 2] = rotation.getZ();
+                bindTransforms[offset + Track.ROTATION + 3] = rotation.getW();
+            } else if (node.getBindLocalRotation() != null) {
+                Animator.eulerToRotation(bindTransforms, offset);
+            }
+        }
+
+        this.boundRootNodes = rootNodes;
+
+        for (int l = 0; l < layers.size(); l++) {
+            final Layer layer = layers.get(l);
+            layer.maskDirty = true;
+            for (int i = 0; i < layer.actions.size(); i++) {
+                bindAction(layer.actions.get(i));
+            }
+        }
+
+        logger.config("Mixer bound. Nodes: " + this.nodes.length + ", layers: " + layers.size());
+    }
+
+    /**
+     * Resolves the targets of the animation to node indices
+     */
+    private void bindAction(AnimationAction action) {
+        final Animation animation = action.getAnimation();
+        final String[] targets = animation.getTargets();
+        final Track[] tracks = animation.getTracks();
+
+        action.targetNodes = new int[targets.length];
+        action.targetEuler = new boolean[targets.length];
+        action.trackNodes = new int[tracks.length];
+        action.cursors = new int[tracks.length];
+
+        for (int t = 0; t < targets.length; t++) {
+            final Node node = Animator.findNode(boundRootNodes, targets[t]);
+            final Integer index = node != null ? nodeIndices.get(node) : null;
+            if (index == null || node.getLocalTransform() == null) {
+                logger.warning("Didn't find node for joint '" + targets[t] + "'. Animation: " + animation.getName());
+                action.targetNodes[t] = -1;
+            } else {
+                action.targetNodes[t] = index;
+            }
+        }
+        for (int i = 0; i < tracks.length; i++) {
+            final int target = animation.getTrackTarget(i);
+            action.trackNodes[i] = action.targetNodes[target];
+            if (tracks[i].getPath() == Track.EULER) {
+                action.targetEuler[target] = true;
+            }
+        }
+    }
+
+    /**
+     * Resolves the joint weights of the layer to a weight per node. The nodes inherit the weight of their parent
+     */
+    private void updateMask(Layer layer) {
+        layer.maskDirty = false;
+        if (layer.jointWeights.isEmpty() || nodes == null) {
+            layer.mask = null;
+            return;
+        }
+        if (layer.mask == null || layer.mask.length != nodes.length) {
+            layer.mask = new float[nodes.length];
+        }
+        // the nodes are in depth-first order, so the parent is resolved before its children
+        for (int n = 0; n < nodes.length; n++) {
+            Float weight = layer.jointWeights.get(nodes[n].getId());
+            if (weight == null && nodes[n].getName() != null) {
+                weight = layer.jointWeights.get(nodes[n].getName());
+            }
+            if (weight != null) {
+                layer.mask[n] = weight;
+            } else {
+                layer.mask[n] = parents[n] != -1 ? layer.mask[parents[n]] : 0;
+            }
+        }
+    }
+
+    /**
+     * Samples the animation of the action into the sample vectors of its nodes
+     */
+    private void sample(AnimationAction action) {
+        final Animation animation = action.getAnimation();
+        final Track[] tracks = animation.getTracks();
+        final float time = action.getTime();
+
+        final int[] targetNodes = action.targetNodes;
+        for (int t = 0; t < targetNodes.length; t++) {
+            final int n = targetNodes[t];
+            if (n == -1) continue;
+            System.arraycopy(bindTransforms, n * Track.SIZE, sample, n * Track.SIZE, Track.SIZE);
+        }
+
+        final int[] cursors = action.cursors;
+        final int[] trackNodes = action.trackNodes;
+        for (int i = 0; i < tracks.length; i++) {
+            final int n = trackNodes[i];
+            if (n == -1) continue;
+            final int key = tracks[i].seek(time, cursors[i]);
+            cursors[i] = key;
+            tracks[i].sample(time, key, sample, n * Track.SIZE);
+        }
+
+        for (int t = 0; t < targetNodes.length; t++) {
+            if (action.targetEuler[t] && targetNodes[t] != -1) {
+                Animator.eulerToRotation(sample, targetNodes[t] * Track.SIZE);
+            }
+        }
+    }
+
+    /**
+     * Adds the sample of the action, by its weight, to the accumulated vectors of the layer
+     *
+     * @return the number of nodes touched by the layer
+     */
+    private int accumulateAction(AnimationAction action, int count) {
+        final float weight = action.getWeight();
+        final int[] targetNodes = action.targetNodes;
+        for (int t = 0; t < targetNodes.length; t++) {
+            final int n = targetNodes[t];
+            if (n == -1) continue;
+            final int offset = n * Track.SIZE;
+            if (stamps[n] != stamp) {
+                stamps[n] = stamp;
+                touched[count++] = n;
+                accumulatedWeights[n] = 0;
+                Arrays.fill(accumulated, offset, offset + Track.SIZE, 0);
+            }
+            // shortest path: align the quaternion with the one accumulated, or with the pose below
+            final float[] reference = accumulatedWeights[n] > 0 ? accumulated : result;
+            final float sign = dot(reference, offset + Track.ROTATION, sample, offset + Track.ROTATION) < 0 ? -weight : weight;
+            for (int c = 0; c < 3; c++) {
+                accumulated[offset + Track.TRANSLATION + c] += sample[offset + Track.TRANSLATION + c] * weight;
+                accumulated[offset + Track.SCALE + c] += sample[offset + Track.SCALE + c] * weight;
+            }
+            for (int c = 0; c < 4; c++) {
+                accumulated[offset + Track.ROTATION + c] += sample[offset + Track.ROTATION + c] * sign;
+            }
+            accumulatedWeights[n] += weight;
+        }
+        return count;
+    }
+
+    /**
+     * Blends the accumulated vectors of an override layer over the pose of the layers below
+     */
+    private void blendLayer(Layer layer, int count) {
+        for (int i = 0; i < count; i++) {
+            final int n = touched[i];
+            final int offset = n * Track.SIZE;
+            final float influence = layer.weight * (layer.mask != null ? layer.mask[n] : 1);
+            if (influence <= 0) continue;
+
+            // complete the weights with the pose below, then normalize
+            final float total = accumulatedWeights[n];
+            final float rest = total < 1 ? 1 - total : 0;
+            final float scale = total > 1 ? 1 / total : 1;
+            final float restSign = dot(accumulated, offset + Track.ROTATION, result, offset + Track.ROTATION) < 0 ? -rest : rest;
+            for (int c = 0; c < 3; c++) {
+                final int t = offset + Track.TRANSLATION + c;
+                final int s = offset + Track.SCALE + c;
+                accumulated[t] = (accumulated[t] + result[t] * rest) * scale;
+                accumulated[s] = (accumulated[s] + result[s] * rest) * scale;
+            }
+            for (int c = 0; c < 4; c++) {
+                final int r = offset + Track.ROTATION + c;
+                accumulated[r] = accumulated[r] + result[r] * restSign;
+            }
+            normalize(accumulated, offset + Track.ROTATION);
+
+            // mix with the pose below by the influence of the layer
+            final float sign = dot(result, offset + Track.ROTATION, accumulated, offset + Track.ROTATION) < 0 ? -influence : influence;
+            for (int c = 0; c < 3; c++) {
+                final int t = offset + Track.TRANSLATION + c;
+                final int s = offset + Track.SCALE + c;
+                result[t] += (accumulated[t] - result[t]) * influence;
+                result[s] += (accumulated[s] - result[s]) * influence;
+            }
+            for (int c = 0; c < 4; c++) {
+                final int r = offset + Track.ROTATION + c;
+                result[r] = result[r] * (1 - influence) + accumulated[r] * sign;
+            }
+            normalize(result, offset + Track.ROTATION);
+            animated[n] = true;
+        }
+    }
+
+    /**
+     * Adds the difference between the sample of the action and the bind pose to the pose of the layers below
+     */
+    private void addAction(AnimationAction action, Layer layer) {
+        final int[] targetNodes = action.targetNodes;
+        for (int t = 0; t < targetNodes.length; t++) {
+            final int n = targetNodes[t];
+            if (n == -1) continue;
+            final float weight = action.getWeight() * layer.weight * (layer.mask != null ? layer.mask[n] : 1);
+            if (weight <= 0) continue;
+            final int offset = n * Track.SIZE;
+
+            for (int c = 0; c < 3; c++) {
+                final int i = offset + Track.TRANSLATION + c;
+                result[i] += (sample[i] - bindTransforms[i]) * weight;
+                final int s = offset + Track.SCALE + c;
+                if (bindTransforms[s] != 0) {
+                    result[s] *= 1 + (sample[s] / bindTransforms[s] - 1) * weight;
+                }
+            }
+
+            // delta = conjugate(bind) * sample, scaled by the weight from the identity
+            final int r = offset + Track.ROTATION;
+            final float bx = -bindTransforms[r], by = -bindTransforms[r + 1], bz = -bindTransforms[r + 2], bw = bindTransforms[r + 3];
+            final float sx = sample[r], sy = sample[r + 1], sz = sample[r + 2], sw = sample[r + 3];
+            float dx = bw * sx + bx * sw + by * sz - bz * sy;
+            float dy = bw * sy - bx * sz + by * sw + bz * sx;
+            float dz = bw * sz + bx * sy - by * sx + bz * sw;
+            float dw = bw * sw - bx * sx - by * sy - bz * sz;
+            final float sign = dw < 0 ? -weight : weight;
+            dx *= sign;
+            dy *= sign;
+            dz *= sign;
+            dw = dw * sign + (1 - weight);
+            final float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz + dw * dw);
+            if (length == 0) continue;
+            dx /= length;
+            dy /= length;
+            dz /= length;
+            dw /= length;
+
+            // result = result * delta
+            final float qx = result[r], qy = result[r + 1], qz = result[r + 2], qw = result[r + 3];
+            result[r] = qw * dx + qx * dw + qy * dz - qz * dy;
+            result[r + 1] = qw * dy - qx * dz + qy * dw + qz * dx;
+            result[r + 2] = qw * dz + qx * dy - qy * dx + qz * dw;
+            result[r + 3] = qw * dw - qx * dx - qy * dy - qz * dz;
+            animated[n] = true;
+        }
+    }
+
+    private static float dot(float[] a, int aOffset, float[] b, int bOffset) {
+        return a[aOffset] * b[bOffset] + a[aOffset + 1] * b[bOffset + 1]
+                + a[aOffset + 2] * b[bOffset + 2] + a[aOffset + 3] * b[bOffset + 3];
+    }
+
+    private static void normalize(float[] q, int offset) {
+        final float length = (float) Math.sqrt(dot(q, offset, q, offset));
+        if (length == 0) {
+            q[offset + 3] = 1;
+            return;
+        }
+        q[offset] /= length;
+        q[offset + 1] /= length;
+        q[offset + 2] /= length;
+        q[offset + 3] /= length;
+    }
+}
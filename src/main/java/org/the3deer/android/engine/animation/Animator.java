@@ -5,10 +5,14 @@ import org.the3deer.android.engine.model.Constants;
 import org.the3deer.android.engine.model.Node;
 import org.the3deer.android.util.Matrix;
 import org.the3deer.util.math.Math3DUtils;
+import org.the3deer.util.math.Quaternion;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,6 +44,11 @@ public class Animator {
 
     private static final Logger logger = Logger.getLogger(Animator.class.getSimpleName());
 
+    // the channels completed: scale x,y,z, rotation x,y,z and location x,y,z
+    private static final int ROTATION_X = 3;
+    private static final int LOCATION_X = 6;
+    private static final int CHANNELS = 9;
+
     private float animationTime = 0;
 
     private final float speed = 1.0f;
@@ -51,6 +60,21 @@ public class Animator {
     private final Map<String, float[]> currentPose = new HashMap<>();
     private KeyFrame[] previousAndNextKeyFrames = new KeyFrame[2];
 
+    // track animation bound to the scene. the joints are resolved to dense indices once
+    private Animation boundAnimation;
+    private List<Node> boundRootNodes;
+    // all the nodes of the hierarchy, and the target animating every node (or -1)
+    private Node[] boundNodes;
+    private int[] boundNodeTargets;
+    // per target: the bind pose local transform vector, and the current one
+    private float[] bindTransforms;
+    private float[] localTransforms;
+    private boolean[] targetEuler;
+    // per target: the local matrix. float[targets * 16]
+    private float[] pose;
+    // per track: the keyframe found in the previous frame
+    private int[] cursors;
+
     // debug
     private final Set<String> log = new HashSet<>();
 
@@ -72,6 +96,17 @@ public class Animator {
             return;
         }
 
+        // tracks: no hashing or allocation per frame
+        if (currentAnimation.getTracks() != null) {
+            increaseAnimationTime(currentAnimation);
+            if (currentAnimation != boundAnimation || rootNodes != boundRootNodes) {
+                bindTracks(rootNodes, currentAnimation);
+            }
+            sampleTracks(currentAnimation);
+            applyPose(bindPoseOnly);
+            return;
+        }
+
         initAnimation(rootNodes, currentAnimation);
         increaseAnimationTime(currentAnimation);
 
@@ -116,7 +151,7 @@ public class Animator {
         }
     }
 
-    private static Node findNode(List<Node> rootNodes, String nodeId) {
+    static Node findNode(List<Node> rootNodes, String nodeId) {
         for (Node node : rootNodes) {
             final Node candidate = node.find(nodeId);
             if (candidate != null) {
@@ -126,13 +161,30 @@ public class Animator {
         return null;
     }
 
-    private static void initAnimation(List<Node> rootNodes, Animation animation) {
+    /**
+     * Completes the keyframes of a legacy animation, so every keyframe has a complete transform for every joint:
+     * <ul>
+     *     <li>The first keyframe is completed with the bind pose of the joint</li>
+     *     <li>The other keyframes are completed interpolating every channel between the previous keyframe
+     *     (already completed) and the next keyframe with the channel, or with the previous keyframe if there is
+     *     no next one</li>
+     * </ul>
+     * The next keyframe of every channel is resolved with one backward pass per joint, instead of scanning the
+     * following keyframes for every keyframe, so it's linear in the number of keyframes.
+     * <p>
+     * This should be called on the loader thread (see {@link org.the3deer.android.engine.model.Scene#update()}),
+     * so the first frame doesn't stall. Animations already initialized, or made of {@link Track}s, are ignored.
+     *
+     * @param rootNodes the root nodes of the scene, to get the bind pose of the joints
+     * @param animation the animation
+     */
+    public static void initAnimation(List<Node> rootNodes, Animation animation) {
 
-        if (animation.isInitialized()) {
+        // tracks don't need completion: the channels not animated are taken from the bind pose
+        if (animation.isInitialized() || animation.getTracks() != null) {
             return;
         }
 
-
         final KeyFrame[] keyFrames = animation.getKeyFrames();
         logger.config("Animation '" + animation.getName() + "'. Initializing " + keyFrames.length + " key frames...");
 
@@ -142,177 +194,92 @@ public class Animator {
         }
 
         // get all joint names in the different key frames
-        final Set<String> allJointIds = new HashSet<>();
+        final Set<String> allJointIds = new LinkedHashSet<>();
         for (int i = 0; i < keyFrames.length; i++) {
             allJointIds.addAll(keyFrames[i].getTransforms().keySet());
         }
 
-        // complete keyframes with missing transforms
-        for (int i = 0; i < keyFrames.length; i++) {
+        // buffers, reused for every joint
+        final JointTransform[] transforms = new JointTransform[keyFrames.length];
+        final int[][] next = new int[CHANNELS][keyFrames.length];
+        final JointTransform[] from = new JointTransform[CHANNELS];
+        final JointTransform[] to = new JointTransform[CHANNELS];
+        final float[] progressions = new float[CHANNELS];
 
-            final KeyFrame keyFrameCurrent = keyFrames[i];
+        for (String jointId : allJointIds) {
 
-            final Map<String, JointTransform> jointTransforms = keyFrameCurrent.getTransforms();
+            // the transforms of the joint
+            for (int i = 0; i < keyFrames.length; i++) {
+                transforms[i] = keyFrames[i].getTransforms().get(jointId);
+            }
+
+            // backward pass: the next keyframe with every channel
+            for (int c = 0; c < CHANNELS; c++) {
+                int following = -1;
+                for (int i = keyFrames.length - 1; i >= 0; i--) {
+                    next[c][i] = following;
+                    if (isKeyed(transforms[i], c)) following = i;
+                }
+            }
 
-            for (String jointId : allJointIds) {
+            // forward pass: complete every keyframe from the previous one
+            for (int i = 0; i < keyFrames.length; i++) {
 
                 // if transform is complete, do nothing
-                final JointTransform currentTransform = jointTransforms.get(jointId);
-                if (currentTransform != null && currentTransform.isComplete()) {
+                final JointTransform current = transforms[i];
+                if (current != null && current.isComplete()) {
                     continue;
                 }
 
                 // if not complete, but first frame we just complete transforms with joint data
-                if (currentTransform != null && i == 0) {
-                    Node node = findNode(rootNodes, jointId);
+                if (current != null && i == 0) {
+                    final Node node = findNode(rootNodes, jointId);
                     if (node != null) {
                         logger.finest("Found node: " + node.getId() + ". Animation: " + animation.getName());
                     } else {
                         logger.warning("Didn't find node for joint '" + jointId + "'. Animation: " + animation.getName());
                     }
-                    currentTransform.complete(node);
+                    current.complete(node);
                     continue;
                 }
 
                 // if no transforms at all, but first frame we fill with empty transforms
-                if (currentTransform == null && i == 0) {
-                    jointTransforms.put(jointId, JointTransform.ofNull());
+                if (current == null && i == 0) {
+                    transforms[0] = JointTransform.ofNull();
+                    keyFrames[0].getTransforms().put(jointId, transforms[0]);
                     continue;
                 }
 
-                // get previous key frame
-                final KeyFrame keyFramePrevious = keyFrames[i - 1];
-                final JointTransform previousTransform = keyFramePrevious.getTransforms().get(jointId);
-
                 // if on last frame, just use previous one
-                if (currentTransform == null && i == keyFrames.length - 1) {
-                    jointTransforms.put(jointId, previousTransform);
+                final JointTransform previous = transforms[i - 1];
+                if (current == null && i == keyFrames.length - 1) {
+                    transforms[i] = previous;
+                    keyFrames[i].getTransforms().put(jointId, previous);
                     continue;
                 }
 
-                // otherwise, interpolate...
-                boolean hasScaleX = currentTransform != null && currentTransform.hasScaleX();
-                boolean hasScaleY = currentTransform != null && currentTransform.hasScaleY();
-                boolean hasScaleZ = currentTransform != null && currentTransform.hasScaleZ();
-                boolean hasRotationX = currentTransform != null && currentTransform.hasRotationX();
-                boolean hasRotationY = currentTransform != null && currentTransform.hasRotationY();
-                boolean hasRotationZ = currentTransform != null && currentTransform.hasRotationZ();
-                boolean hasLocationX = currentTransform != null && currentTransform.hasLocationX();
-                boolean hasLocationY = currentTransform != null && currentTransform.hasLocationY();
-                boolean hasLocationZ = currentTransform != null && currentTransform.hasLocationZ();
-
-                // get next available key frames
-                KeyFrame keyFrameNextScaleX = null;
-                KeyFrame keyFrameNextScaleY = null;
-                KeyFrame keyFrameNextScaleZ = null;
-                KeyFrame keyFrameNextRotationX = null;
-                KeyFrame keyFrameNextRotationY = null;
-                KeyFrame keyFrameNextRotationZ = null;
-                KeyFrame keyFrameNextLocationX = null;
-                KeyFrame keyFrameNextLocationY = null;
-                KeyFrame keyFrameNextLocationZ = null;
-                for (int k = i + 1; k < keyFrames.length; k++) {
-                    JointTransform candidate = keyFrames[k].getTransforms().get(jointId);
-                    if (candidate == null) continue;
-                    if (candidate.getScale() != null) {
-                        if (keyFrameNextScaleX == null && candidate.getScale()[0] != null)
-                            keyFrameNextScaleX = keyFrames[k];
-                        if (keyFrameNextScaleY == null && candidate.getScale()[1] != null)
-                            keyFrameNextScaleY = keyFrames[k];
-                        if (keyFrameNextScaleZ == null && candidate.getScale()[2] != null)
-                            keyFrameNextScaleZ = keyFrames[k];
-                    }
-
-                    if (!Constants.PREFER_QUATERNION && candidate.getRotation() != null) {
-                        if (keyFrameNextRotationX == null && candidate.getRotation()[0] != null)
-                            keyFrameNextRotationX = keyFrames[k];
-                        if (keyFrameNextRotationY == null && candidate.getRotation()[1] != null)
-                            keyFrameNextRotationY = keyFrames[k];
-                        if (keyFrameNextRotationZ == null && candidate.getRotation()[2] != null)
-                            keyFrameNextRotationZ = keyFrames[k];
-                    } else if (candidate.getQRotation() != null) {
-                        if (keyFrameNextRotationX == null)
-                            keyFrameNextRotationX = keyFrames[k];
-                        if (keyFrameNextRotationY == null)
-                            keyFrameNextRotationY = keyFrames[k];
-                        if (keyFrameNextRotationZ == null)
-                            keyFrameNextRotationZ = keyFrames[k];
-                    }
-                    if (candidate.getLocation() != null) {
-                        if (keyFrameNextLocationX == null && candidate.getLocation()[0] != null)
-                            keyFrameNextLocationX = keyFrames[k];
-                        if (keyFrameNextLocationY == null && candidate.getLocation()[1] != null)
-                            keyFrameNextLocationY = keyFrames[k];
-                        if (keyFrameNextLocationZ == null && candidate.getLocation()[2] != null)
-                            keyFrameNextLocationZ = keyFrames[k];
-                    }
-                    if (keyFrameNextScaleX != null && keyFrameNextScaleY != null && keyFrameNextScaleZ != null
-                            && keyFrameNextRotationX != null && keyFrameNextRotationY != null && keyFrameNextRotationZ != null
-                            && keyFrameNextLocationX != null && keyFrameNextLocationY != null && keyFrameNextLocationZ != null) {
-                        break;
-                    }
+                // otherwise, interpolate every channel between the previous and the next keyframe.
+                // if there is no next keyframe, the channel is copied
+                final float elapsed = keyFrames[i].getTimeStamp() - keyFrames[i - 1].getTimeStamp();
+                for (int c = 0; c < CHANNELS; c++) {
+                    final boolean has = hasChannel(current, c);
+                    final int following = next[c][i] != -1 ? next[c][i] : has ? i : i - 1;
+                    from[c] = has ? current : previous;
+                    to[c] = transforms[following];
+                    progressions[c] = following != i - 1 ?
+                            elapsed / (keyFrames[following].getTimeStamp() - keyFrames[i - 1].getTimeStamp()) : 0;
                 }
-
-                // if next transform is null, copy previous one
-                if (keyFrameNextScaleX == null)
-                    keyFrameNextScaleX = hasScaleX ? keyFrameCurrent : keyFramePrevious;
-                if (keyFrameNextScaleY == null)
-                    keyFrameNextScaleY = hasScaleY ? keyFrameCurrent : keyFramePrevious;
-                if (keyFrameNextScaleZ == null)
-                    keyFrameNextScaleZ = hasScaleZ ? keyFrameCurrent : keyFramePrevious;
-                if (keyFrameNextRotationX == null)
-                    keyFrameNextRotationX = hasRotationX ? keyFrameCurrent : keyFramePrevious;
-                if (keyFrameNextRotationY == null)
-                    keyFrameNextRotationY = hasRotationY ? keyFrameCurrent : keyFramePrevious;
-                if (keyFrameNextRotationZ == null)
-                    keyFrameNextRotationZ = hasRotationZ ? keyFrameCurrent : keyFramePrevious;
-                if (keyFrameNextLocationX == null)
-                    keyFrameNextLocationX = hasLocationX ? keyFrameCurrent : keyFramePrevious;
-                if (keyFrameNextLocationY == null)
-                    keyFrameNextLocationY = hasLocationY ? keyFrameCurrent : keyFramePrevious;
-                if (keyFrameNextLocationZ == null)
-                    keyFrameNextLocationZ = hasLocationZ ? keyFrameCurrent : keyFramePrevious;
-
-                // calculate progression for each individual transform
-                final float elapsed = keyFrameCurrent.getTimeStamp() - keyFramePrevious.getTimeStamp();
-                final float scaleProgressionX = keyFrameNextScaleX != keyFramePrevious ?
-                        elapsed / (keyFrameNextScaleX.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
-                final float scaleProgressionY = keyFrameNextScaleY != keyFramePrevious ?
-                        elapsed / (keyFrameNextScaleY.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
-                final float scaleProgressionZ = keyFrameNextScaleZ != keyFramePrevious ?
-                        elapsed / (keyFrameNextScaleZ.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
-                final float rotationProgressionX = keyFrameNextRotationX != keyFramePrevious ?
-                        elapsed / (keyFrameNextRotationX.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
-                final float rotationProgressionY = keyFrameNextRotationY != keyFramePrevious ?
-                        elapsed / (keyFrameNextRotationY.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
-                final float rotationProgressionZ = keyFrameNextRotationZ != keyFramePrevious ?
-                        elapsed / (keyFrameNextRotationZ.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
-                final float locationProgressionX = keyFrameNextLocationX != keyFramePrevious ?
-                        elapsed / (keyFrameNextLocationX.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
-                final float locationProgressionY = keyFrameNextLocationY != keyFramePrevious ?
-                        elapsed / (keyFrameNextLocationY.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
-                final float locationProgressionZ = keyFrameNextLocationZ != keyFramePrevious ?
-                        elapsed / (keyFrameNextLocationZ.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
-
-                // interpolate
                 final JointTransform missingFrameTransform = JointTransform.ofInterpolation(
-                        hasScaleX ? currentTransform : previousTransform, keyFrameNextScaleX.getTransforms().get(jointId), scaleProgressionX,
-                        hasScaleY ? currentTransform : previousTransform, keyFrameNextScaleY.getTransforms().get(jointId), scaleProgressionY,
-                        hasScaleZ ? currentTransform : previousTransform, keyFrameNextScaleZ.getTransforms().get(jointId), scaleProgressionZ,
-                        hasRotationX ? currentTransform : previousTransform, keyFrameNextRotationX.getTransforms().get(jointId), rotationProgressionX,
-                        hasRotationY ? currentTransform : previousTransform, keyFrameNextRotationY.getTransforms().get(jointId), rotationProgressionY,
-                        hasRotationZ ? currentTransform : previousTransform, keyFrameNextRotationZ.getTransforms().get(jointId), rotationProgressionZ,
-                        hasLocationX ? currentTransform : previousTransform, keyFrameNextLocationX.getTransforms().get(jointId), locationProgressionX,
-                        hasLocationY ? currentTransform : previousTransform, keyFrameNextLocationY.getTransforms().get(jointId), locationProgressionY,
-                        hasLocationZ ? currentTransform : previousTransform, keyFrameNextLocationZ.getTransforms().get(jointId), locationProgressionZ
-                );
-
-                if (currentTransform == null) {
-                    jointTransforms.put(jointId, missingFrameTransform);
+                        from[0], to[0], progressions[0], from[1], to[1], progressions[1], from[2], to[2], progressions[2],
+                        from[3], to[3], progressions[3], from[4], to[4], progressions[4], from[5], to[5], progressions[5],
+                        from[6], to[6], progressions[6], from[7], to[7], progressions[7], from[8], to[8], progressions[8]);
+
+                if (current == null) {
+                    transforms[i] = missingFrameTransform;
+                    keyFrames[i].getTransforms().put(jointId, missingFrameTransform);
                 } else {
-                    currentTransform.complete(missingFrameTransform);
+                    current.complete(missingFrameTransform);
                 }
-
             }
         }
         animation.setInitialized(true);
@@ -325,6 +292,207 @@ public class Animator {
         }
     }
 
+    /**
+     * @return true if the transform has the component of the channel
+     */
+    private static boolean hasChannel(JointTransform transform, int channel) {
+        if (transform == null) return false;
+        final Float[] vector = channel < ROTATION_X ? transform.getScale()
+                : channel < LOCATION_X ? transform.getRotation() : transform.getLocation();
+        return vector != null && vector[channel % 3] != null;
+    }
+
+    /**
+     * @return true if the transform can be the next keyframe of the channel. The rotation is taken from the
+     * quaternion, if it's preferred or there is no euler rotation
+     */
+    private static boolean isKeyed(JointTransform transform, int channel) {
+        if (transform == null) return false;
+        if (channel >= ROTATION_X && channel < LOCATION_X
+                && (Constants.PREFER_QUATERNION || transform.getRotation() == null)) {
+            return transform.getQRotation() != null;
+        }
+        return hasChannel(transform, channel);
+    }
+
+    /**
+     * Binds the animation to the scene: resolves the nodes animated by the tracks to dense indices,
+     * and allocates the buffers to sample them. The channels not animated keep the bind pose of the node.
+     */
+    private void bindTracks(List<Node> rootNodes, Animation animation) {
+
+        final String[] targets = animation.getTargets();
+        final Track[] tracks = animation.getTracks();
+
+        this.bindTransforms = new float[targets.length * Track.SIZE];
+        this.localTransforms = new float[targets.length * Track.SIZE];
+        this.targetEuler = new boolean[targets.length];
+        this.pose = new float[targets.length * 16];
+        this.cursors = new int[tracks.length];
+
+        for (int i = 0; i < tracks.length; i++) {
+            if (tracks[i].getPath() == Track.EULER) {
+                targetEuler[animation.getTrackTarget(i)] = true;
+            }
+        }
+
+        // all the nodes
+        final List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < rootNodes.size(); i++) {
+            collectNodes(rootNodes.get(i), nodes);
+        }
+        final Map<Node, Integer> nodeTargets = new IdentityHashMap<>();
+
+        for (int t = 0; t < targets.length; t++) {
+            final int offset = t * Track.SIZE;
+
+            // identity
+            bindTransforms[offset + Track.ROTATION + 3] = 1;
+            bindTransforms[offset + Track.SCALE] = 1;
+            bindTransforms[offset + Track.SCALE + 1] = 1;
+            bindTransforms[offset + Track.SCALE + 2] = 1;
+
+            final Node node = findNode(rootNodes, targets[t]);
+            if (node == null || node.getLocalTransform() == null) {
+                logger.warning("Didn't find node for joint '" + targets[t] + "'. Animation: " + animation.getName());
+                continue;
+            }
+            nodeTargets.put(node, t);
+
+            copy(node.getBindLocalTranslation(), bindTransforms, offset + Track.TRANSLATION);
+            copy(node.getBindLocalScale(), bindTransforms, offset + Track.SCALE);
+            copy(node.getBindLocalRotation(), bindTransforms, offset + Track.EULER);
+            final Quaternion rotation = node.getBindLocalQuaternion();
+            if (rotation != null) {
+                bindTransforms[offset + Track.ROTATION] = rotation.getX();
+                bindTransforms[offset + Track.ROTATION + 1] = rotation.getY();
+                bindTransforms[offset + Track.ROTATION + 2] = rotation.getZ();
+                bindTransforms[offset + Track.ROTATION + 3] = rotation.getW();
+            }
+        }
+
+        this.boundNodes = nodes.toArray(new Node[0]);
+        this.boundNodeTargets = new int[boundNodes.length];
+        for (int i = 0; i < boundNodes.length; i++) {
+            final Integer target = nodeTargets.get(boundNodes[i]);
+            boundNodeTargets[i] = target != null ? target : -1;
+        }
+
+        this.boundAnimation = animation;
+        this.boundRootNodes = rootNodes;
+
+        logger.config("Animation '" + animation.getName() + "' bound. Tracks: " + tracks.length
+                + ", joints: " + targets.length + ", nodes: " + boundNodes.length);
+    }
+
+    static void collectNodes(Node node, List<Node> nodes) {
+        nodes.add(node);
+        for (int i = 0; i < node.getChildren().size(); i++) {
+            collectNodes(node.getChildren().get(i), nodes);
+        }
+    }
+
+    static void copy(Float[] src, float[] dst, int offset) {
+        if (src == null) return;
+        for (int i = 0; i < 3; i++) {
+            if (src[i] != null) dst[offset + i] = src[i];
+        }
+    }
+
+    /**
+     * Samples all the tracks at the current animation time, and builds the local matrix of every joint animated
+     */
+    private void sampleTracks(Animation animation) {
+
+        final Track[] tracks = animation.getTracks();
+
+        System.arraycopy(bindTransforms, 0, localTransforms, 0, bindTransforms.length);
+        for (int i = 0; i < tracks.length; i++) {
+            final Track track = tracks[i];
+            final int key = track.seek(animationTime, cursors[i]);
+            cursors[i] = key;
+            track.sample(animationTime, key, localTransforms, animation.getTrackTarget(i) * Track.SIZE);
+        }
+
+        for (int t = 0; t < targetEuler.length; t++) {
+            toMatrix(localTransforms, t * Track.SIZE, targetEuler[t], pose, t * 16);
+        }
+    }
+
+    /**
+     * Points every node to its matrix in the pose, or to its bind pose if it's not animated
+     */
+    private void applyPose(boolean bindPoseOnly) {
+        for (int i = 0; i < boundNodes.length; i++) {
+            final Node node = boundNodes[i];
+            final int target = boundNodeTargets[i];
+            if (target != -1 && !bindPoseOnly) {
+                node.setAnimatedLocalTransform(pose, target * 16);
+            } else {
+                node.setAnimatedLocalTransform(node.getLocalTransform() != null ? node.getLocalTransform().getTransform() : null);
+            }
+        }
+    }
+
+    /**
+     * Builds the matrix translation * rotation * scale
+     *
+     * @param transform the local transform vector, see {@link Track}
+     * @param offset    the offset of the vector
+     * @param euler     whether the rotation is the euler rotation (z * y * x), or the quaternion.
+     *                  If euler, the quaternion of the vector is overwritten
+     * @param m         the column-major matrix
+     * @param mOffset   the offset of the matrix
+     */
+    static void toMatrix(float[] transform, int offset, boolean euler, float[] m, int mOffset) {
+        if (euler) {
+            eulerToRotation(transform, offset);
+        }
+        final float x = transform[offset + Track.ROTATION];
+        final float y = transform[offset + Track.ROTATION + 1];
+        final float z = transform[offset + Track.ROTATION + 2];
+        final float w = transform[offset + Track.ROTATION + 3];
+        final float sx = transform[offset + Track.SCALE];
+        final float sy = transform[offset + Track.SCALE + 1];
+        final float sz = transform[offset + Track.SCALE + 2];
+
+        m[mOffset + 0] = (1 - 2 * (y * y + z * z)) * sx;
+        m[mOffset + 1] = 2 * (x * y + z * w) * sx;
+        m[mOffset + 2] = 2 * (x * z - y * w) * sx;
+        m[mOffset + 3] = 0;
+        m[mOffset + 4] = 2 * (x * y - z * w) * sy;
+        m[mOffset + 5] = (1 - 2 * (x * x + z * z)) * sy;
+        m[mOffset + 6] = 2 * (y * z + x * w) * sy;
+        m[mOffset + 7] = 0;
+        m[mOffset + 8] = 2 * (x * z + y * w) * sz;
+        m[mOffset + 9] = 2 * (y * z - x * w) * sz;
+        m[mOffset + 10] = (1 - 2 * (x * x + y * y)) * sz;
+        m[mOffset + 11] = 0;
+        m[mOffset + 12] = transform[offset + Track.TRANSLATION];
+        m[mOffset + 13] = transform[offset + Track.TRANSLATION + 1];
+        m[mOffset + 14] = transform[offset + Track.TRANSLATION + 2];
+        m[mOffset + 15] = 1;
+    }
+
+    /**
+     * Converts the euler rotation (z * y * x) of the local transform vector to its quaternion
+     *
+     * @param transform the local transform vector, see {@link Track}
+     * @param offset    the offset of the vector
+     */
+    static void eulerToRotation(float[] transform, int offset) {
+        final double hx = Math.toRadians(transform[offset + Track.EULER]) / 2;
+        final double hy = Math.toRadians(transform[offset + Track.EULER + 1]) / 2;
+        final double hz = Math.toRadians(transform[offset + Track.EULER + 2]) / 2;
+        final float cx = (float) Math.cos(hx), sx = (float) Math.sin(hx);
+        final float cy = (float) Math.cos(hy), sy = (float) Math.sin(hy);
+        final float cz = (float) Math.cos(hz), sz = (float) Math.sin(hz);
+        transform[offset + Track.ROTATION] = cz * cy * sx - sz * sy * cx;
+        transform[offset + Track.ROTATION + 1] = cz * sy * cx + sz * cy * sx;
+        transform[offset + Track.ROTATION + 2] = sz * cy * cx - cz * sy * sx;
+        transform[offset + Track.ROTATION + 3] = cz * cy * cx + sz * sy * sx;
+    }
+
     /**
      * Increases the current animation time which allows the animation to
      * progress. If the current animation has reached the end then the timer is
@@ -491,35 +491,14 @@ public class JointTransform {
             return new JointTransform(scale, rotation, location);
         } else {
 
-            // FIXME: is this incomplete?
-            /*final Quaternion qRotation = new Quaternion(0, 0, 0, 1);
-            Quaternion.interpolate(qRotation, rotationAX.qRotation, rotationBX.qRotation, rotationProgressionX);
-            return new JointTransform(scale, qRotation, location);*/
-
-            // 1. Interpolate each axis independently
-            Quaternion qX = new Quaternion(0, 0, 0, 1); // Identity
-            if (rotationAX.qRotation != null && rotationBX.qRotation != null) {
-                Quaternion.interpolate(qX, rotationAX.qRotation, rotationBX.qRotation, rotationProgressionX);
-            }
-
-            Quaternion qY = new Quaternion(0, 0, 0, 1); // Identity
-            if (rotationAY.qRotation != null && rotationBY.qRotation != null) {
-                Quaternion.interpolate(qY, rotationAY.qRotation, rotationBY.qRotation, rotationProgressionY);
-            }
-
-            Quaternion qZ = new Quaternion(0, 0, 0, 1); // Identity
-            if (rotationAZ.qRotation != null && rotationBZ.qRotation != null) {
-                Quaternion.interpolate(qZ, rotationAZ.qRotation, rotationBZ.qRotation, rotationProgressionZ);
-            }
-
-            // 2. Combine them into one final quaternion.
-            // ORDER MATTERS: This depends on your engine's convention (e.g., Z * Y * X)
-            // If these came from separate <rotate> tags in COLLADA, they apply in order.
-            // Assuming standard Z-Y-X application:
+            // the quaternion is a single channel: the 3 axes have the same keys, so it's interpolated once.
+            // composing the rotation of every axis would apply it 3 times
+            final Quaternion a = rotationAX.qRotation, b = rotationBX.qRotation;
             final Quaternion qRotation = new Quaternion(0, 0, 0, 1);
-
-            // qRotation = qZ * qY * qX
-            qRotation.multiply(qZ).multiply(qY).multiply(qX).normalize();
+            if (a != null) {
+                Quaternion.interpolate(qRotation, a, b != null ? b : a, rotationProgressionX);
+            }
+            qRotation.normalize();
 
             return new JointTransform(scale, qRotation, location);
         }
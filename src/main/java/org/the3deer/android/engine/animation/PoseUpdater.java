@@ -0,0 +1,154 @@
+package org.the3deer.android.engine.animation;
+
+import org.the3deer.android.engine.model.Node;
+import org.the3deer.android.engine.model.Skin;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Propagates the animated pose to the world transforms of the nodes, and then to the matrices of the skins.
+ * <p>
+ * Every root hierarchy is independent from the others, and so is every skin once the world transforms
+ * are calculated. So, when the scene has several animated models, the roots and then the skins are partitioned
+ * across a {@link ForkJoinPool}. Every phase is joined before the next one, so when {@link #update(List, float[], List)}
+ * returns all the matrices are ready to draw.
+ * <p>
+ * The work is estimated by the joints of the skins. A phase is only parallel if it has several independent roots
+ * (or skins) and every batch gets at least {@link #MIN_BATCH_JOINTS} joints: below that, forking costs more than
+ * it saves. So scenes with a single model, or with a few small rigs, are updated serially on the calling thread.
+ *
+ * @author andresoviedo
+ */
+public final class PoseUpdater {
+
+    private static final int ROOTS = 0;
+    private static final int SKINS = 1;
+
+    /**
+     * The minimum number of joints updated by a batch
+     */
+    static final int MIN_BATCH_JOINTS = 256;
+
+    private final ForkJoinPool pool;
+
+    // the frame being updated
+    private List<Node> rootNodes;
+    private float[] worldMatrix;
+    private List<Skin> skins;
+
+    public PoseUpdater() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool the pool where the roots and skins are updated. Null to always update serially
+     */
+    public PoseUpdater(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Update the animated world transforms of all the nodes, and then the skin matrices
+     *
+     * @param rootNodes   the root nodes of the scene
+     * @param worldMatrix the world matrix of the scene
+     * @param skins       the skins of the scene
+     */
+    public void update(List<Node> rootNodes, float[] worldMatrix, List<Skin> skins) {
+
+        // the work of the frame
+        int joints = 0;
+        for (int i = 0; i < skins.size(); i++) {
+            joints += skins.get(i).getJointCount();
+        }
+
+        this.rootNodes = rootNodes;
+        this.worldMatrix = worldMatrix;
+        this.skins = skins;
+        try {
+            // roots
+            final int rootsGrain = grain(rootNodes.size(), joints);
+            if (rootsGrain > 0) {
+                // invoke() returns when all the batches are done: that's the barrier between the phases
+                pool.invoke(new Batch(ROOTS, 0, rootNodes.size(), rootsGrain));
+            } else {
+                for (int i = 0; i < rootNodes.size(); i++) {
+                    rootNodes.get(i).updateAnimatedWorldTransform(worldMatrix);
+                }
+            }
+
+            // skins
+            final int skinsGrain = grain(skins.size(), joints);
+            if (skinsGrain > 0) {
+                // the skins may share the joint nodes, and resolving the joints writes them: do it before forking
+                for (int i = 0; i < skins.size(); i++) {
+                    skins.get(i).bindJoints();
+                }
+                pool.invoke(new Batch(SKINS, 0, skins.size(), skinsGrain));
+            } else {
+                for (int i = 0; i < skins.size(); i++) {
+                    skins.get(i).updateSkinMatrices();
+                }
+            }
+        } finally {
+            this.rootNodes = null;
+            this.worldMatrix = null;
+            this.skins = null;
+        }
+    }
+
+    /**
+     * The size of the smallest batch: a few batches per thread to balance the load, but every batch
+     * with at least {@link #MIN_BATCH_JOINTS} joints
+     *
+     * @param size   the number of roots or skins
+     * @param joints the number of joints of all the skins
+     * @return the size of the smallest batch, or 0 if there are not 2 batches and the phase should be serial
+     */
+    private int grain(int size, int joints) {
+        if (pool == null || pool.getParallelism() < 2 || size < 2 || joints < MIN_BATCH_JOINTS * 2) {
+            return 0;
+        }
+        final int minimum = (int) Math.ceil((double) MIN_BATCH_JOINTS * size / joints);
+        final int grain = Math.max(minimum, size / (pool.getParallelism() * 4));
+        return grain * 2 <= size ? grain : 0;
+    }
+
+    /**
+     * Updates a range of roots or skins. The range is split in halves while both halves are at least the grain
+     */
+    private final class Batch extends RecursiveAction {
+
+        private final int phase;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        private Batch(int phase, int from, int to, int grain) {
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from >= grain * 2) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new Batch(phase, from, middle, grain), new Batch(phase, middle, to, grain));
+                return;
+            }
+            if (phase == ROOTS) {
+                for (int i = from; i < to; i++) {
+                    rootNodes.get(i).updateAnimatedWorldTransform(worldMatrix);
+                }
+            } else {
+                for (int i = from; i < to; i++) {
+                    skins.get(i).updateSkinMatrices();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package org.the3deer.android.engine.animation;
+
+import org.the3deer.util.math.Quaternion;
+
+/**
+ * The keyframes of one channel of one joint. The data is stored in 2 arrays:
+ * <ul>
+ *     <li>times: the time of every keyframe, in seconds, in ascending order</li>
+ *     <li>values: the packed values of every keyframe, {@link #getStride()} values per keyframe</li>
+ * </ul>
+ * <p>
+ * A track is sampled into a local transform vector, that is the concatenation of:
+ * translation (x,y,z), rotation (quaternion x,y,z,w), scale (x,y,z) and euler rotation (x,y,z degrees).
+ * The {@link #getOffset()} of the track is the first component of the vector it writes.
+ * So a track can animate a whole channel (i.e. the glTF translation) or just one component (i.e. the
+ * collada translate.X).
+ * <p>
+ * The keyframe at some time is found with a binary search. The caller keeps a cursor (the keyframe
+ * found in the previous frame), so sequential playback is O(1).
+ *
+ * @author andresoviedo
+ */
+public final class Track {
+
+    /**
+     * Offset of the translation in the local transform vector
+     */
+    public static final int TRANSLATION = 0;
+    /**
+     * Offset of the quaternion rotation in the local transform vector
+     */
+    public static final int ROTATION = 3;
+    /**
+     * Offset of the scale in the local transform vector
+     */
+    public static final int SCALE = 7;
+    /**
+     * Offset of the euler rotation in the local transform vector
+     */
+    public static final int EULER = 10;
+    /**
+     * Size of the local transform vector
+     */
+    public static final int SIZE = 13;
+
+    public enum Interpolation {LINEAR, STEP}
+
+    private final String target;
+    private final int path;
+    private final int component;
+    private final int stride;
+    private final float[] times;
+    private final float[] values;
+    private final Interpolation interpolation;
+
+    /**
+     * @param target        the id of the node animated
+     * @param path          {@link #TRANSLATION}, {@link #ROTATION}, {@link #SCALE} or {@link #EULER}
+     * @param component     the first component animated, i.e. 1 for the Y translation
+     * @param stride        the number of components animated
+     * @param times         the keyframe times, in ascending order
+     * @param values        the keyframe values, stride values per keyframe
+     * @param interpolation the interpolation
+     */
+    public Track(String target, int path, int component, int stride, float[] times, float[] values, Interpolation interpolation) {
+        if (times.length == 0 || values.length < times.length * stride) {
+            throw new IllegalArgumentException("Track '" + target + "' has " + times.length + " keys and " + values.length + " values");
+        }
+        this.target = target;
+        this.path = path;
+        this.component = component;
+        this.stride = stride;
+        this.times = times;
+        this.values = values;
+        this.interpolation = interpolation;
+    }
+
+    /**
+     * @param target the id of the node animated
+     * @param path   {@link #TRANSLATION}, {@link #ROTATION}, {@link #SCALE} or {@link #EULER}
+     * @param times  the keyframe times, in ascending order
+     * @param values the keyframe values: 4 per keyframe for {@link #ROTATION}, 3 otherwise
+     */
+    public Track(String target, int path, float[] times, float[] values) {
+        this(target, path, 0, path == ROTATION ? 4 : 3, times, values, Interpolation.LINEAR);
+    }
+
+    /**
+     * Build the tracks for a node animated with matrices. The matrices are decomposed,
+     * so they are interpolated correctly
+     *
+     * @param target   the id of the node animated
+     * @param times    the keyframe times, in ascending order
+     * @param matrices the column-major matrices, 16 values per keyframe
+     * @return the translation, rotation and scale tracks
+     */
+    public static Track[] ofMatrices(String target, float[] times, float[] matrices) {
+        final float[] translation = new float[times.length * 3];
+        final float[] rotation = new float[times.length * 4];
+        final float[] scale = new float[times.length * 3];
+        final float[] matrix = new float[16];
+        for (int i = 0; i < times.length; i++) {
+            System.arraycopy(matrices, i * 16, matrix, 0, 16);
+            translation[i * 3] = matrix[12];
+            translation[i * 3 + 1] = matrix[13];
+            translation[i * 3 + 2] = matrix[14];
+            scale[i * 3] = (float) Math.sqrt(matrix[0] * matrix[0] + matrix[1] * matrix[1] + matrix[2] * matrix[2]);
+            scale[i * 3 + 1] = (float) Math.sqrt(matrix[4] * matrix[4] + matrix[5] * matrix[5] + matrix[6] * matrix[6]);
+            scale[i * 3 + 2] = (float) Math.sqrt(matrix[8] * matrix[8] + matrix[9] * matrix[9] + matrix[10] * matrix[10]);
+            final Quaternion q = Quaternion.fromMatrix(matrix).normalize();
+            rotation[i * 4] = q.getX();
+            rotation[i * 4 + 1] = q.getY();
+            rotation[i * 4 + 2] = q.getZ();
+            rotation[i * 4 + 3] = q.getW();
+        }
+        return new Track[]{
+                new Track(target, TRANSLATION, times, translation),
+                new Track(target, ROTATION, times, rotation),
+                new Track(target, SCALE, times, scale)};
+    }
+
+    /**
+     * @return the id of the node animated
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * @return {@link #TRANSLATION}, {@link #ROTATION}, {@link #SCALE} or {@link #EULER}
+     */
+    public int getPath() {
+        return path;
+    }
+
+    /**
+     * @return the first component written in the local transform vector
+     */
+    public int getOffset() {
+        return path + component;
+    }
+
+    /**
+     * @return the number of values per keyframe
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    public float[] getTimes() {
+        return times;
+    }
+
+    public float[] getValues() {
+        return values;
+    }
+
+    public Interpolation getInterpolation() {
+        return interpolation;
+    }
+
+    /**
+     * @return the time of the last keyframe
+     */
+    public float getEndTime() {
+        return times[times.length - 1];
+    }
+
+    /**
+     * Find the keyframe at the specified time, that is the last keyframe not after the time.
+     * The cursor is checked first, and then the next keyframe, so sequential playback doesn't search.
+     *
+     * @param time   the time
+     * @param cursor the keyframe found in the previous call, or any value
+     * @return the keyframe index. 0 if the time is before the first keyframe
+     */
+    public int seek(float time, int cursor) {
+        final int last = times.length - 1;
+        if (cursor >= 0 && cursor <= last && times[cursor] <= time) {
+            if (cursor == last || time < times[cursor + 1]) return cursor;
+            if (cursor + 1 == last || time < times[cursor + 2]) return cursor + 1;
+        }
+        if (time <= times[0]) return 0;
+        if (time >= times[last]) return last;
+
+        // binary search: times[low] <= time < times[high]
+        int low = 0;
+        int high = last;
+        while (high - low > 1) {
+            final int mid = (low + high) >>> 1;
+            if (times[mid] <= time) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Interpolate the track at the specified time
+     *
+     * @param time   the time
+     * @param key    the keyframe at that time, see {@link #seek(float, int)}
+     * @param out    the local transform vector
+     * @param offset the offset of the local transform vector, the {@link #getOffset()} is added to it
+     */
+    public void sample(float time, int key, float[] out, int offset) {
+        offset += getOffset();
+        final int a = key * stride;
+        if (key == times.length - 1 || time <= times[key] || interpolation == Interpolation.STEP) {
+            System.arraycopy(values, a, out, offset, stride);
+            return;
+        }
+        final int b = a + stride;
+        final float progression = (time - times[key]) / (times[key + 1] - times[key]);
+        if (path == ROTATION && stride == 4) {
+            nlerp(values, a, b, progression, out, offset);
+            return;
+        }
+        for (int i = 0; i < stride; i++) {
+            out[offset + i] = values[a + i] + (values[b + i] - values[a + i]) * progression;
+        }
+    }
+
+    /**
+     * Normalized linear interpolation of 2 quaternions, by the shortest path
+     */
+    private static void nlerp(float[] q, int a, int b, float progression, float[] out, int offset) {
+        final float dot = q[a] * q[b] + q[a + 1] * q[b + 1] + q[a + 2] * q[b + 2] + q[a + 3] * q[b + 3];
+        final float blendB = dot < 0 ? -progression : progression;
+        final float blendA = 1 - progression;
+        final float x = blendA * q[a] + blendB * q[b];
+        final float y = blendA * q[a + 1] + blendB * q[b + 1];
+        final float z = blendA * q[a + 2] + blendB * q[b + 2];
+        final float w = blendA * q[a + 3] + blendB * q[b + 3];
+        final float length = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+        out[offset] = x / length;
+        out[offset + 1] = y / length;
+        out[offset + 2] = z / length;
+        out[offset + 3] = w / length;
+    }
+
+    @Override
+    public String toString() {
+        return "Track{" +
+                "target='" + target + '\'' +
+                ", offset=" + getOffset() +
+                ", stride=" + stride +
+                ", keys=" + times.length +
+                '}';
+    }
+}
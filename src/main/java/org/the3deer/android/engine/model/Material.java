@@ -64,6 +64,10 @@ public class Material {
         this.diffuse = color;
     }
 
+    public String getId() {
+        return id;
+    }
+
     // --------- set/get methods for colour info --------------
 
     public void setAlpha(float val) {
@@ -1,7 +1,6 @@
 package org.the3deer.android.engine.model;
 
 import org.the3deer.android.util.Matrix;
-import org.the3deer.util.math.Math3DUtils;
 import org.the3deer.util.math.Quaternion;
 
 import java.util.ArrayList;
@@ -41,8 +40,9 @@ public class Node {
 	// local transform
 	private Transform localTransform;
 
-	// this holds the animated local space transform
+	// this holds the animated local space transform, at the specified offset
 	private float[] animatedLocalTransform;
+	private int animatedLocalTransformOffset;
 
 	// This holds the final calculated world-space transform
 	protected final float[] worldTransform = new float[16];
@@ -253,7 +253,13 @@ public class Node {
 	public boolean isStatic() {
 		// A node is static if its local animated transform is the identity matrix.
 		// You may need to add a utility function for this check.
-		return Math3DUtils.isIdentity(this.animatedLocalTransform);
+		if (this.animatedLocalTransform == null) return false;
+		for (int i = 0; i < 16; i++) {
+			if (this.animatedLocalTransform[animatedLocalTransformOffset + i] != ((i % 5 == 0) ? 1.0f : 0.0f)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	// scene - node hierarchy - bind pose update
@@ -281,12 +287,28 @@ public class Node {
 		}
 	}
 
+	/**
+	 * @return the animated local transform. The matrix starts at {@link #getAnimatedLocalTransformOffset()}
+	 */
 	public float[] getAnimatedLocalTransform() {
 		return animatedLocalTransform;
 	}
 
+	public int getAnimatedLocalTransformOffset() {
+		return animatedLocalTransformOffset;
+	}
+
 	public void setAnimatedLocalTransform(float[] animatedLocalTransform) {
-		this.animatedLocalTransform = animatedLocalTransform;
+		setAnimatedLocalTransform(animatedLocalTransform, 0);
+	}
+
+	/**
+	 * @param pose   the array holding the matrix, i.e. the pose of all the joints of an animation
+	 * @param offset the offset of the matrix in the array
+	 */
+	public void setAnimatedLocalTransform(float[] pose, int offset) {
+		this.animatedLocalTransform = pose;
+		this.animatedLocalTransformOffset = offset;
 	}
 
 	public void setAnimatedWorldTransform(float[] animatedWorldTransform) {
@@ -309,7 +331,7 @@ public class Node {
 		}
 
 		if (this.getAnimatedLocalTransform() != null) {
-			Matrix.multiplyMM(this.animatedWorldTransform, 0, parentAnimatedWorldTransform, 0, this.getAnimatedLocalTransform(), 0);
+			Matrix.multiplyMM(this.animatedWorldTransform, 0, parentAnimatedWorldTransform, 0, this.getAnimatedLocalTransform(), this.animatedLocalTransformOffset);
 		} else {
 			Matrix.multiplyMM(this.animatedWorldTransform, 0, parentAnimatedWorldTransform, 0, this.getLocalTransform().getTransform(), 0);
 		}
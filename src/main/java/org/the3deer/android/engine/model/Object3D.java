@@ -146,6 +146,11 @@ public class Object3D {
     private FloatBuffer tangentBuffer = null;
     protected Buffer vertexColorsArrayBuffer = null;
     protected FloatBuffer textureCoordsArrayBuffer = null;
+    // quantized data (i.e. glTF KHR_mesh_quantization). The float buffers are only created if they are requested
+    private VertexAttribute positionsAttribute = null;
+    private VertexAttribute normalsAttribute = null;
+    private VertexAttribute texCoordsAttribute = null;
+    private VertexAttribute tangentsAttribute = null;
     protected List<Element> elements;
     /**
      * Object materials
@@ -452,6 +457,15 @@ public class Object3D {
     private void refreshDimensions() {
         final Dimensions dimensions = new Dimensions();
 
+        // quantized positions are read without expanding them to floats
+        if (vertexArrayBuffer == null && positionsAttribute != null) {
+            for (int i = 0; i < positionsAttribute.getCount(); i++) {
+                dimensions.update(positionsAttribute.get(i * 3), positionsAttribute.get(i * 3 + 1), positionsAttribute.get(i * 3 + 2));
+            }
+            this.dimensions = dimensions;
+            return;
+        }
+
         // Do nothing if there are no vertices
         if (vertexArrayBuffer == null || vertexArrayBuffer.limit() == 0) {
             this.dimensions = dimensions;
@@ -994,10 +1008,20 @@ public class Object3D {
     // -------------------- Buffers ---------------------- //
 
     public FloatBuffer getVerts() {
-        return vertexArrayBuffer;
+        return getVertexBuffer();
     }
 
+    /**
+     * Get the positions. If they are quantized, they are converted to floats, and the float buffer replaces the quantized data.
+     *
+     * @return the positions
+     */
     public FloatBuffer getVertexBuffer() {
+        if (vertexArrayBuffer == null && positionsAttribute != null) {
+            logger.finest("Converting quantized positions to floats... " + getId());
+            vertexArrayBuffer = positionsAttribute.toFloatBuffer();
+            positionsAttribute = null;
+        }
         return vertexArrayBuffer;
     }
 
@@ -1007,12 +1031,18 @@ public class Object3D {
 
     public Object3D setVertexBuffer(FloatBuffer vertexArrayBuffer) {
         this.vertexArrayBuffer = vertexArrayBuffer;
+        this.positionsAttribute = null;
         this.vertexCount = (vertexArrayBuffer != null) ? vertexArrayBuffer.capacity() / 3 : 0;
         updateDimensions();
         return this;
     }
 
     public FloatBuffer getNormalsBuffer() {
+        if (vertexNormalsArrayBuffer == null && normalsAttribute != null) {
+            logger.finest("Converting quantized normals to floats... " + getId());
+            vertexNormalsArrayBuffer = normalsAttribute.toFloatBuffer();
+            normalsAttribute = null;
+        }
         return vertexNormalsArrayBuffer;
     }
 
@@ -1025,11 +1055,17 @@ public class Object3D {
     }
 
     public FloatBuffer getTangentBuffer() {
+        if (tangentBuffer == null && tangentsAttribute != null) {
+            logger.finest("Converting quantized tangents to floats... " + getId());
+            tangentBuffer = tangentsAttribute.toFloatBuffer();
+            tangentsAttribute = null;
+        }
         return tangentBuffer;
     }
 
     public Object3D setNormalsBuffer(FloatBuffer normals){
         this.vertexNormalsArrayBuffer = normals;
+        this.normalsAttribute = null;
         return this;
     }
 
@@ -1043,15 +1079,119 @@ public class Object3D {
 
     public Object3D setTangentBuffer(FloatBuffer buffer) {
         this.tangentBuffer = buffer;
+        this.tangentsAttribute = null;
         return this;
     }
 
     public FloatBuffer getTextureCoordsArrayBuffer() {
+        if (textureCoordsArrayBuffer == null && texCoordsAttribute != null) {
+            logger.finest("Converting quantized texture coordinates to floats... " + getId());
+            textureCoordsArrayBuffer = texCoordsAttribute.toFloatBuffer();
+            texCoordsAttribute = null;
+        }
         return textureCoordsArrayBuffer;
     }
 
     public Object3D setTextureCoordsArrayBuffer(FloatBuffer textureCoordsArrayBuffer) {
         this.textureCoordsArrayBuffer = textureCoordsArrayBuffer;
+        this.texCoordsAttribute = null;
+        return this;
+    }
+
+    /**
+     * Set the positions. Float data is set as the vertex buffer.
+     * Quantized data is kept as it is, until the float buffer is requested (see {@link #getVertexBuffer()})
+     *
+     * @param positions the positions (3 components)
+     */
+    public Object3D setPositionsAttribute(VertexAttribute positions) {
+        if (positions == null || !positions.isQuantized()) {
+            return setVertexBuffer(positions != null ? (FloatBuffer) positions.getBuffer() : null);
+        }
+        this.vertexArrayBuffer = null;
+        this.positionsAttribute = positions;
+        this.vertexCount = positions.getCount();
+        updateDimensions();
+        return this;
+    }
+
+    /**
+     * @return the positions, with their original component type, or null if there are no positions
+     */
+    public VertexAttribute getPositionsAttribute() {
+        if (positionsAttribute != null) return positionsAttribute;
+        return vertexArrayBuffer != null ? new VertexAttribute(vertexArrayBuffer, 3) : null;
+    }
+
+    public Object3D setNormalsAttribute(VertexAttribute normals) {
+        if (normals == null || !normals.isQuantized()) {
+            return setNormalsBuffer(normals != null ? (FloatBuffer) normals.getBuffer() : null);
+        }
+        this.vertexNormalsArrayBuffer = null;
+        this.normalsAttribute = normals;
+        return this;
+    }
+
+    public VertexAttribute getNormalsAttribute() {
+        if (normalsAttribute != null) return normalsAttribute;
+        return vertexNormalsArrayBuffer != null ? new VertexAttribute(vertexNormalsArrayBuffer, 3) : null;
+    }
+
+    public Object3D setTexCoordsAttribute(VertexAttribute texCoords) {
+        if (texCoords == null || !texCoords.isQuantized()) {
+            return setTextureCoordsArrayBuffer(texCoords != null ? (FloatBuffer) texCoords.getBuffer() : null);
+        }
+        this.textureCoordsArrayBuffer = null;
+        this.texCoordsAttribute = texCoords;
+        return this;
+    }
+
+    public VertexAttribute getTexCoordsAttribute() {
+        if (texCoordsAttribute != null) return texCoordsAttribute;
+        return textureCoordsArrayBuffer != null ? new VertexAttribute(textureCoordsArrayBuffer, 2) : null;
+    }
+
+    public Object3D setTangentsAttribute(VertexAttribute tangents) {
+        if (tangents == null || !tangents.isQuantized()) {
+            return setTangentBuffer(tangents != null ? (FloatBuffer) tangents.getBuffer() : null);
+        }
+        this.tangentBuffer = null;
+        this.tangentsAttribute = tangents;
+        return this;
+    }
+
+    public VertexAttribute getTangentsAttribute() {
+        if (tangentsAttribute != null) return tangentsAttribute;
+        return tangentBuffer != null ? new VertexAttribute(tangentBuffer, 4) : null;
+    }
+
+    /**
+     * @return true if any attribute is still quantized
+     */
+    public boolean isQuantized() {
+        return positionsAttribute != null || normalsAttribute != null || texCoordsAttribute != null || tangentsAttribute != null;
+    }
+
+    /**
+     * Quantize the normals and tangents to bytes, and the texture coordinates to shorts (if they are in [0,1]),
+     * to reduce the memory (see {@link org.the3deer.android.engine.services.LoadPlanner}).
+     * The positions are kept as floats.
+     *
+     * @return this
+     */
+    public Object3D quantize() {
+        if (vertexNormalsArrayBuffer != null) {
+            final VertexAttribute normals = VertexAttribute.quantize(vertexNormalsArrayBuffer, 3, VertexAttribute.BYTE);
+            if (normals != null) setNormalsAttribute(normals);
+        }
+        if (tangentBuffer != null) {
+            final VertexAttribute tangents = VertexAttribute.quantize(tangentBuffer, 4, VertexAttribute.BYTE);
+            if (tangents != null) setTangentsAttribute(tangents);
+        }
+        if (textureCoordsArrayBuffer != null) {
+            final VertexAttribute texCoords = VertexAttribute.quantize(textureCoordsArrayBuffer, 2, VertexAttribute.UNSIGNED_SHORT);
+            if (texCoords != null) setTexCoordsAttribute(texCoords);
+        }
         return this;
     }
 
@@ -1169,11 +1309,17 @@ public class Object3D {
         ret.orientation = this.orientation;
 
         //ret.setCurrentDimensions(this.getCurrentDimensions());
-        ret.setVertexBuffer(this.getVertexBuffer());
+        // quantized data is shared as it is
+        if (this.positionsAttribute != null) ret.setPositionsAttribute(this.positionsAttribute);
+        else ret.setVertexBuffer(this.getVertexBuffer());
         ret.setIndexBuffer(this.getIndexBuffer());
-        ret.setNormalsBuffer(this.getNormalsBuffer());
+        if (this.normalsAttribute != null) ret.setNormalsAttribute(this.normalsAttribute);
+        else ret.setNormalsBuffer(this.getNormalsBuffer());
         ret.setColorsBuffer(this.getColorsBuffer());
-        ret.setTextureCoordsArrayBuffer(this.getTextureCoordsArrayBuffer());
+        if (this.texCoordsAttribute != null) ret.setTexCoordsAttribute(this.texCoordsAttribute);
+        else ret.setTextureCoordsArrayBuffer(this.getTextureCoordsArrayBuffer());
+        if (this.tangentsAttribute != null) ret.setTangentsAttribute(this.tangentsAttribute);
+        else ret.setTangentBuffer(this.getTangentBuffer());
         if (this.getElements() != null) {
             ret.setElements(new ArrayList<>());
             for (int i = 0; i < this.getElements().size(); i++) {
@@ -1197,6 +1343,10 @@ public class Object3D {
         if (vertexColorsArrayBuffer != null) memory += (long) vertexColorsArrayBuffer.capacity() * (vertexColorsArrayBuffer instanceof FloatBuffer ? 4 : 1);
         if (textureCoordsArrayBuffer != null) memory += (long) textureCoordsArrayBuffer.capacity() * 4;
         if (tangentBuffer != null) memory += (long) tangentBuffer.capacity() * 4;
+        if (positionsAttribute != null) memory += positionsAttribute.getSizeInBytes();
+        if (normalsAttribute != null) memory += normalsAttribute.getSizeInBytes();
+        if (texCoordsAttribute != null) memory += texCoordsAttribute.getSizeInBytes();
+        if (tangentsAttribute != null) memory += tangentsAttribute.getSizeInBytes();
         if (indexBuffer != null) {
             if (indexBuffer instanceof IntBuffer) memory += (long) indexBuffer.capacity() * 4;
             else if (indexBuffer instanceof ShortBuffer) memory += (long) indexBuffer.capacity() * 2;
@@ -1227,6 +1377,10 @@ public class Object3D {
         this.vertexArrayBuffer = null;
         this.vertexColorsArrayBuffer = null;
         this.indexBuffer = null;
+        this.positionsAttribute = null;
+        this.normalsAttribute = null;
+        this.texCoordsAttribute = null;
+        this.tangentsAttribute = null;
     }
 
     // -- helper methods
@@ -1240,7 +1394,7 @@ public class Object3D {
         if (drawMode != GL_TRIANGLES) return;
 
         // loop indices
-        if (vertexNormalsArrayBuffer == null && vertexArrayBuffer != null) {
+        if (vertexNormalsArrayBuffer == null && normalsAttribute == null && getVertexBuffer() != null) {
 
             logger.finest("Generating normals... " + getId());
 
@@ -1280,7 +1434,7 @@ public class Object3D {
                 ", scale=" + Arrays.toString(scale) +
                 ", indexed=" + isIndexed() +
                 ", colors=" + (vertexColorsArrayBuffer != null ? vertexColorsArrayBuffer.capacity() / 4 : 0) +
-                ", vertices: " + (vertexArrayBuffer != null ? vertexArrayBuffer.capacity() / 3 : 0) +
+                ", vertices: " + (vertexArrayBuffer != null ? vertexArrayBuffer.capacity() / 3 : positionsAttribute != null ? positionsAttribute.getCount() : 0) +
                 ", normals: " + (vertexNormalsArrayBuffer != null ? vertexNormalsArrayBuffer.capacity() / 3 : 0) +
                 ", dimensions: " + this.dimensions +
                 //", current dimensions: " + this.currentDimensions +
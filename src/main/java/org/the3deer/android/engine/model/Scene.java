@@ -1,6 +1,8 @@
 package org.the3deer.android.engine.model;
 
 import org.the3deer.android.engine.animation.Animation;
+import org.the3deer.android.engine.animation.AnimationMixer;
+import org.the3deer.android.engine.animation.Animator;
 import org.the3deer.android.util.Matrix;
 import org.the3deer.util.math.Math3DUtils;
 
@@ -37,6 +39,8 @@ public class Scene {
     // Animation Management
     private List<Animation> animations = new ArrayList<>();
     private Animation activeAnimation;
+    // blending of several animations. when playing, it replaces the active animation
+    private final AnimationMixer animationMixer = new AnimationMixer();
     private Dimensions dimensions;
     private boolean isSmooth = false;
     private boolean isCollision = true;
@@ -113,6 +117,10 @@ public class Scene {
         this.activeAnimation = activeAnimation;
     }
 
+    public AnimationMixer getAnimationMixer() {
+        return animationMixer;
+    }
+
     public Dimensions getDimensions() {
         return dimensions;
     }
@@ -154,6 +162,11 @@ public class Scene {
             node.updateWorldTransform(Math3DUtils.IDENTITY_MATRIX);
         }
 
+        // complete the keyframes now (loader thread), and not on the first frame
+        for (int i = 0; i < animations.size(); i++) {
+            Animator.initAnimation(rootNodes, animations.get(i));
+        }
+
         if (!animations.isEmpty() && activeAnimation == null) {
             activeAnimation = animations.get(0);
             logger.info("- Animation active:: "+activeAnimation.getName());
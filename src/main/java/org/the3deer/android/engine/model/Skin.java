@@ -9,7 +9,6 @@ import java.nio.Buffer;
 import java.nio.FloatBuffer;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 public class Skin {
@@ -42,6 +41,9 @@ public class Skin {
 
     private boolean disabled;
 
+    // the joint nodes, by joint index. resolved on the first update
+    private Node[] jointNodes;
+
     public Skin(String name) {
         this.name = name;
     }
@@ -119,10 +121,12 @@ public class Skin {
 
     public void setJointNames(List<String> jointNames) {
         this.jointNames = jointNames;
+        this.jointNodes = null;
     }
 
     public void setJointNames(String[] jointNames) {
         this.jointNames = Arrays.asList(jointNames);
+        this.jointNodes = null;
 
     }
 
@@ -246,6 +250,7 @@ public class Skin {
 
     public void setRootJoint(Node rootJoint) {
         this.rootJoint = rootJoint;
+        this.jointNodes = null;
     }
 
     /**
@@ -293,44 +298,100 @@ public class Skin {
     /**
      * The public entry point for updating the skinning matrices for the GPU.
      * This method is the "Phase 3" of the animation update, after world transforms have been calculated.
-     * It efficiently starts the recursive update from the root of the joint hierarchy.
+     * The joint nodes are resolved the first time (see {@link #bindJoints()}), so the update is a loop over the joint indices.
      */
     public void updateSkinMatrices() {
 
+        // 1. Resolve the joints. Skip the update if skinning is disabled
+        if (!bindJoints()) {
+            return;
+        }
+
+        if (doInverseBindTranspose && inverseBindMatrices != null && inverseBindMatrices_transposed == null) {
+            this.inverseBindMatrices_transposed = new float[this.inverseBindMatrices.length];
+            for (int i = 0; i <= inverseBindMatrices.length - 16; i += 16) {
+                // Transpose the i-th matrix from the source array into the destination array.
+                Matrix.transposeM(this.inverseBindMatrices_transposed, i, this.inverseBindMatrices, i);
+            }
+        }
+        final float[] inverseBindMatrices = doInverseBindTranspose ? this.inverseBindMatrices_transposed : this.inverseBindMatrices;
+
+        // 2. Update the joints
+        for (int jointIndex = 0; jointIndex < jointNodes.length; jointIndex++) {
+
+            final Node jointNode = jointNodes[jointIndex];
+            if (jointNode == null) continue;
+
+            // Get the final world transform (calculated in Phase 2).
+            final float[] finalAnimatedWorldTransform = jointNode.getAnimatedWorldTransform();
+            if (finalAnimatedWorldTransform == null) continue;
+
+            // Get the target matrix from our skinning array.
+            final float[] targetSkinningMatrix = getJointMatrices()[jointIndex];
+
+            // Calculate the position in the flat array for this joint's inverse bind matrix.
+            final int inverseBindMatrixOffset = jointIndex * 16;
+
+            // Ensure all data is valid and within bounds.
+            if (inverseBindMatrices != null && (inverseBindMatrixOffset + 15) < inverseBindMatrices.length) {
+
+                // Final Skinning Matrix = finalAnimatedWorldTransform * inverseBindMatrix
+                // We multiply directly from the offset in our large, flat inverseBindMatrices array.
+                Matrix.multiplyMM(targetSkinningMatrix, 0, finalAnimatedWorldTransform, 0, inverseBindMatrices, inverseBindMatrixOffset);
+
+            } else {
+                // This case indicates a problem, either in animation update or data loading.
+                // For safety, we can set the skinning matrix to the animated pose to avoid catastrophic deformation.
+                System.arraycopy(finalAnimatedWorldTransform, 0, targetSkinningMatrix, 0, 16);
+            }
+        }
+    }
+
+    /**
+     * Resolve the joint nodes, if they are not resolved yet.
+     * <p>
+     * The first time, the joint hierarchy is traversed and, for collada skins, the joint index of the nodes is set.
+     * The joint nodes can be shared by several skins, so this must not run concurrently with other skins
+     * of the same hierarchy: it's called serially before the skins are updated in parallel
+     * (see {@link org.the3deer.android.engine.animation.PoseUpdater}).
+     *
+     * @return true if the joints are resolved, false if the skin has no joints or skinning is disabled
+     */
+    public boolean bindJoints() {
+
         // SAFETY CHECK: Ensure skinning is not disabled because of a previous issue
         if (disabled) {
-            return; // If skinning is not enabled, skip the update.
+            return false;
+        }
+        if (jointNodes != null) {
+            return true;
         }
 
-        // 1. Get the root of the JOINT hierarchy (e.g., torso_joint_1).
+        // Get the root of the JOINT hierarchy (e.g., torso_joint_1).
         final Node root = getRootJoint();
-
-        // 2. Safety check and start the recursion.
         if (root == null || getJointMatrices() == null) {
-            return;
+            return false;
         }
 
-        AtomicInteger counter = new AtomicInteger(0);
-        recursiveSkinMatrixUpdate(root, counter);
-
-        if (counter.get() == 0){
+        jointNodes = new Node[getJointMatrices().length];
+        if (bindJoints(root) == 0) {
             // This means we didn't find any joints with valid indices during the traversal.
             // This could indicate a problem with the joint indexing or data loading.
-            // We can log a warning here for debugging purposes.
             logger.warning("Warning: No joints with valid indices were found during skin matrix update. Check joint indexing and data loading.");
             // Disable skinning to prevent further updates.
             disabled = true;
+            return false;
         }
+        return true;
     }
 
     /**
-     * The private, recursive worker method that traverses the joint hierarchy.
+     * Traverses the joint hierarchy, and resolves the index of every joint.
      *
      * @param jointNode The current joint node in the traversal.
+     * @return the number of joints found
      */
-    private void recursiveSkinMatrixUpdate(Node jointNode, AtomicInteger outCounter) {
-
-        // --- 1. Process the current joint ---
+    private int bindJoints(Node jointNode) {
 
         int jointIndex = jointNode.getJointIndex();
 
@@ -346,66 +407,22 @@ public class Skin {
             jointNode.setJointIndex(jointIndex);
         }
 
-        if (jointIndex != -1 && outCounter != null) {
-            outCounter.incrementAndGet();
-        }
-
-        // Only do calculations for nodes that are actual, indexed joints.
-        if (jointIndex != -1 && jointNode.getAnimatedWorldTransform() != null) {
-
-            // Get the final world transform (calculated in Phase 2).
-            final float[] finalAnimatedWorldTransform = jointNode.getAnimatedWorldTransform();
-
-            // Get the target matrix from our skinning array.
-            final float[] targetSkinningMatrix = getJointMatrices()[jointIndex];
-
-            // Calculate the position in the flat array for this joint's inverse bind matrix.
-            final int inverseBindMatrixOffset = jointIndex * 16;
-
-            //
-            if (doInverseBindTranspose){
-                if (inverseBindMatrices != null && inverseBindMatrices_transposed == null){
-                    this.inverseBindMatrices_transposed = new float[this.inverseBindMatrices.length];
-                    for (int i = 0; i <= inverseBindMatrices.length - 16; i+=16) {
-                        // Transpose the i-th matrix from the source array into the destination array.
-                        Matrix.transposeM(this.inverseBindMatrices_transposed, i, this.inverseBindMatrices, i);
-                    }
-                }
-            }
-
-            // Ensure all data is valid and within bounds.
-            if (doInverseBindTranspose && finalAnimatedWorldTransform != null && this.inverseBindMatrices_transposed != null
-                    && (inverseBindMatrixOffset + 15) < this.inverseBindMatrices_transposed.length) {
-
-                // --- THIS IS THE CLEAN, STRATEGIC FIX ---
-                // Final Skinning Matrix = finalAnimatedWorldTransform * inverseBindMatrix
-                // We multiply directly from the offset in our large, flat inverseBindMatrices array.
-                Matrix.multiplyMM(targetSkinningMatrix, 0, finalAnimatedWorldTransform, 0, this.inverseBindMatrices_transposed, inverseBindMatrixOffset);
-
-            }
-            // Ensure all data is valid and within bounds.
-            else if (finalAnimatedWorldTransform != null && this.inverseBindMatrices != null
-                    && (inverseBindMatrixOffset + 15) < this.inverseBindMatrices.length) {
-
-                // --- THIS IS THE CLEAN, STRATEGIC FIX ---
-                // Final Skinning Matrix = finalAnimatedWorldTransform * inverseBindMatrix
-                // We multiply directly from the offset in our large, flat inverseBindMatrices array.
-                Matrix.multiplyMM(targetSkinningMatrix, 0, finalAnimatedWorldTransform, 0, this.inverseBindMatrices, inverseBindMatrixOffset);
-
+        int count = 0;
+        if (jointIndex != -1) {
+            count++;
+            if (jointIndex < jointNodes.length) {
+                jointNodes[jointIndex] = jointNode;
             } else {
-                // This case indicates a problem, either in animation update or data loading.
-                // For safety, we can set the skinning matrix to the animated pose to avoid catastrophic deformation.
-                if (finalAnimatedWorldTransform != null){
-                    System.arraycopy(finalAnimatedWorldTransform, 0, targetSkinningMatrix, 0, 16);
-                }
+                logger.warning("Joint index out of bounds: " + jointNode.getId() + ", index: " + jointIndex);
             }
         }
 
-        // --- 2. Recurse for all children of this joint ---
-        if (jointNode.getChildren() == null) return;
+        // Recurse for all children of this joint
+        if (jointNode.getChildren() == null) return count;
         for (Node childJoint : jointNode.getChildren()) {
-            recursiveSkinMatrixUpdate(childJoint, outCounter);
+            count += bindJoints(childJoint);
         }
+        return count;
     }
 
 
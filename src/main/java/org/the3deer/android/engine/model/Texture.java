@@ -2,6 +2,8 @@ package org.the3deer.android.engine.model;
 
 import android.graphics.Bitmap;
 
+import org.the3deer.android.engine.util.KtxTexture;
+
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.util.Map;
@@ -23,6 +25,13 @@ public class Texture {
 
     private CubeMap cubeMap;
 
+    // decoded image (see TexturePreparer)
+    private int width;
+    private int height;
+    private ByteBuffer[] mipmaps;
+    // compressed texture
+    private KtxTexture ktx;
+
     private Map<String, Object> extensions;
 
     public Texture() {
@@ -99,6 +108,68 @@ public class Texture {
         return buffer;
     }
 
+    /**
+     * @param width   width of the level 0
+     * @param height  height of the level 0
+     * @param mipmaps the RGBA pixels of every mip level, starting with the level 0
+     * @return this
+     */
+    public Texture setMipmaps(int width, int height, ByteBuffer[] mipmaps) {
+        this.width = width;
+        this.height = height;
+        this.mipmaps = mipmaps;
+        return this;
+    }
+
+    public ByteBuffer[] getMipmaps() {
+        return mipmaps;
+    }
+
+    public boolean hasMipmaps() {
+        return mipmaps != null;
+    }
+
+    /**
+     * Release the decoded mip levels, once they are uploaded to the GPU.
+     * <p>
+     * The levels are only released if the encoded image ({@link #getData()} or {@link #getBuffer()}) is still
+     * available, so the texture can be decoded and uploaded again if the GL context is lost.
+     * Otherwise they are the only copy of the image, and they are kept on purpose.
+     * <p>
+     * The {@link KtxTexture} is always kept: its levels are views over the memory mapped file or over the
+     * encoded data, so they don't duplicate the pixels, and they are needed to upload it again.
+     */
+    public void releaseMipmaps() {
+        if (mipmaps != null && (data != null || buffer != null)) {
+            mipmaps = null;
+        }
+    }
+
+    /**
+     * @param ktx the KTX container, whose levels are uploaded as they are. It's kept after the upload (see {@link #releaseMipmaps()})
+     * @return this
+     */
+    public Texture setKtx(KtxTexture ktx) {
+        this.ktx = ktx;
+        if (ktx != null) {
+            this.width = ktx.getWidth();
+            this.height = ktx.getHeight();
+        }
+        return this;
+    }
+
+    public KtxTexture getKtx() {
+        return ktx;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
     public CubeMap getCubeMap() {
         return cubeMap;
     }
@@ -0,0 +1,211 @@
+package org.the3deer.android.engine.model;
+
+import org.the3deer.util.io.IOUtils;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Vertex attribute stored with its original component type.
+ * <p>
+ * Quantized attributes (i.e. glTF KHR_mesh_quantization) are kept as bytes or shorts, so they can be uploaded as they are
+ * to the GPU with the normalized flag, instead of being expanded to floats.
+ * The float values can still be read with {@link #get(int)} or {@link #toFloatBuffer()} (i.e. for the CPU side algorithms).
+ * <p>
+ * Float data is stored in a {@link FloatBuffer}. Any other type is stored in a {@link ByteBuffer} with native order,
+ * where each element starts every {@link #getByteStride()} bytes.
+ *
+ * @author andresoviedo
+ */
+public final class VertexAttribute {
+
+    // GL component types
+    public static final int BYTE = 0x1400;
+    public static final int UNSIGNED_BYTE = 0x1401;
+    public static final int SHORT = 0x1402;
+    public static final int UNSIGNED_SHORT = 0x1403;
+    public static final int FLOAT = 0x1406;
+
+    private final Buffer buffer;
+    private final int count;
+    private final int components;
+    private final int componentType;
+    private final boolean normalized;
+    private final int byteStride;
+
+    /**
+     * Attribute backed by floats
+     *
+     * @param buffer     the floats
+     * @param components number of components per vertex (i.e. 3 for positions)
+     */
+    public VertexAttribute(FloatBuffer buffer, int components) {
+        this.buffer = buffer;
+        this.count = buffer.capacity() / components;
+        this.components = components;
+        this.componentType = FLOAT;
+        this.normalized = false;
+        this.byteStride = components * 4;
+    }
+
+    /**
+     * Attribute backed by bytes
+     *
+     * @param buffer        the data, in native order
+     * @param count         number of vertices
+     * @param components    number of components per vertex (i.e. 3 for positions)
+     * @param componentType one of {@link #BYTE}, {@link #UNSIGNED_BYTE}, {@link #SHORT}, {@link #UNSIGNED_SHORT} or {@link #FLOAT}
+     * @param normalized    whether the integer values are mapped to [0,1] (unsigned) or [-1,1] (signed)
+     * @param byteStride    bytes between the start of 2 consecutive vertices
+     */
+    public VertexAttribute(ByteBuffer buffer, int count, int components, int componentType, boolean normalized, int byteStride) {
+        final int componentSize = getComponentSize(componentType);
+        if (byteStride < components * componentSize) {
+            throw new IllegalArgumentException("Invalid stride: " + byteStride);
+        }
+        if (count > 0 && buffer.capacity() < (count - 1) * byteStride + components * componentSize) {
+            throw new IllegalArgumentException("Buffer too small for " + count + " vertices: " + buffer.capacity());
+        }
+        this.buffer = buffer;
+        this.count = count;
+        this.components = components;
+        this.componentType = componentType;
+        this.normalized = normalized && componentType != FLOAT;
+        this.byteStride = byteStride;
+    }
+
+    /**
+     * Quantize the float values to normalized integers. The vertices are aligned to 4 bytes
+     *
+     * @param values        the float values
+     * @param components    number of components per vertex
+     * @param componentType {@link #BYTE} or {@link #SHORT} for values in [-1,1],
+     *                      {@link #UNSIGNED_BYTE} or {@link #UNSIGNED_SHORT} for values in [0,1]
+     * @return the quantized attribute, or null if any value is out of range
+     */
+    public static VertexAttribute quantize(FloatBuffer values, int components, int componentType) {
+        final boolean signed = componentType == BYTE || componentType == SHORT;
+        final int componentSize = getComponentSize(componentType);
+        final float scale = componentType == BYTE ? 127f : componentType == UNSIGNED_BYTE ? 255f
+                : componentType == SHORT ? 32767f : 65535f;
+        final int byteStride = (components * componentSize + 3) & ~3;
+        final int count = values.capacity() / components;
+        final ByteBuffer data = IOUtils.createNativeByteBuffer(count * byteStride);
+        for (int i = 0; i < count; i++) {
+            for (int c = 0; c < components; c++) {
+                final float value = values.get(i * components + c);
+                if (Float.isNaN(value) || value > 1f || value < (signed ? -1f : 0f)) return null;
+                final int quantized = Math.round(value * scale);
+                final int offset = i * byteStride + c * componentSize;
+                if (componentSize == 1) {
+                    data.put(offset, (byte) quantized);
+                } else {
+                    data.putShort(offset, (short) quantized);
+                }
+            }
+        }
+        return new VertexAttribute(data, count, components, componentType, true, byteStride);
+    }
+
+    private static int getComponentSize(int componentType) {
+        switch (componentType) {
+            case BYTE:
+            case UNSIGNED_BYTE:
+                return 1;
+            case SHORT:
+            case UNSIGNED_SHORT:
+                return 2;
+            case FLOAT:
+                return 4;
+            default:
+                throw new IllegalArgumentException("Unsupported component type: " + componentType);
+        }
+    }
+
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return number of vertices
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public int getComponents() {
+        return components;
+    }
+
+    public int getComponentType() {
+        return componentType;
+    }
+
+    public boolean isNormalized() {
+        return normalized;
+    }
+
+    public int getByteStride() {
+        return byteStride;
+    }
+
+    /**
+     * @return true if the data is not stored as floats
+     */
+    public boolean isQuantized() {
+        return componentType != FLOAT;
+    }
+
+    /**
+     * @return the size of the data, in bytes
+     */
+    public int getSizeInBytes() {
+        if (buffer instanceof FloatBuffer) return buffer.capacity() * 4;
+        return buffer.capacity();
+    }
+
+    /**
+     * Get the float value of the specified component. Normalized values are mapped to [0,1] or [-1,1]
+     *
+     * @param index the component index, that is, vertex * components + component
+     * @return the float value
+     */
+    public float get(int index) {
+        if (buffer instanceof FloatBuffer) {
+            return ((FloatBuffer) buffer).get(index);
+        }
+
+        final ByteBuffer data = (ByteBuffer) buffer;
+        final int vertex = index / components;
+        final int component = index % components;
+        final int offset = vertex * byteStride + component * getComponentSize(componentType);
+        switch (componentType) {
+            case BYTE:
+                return normalized ? Math.max(data.get(offset) / 127f, -1f) : data.get(offset);
+            case UNSIGNED_BYTE:
+                return normalized ? (data.get(offset) & 0xFF) / 255f : data.get(offset) & 0xFF;
+            case SHORT:
+                return normalized ? Math.max(data.getShort(offset) / 32767f, -1f) : data.getShort(offset);
+            case UNSIGNED_SHORT:
+                return normalized ? (data.getShort(offset) & 0xFFFF) / 65535f : data.getShort(offset) & 0xFFFF;
+            default:
+                return data.getFloat(offset);
+        }
+    }
+
+    /**
+     * @return the float values, in a new buffer, or the same buffer if the data is already stored as floats
+     */
+    public FloatBuffer toFloatBuffer() {
+        if (buffer instanceof FloatBuffer) {
+            return (FloatBuffer) buffer;
+        }
+        final int total = count * components;
+        final FloatBuffer ret = IOUtils.createFloatBuffer(total);
+        for (int i = 0; i < total; i++) {
+            ret.put(i, get(i));
+        }
+        return ret;
+    }
+}
@@ -4,6 +4,7 @@ import android.opengl.GLES20;
 
 import org.the3deer.android.engine.Model;
 import org.the3deer.android.engine.animation.Animator;
+import org.the3deer.android.engine.animation.PoseUpdater;
 import org.the3deer.android.engine.camera.CameraUtils;
 import org.the3deer.android.engine.model.Camera;
 import org.the3deer.android.engine.model.Constants;
@@ -11,7 +12,6 @@ import org.the3deer.android.engine.model.Light;
 import org.the3deer.android.engine.model.Object3D;
 import org.the3deer.android.engine.model.Scene;
 import org.the3deer.android.engine.model.Screen;
-import org.the3deer.android.engine.model.Skin;
 import org.the3deer.util.bean.Bean;
 import org.the3deer.util.event.EventListener;
 
@@ -49,6 +49,7 @@ public class DefaultRenderer implements Renderer, EventListener {
      * Animator
      */
     private final Animator animator = new Animator();
+    private final PoseUpdater poseUpdater = new PoseUpdater();
     /**
      * width if the screen. with default value just in case the onSurfaceChanged is not called
      */
@@ -183,38 +184,28 @@ public class DefaultRenderer implements Renderer, EventListener {
         // debug flag: animations always enabled (true) in Production
         if (!Constants.ANIMATIONS_ENABLED) return;
 
-        // check there is an animation active
-        if (scene.getActiveAnimation() == null) {
-            return;
-        }
-
         // 1. ANIMATION PHASE: UPDATE ALL NODE TRANSFORMS
         // This single call should handle both node-based and skinned animations.
         // It will update the local transforms of all nodes affected by the animation.
-        animator.update(scene.getRootNodes(), scene.getActiveAnimation(), false);
+        // The mixer (blending, crossfades, layers) takes precedence over the single active animation.
+        if (scene.getAnimationMixer().isPlaying()) {
+            scene.getAnimationMixer().update(scene.getRootNodes());
+        } else if (scene.getActiveAnimation() != null) {
+            animator.update(scene.getRootNodes(), scene.getActiveAnimation(), false);
+        } else {
+            return;
+        }
 
         // 2. FINAL WORLD TRANSFORM CALCULATION (including Z_UP)
         // This is the step that makes Z_UP work. It bakes the animation and the static
         // hierarchy together into a final world transform for every node.
-        if (scene.getRootNodes() != null && !scene.getRootNodes().isEmpty()) {
-            for (int i = 0; i < scene.getRootNodes().size(); i++) {
-                // This method should now recursively calculate the *animated* world transform
-                scene.getRootNodes().get(i).updateAnimatedWorldTransform(scene.getWorldMatrix());
-            }
-        }
-
         // 3. SKINNING PHASE: UPDATE ALL SKELETON MATRICES
         // Now that all nodes have their final world transforms, we can compute the skinning matrices.
-        if (!scene.getSkins().isEmpty()) {
-            for (int i = 0; i < scene.getSkins().size(); i++) {
-                Skin skin = scene.getSkins().get(i);
-                // This method now loops through the skeleton's joints and calculates the final skinning matrix
-                // using the now-correct animatedWorldTransform of each joint node.
-                skin.updateSkinMatrices();
-            }
+        // Independent root hierarchies (i.e. many models) and skins are updated in parallel,
+        // and everything is done when this returns, so the draw sees the complete pose.
+        if (scene.getRootNodes() != null && !scene.getRootNodes().isEmpty()) {
+            poseUpdater.update(scene.getRootNodes(), scene.getWorldMatrix(), scene.getSkins());
         }
-
-
     }
 
     @Override
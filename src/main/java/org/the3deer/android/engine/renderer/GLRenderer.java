@@ -11,6 +11,7 @@ import org.the3deer.android.engine.event.GLEvent;
 import org.the3deer.android.engine.model.Constants;
 import org.the3deer.android.engine.model.Screen;
 import org.the3deer.android.engine.shader.ShaderManager;
+import org.the3deer.android.engine.util.GLUtil;
 import org.the3deer.util.bean.Bean;
 import org.the3deer.util.bean.BeanProperty;
 import org.the3deer.util.event.EventManager;
@@ -237,6 +238,9 @@ public class GLRenderer implements GLSurfaceView.Renderer {
         // check
         if (renderer == null || !renderer.isEnabled()) return;
 
+        // new frame, new texture upload budget
+        GLUtil.beginFrame();
+
         // Default viewport
         GLES20.glViewport(0, 0, width, height);
         GLES20.glScissor(0, 0, width, height);
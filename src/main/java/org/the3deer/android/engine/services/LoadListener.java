@@ -10,6 +10,14 @@ public interface LoadListener {
 
     void onProgress(String progress);
 
+    /**
+     * Structured progress of the loading pipeline (stage, bytes read, vertices parsed)
+     *
+     * @param progress the current progress
+     */
+    default void onProgress(LoadProgress progress) {
+    }
+
     void onLoadCamera(Scene scene, Camera camera);
 
     void onLoadScene(Scene scene);
@@ -19,6 +19,11 @@ public class LoadListenerAdapter implements LoadListener {
 
     }
 
+    @Override
+    public void onProgress(LoadProgress progress) {
+
+    }
+
     @Override
     public void onLoadScene(Scene scene) {
     }
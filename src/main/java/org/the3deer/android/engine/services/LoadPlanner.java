@@ -0,0 +1,286 @@
+package org.the3deer.android.engine.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Chooses how to load a model, so it fits in the memory budget.
+ * <p>
+ * The loaders estimate the footprint of the model from the file headers or from a quick first pass
+ * (see {@link LoaderTask#estimate()}), and the planner compares it with the budget, that is, the configured one
+ * or the memory available. The strategies are tried in order, from the best quality to the smallest footprint:
+ * full load, quantized attributes, downscaled textures (and quantized attributes). If nothing fits, the loading
+ * is refused with a clear error, instead of crashing with an {@link OutOfMemoryError}.
+ *
+ * @author andresoviedo
+ */
+public final class LoadPlanner {
+
+    /**
+     * Strategies, from the best quality to the smallest footprint. Every strategy includes the previous ones
+     */
+    public enum Strategy {
+        /**
+         * Load the model as it is
+         */
+        FULL,
+        /**
+         * Quantize the normals, tangents and texture coordinates
+         */
+        QUANTIZE,
+        /**
+         * Quantize the attributes and downscale the textures
+         */
+        DOWNSCALE_TEXTURES,
+        /**
+         * The model doesn't fit in the budget
+         */
+        REFUSE
+    }
+
+    /**
+     * Max texture size when the textures are not downscaled (see {@link org.the3deer.android.engine.util.TexturePreparer})
+     */
+    public static final int DEFAULT_MAX_TEXTURE_SIZE = 4096;
+
+    /**
+     * The textures are not downscaled below this size
+     */
+    private static final int MIN_TEXTURE_SIZE = 256;
+
+    /**
+     * Memory budget, in bytes. 0 to use the memory available when the model is loaded
+     */
+    private static long budget = 0;
+
+    private LoadPlanner() {
+    }
+
+    /**
+     * @param budget the max memory for a model, in bytes, or 0 to use the memory available
+     */
+    public static void setBudget(long budget) {
+        LoadPlanner.budget = budget;
+    }
+
+    /**
+     * @return the configured budget, or the memory available if it's not configured
+     */
+    public static long getBudget() {
+        if (budget > 0) return budget;
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    /**
+     * Footprint of a model, as estimated by the loader
+     */
+    public static final class Estimate {
+
+        private long vertices;
+        private long indices;
+        private int floatsPerVertex = 8;
+        private long temporaryBytes;
+        private final List<int[]> textures = new ArrayList<>();
+
+        /**
+         * @param vertices number of vertices of all the meshes
+         */
+        public Estimate setVertices(long vertices) {
+            this.vertices = vertices;
+            return this;
+        }
+
+        /**
+         * @param indices number of indices of all the meshes
+         */
+        public Estimate setIndices(long indices) {
+            this.indices = indices;
+            return this;
+        }
+
+        /**
+         * @param floatsPerVertex floats of all the attributes (i.e. 8 for positions, normals and texture coordinates)
+         */
+        public Estimate setFloatsPerVertex(int floatsPerVertex) {
+            this.floatsPerVertex = floatsPerVertex;
+            return this;
+        }
+
+        /**
+         * @param temporaryBytes memory used only while parsing (i.e. the raw data of an OBJ before it's indexed)
+         */
+        public Estimate setTemporaryBytes(long temporaryBytes) {
+            this.temporaryBytes = temporaryBytes;
+            return this;
+        }
+
+        /**
+         * @param width  width of the image
+         * @param height height of the image
+         */
+        public Estimate addTexture(int width, int height) {
+            this.textures.add(new int[]{width, height});
+            return this;
+        }
+
+        public long getVertices() {
+            return vertices;
+        }
+
+        public long getIndices() {
+            return indices;
+        }
+
+        public int getTextures() {
+            return textures.size();
+        }
+
+        /**
+         * Estimate the CPU and GPU memory. The buffers are kept in memory after they are uploaded, so they count twice
+         *
+         * @param quantized      true if the normals, tangents and texture coordinates are quantized
+         * @param maxTextureSize the max width or height of the textures
+         * @return the bytes
+         */
+        public long getBytes(boolean quantized, int maxTextureSize) {
+            // positions are always floats. the other attributes take about a third when quantized
+            final long attributeBytes = 12 + Math.max(0, floatsPerVertex - 3) * 4L / (quantized ? 3 : 1);
+            long ret = (vertices * attributeBytes + indices * 4) * 2;
+            for (int[] texture : textures) {
+                long width = texture[0];
+                long height = texture[1];
+                while (width > maxTextureSize || height > maxTextureSize) {
+                    width = Math.max(1, width / 2);
+                    height = Math.max(1, height / 2);
+                }
+                // rgba, with mip levels
+                ret += width * height * 4 * 4 / 3 * 2;
+            }
+            return ret + temporaryBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Estimate{" +
+                    "vertices=" + vertices +
+                    ", indices=" + indices +
+                    ", floatsPerVertex=" + floatsPerVertex +
+                    ", temporaryBytes=" + temporaryBytes +
+                    ", textures=" + textures.size() +
+                    '}';
+        }
+    }
+
+    /**
+     * The strategy chosen for a model
+     */
+    public static final class Plan {
+
+        /**
+         * Plan for models without estimation
+         */
+        public static final Plan FULL = new Plan(Strategy.FULL, DEFAULT_MAX_TEXTURE_SIZE, -1, -1);
+
+        private final Strategy strategy;
+        private final int maxTextureSize;
+        private final long bytes;
+        private final long budget;
+
+        private Plan(Strategy strategy, int maxTextureSize, long bytes, long budget) {
+            this.strategy = strategy;
+            this.maxTextureSize = maxTextureSize;
+            this.bytes = bytes;
+            this.budget = budget;
+        }
+
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        /**
+         * @return true if the attributes have to be quantized
+         */
+        public boolean isQuantized() {
+            return strategy == Strategy.QUANTIZE || strategy == Strategy.DOWNSCALE_TEXTURES;
+        }
+
+        /**
+         * @return the max width or height of the textures
+         */
+        public int getMaxTextureSize() {
+            return maxTextureSize;
+        }
+
+        public boolean isRefused() {
+            return strategy == Strategy.REFUSE;
+        }
+
+        /**
+         * @return the estimated memory of the model, with this plan, or -1 if unknown
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getBudget() {
+            return budget;
+        }
+
+        /**
+         * @return the description of the plan, to be shown to the user
+         */
+        public String getMessage() {
+            if (strategy == Strategy.REFUSE) {
+                return String.format(Locale.ROOT, "Model too big. It needs about %d MB, but only %d MB are available",
+                        bytes / (1024 * 1024), budget / (1024 * 1024));
+            }
+            return String.format(Locale.ROOT, "Load plan: %s (about %d MB of %d MB), max texture size: %d",
+                    strategy, bytes / (1024 * 1024), budget / (1024 * 1024), maxTextureSize);
+        }
+
+        @Override
+        public String toString() {
+            return getMessage();
+        }
+    }
+
+    /**
+     * @param estimate the footprint of the model, or null if unknown
+     * @return the plan that fits in the budget
+     */
+    public static Plan plan(Estimate estimate) {
+        return plan(estimate, getBudget());
+    }
+
+    /**
+     * @param estimate the footprint of the model, or null if unknown
+     * @param budget   the max memory, in bytes
+     * @return the plan that fits in the budget
+     */
+    public static Plan plan(Estimate estimate, long budget) {
+        if (estimate == null) return Plan.FULL;
+
+        long bytes = estimate.getBytes(false, DEFAULT_MAX_TEXTURE_SIZE);
+        if (bytes <= budget) {
+            return new Plan(Strategy.FULL, DEFAULT_MAX_TEXTURE_SIZE, bytes, budget);
+        }
+
+        bytes = estimate.getBytes(true, DEFAULT_MAX_TEXTURE_SIZE);
+        if (bytes <= budget) {
+            return new Plan(Strategy.QUANTIZE, DEFAULT_MAX_TEXTURE_SIZE, bytes, budget);
+        }
+
+        if (estimate.getTextures() > 0) {
+            for (int size = DEFAULT_MAX_TEXTURE_SIZE / 2; size >= MIN_TEXTURE_SIZE; size /= 2) {
+                bytes = estimate.getBytes(true, size);
+                if (bytes <= budget) {
+                    return new Plan(Strategy.DOWNSCALE_TEXTURES, size, bytes, budget);
+                }
+            }
+        }
+
+        return new Plan(Strategy.REFUSE, MIN_TEXTURE_SIZE, bytes, budget);
+    }
+}
@@ -0,0 +1,83 @@
+package org.the3deer.android.engine.services;
+
+/**
+ * Structured progress of a {@link LoaderTask}.
+ * <p>
+ * The counters are absolute values (not increments). A negative value means the count is unknown.
+ * <p>
+ * The progress is notified when a stage starts, with the counts known at that point. There are no updates
+ * within a stage:
+ * <ul>
+ *     <li>{@link Stage#FETCH} and {@link Stage#PARSE}: nothing read yet</li>
+ *     <li>{@link Stage#POST_PROCESS}: notified by every loader once the model is parsed, with the bytes read
+ *     and the vertices parsed</li>
+ *     <li>{@link Stage#UPLOAD_READY}: the vertices of the objects built</li>
+ * </ul>
+ *
+ * @author andresoviedo
+ */
+public final class LoadProgress {
+
+    /**
+     * Stages of the loading pipeline, in order
+     */
+    public enum Stage {
+        /**
+         * The task is waiting for the file or its dependencies (i.e. external buffers)
+         */
+        FETCH,
+        /**
+         * The model is being parsed
+         */
+        PARSE,
+        /**
+         * The engine objects are being built (normals, skins, animations, etc)
+         */
+        POST_PROCESS,
+        /**
+         * The objects are ready to be uploaded to the GPU
+         */
+        UPLOAD_READY
+    }
+
+    private final Stage stage;
+    private final long bytesRead;
+    private final long totalBytes;
+    private final long vertices;
+
+    public LoadProgress(Stage stage, long bytesRead, long totalBytes, long vertices) {
+        this.stage = stage;
+        this.bytesRead = bytesRead;
+        this.totalBytes = totalBytes;
+        this.vertices = vertices;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the size of the model, or -1 if unknown
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getVertices() {
+        return vertices;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadProgress{" +
+                "stage=" + stage +
+                ", bytesRead=" + bytesRead +
+                ", totalBytes=" + totalBytes +
+                ", vertices=" + vertices +
+                '}';
+    }
+}
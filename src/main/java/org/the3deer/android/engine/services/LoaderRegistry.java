@@ -3,6 +3,7 @@ package org.the3deer.android.engine.services;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 /**
  * Registry for 3D model loaders.
@@ -50,6 +51,25 @@ public final class LoaderRegistry {
         return factory.create(uri, listener);
     }
 
+    /**
+     * Queue the loading of the model in the shared loader pool.
+     *
+     * @param type     the model type or extension
+     * @param uri      the URI to the model
+     * @param listener the load listener
+     * @param priority {@link LoaderTask.Priority#VISIBLE} for the model shown to the user,
+     *                 {@link LoaderTask.Priority#PREFETCH} for the models loaded in advance
+     * @return the execution, that can be cancelled, or null if no loader is registered for the type
+     */
+    public static Future<Void> submit(final String type, final URI uri, final LoadListener listener,
+                                      final LoaderTask.Priority priority) {
+        final LoaderTask task = get(type, uri, listener);
+        if (task == null) {
+            return null;
+        }
+        return task.submit(priority);
+    }
+
     private LoaderRegistry() {
         // static utility class
     }
@@ -1,16 +1,42 @@
 package org.the3deer.android.engine.services;
 
+import org.the3deer.android.engine.model.Camera;
 import org.the3deer.android.engine.model.Object3D;
+import org.the3deer.android.engine.model.Scene;
+import org.the3deer.android.engine.model.VertexAttribute;
+
+import org.the3deer.android.util.ContentUtils;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * This component allows loading the model without blocking the UI.
+ * <p>
+ * The tasks run on a shared pool, the {@link Priority#VISIBLE} ones first. Every execution returns a {@link Future}
+ * that can be cancelled, i.e. when the user moves to another model before it's loaded.
+ * The loading goes through the {@link LoadProgress.Stage stages} fetch, parse, post-process and upload-ready,
+ * which are notified to the {@link LoadListener#onProgress(LoadProgress)}.
+ * <p>
+ * The size of the models being loaded at the same time is limited (see {@link #MAX_IN_FLIGHT_BYTES}),
+ * so several big models don't run out of memory. The limit is applied before the tasks get a thread: the tasks
+ * that don't fit wait in a pending queue, so the threads never wait for memory and a visible model queued later
+ * is the next one to start.
  *
  * @author andresoviedo
  */
@@ -18,7 +44,60 @@ public abstract class LoaderTask {
 
     protected static final Logger logger = Logger.getLogger(LoaderTask.class.getSimpleName());
 
-    private static final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    /**
+     * Priority of the task in the loading queue
+     */
+    public enum Priority {
+        /**
+         * The model the user is looking at
+         */
+        VISIBLE,
+        /**
+         * Models loaded in advance (i.e. the next models of a gallery)
+         */
+        PREFETCH
+    }
+
+    /**
+     * Max size of the models loaded at the same time. One model is always allowed, whatever its size
+     */
+    private static final long MAX_IN_FLIGHT_BYTES = Runtime.getRuntime().maxMemory() / 4;
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The pending tasks are sorted by priority, so the visible model doesn't wait for the prefetches
+     */
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS,
+            60L, TimeUnit.SECONDS, new PriorityBlockingQueue<>());
+
+    /**
+     * Pool for the parts of a loading that can run in parallel (i.e. the chunks of a file or the compressed buffers).
+     * It's shared by all the tasks, so loading several models doesn't start more threads than cores.
+     * It's not the pool of the tasks, because a task waiting for its parts would hold the thread of another task.
+     */
+    private static final ThreadPoolExecutor workers = new ThreadPoolExecutor(THREADS, THREADS,
+            60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+
+    /**
+     * Sequence to keep the submission order for tasks with the same priority
+     */
+    private static final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Bytes of the models being loaded
+     */
+    private static long inFlightBytes;
+
+    /**
+     * Tasks waiting for room in the loading budget, sorted by priority. Guarded by the class lock
+     */
+    private static final PriorityQueue<PrioritizedTask> pending = new PriorityQueue<>();
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+        workers.allowCoreThreadTimeOut(true);
+    }
 
     /**
      * URI to the 3D model
@@ -28,6 +107,22 @@ public abstract class LoaderTask {
      * Callback to notify of events
      */
     protected final LoadListener callback;
+    /**
+     * Listener as provided by the client, so cached scenes are not recorded again
+     */
+    private final LoadListener listener;
+    /**
+     * Scenes notified by the loader, to be stored in the {@link SceneCache}
+     */
+    private final List<Scene> scenes = new ArrayList<>();
+    /**
+     * The current execution, to check for cancellation
+     */
+    private volatile Future<Void> future;
+    /**
+     * How the model is loaded, so it fits in memory
+     */
+    private volatile LoadPlanner.Plan plan = LoadPlanner.Plan.FULL;
 
     /**
      * Build a new progress dialog for loading the data model asynchronously
@@ -37,40 +132,255 @@ public abstract class LoaderTask {
      */
     public LoaderTask(URI uri, LoadListener callback) {
         this.uri = uri;
-        this.callback = callback;
+        this.listener = callback;
+        this.callback = SceneCache.isEnabled() ? new SceneRecorder(callback) : callback;
     }
 
+    /**
+     * Version of the scenes produced by this loader.
+     * Increase it when the loader output changes, so the scenes stored in the {@link SceneCache} are discarded.
+     *
+     * @return the loader version
+     */
+    protected int getVersion() {
+        return 1;
+    }
 
-    public void execute() {
-        this.execute(false);
+    /**
+     * Whether the scenes of this loader can be stored in the {@link SceneCache}, that only supports static scenes.
+     * The content hash of the file is only calculated for the loaders that return true, so the loaders of
+     * animated formats don't read the whole file for nothing.
+     *
+     * @return true if the loader only produces static scenes (plain objects, no skins nor animations)
+     */
+    protected boolean isCacheable() {
+        return false;
     }
 
-    public void execute(boolean async) {
-        onPreExecute();
+
+    public Future<Void> execute() {
+        return this.execute(false);
+    }
+
+    /**
+     * @param async true to run the task on the shared pool, false to run it on the calling thread
+     * @return the execution, that can be cancelled
+     */
+    public Future<Void> execute(boolean async) {
         if (async) {
-            executor.execute(this::executeImpl);
-        } else {
-            executeImpl();
+            return submit(Priority.VISIBLE);
+        }
+        onPreExecute();
+        final PrioritizedTask task = new PrioritizedTask(this, Priority.VISIBLE, getSize(uri));
+        future = task;
+        try {
+            // the calling thread is not a thread of the pool, so it can wait for the budget
+            acquire(task.size);
+        } catch (InterruptedException e) {
+            task.cancel(false);
+            Thread.currentThread().interrupt();
+            return task;
+        }
+        task.run();
+        try {
+            task.get();
+        } catch (InterruptedException | CancellationException e) {
+            // the thread was interrupted by the cancellation, which is already handled
+            Thread.interrupted();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        }
+        return task;
+    }
+
+    /**
+     * Queue the task in the shared pool
+     *
+     * @param priority the priority of the task
+     * @return the execution, that can be cancelled
+     */
+    public Future<Void> submit(Priority priority) {
+        onPreExecute();
+        final PrioritizedTask task = new PrioritizedTask(this, priority, getSize(uri));
+        future = task;
+        synchronized (LoaderTask.class) {
+            pending.add(task);
+            dispatch();
+        }
+        return task;
+    }
+
+    /**
+     * Cancel the current execution. The loading thread is interrupted
+     *
+     * @return false if the task was not running or it was already completed
+     */
+    public boolean cancel() {
+        final Future<Void> current = future;
+        return current != null && current.cancel(true);
+    }
+
+    /**
+     * @return true if the current execution was cancelled
+     */
+    public boolean isCancelled() {
+        final Future<Void> current = future;
+        return current != null && current.isCancelled();
+    }
+
+    /**
+     * Stop the loading if the task was cancelled.
+     * The loaders can call it between the heavy operations, in addition to checking the thread interruption.
+     *
+     * @throws CancellationException if the task was cancelled
+     */
+    protected final void checkCancelled() {
+        if (isCancelled() || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Loading cancelled: " + uri);
+        }
+    }
+
+    /**
+     * @return the number of threads of the shared pool of workers
+     */
+    public static int getParallelism() {
+        return THREADS;
+    }
+
+    /**
+     * The shared pool of workers, for the loaders that need to handle the futures themselves.
+     * It must not be shut down: cancel the futures instead.
+     *
+     * @return the shared pool of workers
+     */
+    public static ExecutorService getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Run the jobs on the shared pool of workers, and wait for all of them.
+     * If the calling thread is interrupted (i.e. the task was cancelled) or a job fails, the pending jobs are
+     * cancelled and the running ones are interrupted.
+     *
+     * @param jobs the jobs
+     * @param <T>  the type of the results
+     * @return the results, in the order of the jobs
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     * @throws ExecutionException   if a job failed
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> jobs) throws InterruptedException, ExecutionException {
+        final List<Future<T>> futures = new ArrayList<>(jobs.size());
+        try {
+            for (int i = 0; i < jobs.size(); i++) {
+                futures.add(workers.submit(jobs.get(i)));
+            }
+            final List<T> ret = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                ret.add(futures.get(i).get());
+            }
+            return ret;
+        } finally {
+            // it doesn't affect the jobs already done
+            for (int i = 0; i < futures.size(); i++) {
+                futures.get(i).cancel(true);
+            }
         }
     }
 
     private void executeImpl() {
+        final long size = getSize(uri);
         try {
             callback.onLoadStart();
-            build();
+            publishProgress(new LoadProgress(LoadProgress.Stage.FETCH, 0, size, 0));
+
+            // check the scene cache before running the loader
+            final String key = callback instanceof SceneRecorder && isCacheable() ? SceneCache.hash(uri) : null;
+            if (key != null && SceneCache.load(key, getClass().getName(), getVersion(), listener)) {
+                logger.info("Model loaded from cache: " + uri);
+            } else {
+                // choose how to load the model, so it fits in memory
+                plan = LoadPlanner.plan(estimate());
+                if (plan != LoadPlanner.Plan.FULL) {
+                    logger.info(plan.getMessage() + ". uri: " + uri);
+                }
+                if (plan.isRefused()) {
+                    throw new IllegalStateException(plan.getMessage());
+                }
+
+                publishProgress(new LoadProgress(LoadProgress.Stage.PARSE, 0, size, 0));
+                final List<Object3D> objects = build();
+                checkCancelled();
+
+                publishProgress(new LoadProgress(LoadProgress.Stage.UPLOAD_READY, size, size, countVertices(objects)));
+
+                if (key != null) {
+                    SceneCache.save(key, getClass().getName(), getVersion(), scenes);
+                }
+            }
+
             callback.onLoadComplete();
         } catch (final Throwable t) {
+            if (isCancelled()) {
+                logger.info("Loading cancelled: " + uri);
+                return;
+            }
             logger.log(Level.SEVERE, "Error loading model: " + t.getMessage(), t);
             callback.onLoadError(t instanceof Exception ? (Exception) t : new RuntimeException(t));
             throw (t instanceof RuntimeException) ? (RuntimeException) t : new RuntimeException(t);
         }
     }
 
+    /**
+     * Notify that the model is parsed, and the objects are being built (see {@link LoadProgress.Stage#POST_PROCESS}).
+     * The whole file was read at this point
+     *
+     * @param vertices the number of vertices parsed
+     * @throws CancellationException if the task was cancelled
+     */
+    protected final void publishParsed(long vertices) {
+        final long size = getSize(uri);
+        publishProgress(new LoadProgress(LoadProgress.Stage.POST_PROCESS, size, size, vertices));
+    }
+
+    /**
+     * @return the number of vertices of the objects
+     */
+    protected static long countVertices(List<Object3D> objects) {
+        long ret = 0;
+        if (objects == null) return ret;
+        for (Object3D object : objects) {
+            // don't use getVertexBuffer(): it would dequantize the positions
+            final VertexAttribute positions = object.getPositionsAttribute();
+            if (positions != null) {
+                ret += positions.getCount();
+            }
+        }
+        return ret;
+    }
+
     protected void onPreExecute() {
     }
 
     protected abstract List<Object3D> build() throws Exception;
 
+    /**
+     * Estimate the memory of the model before it's built, from the file headers or a quick first pass,
+     * so the {@link LoadPlanner} can choose how to load it
+     *
+     * @return the estimation, or null if it's unknown (the model is fully loaded)
+     * @throws Exception if the file can't be read
+     */
+    protected LoadPlanner.Estimate estimate() throws Exception {
+        return null;
+    }
+
+    /**
+     * @return the plan chosen for the current execution (i.e. to quantize the attributes or downscale the textures)
+     */
+    public LoadPlanner.Plan getPlan() {
+        return plan;
+    }
+
     protected void onProgressUpdate(String... values) {
         if (values.length > 0) {
             callback.onProgress(values[0]);
@@ -87,4 +397,165 @@ public abstract class LoaderTask {
     protected final void publishProgress(String... values) {
         onProgressUpdate(values);
     }
+
+    /**
+     * Notify the progress of the pipeline
+     *
+     * @throws CancellationException if the task was cancelled
+     */
+    protected final void publishProgress(LoadProgress progress) {
+        checkCancelled();
+        callback.onProgress(progress);
+    }
+
+    /**
+     * @return the size of the file, or -1 if it's not a local file or a zip entry
+     */
+    private static long getSize(URI uri) {
+        return ContentUtils.getSize(uri);
+    }
+
+    /**
+     * @return true if a model of the given size fits in the loading budget. One model is always allowed
+     */
+    private static boolean fits(long size) {
+        return size <= 0 || inFlightBytes == 0 || inFlightBytes + size <= MAX_IN_FLIGHT_BYTES;
+    }
+
+    /**
+     * Move the pending tasks that fit in the loading budget to the pool, in priority order.
+     * The first task that doesn't fit stops the dispatch, so it's the next one to start when there is room.
+     * Must be called with the class lock
+     */
+    private static void dispatch() {
+        PrioritizedTask next;
+        while ((next = pending.peek()) != null) {
+            if (next.isCancelled()) {
+                pending.poll();
+                continue;
+            }
+            if (!fits(next.size)) {
+                logger.info("Waiting for the models being loaded. In flight: " + inFlightBytes + " bytes");
+                return;
+            }
+            pending.poll();
+            if (next.size > 0) {
+                inFlightBytes += next.size;
+            }
+            executor.execute(next);
+        }
+    }
+
+    /**
+     * Wait until there is room for the model in the loading budget.
+     * Only for the tasks run on the calling thread: the tasks of the pool are dispatched when they fit
+     */
+    private static void acquire(long size) throws InterruptedException {
+        if (size <= 0) return;
+        synchronized (LoaderTask.class) {
+            while (!fits(size)) {
+                logger.info("Waiting for the models being loaded. In flight: " + inFlightBytes + " bytes");
+                LoaderTask.class.wait();
+            }
+            inFlightBytes += size;
+        }
+    }
+
+    private static void release(long size) {
+        if (size <= 0) return;
+        synchronized (LoaderTask.class) {
+            inFlightBytes -= size;
+            LoaderTask.class.notifyAll();
+            dispatch();
+        }
+    }
+
+    /**
+     * Execution of the task in the pool, sorted by priority and then by submission order
+     */
+    private static final class PrioritizedTask extends FutureTask<Void> implements Comparable<PrioritizedTask> {
+
+        private final Priority priority;
+        private final long order = sequence.getAndIncrement();
+
+        // the bytes of the budget taken by the task, or 0 if the size is unknown
+        private final long size;
+
+        private PrioritizedTask(LoaderTask task, Priority priority, long size) {
+            super(task::executeImpl, null);
+            this.priority = priority;
+            this.size = size;
+        }
+
+        /**
+         * Run the task and give back its budget. If the task was cancelled, it doesn't run but the budget is released
+         */
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                release(size);
+            }
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            final int ret = priority.compareTo(other.priority);
+            return ret != 0 ? ret : Long.compare(order, other.order);
+        }
+    }
+
+    /**
+     * Listener that keeps track of the loaded scenes, once they are fully processed by the client
+     */
+    private final class SceneRecorder implements LoadListener {
+
+        private final LoadListener delegate;
+
+        private SceneRecorder(LoadListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onLoadStart() {
+            delegate.onLoadStart();
+        }
+
+        @Override
+        public void onProgress(String progress) {
+            delegate.onProgress(progress);
+        }
+
+        @Override
+        public void onProgress(LoadProgress progress) {
+            delegate.onProgress(progress);
+        }
+
+        @Override
+        public void onLoadCamera(Scene scene, Camera camera) {
+            delegate.onLoadCamera(scene, camera);
+        }
+
+        @Override
+        public void onLoadScene(Scene scene) {
+            delegate.onLoadScene(scene);
+            scenes.add(scene);
+        }
+
+        @Override
+        public void onLoadObject(Scene scene, Object3D data) {
+            delegate.onLoadObject(scene, data);
+        }
+
+        @Override
+        public void onLoadError(Exception ex) {
+            delegate.onLoadError(ex);
+        }
+
+        @Override
+        public void onLoadComplete() {
+            delegate.onLoadComplete();
+        }
+    }
 }
@@ -0,0 +1,888 @@
+package org.the3deer.android.engine.services;
+
+import org.the3deer.android.engine.model.Material;
+import org.the3deer.android.engine.model.Node;
+import org.the3deer.android.engine.model.Object3D;
+import org.the3deer.android.engine.model.Element;
+import org.the3deer.android.engine.model.Scene;
+import org.the3deer.android.engine.model.Texture;
+import org.the3deer.android.engine.model.Transform;
+import org.the3deer.android.util.ContentUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent cache of the scenes produced by the loaders.
+ * <p>
+ * The scenes are stored after all the post-processing (normals, materials, nodes) in a binary format,
+ * keyed by the SHA-1 of the model file and the loader version. On reload, the file is memory mapped and
+ * the geometry buffers are sliced straight from the mapping, so there is no parsing nor copying.
+ * <p>
+ * Only static scenes are cached. Scenes with skins, animations, cameras or custom object types are
+ * always loaded by the format specific loader. So the cache is only used by the loaders of static formats
+ * (see {@link LoaderTask#isCacheable()}), and the file is not hashed for the others.
+ * <p>
+ * The size of the cache is bounded (see {@link #setMaxSize(long)}). When it's exceeded, the scenes
+ * used least recently are deleted first.
+ * <p>
+ * Format (native byte order):
+ * <pre>
+ * header:   magic, format version, loader name, loader version, scenes count
+ * scene:    name, textures, materials, objects, root nodes
+ * buffer:   type, capacity, limit, padding to 4 bytes, data
+ * </pre>
+ *
+ * @author andresoviedo
+ */
+public final class SceneCache {
+
+    private static final Logger logger = Logger.getLogger(SceneCache.class.getSimpleName());
+
+    /**
+     * File signature. It is read in the native byte order, so a file written on a different platform is discarded
+     */
+    private static final int MAGIC = 0x33444353;
+
+    /**
+     * Increase it when the file layout changes
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String EXTENSION = ".scene";
+
+    /**
+     * Default max size of all the cached scenes, in bytes
+     */
+    private static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    // buffer types
+    private static final byte BUFFER_NONE = 0;
+    private static final byte BUFFER_FLOAT = 1;
+    private static final byte BUFFER_INT = 2;
+    private static final byte BUFFER_SHORT = 3;
+    private static final byte BUFFER_BYTE = 4;
+
+    private static boolean enabled = true;
+    private static File directory;
+    private static long maxSize = DEFAULT_MAX_SIZE;
+
+    private SceneCache() {
+        // static utility class
+    }
+
+    public static void setEnabled(boolean enabled) {
+        SceneCache.enabled = enabled;
+    }
+
+    /**
+     * @param directory the cache directory. By default, the "scenes" folder in the application cache directory
+     */
+    public static void setDirectory(File directory) {
+        SceneCache.directory = directory;
+    }
+
+    public static File getDirectory() {
+        if (directory != null) return directory;
+        final File cacheDir = ContentUtils.getCacheDir();
+        return cacheDir != null ? new File(cacheDir, "scenes") : null;
+    }
+
+    public static boolean isEnabled() {
+        return enabled && getDirectory() != null;
+    }
+
+    /**
+     * @param maxSize the max size of all the cached scenes, in bytes. The scenes used least recently are deleted first
+     */
+    public static void setMaxSize(long maxSize) {
+        SceneCache.maxSize = maxSize;
+    }
+
+    public static long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Delete all the cached scenes
+     */
+    public static void clear() {
+        final File dir = getDirectory();
+        final File[] files = dir != null ? dir.listFiles() : null;
+        if (files == null) return;
+        for (File file : files) {
+            if (file.getName().endsWith(EXTENSION) && !file.delete()) {
+                logger.warning("Cached scene couldn't be deleted: " + file);
+            }
+        }
+    }
+
+    /**
+     * Calculate the content hash of the model
+     *
+     * @param uri the model uri
+     * @return the hex SHA-1 of the file, or null if the uri is not a local file
+     */
+    public static String hash(URI uri) {
+        try (FileChannel channel = ContentUtils.getFileChannel(uri)) {
+            if (channel == null) return null;
+
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+
+            final StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (IOException | NoSuchAlgorithmException | RuntimeException e) {
+            logger.log(Level.WARNING, "Content hash not available for " + uri + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static File getFile(String key, String loader) {
+        return new File(getDirectory(), key + "_" + loader.substring(loader.lastIndexOf('.') + 1) + EXTENSION);
+    }
+
+    /**
+     * Restore the scenes from the cache and notify them to the listener
+     *
+     * @param key      the content hash
+     * @param loader   the loader name
+     * @param version  the loader version
+     * @param listener the listener to notify of the objects and scenes
+     * @return true if the scenes were restored, false if there is no valid entry in the cache
+     */
+    public static boolean load(String key, String loader, int version, LoadListener listener) {
+        final File file = getFile(key, loader);
+        if (!file.isFile()) return false;
+
+        // decode everything before notifying, so a broken file doesn't leave a partial model
+        List<Entry> entries;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+
+            // private mapping, so the loaded buffers are still writable
+            final ByteBuffer map = channel.map(FileChannel.MapMode.PRIVATE, 0, channel.size())
+                    .order(ByteOrder.nativeOrder());
+            entries = new Reader(map).read(loader, version);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Cached scene is not valid: " + file + ": " + e.getMessage());
+            entries = null;
+        }
+
+        if (entries == null) {
+            if (!file.delete()) logger.warning("Cached scene couldn't be deleted: " + file);
+            return false;
+        }
+
+        // the last modification is the last use
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            logger.fine("Cached scene couldn't be touched: " + file);
+        }
+
+        // log event
+        logger.info("Scenes restored from cache: " + file + ", scenes: " + entries.size());
+
+        for (Entry entry : entries) {
+            for (Object3D object : entry.objects) {
+                listener.onLoadObject(entry.scene, object);
+            }
+            listener.onLoadScene(entry.scene);
+        }
+        return true;
+    }
+
+    /**
+     * Store the scenes in the cache. Scenes that are not supported are ignored.
+     *
+     * @param key     the content hash
+     * @param loader  the loader name
+     * @param version the loader version
+     * @param scenes  the loaded scenes
+     */
+    public static void save(String key, String loader, int version, List<Scene> scenes) {
+        if (scenes.isEmpty()) return;
+        for (Scene scene : scenes) {
+            if (!isSupported(scene)) {
+                logger.config("Scene not cached. Only static scenes are supported: " + scene.getName());
+                return;
+            }
+        }
+
+        final File dir = getDirectory();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            logger.warning("Cache directory couldn't be created: " + dir);
+            return;
+        }
+
+        // write to a temporary file, so a partial file is never read
+        final File file = getFile(key, loader);
+        final File temp = new File(dir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                channel.truncate(0);
+                new Writer(channel).write(loader, version, scenes);
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Couldn't rename " + temp + " to " + file);
+            }
+
+            // log event
+            logger.info("Scenes stored in cache: " + file + ", size: " + file.length());
+
+            trim(dir);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Scenes couldn't be stored in cache: " + e.getMessage(), e);
+            if (temp.exists() && !temp.delete()) logger.warning("Temporary file couldn't be deleted: " + temp);
+        }
+    }
+
+    /**
+     * Delete the scenes used least recently, until the cache fits in the max size
+     */
+    private static void trim(File dir) {
+        final File[] files = dir.listFiles((parent, name) -> name.endsWith(EXTENSION));
+        if (files == null) return;
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= maxSize) return;
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length && size > maxSize; i++) {
+            final long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+                logger.config("Cached scene evicted: " + files[i] + ", size: " + length);
+            } else {
+                logger.warning("Cached scene couldn't be deleted: " + files[i]);
+            }
+        }
+    }
+
+    private static boolean isSupported(Scene scene) {
+        if (!scene.getSkins().isEmpty() || !scene.getAnimations().isEmpty() || !scene.getCameras().isEmpty()) {
+            return false;
+        }
+        for (Object3D object : scene.getObjects()) {
+            if (object.getClass() != Object3D.class || object.isSkinned() || object.isQuantized()) return false;
+            if (!isSupported(object.getMaterial())) return false;
+            if (object.getElements() == null) continue;
+            for (Element element : object.getElements()) {
+                if (!isSupported(element.getMaterial())) return false;
+            }
+        }
+        for (Node node : scene.getRootNodes()) {
+            if (!isSupported(node)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isSupported(Node node) {
+        if (node.getClass() != Node.class || node.getSkin() != null || node.getCamera() != null) return false;
+        if (!isSupported(node.getMaterial())) return false;
+        for (Node child : node.getChildren()) {
+            if (!isSupported(child)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isSupported(Material material) {
+        if (material == null) return true;
+        final Texture[] textures = {material.getColorTexture(), material.getNormalTexture(),
+                material.getEmissiveTexture(), material.getTransmissionTexture()};
+        for (Texture texture : textures) {
+            if (texture == null) continue;
+            if (texture.isCubeMap() || texture.getExtensions() != null || texture.getBitmap() != null) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Restored scene and its objects, pending to be notified
+     */
+    private static final class Entry {
+
+        private final Scene scene;
+        private final List<Object3D> objects = new ArrayList<>();
+
+        private Entry(Scene scene) {
+            this.scene = scene;
+        }
+    }
+
+    private static final class Writer {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.nativeOrder());
+        private long written;
+
+        // scene tables, in order of registration
+        private final List<Texture> textures = new ArrayList<>();
+        private final List<Material> materials = new ArrayList<>();
+        private final List<Object3D> objects = new ArrayList<>();
+        private final Map<Object, Integer> indices = new IdentityHashMap<>();
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void write(String loader, int version, List<Scene> scenes) throws IOException {
+            putInt(MAGIC);
+            putInt(FORMAT_VERSION);
+            putString(loader);
+            putInt(version);
+            putInt(scenes.size());
+            for (Scene scene : scenes) {
+                writeScene(scene);
+            }
+            flush();
+        }
+
+        private void writeScene(Scene scene) throws IOException {
+            textures.clear();
+            materials.clear();
+            objects.clear();
+            indices.clear();
+
+            // build tables
+            for (Object3D object : scene.getObjects()) {
+                if (indices.containsKey(object)) continue;
+                indices.put(object, objects.size());
+                objects.add(object);
+                register(object.getMaterial());
+                if (object.getElements() == null) continue;
+                for (Element element : object.getElements()) {
+                    register(element.getMaterial());
+                }
+            }
+            for (Node node : scene.getRootNodes()) {
+                register(node);
+            }
+
+            putString(scene.getName());
+            putBoolean(scene.isSmooth());
+            putBoolean(scene.isCollision());
+
+            putInt(textures.size());
+            for (Texture texture : textures) {
+                putString(texture.getFile());
+                putString(texture.getUri() != null ? texture.getUri().toString() : null);
+                // external textures are read again from the file by the model
+                putBytes(texture.getFile() == null ? encodedImage(texture) : null);
+            }
+
+            putInt(materials.size());
+            for (Material material : materials) {
+                writeMaterial(material);
+            }
+
+            putInt(objects.size());
+            for (Object3D object : objects) {
+                writeObject(object);
+            }
+
+            putInt(scene.getRootNodes().size());
+            for (Node node : scene.getRootNodes()) {
+                writeNode(node);
+            }
+        }
+
+        private void register(Node node) {
+            register(node.getMaterial());
+            for (Node child : node.getChildren()) {
+                register(child);
+            }
+        }
+
+        private void register(Material material) {
+            if (material == null || indices.containsKey(material)) return;
+            indices.put(material, materials.size());
+            materials.add(material);
+            register(material.getColorTexture());
+            register(material.getNormalTexture());
+            register(material.getEmissiveTexture());
+            register(material.getTransmissionTexture());
+        }
+
+        private void register(Texture texture) {
+            if (texture == null || indices.containsKey(texture)) return;
+            indices.put(texture, textures.size());
+            textures.add(texture);
+        }
+
+        private int indexOf(Object key) {
+            final Integer index = key != null ? indices.get(key) : null;
+            return index != null ? index : -1;
+        }
+
+        private void writeMaterial(Material material) throws IOException {
+            putString(material.getId());
+            putString(material.getName());
+            putFloats(material.getAmbient());
+            putFloats(material.getDiffuse());
+            putFloats(material.getSpecular());
+            putFloat(material.getShininess());
+            putFloat(material.getAlpha());
+            putFloat(material.getAlphaCutoff());
+            putInt(material.getAlphaMode().ordinal());
+            putFloats(material.getEmissiveFactor());
+            putFloat(material.getThicknessFactor());
+            putFloat(material.getAttenuationDistance());
+            putFloats(material.getAttenuationColor());
+            putInt(indexOf(material.getColorTexture()));
+            putInt(indexOf(material.getNormalTexture()));
+            putInt(indexOf(material.getEmissiveTexture()));
+            putInt(indexOf(material.getTransmissionTexture()));
+        }
+
+        private void writeObject(Object3D object) throws IOException {
+            putString(object.getId());
+            putString(object.getName());
+            putString(object.getUri() != null ? object.getUri().toString() : null);
+            putString(object.getAuthoringTool());
+            putInt(object.getDrawMode());
+            putBoolean(object.isIndexed());
+            putInt(indexOf(object.getMaterial()));
+            putBuffer(object.getVertexBuffer());
+            putBuffer(object.getNormalsBuffer());
+            putBuffer(object.getTangentBuffer());
+            putBuffer(object.getColorsBuffer());
+            putBuffer(object.getTextureCoordsArrayBuffer());
+            putBuffer(object.getIndexBuffer());
+
+            final List<Element> elements = object.getElements();
+            if (elements == null) {
+                putInt(-1);
+                return;
+            }
+            putInt(elements.size());
+            for (Element element : elements) {
+                putString(element.getId());
+                putString(element.getMaterialId());
+                putInt(indexOf(element.getMaterial()));
+                putBuffer(element.getIndexBuffer());
+            }
+        }
+
+        private void writeNode(Node node) throws IOException {
+            putString(node.getId());
+            putString(node.getName());
+            putString(node.getSid());
+            putFloats(node.getLocalTransform() != null ? node.getLocalTransform().getTransform() : null);
+            putInt(indexOf(node.getMaterial()));
+
+            final List<Object3D> meshes = node.getMeshes();
+            putInt(meshes != null ? meshes.size() : -1);
+            if (meshes != null) {
+                for (Object3D mesh : meshes) {
+                    putInt(indexOf(mesh));
+                }
+            }
+
+            putInt(node.getChildren().size());
+            for (Node child : node.getChildren()) {
+                writeNode(child);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+
+        private void putByte(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        private void putBoolean(boolean value) throws IOException {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        private void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        private void putFloat(float value) throws IOException {
+            ensure(4);
+            buffer.putFloat(value);
+        }
+
+        private void putFloats(float[] values) throws IOException {
+            if (values == null) {
+                putInt(-1);
+                return;
+            }
+            putInt(values.length);
+            for (float value : values) {
+                putFloat(value);
+            }
+        }
+
+        /**
+         * @return the encoded image of the texture, either its data or a copy of its buffer (i.e. an embedded glTF image)
+         */
+        private static byte[] encodedImage(Texture texture) {
+            if (texture.getData() != null || texture.getBuffer() == null) return texture.getData();
+            final ByteBuffer image = texture.getBuffer().duplicate();
+            final byte[] ret = new byte[image.remaining()];
+            image.get(ret);
+            return ret;
+        }
+
+        private void putBytes(byte[] bytes) throws IOException {
+            if (bytes == null) {
+                putInt(-1);
+                return;
+            }
+            putInt(bytes.length);
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                final int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void putString(String value) throws IOException {
+            putBytes(value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+        }
+
+        private void align() throws IOException {
+            while ((written + buffer.position()) % 4 != 0) {
+                putByte((byte) 0);
+            }
+        }
+
+        private void putBuffer(Buffer data) throws IOException {
+            if (data == null) {
+                putByte(BUFFER_NONE);
+                return;
+            }
+
+            final byte type;
+            if (data instanceof FloatBuffer) type = BUFFER_FLOAT;
+            else if (data instanceof IntBuffer) type = BUFFER_INT;
+            else if (data instanceof ShortBuffer) type = BUFFER_SHORT;
+            else if (data instanceof ByteBuffer) type = BUFFER_BYTE;
+            else throw new IOException("Unsupported buffer type: " + data.getClass().getName());
+
+            putByte(type);
+            putInt(data.capacity());
+            putInt(data.limit());
+            align();
+
+            // copy the whole buffer, in blocks of the staging buffer
+            for (int offset = 0; offset < data.capacity(); ) {
+                if (buffer.remaining() < 4) flush();
+                final ByteBuffer target = buffer.slice().order(ByteOrder.nativeOrder());
+                final int length;
+                switch (type) {
+                    case BUFFER_FLOAT: {
+                        final FloatBuffer src = ((FloatBuffer) data).duplicate();
+                        length = Math.min(target.remaining() / 4, data.capacity() - offset);
+                        src.limit(offset + length);
+                        src.position(offset);
+                        target.asFloatBuffer().put(src);
+                        buffer.position(buffer.position() + length * 4);
+                        break;
+                    }
+                    case BUFFER_INT: {
+                        final IntBuffer src = ((IntBuffer) data).duplicate();
+                        length = Math.min(target.remaining() / 4, data.capacity() - offset);
+                        src.limit(offset + length);
+                        src.position(offset);
+                        target.asIntBuffer().put(src);
+                        buffer.position(buffer.position() + length * 4);
+                        break;
+                    }
+                    case BUFFER_SHORT: {
+                        final ShortBuffer src = ((ShortBuffer) data).duplicate();
+                        length = Math.min(target.remaining() / 2, data.capacity() - offset);
+                        src.limit(offset + length);
+                        src.position(offset);
+                        target.asShortBuffer().put(src);
+                        buffer.position(buffer.position() + length * 2);
+                        break;
+                    }
+                    default: {
+                        final ByteBuffer src = ((ByteBuffer) data).duplicate();
+                        length = Math.min(target.remaining(), data.capacity() - offset);
+                        src.limit(offset + length);
+                        src.position(offset);
+                        buffer.put(src);
+                        break;
+                    }
+                }
+                offset += length;
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final ByteBuffer map;
+
+        // scene tables
+        private final List<Texture> textures = new ArrayList<>();
+        private final List<Material> materials = new ArrayList<>();
+        private final List<Object3D> objects = new ArrayList<>();
+
+        private Reader(ByteBuffer map) {
+            this.map = map;
+        }
+
+        /**
+         * @return the scenes, or null if the file was written by a different format or loader version
+         */
+        private List<Entry> read(String loader, int version) {
+            if (map.getInt() != MAGIC || map.getInt() != FORMAT_VERSION) return null;
+            if (!loader.equals(getString()) || map.getInt() != version) return null;
+
+            final int count = map.getInt();
+            final List<Entry> ret = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ret.add(readScene());
+            }
+            return ret;
+        }
+
+        private Entry readScene() {
+            textures.clear();
+            materials.clear();
+            objects.clear();
+
+            final Scene scene = new Scene(getString());
+            scene.setSmooth(getBoolean());
+            scene.setCollision(getBoolean());
+
+            final int textureCount = map.getInt();
+            for (int i = 0; i < textureCount; i++) {
+                final Texture texture = new Texture(getString());
+                final String uri = getString();
+                if (uri != null) texture.setUri(URI.create(uri));
+                final byte[] data = getBytes();
+                if (data != null) texture.setData(data);
+                textures.add(texture);
+            }
+
+            final int materialCount = map.getInt();
+            for (int i = 0; i < materialCount; i++) {
+                materials.add(readMaterial());
+            }
+
+            final Entry entry = new Entry(scene);
+            final int objectCount = map.getInt();
+            for (int i = 0; i < objectCount; i++) {
+                objects.add(readObject());
+            }
+            entry.objects.addAll(objects);
+
+            final int nodeCount = map.getInt();
+            for (int i = 0; i < nodeCount; i++) {
+                scene.getRootNodes().add(readNode(null));
+            }
+            return entry;
+        }
+
+        private Material readMaterial() {
+            final Material material = new Material(getString(), getString());
+            material.setAmbient(getFloats());
+            material.setDiffuse(getFloats());
+            material.setSpecular(getFloats());
+            material.setShininess(map.getFloat());
+            material.setAlpha(map.getFloat());
+            material.setAlphaCutoff(map.getFloat());
+            material.setAlphaMode(Material.AlphaMode.values()[map.getInt()]);
+            material.setEmissiveFactor(getFloats());
+            material.setThicknessFactor(map.getFloat());
+            material.setAttenuationDistance(map.getFloat());
+            material.setAttenuationColor(getFloats());
+            material.setColorTexture(get(textures, map.getInt()));
+            material.setNormalTexture(get(textures, map.getInt()));
+            material.setEmissiveTexture(get(textures, map.getInt()));
+            material.setTransmissionTexture(get(textures, map.getInt()));
+            return material;
+        }
+
+        private Object3D readObject() {
+            final String id = getString();
+            final String name = getString();
+            final String uri = getString();
+            final String authoringTool = getString();
+            final int drawMode = map.getInt();
+            final boolean indexed = getBoolean();
+            final Material material = get(materials, map.getInt());
+
+            final FloatBuffer vertices = (FloatBuffer) getBuffer();
+            final FloatBuffer normals = (FloatBuffer) getBuffer();
+            final FloatBuffer tangents = (FloatBuffer) getBuffer();
+            final Buffer colors = getBuffer();
+            final FloatBuffer textureCoords = (FloatBuffer) getBuffer();
+            final Buffer indices = getBuffer();
+
+            final Object3D object = new Object3D(id, vertices, normals, textureCoords,
+                    colors instanceof FloatBuffer ? (FloatBuffer) colors : null, material);
+            object.setName(name);
+            if (uri != null) object.setUri(URI.create(uri));
+            object.setAuthoringTool(authoringTool);
+            object.setDrawMode(drawMode);
+            object.setIndexed(indexed);
+            object.setTangentBuffer(tangents);
+            if (colors instanceof ByteBuffer) object.setColorsBuffer(colors);
+            if (indices != null) object.setIndexBuffer(indices);
+
+            final int elementCount = map.getInt();
+            if (elementCount >= 0) {
+                final List<Element> elements = new ArrayList<>(elementCount);
+                for (int i = 0; i < elementCount; i++) {
+                    final String elementId = getString();
+                    final String materialId = getString();
+                    final Material elementMaterial = get(materials, map.getInt());
+                    final Element element = new Element(elementId, getBuffer(), materialId);
+                    element.setMaterial(elementMaterial);
+                    elements.add(element);
+                }
+                object.setElements(elements);
+            }
+            return object;
+        }
+
+        private Node readNode(Node parent) {
+            final String id = getString();
+            final String name = getString();
+            final String sid = getString();
+            final float[] matrix = getFloats();
+
+            final Node node = matrix != null ? new Node(new Transform(matrix)) : new Node();
+            node.setId(id);
+            node.setName(name);
+            node.setSid(sid);
+            node.setParent(parent);
+            node.setMaterial(get(materials, map.getInt()));
+
+            final int meshCount = map.getInt();
+            if (meshCount >= 0) {
+                final List<Object3D> meshes = new ArrayList<>(meshCount);
+                for (int i = 0; i < meshCount; i++) {
+                    final Object3D mesh = get(objects, map.getInt());
+                    if (mesh == null) continue;
+                    mesh.setParentNode(node);
+                    meshes.add(mesh);
+                }
+                node.setMeshes(meshes);
+            }
+
+            final int childCount = map.getInt();
+            for (int i = 0; i < childCount; i++) {
+                node.addChild(readNode(node));
+            }
+            return node;
+        }
+
+        private static <T> T get(List<T> table, int index) {
+            return index >= 0 ? table.get(index) : null;
+        }
+
+        private boolean getBoolean() {
+            return map.get() != 0;
+        }
+
+        private float[] getFloats() {
+            final int length = map.getInt();
+            if (length < 0) return null;
+            final float[] ret = new float[length];
+            map.asFloatBuffer().get(ret);
+            map.position(map.position() + length * 4);
+            return ret;
+        }
+
+        private byte[] getBytes() {
+            final int length = map.getInt();
+            if (length < 0) return null;
+            final byte[] ret = new byte[length];
+            map.get(ret);
+            return ret;
+        }
+
+        private String getString() {
+            final byte[] bytes = getBytes();
+            return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+        }
+
+        /**
+         * @return a view of the mapped file, so the data is not copied
+         */
+        private Buffer getBuffer() {
+            final byte type = map.get();
+            if (type == BUFFER_NONE) return null;
+
+            final int capacity = map.getInt();
+            final int limit = map.getInt();
+            map.position((map.position() + 3) & ~3);
+
+            final int size = type == BUFFER_BYTE ? 1 : type == BUFFER_SHORT ? 2 : 4;
+            final ByteBuffer view = map.duplicate();
+            view.limit(map.position() + capacity * size);
+            final ByteBuffer data = view.slice().order(ByteOrder.nativeOrder());
+            map.position(view.limit());
+
+            final Buffer ret;
+            switch (type) {
+                case BUFFER_FLOAT:
+                    ret = data.asFloatBuffer();
+                    break;
+                case BUFFER_INT:
+                    ret = data.asIntBuffer();
+                    break;
+                case BUFFER_SHORT:
+                    ret = data.asShortBuffer();
+                    break;
+                case BUFFER_BYTE:
+                    ret = data;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown buffer type: " + type);
+            }
+            ret.limit(limit);
+            return ret;
+        }
+    }
+}
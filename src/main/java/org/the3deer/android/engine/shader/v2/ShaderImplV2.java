@@ -487,6 +487,18 @@ public class ShaderImplV2 implements Shader {
         if (texture.isCubeMap()) {
             textureId = GLUtil.loadCubeMap(texture.getCubeMap());
             texture.setId(textureId);
+        } else if (texture.hasMipmaps()) {
+            // decoded on the loader thread. upload it later if the frame is already busy
+            if (!GLUtil.canUploadTexture()) return;
+            textureId = GLUtil.loadTexture(texture.getWidth(), texture.getHeight(), texture.getMipmaps());
+            texture.setId(textureId);
+            // the pixels are in the GPU now
+            texture.releaseMipmaps();
+        } else if (texture.getKtx() != null) {
+            // compressed levels are uploaded as they are
+            if (!GLUtil.canUploadTexture()) return;
+            textureId = GLUtil.loadTexture(texture.getKtx());
+            texture.setId(textureId);
         } else if (texture.getBitmap() != null && !texture.getBitmap().isRecycled()) {
             textureId = GLUtil.loadTexture(texture.getBitmap());
             texture.setId(textureId);
@@ -7,6 +7,7 @@ import org.the3deer.android.engine.model.AnimatedModel;
 import org.the3deer.android.engine.model.Element;
 import org.the3deer.android.engine.model.Object3D;
 import org.the3deer.android.engine.model.Skin;
+import org.the3deer.android.engine.model.VertexAttribute;
 
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
@@ -74,18 +75,21 @@ public class GpuManager {
         // Note: For UI widgets like Text, we use GL_DYNAMIC_DRAW because they change often
         int usage = obj instanceof Widget ? GLES30.GL_DYNAMIC_DRAW : GLES30.GL_STATIC_DRAW;
 
-        uploadAttribute(ATTR_POSITION, vboIds[ATTR_POSITION], obj.getVertexBuffer(), 3, usage);
+        // Note: quantized attributes (i.e. KHR_mesh_quantization) are uploaded as they are
+        uploadAttribute(ATTR_POSITION, vboIds[ATTR_POSITION], obj.getPositionsAttribute(), usage);
 
         // Attribute 1: Normal
-        boolean hasNormals = obj.getNormalsBuffer() != null;
+        final VertexAttribute normals = obj.getNormalsAttribute();
+        boolean hasNormals = normals != null;
         if (hasNormals) {
-            uploadAttribute(ATTR_NORMAL, vboIds[ATTR_NORMAL], obj.getNormalsBuffer(), 3, usage);
+            uploadAttribute(ATTR_NORMAL, vboIds[ATTR_NORMAL], normals, usage);
         }
 
         // Attribute 2: Texture Coordinates (UV)
-        boolean hasTexCoords = obj.getTextureCoordsArrayBuffer() != null;
+        final VertexAttribute texCoords = obj.getTexCoordsAttribute();
+        boolean hasTexCoords = texCoords != null;
         if (hasTexCoords) {
-            uploadAttribute(ATTR_TEXCOORD, vboIds[ATTR_TEXCOORD], obj.getTextureCoordsArrayBuffer(), 2, usage);
+            uploadAttribute(ATTR_TEXCOORD, vboIds[ATTR_TEXCOORD], texCoords, usage);
         }
 
         // Attribute 3: Colors
@@ -112,9 +116,10 @@ public class GpuManager {
         }
 
         // Attribute 6: Tangents
-        boolean hasTangents = obj.getTangentBuffer() != null;
+        final VertexAttribute tangents = obj.getTangentsAttribute();
+        boolean hasTangents = tangents != null;
         if (hasTangents) {
-            uploadAttribute(ATTR_TANGENT, vboIds[ATTR_TANGENT], obj.getTangentBuffer(), 4, usage);
+            uploadAttribute(ATTR_TANGENT, vboIds[ATTR_TANGENT], tangents, usage);
         }
 
         // 3. Create GPU Elements (EBOs)
@@ -141,8 +146,9 @@ public class GpuManager {
 
     private void updateAsset(GpuAsset asset, Object3D obj) {
         // Only update attributes that are likely to change in a UI context: Position and Colors
-        if (obj.getVertexBuffer() != null) {
-            updateVbo(asset.getVboIds()[ATTR_POSITION], obj.getVertexBuffer());
+        final VertexAttribute positions = obj.getPositionsAttribute();
+        if (positions != null) {
+            updateVbo(asset.getVboIds()[ATTR_POSITION], positions.getBuffer());
         }
         if (obj.getColorsBuffer() != null) {
             updateVbo(asset.getVboIds()[ATTR_COLOR], obj.getColorsBuffer());
@@ -208,6 +214,21 @@ public class GpuManager {
         GLES30.glVertexAttribPointer(location, size, type, false, 0, 0);
     }
 
+    /**
+     * Upload the attribute with its original component type.
+     * Integer types are normalized by the GPU if the attribute is normalized, otherwise they are converted to float as they are.
+     */
+    private void uploadAttribute(int location, int vboId, VertexAttribute attribute, int usage) {
+        if (attribute == null) return;
+        GLES30.glBindBuffer(GLES30.GL_ARRAY_BUFFER, vboId);
+        final Buffer buffer = attribute.getBuffer();
+        buffer.position(0);
+        GLES30.glBufferData(GLES30.GL_ARRAY_BUFFER, attribute.getSizeInBytes(), buffer, usage);
+        GLES30.glEnableVertexAttribArray(location);
+        GLES30.glVertexAttribPointer(location, attribute.getComponents(), attribute.getComponentType(),
+                attribute.isNormalized(), attribute.getByteStride(), 0);
+    }
+
     public int getJointTextureId(Object3D obj) {
         GpuAsset asset = assetMap.get(obj);
         return asset != null ? asset.getJointTextureId() : 0;
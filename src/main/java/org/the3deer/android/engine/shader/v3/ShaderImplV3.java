@@ -240,9 +240,12 @@ public class ShaderImplV3 implements Shader {
             boolean hasTexture = material != null && material.getColorTexture() != null;
             boolean textured = asset.hasTexCoords() && hasTexture && texturesEnabled;
 
-            setFeatureFlag("u_Textured", textured);
             if (textured) {
                 loadTexture(material.getColorTexture());
+                textured = material.getColorTexture().hasId();
+            }
+            setFeatureFlag("u_Textured", textured);
+            if (textured) {
                 setTexture(material.getColorTexture(), "u_Texture", 0);
                 
                 // Texture Transform
@@ -256,9 +259,12 @@ public class ShaderImplV3 implements Shader {
         if (supportsNormalTexture) {
             boolean normalTextured = material != null && material.getNormalTexture() != null
                     && asset.hasTangents();
-            setFeatureFlag("u_NormalTextured", normalTextured);
             if (normalTextured) {
                 loadTexture(material.getNormalTexture());
+                normalTextured = material.getNormalTexture().hasId();
+            }
+            setFeatureFlag("u_NormalTextured", normalTextured);
+            if (normalTextured) {
                 setTexture(material.getNormalTexture(), "u_NormalTexture", 1);
             }
         }
@@ -266,9 +272,12 @@ public class ShaderImplV3 implements Shader {
         // Emissive Texture
         if (supportsEmissiveTexture) {
             boolean emissiveTextured = material != null && material.getEmissiveTexture() != null;
-            setFeatureFlag("u_EmissiveTextured", emissiveTextured);
             if (emissiveTextured) {
                 loadTexture(material.getEmissiveTexture());
+                emissiveTextured = material.getEmissiveTexture().hasId();
+            }
+            setFeatureFlag("u_EmissiveTextured", emissiveTextured);
+            if (emissiveTextured) {
                 setTexture(material.getEmissiveTexture(), "u_EmissiveTexture", 2);
                 if (material.getEmissiveFactor() != null) {
                     setUniform3(material.getEmissiveFactor(), "u_EmissiveFactor");
@@ -279,9 +288,12 @@ public class ShaderImplV3 implements Shader {
         // Transmission Texture
         if (supportsTransmissionTexture) {
             boolean transmissionTextured = material != null && material.getTransmissionTexture() != null;
-            setFeatureFlag("u_TransmissionTextured", transmissionTextured);
             if (transmissionTextured) {
                 loadTexture(material.getTransmissionTexture());
+                transmissionTextured = material.getTransmissionTexture().hasId();
+            }
+            setFeatureFlag("u_TransmissionTextured", transmissionTextured);
+            if (transmissionTextured) {
                 setTexture(material.getTransmissionTexture(), "u_TransmissionTexture", 3);
                 setUniform1(material.getThicknessFactor(), "u_TransmissionFactor");
             }
@@ -334,6 +346,18 @@ public class ShaderImplV3 implements Shader {
         if (texture.isCubeMap()) {
             textureId = GLUtil.loadCubeMap(texture.getCubeMap());
             texture.setId(textureId);
+        } else if (texture.hasMipmaps()) {
+            // decoded on the loader thread. upload it later if the frame is already busy
+            if (!GLUtil.canUploadTexture()) return;
+            textureId = GLUtil.loadTexture(texture.getWidth(), texture.getHeight(), texture.getMipmaps());
+            texture.setId(textureId);
+            // the pixels are in the GPU now
+            texture.releaseMipmaps();
+        } else if (texture.getKtx() != null) {
+            // compressed levels are uploaded as they are
+            if (!GLUtil.canUploadTexture()) return;
+            textureId = GLUtil.loadTexture(texture.getKtx());
+            texture.setId(textureId);
         } else if (texture.getBitmap() != null && !texture.getBitmap().isRecycled()) {
             textureId = GLUtil.loadTexture(texture.getBitmap());
             texture.setId(textureId);
@@ -112,6 +112,136 @@ public final class GLUtil {
         return shader;
     }
 
+    /**
+     * Max time spent uploading textures in a frame. At least one texture is uploaded per frame
+     */
+    private static long uploadBudgetNanos = 8_000_000L;
+
+    private static long frameUploadNanos;
+
+    public static void setUploadBudget(long millis) {
+        uploadBudgetNanos = millis * 1_000_000L;
+    }
+
+    /**
+     * Reset the texture upload budget. To be called at the beginning of every frame
+     */
+    public static void beginFrame() {
+        frameUploadNanos = 0;
+    }
+
+    /**
+     * @return true if there is time left in the frame to upload a texture
+     */
+    public static boolean canUploadTexture() {
+        return frameUploadNanos < uploadBudgetNanos;
+    }
+
+    /**
+     * Upload the prepared mip levels of a texture (see {@link org.the3deer.android.engine.util.TexturePreparer})
+     *
+     * @param width   width of the level 0
+     * @param height  height of the level 0
+     * @param mipmaps the RGBA pixels of every level
+     * @return the texture id
+     */
+    public static int loadTexture(final int width, final int height, final ByteBuffer[] mipmaps) {
+        final long start = System.nanoTime();
+
+        final int[] textureHandle = new int[1];
+        GLES20.glGenTextures(1, textureHandle, 0);
+        GLUtil.checkGlError("glGenTextures");
+        if (textureHandle[0] == 0) {
+            throw new RuntimeException("Error loading texture.");
+        }
+
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+        GLUtil.checkGlError("glBindTexture");
+        for (int level = 0, w = width, h = height; level < mipmaps.length; level++) {
+            mipmaps[level].position(0);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, level, GLES20.GL_RGBA, w, h, 0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, mipmaps[level]);
+            w = Math.max(1, w / 2);
+            h = Math.max(1, h / 2);
+        }
+        GLUtil.checkGlError("glTexImage2D");
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER,
+                mipmaps.length > 1 ? GLES20.GL_LINEAR_MIPMAP_LINEAR : GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,GLES20.GL_TEXTURE_WRAP_S,GLES20.GL_REPEAT);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,GLES20.GL_TEXTURE_WRAP_T,GLES20.GL_REPEAT);
+
+        frameUploadNanos += System.nanoTime() - start;
+        logger.finest("Loaded texture: " + textureHandle[0] + " (" + width + "x" + height + ") in "
+                + (System.nanoTime() - start) / 1000 + " us");
+        return textureHandle[0];
+    }
+
+    /**
+     * Upload the levels of a KTX texture. Compressed levels are uploaded with glCompressedTexImage2D, without decoding
+     *
+     * @param ktx the texture
+     * @return the texture id
+     */
+    public static int loadTexture(final KtxTexture ktx) {
+        final long start = System.nanoTime();
+
+        if (ktx.isCompressed() && !isCompressedFormatSupported(ktx.getGlInternalFormat())) {
+            logger.warning("Compressed texture format not supported by the device: 0x"
+                    + Integer.toHexString(ktx.getGlInternalFormat()));
+        }
+
+        final int[] textureHandle = new int[1];
+        GLES20.glGenTextures(1, textureHandle, 0);
+        GLUtil.checkGlError("glGenTextures");
+        if (textureHandle[0] == 0) {
+            throw new RuntimeException("Error loading texture.");
+        }
+
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+        GLUtil.checkGlError("glBindTexture");
+        for (int level = 0; level < ktx.getLevelCount(); level++) {
+            final ByteBuffer data = ktx.getLevel(level);
+            if (ktx.isCompressed()) {
+                GLES20.glCompressedTexImage2D(GLES20.GL_TEXTURE_2D, level, ktx.getGlInternalFormat(),
+                        ktx.getLevelWidth(level), ktx.getLevelHeight(level), 0, data.remaining(), data);
+            } else {
+                // unsized format, so it works in OpenGL ES 2
+                GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, level, ktx.getGlFormat(), ktx.getLevelWidth(level),
+                        ktx.getLevelHeight(level), 0, ktx.getGlFormat(), ktx.getGlType(), data);
+            }
+        }
+        GLUtil.checkGlError(ktx.isCompressed() ? "glCompressedTexImage2D" : "glTexImage2D");
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER,
+                ktx.getLevelCount() > 1 ? GLES20.GL_LINEAR_MIPMAP_LINEAR : GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,GLES20.GL_TEXTURE_WRAP_S,GLES20.GL_REPEAT);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D,GLES20.GL_TEXTURE_WRAP_T,GLES20.GL_REPEAT);
+
+        frameUploadNanos += System.nanoTime() - start;
+        logger.finest("Loaded texture: " + textureHandle[0] + " (" + ktx + ") in "
+                + (System.nanoTime() - start) / 1000 + " us");
+        return textureHandle[0];
+    }
+
+    private static String extensions;
+
+    /**
+     * @param glInternalFormat the compressed format
+     * @return true if the GL context supports the format. ETC2 and EAC are part of OpenGL ES 3
+     */
+    public static boolean isCompressedFormatSupported(int glInternalFormat) {
+        if (extensions == null) {
+            extensions = String.valueOf(GLES20.glGetString(GLES20.GL_EXTENSIONS));
+        }
+        if (KtxTexture.isAstc(glInternalFormat)) {
+            return extensions.contains("GL_KHR_texture_compression_astc_ldr");
+        }
+        if (glInternalFormat == KtxTexture.GL_ETC1_RGB8_OES) {
+            return extensions.contains("GL_OES_compressed_ETC1_RGB8_texture");
+        }
+        return GLES20.glGetString(GLES20.GL_VERSION).startsWith("OpenGL ES 3");
+    }
+
     public static int loadTexture(final ByteBuffer textureData) {
         Bitmap bitmap = AndroidUtils.decodeBitmap(new ByteBufferInputStream(textureData));
         return loadTexture(bitmap);
@@ -0,0 +1,440 @@
+package org.the3deer.android.engine.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Texture stored in a KTX (1.1) or KTX2 container.
+ * <p>
+ * The container is parsed in place: the mip levels are views of the source buffer (i.e. a memory mapped file),
+ * so the compressed payloads (ETC2, EAC, ASTC) can be uploaded with glCompressedTexImage2D without decoding them.
+ * Only 2D textures (1 face, no array layers) without supercompression are supported.
+ * <p>
+ * This class doesn't depend on Android or OpenGL, so the parsing can be tested without a GPU.
+ *
+ * @author andresoviedo
+ */
+public final class KtxTexture {
+
+    // uncompressed formats
+    public static final int GL_UNSIGNED_BYTE = 0x1401;
+    public static final int GL_RGB = 0x1907;
+    public static final int GL_RGBA = 0x1908;
+    public static final int GL_RGB8 = 0x8051;
+    public static final int GL_RGBA8 = 0x8058;
+    public static final int GL_SRGB8 = 0x8C41;
+    public static final int GL_SRGB8_ALPHA8 = 0x8C43;
+
+    // compressed formats
+    public static final int GL_ETC1_RGB8_OES = 0x8D64;
+    public static final int GL_COMPRESSED_R11_EAC = 0x9270;
+    public static final int GL_COMPRESSED_SIGNED_R11_EAC = 0x9271;
+    public static final int GL_COMPRESSED_RG11_EAC = 0x9272;
+    public static final int GL_COMPRESSED_SIGNED_RG11_EAC = 0x9273;
+    public static final int GL_COMPRESSED_RGB8_ETC2 = 0x9274;
+    public static final int GL_COMPRESSED_SRGB8_ETC2 = 0x9275;
+    public static final int GL_COMPRESSED_RGB8_PUNCHTHROUGH_ALPHA1_ETC2 = 0x9276;
+    public static final int GL_COMPRESSED_SRGB8_PUNCHTHROUGH_ALPHA1_ETC2 = 0x9277;
+    public static final int GL_COMPRESSED_RGBA8_ETC2_EAC = 0x9278;
+    public static final int GL_COMPRESSED_SRGB8_ALPHA8_ETC2_EAC = 0x9279;
+    /**
+     * First ASTC format (4x4). The rest follow the order of {@link #ASTC_BLOCKS}
+     */
+    public static final int GL_COMPRESSED_RGBA_ASTC_4x4 = 0x93B0;
+    public static final int GL_COMPRESSED_SRGB8_ALPHA8_ASTC_4x4 = 0x93D0;
+
+    private static final byte[] KTX1_IDENTIFIER = {(byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+    private static final byte[] KTX2_IDENTIFIER = {(byte) 0xAB, 'K', 'T', 'X', ' ', '2', '0', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+
+    /**
+     * ASTC block sizes, in the order of the GL and Vulkan formats
+     */
+    private static final int[][] ASTC_BLOCKS = {{4, 4}, {5, 4}, {5, 5}, {6, 5}, {6, 6}, {8, 5}, {8, 6}, {8, 8},
+            {10, 5}, {10, 6}, {10, 8}, {10, 10}, {12, 10}, {12, 12}};
+
+    // vulkan formats (KTX2)
+    private static final int VK_FORMAT_R8G8B8_UNORM = 23;
+    private static final int VK_FORMAT_R8G8B8_SRGB = 29;
+    private static final int VK_FORMAT_R8G8B8A8_UNORM = 37;
+    private static final int VK_FORMAT_R8G8B8A8_SRGB = 43;
+    private static final int VK_FORMAT_ETC2_R8G8B8_UNORM_BLOCK = 147;
+    private static final int VK_FORMAT_EAC_R11G11_SNORM_BLOCK = 156;
+    private static final int VK_FORMAT_ASTC_4x4_UNORM_BLOCK = 157;
+    private static final int VK_FORMAT_ASTC_12x12_SRGB_BLOCK = 184;
+
+    private final int version;
+    private final int width;
+    private final int height;
+    private final int glInternalFormat;
+    private final int glFormat;
+    private final int glType;
+    private final Map<String, byte[]> keyValues;
+    private final ByteBuffer[] levels;
+
+    private KtxTexture(int version, int width, int height, int glInternalFormat, int glFormat, int glType,
+                       Map<String, byte[]> keyValues, ByteBuffer[] levels) {
+        this.version = version;
+        this.width = width;
+        this.height = height;
+        this.glInternalFormat = glInternalFormat;
+        this.glFormat = glFormat;
+        this.glType = glType;
+        this.keyValues = Collections.unmodifiableMap(keyValues);
+        this.levels = levels;
+    }
+
+    /**
+     * @param data the file contents
+     * @return true if the data starts with the KTX or KTX2 identifier
+     */
+    public static boolean isKtx(ByteBuffer data) {
+        return data != null && (startsWith(data, KTX1_IDENTIFIER) || startsWith(data, KTX2_IDENTIFIER));
+    }
+
+    /**
+     * Memory map the file and parse it
+     *
+     * @param channel the file
+     * @return the texture, whose levels are views of the mapped file
+     * @throws IOException if the file can't be mapped
+     */
+    public static KtxTexture map(FileChannel channel) throws IOException {
+        return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+
+    /**
+     * Parse the container
+     *
+     * @param data the file contents, from its position to its limit. It's not modified
+     * @return the texture, whose levels are views of the data
+     * @throws IllegalArgumentException if the container is invalid or not supported
+     */
+    public static KtxTexture read(ByteBuffer data) {
+        final ByteBuffer buffer = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (startsWith(buffer, KTX2_IDENTIFIER)) {
+                return readKtx2(buffer);
+            } else if (startsWith(buffer, KTX1_IDENTIFIER)) {
+                return readKtx1(buffer);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated KTX data", e);
+        }
+        throw new IllegalArgumentException("Not a KTX file");
+    }
+
+    private static KtxTexture readKtx2(ByteBuffer buffer) {
+        final int vkFormat = buffer.getInt(12);
+        final int width = buffer.getInt(20);
+        final int height = buffer.getInt(24);
+        final int depth = buffer.getInt(28);
+        final int layerCount = buffer.getInt(32);
+        final int faceCount = buffer.getInt(36);
+        final int levelCount = Math.max(1, buffer.getInt(40));
+        final int supercompression = buffer.getInt(44);
+        final int kvdOffset = buffer.getInt(56);
+        final int kvdLength = buffer.getInt(60);
+
+        checkSize(width, height, depth, layerCount, faceCount, levelCount);
+        if (supercompression != 0) {
+            throw new IllegalArgumentException("Unsupported KTX2 supercompression: " + supercompression);
+        }
+
+        // formats
+        final int glInternalFormat;
+        int glFormat = 0;
+        int glType = 0;
+        switch (vkFormat) {
+            case VK_FORMAT_R8G8B8_UNORM:
+            case VK_FORMAT_R8G8B8_SRGB:
+                glInternalFormat = vkFormat == VK_FORMAT_R8G8B8_UNORM ? GL_RGB8 : GL_SRGB8;
+                glFormat = GL_RGB;
+                glType = GL_UNSIGNED_BYTE;
+                break;
+            case VK_FORMAT_R8G8B8A8_UNORM:
+            case VK_FORMAT_R8G8B8A8_SRGB:
+                glInternalFormat = vkFormat == VK_FORMAT_R8G8B8A8_UNORM ? GL_RGBA8 : GL_SRGB8_ALPHA8;
+                glFormat = GL_RGBA;
+                glType = GL_UNSIGNED_BYTE;
+                break;
+            default:
+                if (vkFormat >= VK_FORMAT_ETC2_R8G8B8_UNORM_BLOCK && vkFormat <= VK_FORMAT_EAC_R11G11_SNORM_BLOCK) {
+                    glInternalFormat = ETC_FORMATS[vkFormat - VK_FORMAT_ETC2_R8G8B8_UNORM_BLOCK];
+                } else if (vkFormat >= VK_FORMAT_ASTC_4x4_UNORM_BLOCK && vkFormat <= VK_FORMAT_ASTC_12x12_SRGB_BLOCK) {
+                    // unorm and srgb alternate
+                    final int index = vkFormat - VK_FORMAT_ASTC_4x4_UNORM_BLOCK;
+                    glInternalFormat = (index % 2 == 0 ? GL_COMPRESSED_RGBA_ASTC_4x4 : GL_COMPRESSED_SRGB8_ALPHA8_ASTC_4x4) + index / 2;
+                } else {
+                    throw new IllegalArgumentException("Unsupported KTX2 format: " + vkFormat);
+                }
+        }
+
+        final Map<String, byte[]> keyValues = readKeyValues(buffer, kvdOffset, kvdLength, ByteOrder.LITTLE_ENDIAN);
+
+        // level index, after the 80 bytes of the header
+        final ByteBuffer[] levels = new ByteBuffer[levelCount];
+        for (int level = 0; level < levelCount; level++) {
+            final long offset = buffer.getLong(80 + level * 24);
+            final long length = buffer.getLong(80 + level * 24 + 8);
+            levels[level] = slice(buffer, offset, length, getLevelSize(glInternalFormat, glFormat,
+                    Math.max(1, width >> level), Math.max(1, height >> level)));
+        }
+        return new KtxTexture(2, width, height, glInternalFormat, glFormat, glType, keyValues, levels);
+    }
+
+    /**
+     * VK_FORMAT_ETC2_R8G8B8_UNORM_BLOCK to VK_FORMAT_EAC_R11G11_SNORM_BLOCK
+     */
+    private static final int[] ETC_FORMATS = {
+            GL_COMPRESSED_RGB8_ETC2, GL_COMPRESSED_SRGB8_ETC2,
+            GL_COMPRESSED_RGB8_PUNCHTHROUGH_ALPHA1_ETC2, GL_COMPRESSED_SRGB8_PUNCHTHROUGH_ALPHA1_ETC2,
+            GL_COMPRESSED_RGBA8_ETC2_EAC, GL_COMPRESSED_SRGB8_ALPHA8_ETC2_EAC,
+            GL_COMPRESSED_R11_EAC, GL_COMPRESSED_SIGNED_R11_EAC,
+            GL_COMPRESSED_RG11_EAC, GL_COMPRESSED_SIGNED_RG11_EAC};
+
+    private static KtxTexture readKtx1(ByteBuffer buffer) {
+        // the writer's endianness
+        if (buffer.getInt(12) != 0x04030201) {
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.getInt(12) != 0x04030201) {
+                throw new IllegalArgumentException("Invalid KTX endianness");
+            }
+        }
+        final int glType = buffer.getInt(16);
+        final int glFormat = buffer.getInt(24);
+        final int glInternalFormat = buffer.getInt(28);
+        final int width = buffer.getInt(36);
+        final int height = buffer.getInt(40);
+        final int depth = buffer.getInt(44);
+        final int arrayElements = buffer.getInt(48);
+        final int faces = buffer.getInt(52);
+        final int levelCount = Math.max(1, buffer.getInt(56));
+        final int kvdLength = buffer.getInt(60);
+
+        checkSize(width, height, depth, arrayElements, faces, levelCount);
+        if (glType == 0 ? getBlockBytes(glInternalFormat) == 0 : glType != GL_UNSIGNED_BYTE || (glFormat != GL_RGB && glFormat != GL_RGBA)) {
+            throw new IllegalArgumentException("Unsupported KTX format: " + Integer.toHexString(glInternalFormat));
+        }
+
+        final Map<String, byte[]> keyValues = readKeyValues(buffer, 64, kvdLength, buffer.order());
+
+        // every level: the size, the image and the padding to 4 bytes
+        final ByteBuffer[] levels = new ByteBuffer[levelCount];
+        long offset = 64L + kvdLength;
+        for (int level = 0; level < levelCount; level++) {
+            final long length = buffer.getInt(checkOffset(buffer, offset, 4)) & 0xFFFFFFFFL;
+            levels[level] = slice(buffer, offset + 4, length, getLevelSize(glInternalFormat, glFormat,
+                    Math.max(1, width >> level), Math.max(1, height >> level)));
+            offset += 4 + ((length + 3) & ~3L);
+        }
+        return new KtxTexture(1, width, height, glInternalFormat, glType == 0 ? 0 : glFormat, glType, keyValues, levels);
+    }
+
+    private static void checkSize(int width, int height, int depth, int layers, int faces, int levelCount) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid KTX size: " + width + "x" + height);
+        }
+        if (depth > 1 || layers > 1 || faces > 1) {
+            throw new IllegalArgumentException("Only 2D KTX textures are supported");
+        }
+        if (levelCount > 32 || (Math.max(width, height) >> (levelCount - 1)) == 0) {
+            throw new IllegalArgumentException("Invalid KTX level count: " + levelCount);
+        }
+    }
+
+    /**
+     * Parse the key/value pairs: size (uint32), key (utf-8, null terminated), value, padding to 4 bytes
+     */
+    private static Map<String, byte[]> readKeyValues(ByteBuffer buffer, long offset, long length, ByteOrder order) {
+        final Map<String, byte[]> ret = new LinkedHashMap<>();
+        if (length <= 0) return ret;
+        final ByteBuffer kvd = slice(buffer, offset, length, 0).order(order);
+        while (kvd.remaining() >= 4) {
+            final int size = kvd.getInt();
+            if (size < 0 || size > kvd.remaining()) {
+                throw new IllegalArgumentException("Invalid KTX key/value data");
+            }
+            final byte[] entry = new byte[size];
+            kvd.get(entry);
+            int keyLength = 0;
+            while (keyLength < size && entry[keyLength] != 0) keyLength++;
+            final String key = new String(entry, 0, keyLength, StandardCharsets.UTF_8);
+            final int valueOffset = Math.min(size, keyLength + 1);
+            final byte[] value = new byte[size - valueOffset];
+            System.arraycopy(entry, valueOffset, value, 0, value.length);
+            ret.put(key, value);
+            kvd.position(Math.min(kvd.limit(), (kvd.position() + 3) & ~3));
+        }
+        return ret;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, long offset, long length, long expected) {
+        if (length < expected) {
+            throw new IllegalArgumentException("Invalid KTX level size: " + length + ", expected: " + expected);
+        }
+        checkOffset(buffer, offset, length);
+        final ByteBuffer ret = buffer.duplicate();
+        ret.position((int) offset);
+        ret.limit((int) (offset + length));
+        return ret.slice().order(ByteOrder.nativeOrder());
+    }
+
+    private static int checkOffset(ByteBuffer buffer, long offset, long length) {
+        if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+            throw new IllegalArgumentException("Truncated KTX data");
+        }
+        return (int) offset;
+    }
+
+    private static boolean startsWith(ByteBuffer data, byte[] identifier) {
+        if (data.remaining() < identifier.length) return false;
+        for (int i = 0; i < identifier.length; i++) {
+            if (data.get(data.position() + i) != identifier[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the bytes of a compressed block, or 0 if the format is not compressed (or not supported)
+     */
+    public static int getBlockBytes(int glInternalFormat) {
+        switch (glInternalFormat) {
+            case GL_ETC1_RGB8_OES:
+            case GL_COMPRESSED_R11_EAC:
+            case GL_COMPRESSED_SIGNED_R11_EAC:
+            case GL_COMPRESSED_RGB8_ETC2:
+            case GL_COMPRESSED_SRGB8_ETC2:
+            case GL_COMPRESSED_RGB8_PUNCHTHROUGH_ALPHA1_ETC2:
+            case GL_COMPRESSED_SRGB8_PUNCHTHROUGH_ALPHA1_ETC2:
+                return 8;
+            case GL_COMPRESSED_RG11_EAC:
+            case GL_COMPRESSED_SIGNED_RG11_EAC:
+            case GL_COMPRESSED_RGBA8_ETC2_EAC:
+            case GL_COMPRESSED_SRGB8_ALPHA8_ETC2_EAC:
+                return 16;
+            default:
+                return isAstc(glInternalFormat) ? 16 : 0;
+        }
+    }
+
+    /**
+     * @return the width of a compressed block (4 for ETC)
+     */
+    public static int getBlockWidth(int glInternalFormat) {
+        return isAstc(glInternalFormat) ? ASTC_BLOCKS[astcIndex(glInternalFormat)][0] : 4;
+    }
+
+    /**
+     * @return the height of a compressed block (4 for ETC)
+     */
+    public static int getBlockHeight(int glInternalFormat) {
+        return isAstc(glInternalFormat) ? ASTC_BLOCKS[astcIndex(glInternalFormat)][1] : 4;
+    }
+
+    public static boolean isAstc(int glInternalFormat) {
+        return astcIndex(glInternalFormat) >= 0;
+    }
+
+    private static int astcIndex(int glInternalFormat) {
+        if (glInternalFormat >= GL_COMPRESSED_RGBA_ASTC_4x4 && glInternalFormat < GL_COMPRESSED_RGBA_ASTC_4x4 + ASTC_BLOCKS.length) {
+            return glInternalFormat - GL_COMPRESSED_RGBA_ASTC_4x4;
+        }
+        if (glInternalFormat >= GL_COMPRESSED_SRGB8_ALPHA8_ASTC_4x4 && glInternalFormat < GL_COMPRESSED_SRGB8_ALPHA8_ASTC_4x4 + ASTC_BLOCKS.length) {
+            return glInternalFormat - GL_COMPRESSED_SRGB8_ALPHA8_ASTC_4x4;
+        }
+        return -1;
+    }
+
+    /**
+     * @param glInternalFormat the internal format
+     * @param glFormat         the format of the pixels, or 0 if compressed
+     * @param width            the width of the level
+     * @param height           the height of the level
+     * @return the size of the level
+     */
+    public static long getLevelSize(int glInternalFormat, int glFormat, int width, int height) {
+        if (glFormat == GL_RGB) return (long) width * height * 3;
+        if (glFormat == GL_RGBA) return (long) width * height * 4;
+        final int blockWidth = getBlockWidth(glInternalFormat);
+        final int blockHeight = getBlockHeight(glInternalFormat);
+        return (long) ((width + blockWidth - 1) / blockWidth) * ((height + blockHeight - 1) / blockHeight)
+                * getBlockBytes(glInternalFormat);
+    }
+
+    /**
+     * @return 1 for KTX, 2 for KTX2
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getLevelWidth(int level) {
+        return Math.max(1, width >> level);
+    }
+
+    public int getLevelHeight(int level) {
+        return Math.max(1, height >> level);
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * @return the data of the level (a view of the container)
+     */
+    public ByteBuffer getLevel(int level) {
+        return levels[level].duplicate();
+    }
+
+    public int getGlInternalFormat() {
+        return glInternalFormat;
+    }
+
+    /**
+     * @return the format of the pixels (i.e. GL_RGBA), or 0 if compressed
+     */
+    public int getGlFormat() {
+        return glFormat;
+    }
+
+    /**
+     * @return the type of the pixels (i.e. GL_UNSIGNED_BYTE), or 0 if compressed
+     */
+    public int getGlType() {
+        return glType;
+    }
+
+    public boolean isCompressed() {
+        return glType == 0;
+    }
+
+    public Map<String, byte[]> getKeyValues() {
+        return keyValues;
+    }
+
+    @Override
+    public String toString() {
+        return "KtxTexture{" +
+                "version=" + version +
+                ", width=" + width +
+                ", height=" + height +
+                ", glInternalFormat=0x" + Integer.toHexString(glInternalFormat) +
+                ", levels=" + levels.length +
+                '}';
+    }
+}
@@ -0,0 +1,235 @@
+package org.the3deer.android.engine.util;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import org.the3deer.android.engine.model.Texture;
+import org.the3deer.util.io.ByteBufferInputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prepares the textures on the loader threads, so the GL thread only has to upload the pixels.
+ * <p>
+ * The image is decoded, downscaled to the configured max size and memory budget, and the mip levels are computed
+ * into direct buffers (RGBA, 8 bits per channel), that are stored in the {@link Texture}.
+ * When the mipmaps are enabled, the image is scaled to the nearest power of two, so the mip chain is complete
+ * even in OpenGL ES 2.
+ *
+ * @author andresoviedo
+ */
+public final class TexturePreparer {
+
+    private static final Logger logger = Logger.getLogger(TexturePreparer.class.getSimpleName());
+
+    /**
+     * Max width or height of the textures
+     */
+    private static int maxSize = 4096;
+    /**
+     * Max memory of a texture, including all its mip levels
+     */
+    private static long maxBytes = 64L * 1024 * 1024;
+    /**
+     * Compute the mip levels
+     */
+    private static boolean mipmaps = true;
+
+    private TexturePreparer() {
+    }
+
+    public static void setMaxSize(int maxSize) {
+        TexturePreparer.maxSize = maxSize;
+    }
+
+    public static void setMaxBytes(long maxBytes) {
+        TexturePreparer.maxBytes = maxBytes;
+    }
+
+    public static void setMipmaps(boolean mipmaps) {
+        TexturePreparer.mipmaps = mipmaps;
+    }
+
+    /**
+     * Decode the texture and compute its mip levels.
+     * KTX containers are only parsed, so their levels are uploaded as they are (see {@link KtxTexture}).
+     * Cube maps, and textures already prepared or without image, are skipped.
+     *
+     * @param texture the texture
+     */
+    public static void prepare(Texture texture) {
+        prepare(texture, maxSize);
+    }
+
+    /**
+     * Decode the texture and compute its mip levels, downscaling it to the specified size
+     * (i.e. the {@link org.the3deer.android.engine.services.LoadPlanner.Plan#getMaxTextureSize()})
+     *
+     * @param texture the texture
+     * @param size    max width or height. The configured max size still applies
+     */
+    public static void prepare(Texture texture, int size) {
+        if (texture == null || texture.isCubeMap() || texture.hasMipmaps() || texture.getKtx() != null) return;
+
+        final long start = System.currentTimeMillis();
+        try {
+            final ByteBuffer ktxData = texture.getData() != null ? ByteBuffer.wrap(texture.getData()) : texture.getBuffer();
+            if (KtxTexture.isKtx(ktxData)) {
+                texture.setKtx(KtxTexture.read(ktxData));
+                logger.fine("Texture prepared: " + texture.getName() + " (" + texture.getKtx() + ")");
+                return;
+            }
+
+            Bitmap bitmap = texture.getBitmap();
+            final boolean decoded = bitmap == null || bitmap.isRecycled();
+            final int limit = Math.min(size, maxSize);
+            if (decoded) {
+                bitmap = decode(texture, limit);
+                if (bitmap == null) return;
+            }
+
+            // target size
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            if (mipmaps) {
+                width = nearestPowerOfTwo(width);
+                height = nearestPowerOfTwo(height);
+            }
+            while ((width > 1 || height > 1) && (width > limit || height > limit || sizeOf(width, height) > maxBytes)) {
+                width = Math.max(1, width / 2);
+                height = Math.max(1, height / 2);
+            }
+
+            Bitmap scaled = bitmap;
+            if (width != bitmap.getWidth() || height != bitmap.getHeight()) {
+                scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+            }
+            if (scaled.getConfig() != Bitmap.Config.ARGB_8888) {
+                final Bitmap copy = scaled.copy(Bitmap.Config.ARGB_8888, false);
+                if (scaled != bitmap) scaled.recycle();
+                scaled = copy;
+            }
+
+            // level 0
+            final ByteBuffer level0 = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder());
+            scaled.copyPixelsToBuffer(level0);
+            level0.rewind();
+            if (scaled != bitmap) scaled.recycle();
+
+            final ByteBuffer[] levels = new ByteBuffer[mipmaps ? levels(width, height) : 1];
+            levels[0] = level0;
+            for (int i = 1, w = width, h = height; i < levels.length; i++) {
+                final int nw = Math.max(1, w / 2);
+                final int nh = Math.max(1, h / 2);
+                levels[i] = downsample(levels[i - 1], w, h, nw, nh);
+                w = nw;
+                h = nh;
+            }
+            texture.setMipmaps(width, height, levels);
+
+            // the pixels are now in the buffers
+            bitmap.recycle();
+
+            logger.fine("Texture prepared: " + texture.getName() + " (" + width + "x" + height + ", levels: " + levels.length
+                    + ") in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception | OutOfMemoryError e) {
+            // the texture will be decoded on the GL thread
+            logger.log(Level.WARNING, "Texture couldn't be prepared: " + texture.getName() + ". " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decode the image of the texture, using the smallest sample size that fits the limits
+     */
+    private static Bitmap decode(Texture texture, int limit) {
+        final byte[] data = texture.getData();
+        final ByteBuffer buffer = texture.getBuffer();
+        if (data == null && buffer == null) return null;
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(data, buffer, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IllegalArgumentException("Unsupported image format");
+        }
+
+        int sampleSize = 1;
+        while (options.outWidth / sampleSize > limit * 2 || options.outHeight / sampleSize > limit * 2
+                || sizeOf(options.outWidth / sampleSize, options.outHeight / sampleSize) > maxBytes * 4) {
+            sampleSize *= 2;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inScaled = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        final Bitmap ret = decode(data, buffer, options);
+        if (ret == null) {
+            throw new IllegalArgumentException("Couldn't decode image");
+        }
+        return ret;
+    }
+
+    private static Bitmap decode(byte[] data, ByteBuffer buffer, BitmapFactory.Options options) {
+        if (data != null) {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        if (buffer.hasArray()) {
+            return BitmapFactory.decodeByteArray(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), options);
+        }
+        return BitmapFactory.decodeStream(new ByteBufferInputStream(buffer.duplicate()), null, options);
+    }
+
+    /**
+     * Average every 2x2 block of texels (or 2x1, when one of the dimensions is already 1)
+     */
+    private static ByteBuffer downsample(ByteBuffer src, int width, int height, int newWidth, int newHeight) {
+        final ByteBuffer ret = ByteBuffer.allocateDirect(newWidth * newHeight * 4).order(ByteOrder.nativeOrder());
+        for (int y = 0; y < newHeight; y++) {
+            final int y0 = Math.min(y * 2, height - 1);
+            final int y1 = Math.min(y * 2 + 1, height - 1);
+            for (int x = 0; x < newWidth; x++) {
+                final int x0 = Math.min(x * 2, width - 1);
+                final int x1 = Math.min(x * 2 + 1, width - 1);
+                final int p00 = (y0 * width + x0) * 4;
+                final int p01 = (y0 * width + x1) * 4;
+                final int p10 = (y1 * width + x0) * 4;
+                final int p11 = (y1 * width + x1) * 4;
+                for (int c = 0; c < 4; c++) {
+                    final int sum = (src.get(p00 + c) & 0xFF) + (src.get(p01 + c) & 0xFF)
+                            + (src.get(p10 + c) & 0xFF) + (src.get(p11 + c) & 0xFF);
+                    ret.put((byte) ((sum + 2) >> 2));
+                }
+            }
+        }
+        ret.rewind();
+        return ret;
+    }
+
+    private static int levels(int width, int height) {
+        int ret = 1;
+        while (width > 1 || height > 1) {
+            width = Math.max(1, width / 2);
+            height = Math.max(1, height / 2);
+            ret++;
+        }
+        return ret;
+    }
+
+    /**
+     * @return the memory of the RGBA texture, including the mip levels
+     */
+    private static long sizeOf(int width, int height) {
+        final long ret = (long) width * height * 4;
+        return mipmaps ? ret * 4 / 3 : ret;
+    }
+
+    private static int nearestPowerOfTwo(int value) {
+        final int lower = Integer.highestOneBit(Math.max(1, value));
+        final int upper = lower << 1;
+        return value - lower <= upper - value ? lower : upper;
+    }
+}
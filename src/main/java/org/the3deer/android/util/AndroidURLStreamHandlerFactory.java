@@ -13,6 +13,8 @@ public class AndroidURLStreamHandlerFactory implements URLStreamHandlerFactory {
             return new org.the3deer.android.util.assets.Handler();
         } else if ("content".equals(protocol)){
             return new Handler();
+        } else if (ContentUtils.ZIP_SCHEME.equals(protocol)) {
+            return new org.the3deer.android.util.zip.Handler();
         }
         return null;
     }
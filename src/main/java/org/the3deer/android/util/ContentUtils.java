@@ -9,28 +9,38 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.provider.OpenableColumns;
 
 import androidx.annotation.NonNull;
 
+import org.the3deer.util.io.ZipArchive;
+
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -57,6 +67,13 @@ public class ContentUtils {
     public static final Map<String, URI> documentsProvided = new HashMap<>();
     private static final Map<URI, byte[]> binariesProvided = new HashMap<>();
 
+    /**
+     * Scheme of the zip entries: zip://&lt;archive id&gt;/&lt;entry path&gt;
+     */
+    public static final String ZIP_SCHEME = "zip";
+    private static final Map<String, ZipArchive> zipArchives = new ConcurrentHashMap<>();
+    private static final AtomicInteger zipCounter = new AtomicInteger();
+
     private static Context context = null;
     private static File currentDir = null;
     private static ContentResolver contentResolver = null;
@@ -74,6 +91,13 @@ public class ContentUtils {
         ContentUtils.currentDir = file;
     }
 
+    /**
+     * @return the application cache directory, or null if the context is not set
+     */
+    public static File getCacheDir() {
+        return context != null ? context.getCacheDir() : null;
+    }
+
     public static void clearDocumentsProvided() {
         documentsProvided.clear();
         binariesProvided.clear();
@@ -119,6 +143,11 @@ public class ContentUtils {
     public static InputStream getInputStream(URI uri) throws IOException {
         if (uri == null) throw new IllegalArgumentException("uri cannot be null");
 
+        if (ZIP_SCHEME.equals(uri.getScheme())) {
+            final ZipArchive archive = getZipArchive(uri);
+            return archive.getInputStream(getZipEntry(archive, uri));
+        }
+
         if (context == null){
             throw new IllegalStateException("There is no context configured. Did you call #setContext() before?");
         }
@@ -200,6 +229,156 @@ public class ContentUtils {
         }
     }
 
+    /**
+     * Open a read-only channel to the specified uri, so the content can be memory mapped.
+     * Only local files and content providers backed by a file descriptor are supported.
+     *
+     * @param uri the file or content uri
+     * @return the channel, or null if the uri cannot be opened as a channel
+     * @throws IOException if the file exists but can't be opened
+     */
+    public static FileChannel getFileChannel(URI uri) throws IOException {
+        if (uri == null || uri.getScheme() == null) return null;
+
+        if (uri.getScheme().equals("file")) {
+            return new FileInputStream(new File(uri)).getChannel();
+        }
+
+        if (uri.getScheme().equals("content") && context != null) {
+            Uri androidUri = Uri.parse(uri.toString());
+            final URI uriProvided = documentsProvided.get(uri.toString());
+            if (uriProvided != null) {
+                androidUri = Uri.parse(uriProvided.toString());
+            }
+            try {
+                final ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(androidUri, "r");
+                if (pfd == null) return null;
+                return new ParcelFileDescriptor.AutoCloseInputStream(pfd).getChannel();
+            } catch (FileNotFoundException | SecurityException e) {
+                // let the stream based access resolve it
+                logger.fine("File channel not available for " + uri + ": " + e.getMessage());
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Memory map the content, if it's a local file or a zip entry that is not compressed
+     *
+     * @param uri the file, content or zip entry uri
+     * @return the read-only content, or null if it can't be mapped
+     * @throws IOException if the content exists but can't be mapped
+     */
+    public static ByteBuffer map(URI uri) throws IOException {
+        if (uri != null && ZIP_SCHEME.equals(uri.getScheme())) {
+            final ZipArchive archive = getZipArchive(uri);
+            return archive.map(getZipEntry(archive, uri));
+        }
+        try (FileChannel channel = getFileChannel(uri)) {
+            if (channel == null) return null;
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * @param uri the file, content or zip entry uri
+     * @return the size of the content, or -1 if it's unknown
+     */
+    public static long getSize(URI uri) {
+        try {
+            if (uri != null && ZIP_SCHEME.equals(uri.getScheme())) {
+                final ZipArchive archive = getZipArchive(uri);
+                return getZipEntry(archive, uri).getSize();
+            }
+            try (FileChannel channel = getFileChannel(uri)) {
+                return channel != null ? channel.size() : -1;
+            }
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Open the zip file without extracting it. Only the central directory is read.
+     * The entries are then available as <code>zip://</code> uris, so the relative paths of the models are resolved
+     * against them, and they are read only when they are referenced.
+     *
+     * @param uri the zip file
+     * @return the uri of the root folder of the zip (i.e. <code>zip://z1/</code>),
+     * or null if the zip is not a local file or content backed by a file descriptor
+     * @throws IOException if the zip file is not valid
+     */
+    public static URI openZip(URI uri) throws IOException {
+        final FileChannel channel = getFileChannel(uri);
+        if (channel == null) return null;
+
+        final ZipArchive archive;
+        try {
+            archive = ZipArchive.open(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        final String id = "z" + zipCounter.incrementAndGet();
+        zipArchives.put(id, archive);
+        logger.info("Zip opened: " + uri + ", entries: " + archive.getNames().size() + ", uri: " + ZIP_SCHEME + "://" + id + "/");
+        return URI.create(ZIP_SCHEME + "://" + id + "/");
+    }
+
+    /**
+     * @param zipUri the uri returned by {@link #openZip(URI)}
+     * @param name   the entry path
+     * @return the uri of the entry
+     */
+    public static URI getZipEntryUri(URI zipUri, String name) {
+        try {
+            return new URI(ZIP_SCHEME, zipUri.getAuthority(), "/" + name, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid zip entry name: " + name, e);
+        }
+    }
+
+    /**
+     * @param zipUri the uri returned by {@link #openZip(URI)}
+     * @return the names of the files of the zip
+     * @throws IOException if the zip is closed
+     */
+    public static Set<String> getZipEntries(URI zipUri) throws IOException {
+        return getZipArchive(zipUri).getNames();
+    }
+
+    /**
+     * Close the zip file. The buffers already mapped are still valid
+     *
+     * @param zipUri the uri returned by {@link #openZip(URI)}
+     */
+    public static void closeZip(URI zipUri) {
+        final ZipArchive archive = zipArchives.remove(zipUri.getAuthority());
+        if (archive == null) return;
+        try {
+            archive.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error closing zip: " + zipUri, e);
+        }
+    }
+
+    private static ZipArchive getZipArchive(URI uri) throws IOException {
+        final ZipArchive archive = zipArchives.get(uri.getAuthority());
+        if (archive == null) {
+            throw new FileNotFoundException("Zip file is closed: " + uri);
+        }
+        return archive;
+    }
+
+    private static ZipArchive.Entry getZipEntry(ZipArchive archive, URI uri) throws IOException {
+        final ZipArchive.Entry entry = archive.getEntry(uri.getPath());
+        if (entry == null) {
+            throw new FileNotFoundException("Zip entry not found: " + uri);
+        }
+        return entry;
+    }
+
     public static List<String> readLines(String uriString) {
         List<String> ret = new ArrayList<>();
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(URI.create(uriString).toURL().openStream()))) {
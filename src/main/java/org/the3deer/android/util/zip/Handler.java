@@ -0,0 +1,19 @@
+package org.the3deer.android.util.zip;
+
+import org.the3deer.android.util.AndroidURLConnection;
+
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+
+/**
+ * Zip entries url handler (see {@link org.the3deer.android.util.ContentUtils#openZip(java.net.URI)})
+ */
+public class Handler extends URLStreamHandler {
+
+    @Override
+    protected URLConnection openConnection(final URL url) {
+        return new AndroidURLConnection(url);
+    }
+
+}
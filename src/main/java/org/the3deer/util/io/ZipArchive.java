@@ -0,0 +1,373 @@
+package org.the3deer.util.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Read-only zip file, backed by a random access {@link FileChannel}.
+ * <p>
+ * Only the central directory is read when the archive is opened. The entries are read lazily,
+ * when they are requested, either as a stream or, if they are STORED (not compressed), as a memory mapped buffer.
+ * Nothing is extracted to disk. The entries can be read concurrently.
+ *
+ * @author andresoviedo
+ */
+public final class ZipArchive implements Closeable {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    /**
+     * Entry of the central directory
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final int method;
+        private final int flags;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+        // resolved on the first read
+        private volatile long dataOffset = -1;
+
+        private Entry(String name, int method, int flags, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.flags = flags;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return {@link #STORED} or {@link #DEFLATED}
+         */
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        /**
+         * @return the uncompressed size
+         */
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final FileChannel channel;
+    private final Map<String, Entry> entries;
+
+    private ZipArchive(FileChannel channel, Map<String, Entry> entries) {
+        this.channel = channel;
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Read the central directory of the zip file
+     *
+     * @param channel the zip file. It's closed when the archive is closed
+     * @return the archive
+     * @throws IOException if the file is not a valid zip file
+     */
+    public static ZipArchive open(FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+
+        // end of central directory. it's followed by a comment of up to 64KB
+        final int tailSize = (int) Math.min(fileSize, EOCD_SIZE + 0xFFFF);
+        final ByteBuffer tail = read(channel, fileSize - tailSize, tailSize);
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd == -1) {
+            throw new ZipException("End of central directory not found");
+        }
+
+        long count = tail.getShort(eocd + 10) & 0xFFFF;
+        long cdSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long cdOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+
+        // zip64
+        if ((count == 0xFFFF || cdSize == 0xFFFFFFFFL || cdOffset == 0xFFFFFFFFL)
+                && eocd >= 20 && tail.getInt(eocd - 20) == ZIP64_EOCD_LOCATOR_SIGNATURE) {
+            final ByteBuffer zip64 = read(channel, tail.getLong(eocd - 20 + 8), 56);
+            if (zip64.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                throw new ZipException("Invalid zip64 end of central directory");
+            }
+            count = zip64.getLong(32);
+            cdSize = zip64.getLong(40);
+            cdOffset = zip64.getLong(48);
+        }
+        if (cdSize > Integer.MAX_VALUE || cdOffset + cdSize > fileSize) {
+            throw new ZipException("Invalid central directory");
+        }
+
+        // central directory
+        final ByteBuffer cd = read(channel, cdOffset, (int) cdSize);
+        final Map<String, Entry> entries = new LinkedHashMap<>();
+        for (long i = 0; i < count; i++) {
+            final int header = cd.position();
+            if (cd.remaining() < 46 || cd.getInt(header) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory entry: " + i);
+            }
+            final int flags = cd.getShort(header + 8) & 0xFFFF;
+            final int method = cd.getShort(header + 10) & 0xFFFF;
+            long compressedSize = cd.getInt(header + 20) & 0xFFFFFFFFL;
+            long size = cd.getInt(header + 24) & 0xFFFFFFFFL;
+            final int nameLength = cd.getShort(header + 28) & 0xFFFF;
+            final int extraLength = cd.getShort(header + 30) & 0xFFFF;
+            final int commentLength = cd.getShort(header + 32) & 0xFFFF;
+            long localHeaderOffset = cd.getInt(header + 42) & 0xFFFFFFFFL;
+
+            final byte[] nameBytes = new byte[nameLength];
+            cd.position(header + 46);
+            cd.get(nameBytes);
+            final String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // zip64 extra field: only the values that overflow are present, in this order
+            final int extraEnd = cd.position() + extraLength;
+            while (cd.position() + 4 <= extraEnd) {
+                final int id = cd.getShort() & 0xFFFF;
+                final int length = cd.getShort() & 0xFFFF;
+                final int next = cd.position() + length;
+                if (id == 0x0001) {
+                    if (size == 0xFFFFFFFFL) size = cd.getLong();
+                    if (compressedSize == 0xFFFFFFFFL) compressedSize = cd.getLong();
+                    if (localHeaderOffset == 0xFFFFFFFFL) localHeaderOffset = cd.getLong();
+                }
+                cd.position(next);
+            }
+            cd.position(extraEnd + commentLength);
+
+            // skip directories
+            if (name.endsWith("/")) continue;
+            entries.put(name, new Entry(name, method, flags, compressedSize, size, localHeaderOffset));
+        }
+        return new ZipArchive(channel, entries);
+    }
+
+    /**
+     * @return the names of the files, in the order of the central directory
+     */
+    public Set<String> getNames() {
+        return entries.keySet();
+    }
+
+    /**
+     * Find the entry. If there is no exact match, the name is normalized (separators, spaces encoded as '+',
+     * case), and at last, the file name is looked up in any folder, if it's unique
+     *
+     * @param name the path of the entry
+     * @return the entry or null if it's not found
+     */
+    public Entry getEntry(String name) {
+        Entry ret = entries.get(name);
+        if (ret != null) return ret;
+
+        String path = name.replace('\\', '/');
+        while (path.startsWith("./") || path.startsWith("/")) {
+            path = path.substring(path.startsWith("/") ? 1 : 2);
+        }
+        ret = entries.get(path);
+        if (ret == null) ret = entries.get(path.replace('+', ' '));
+        if (ret != null) return ret;
+
+        // case insensitive, or by file name
+        final String lowerCasePath = path.replace('+', ' ').toLowerCase(Locale.ROOT);
+        final String fileName = lowerCasePath.substring(lowerCasePath.lastIndexOf('/') + 1);
+        Entry byFileName = null;
+        int matches = 0;
+        for (Entry entry : entries.values()) {
+            final String entryName = entry.name.toLowerCase(Locale.ROOT);
+            if (entryName.equals(lowerCasePath)) return entry;
+            if (entryName.equals(fileName) || entryName.endsWith("/" + fileName)) {
+                byFileName = entry;
+                matches++;
+            }
+        }
+        return matches == 1 ? byFileName : null;
+    }
+
+    /**
+     * Open a stream to read the entry. The data is read on demand
+     *
+     * @param entry the entry
+     * @return the uncompressed data
+     * @throws IOException if the entry can't be read
+     */
+    public InputStream getInputStream(Entry entry) throws IOException {
+        final InputStream raw = new ChannelInputStream(channel, getDataOffset(entry), entry.compressedSize);
+        switch (entry.method) {
+            case STORED:
+                return new BufferedInputStream(raw, 8192);
+            case DEFLATED:
+                return new EntryInflaterInputStream(raw);
+            default:
+                throw new ZipException("Unsupported compression method " + entry.method + ": " + entry.name);
+        }
+    }
+
+    /**
+     * Memory map the entry, if it's not compressed
+     *
+     * @param entry the entry
+     * @return the read-only data, or null if the entry is compressed
+     * @throws IOException if the entry can't be mapped
+     */
+    public ByteBuffer map(Entry entry) throws IOException {
+        if (entry.method != STORED) return null;
+        return channel.map(FileChannel.MapMode.READ_ONLY, getDataOffset(entry), entry.size);
+    }
+
+    private long getDataOffset(Entry entry) throws IOException {
+        if ((entry.flags & 1) != 0) {
+            throw new ZipException("Encrypted entries are not supported: " + entry.name);
+        }
+        long ret = entry.dataOffset;
+        if (ret == -1) {
+            final ByteBuffer header = read(channel, entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+            if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid local header: " + entry.name);
+            }
+            ret = entry.localHeaderOffset + LOCAL_HEADER_SIZE
+                    + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+            entry.dataOffset = ret;
+        }
+        return ret;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer ret = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (ret.hasRemaining()) {
+            if (channel.read(ret, position + ret.position()) < 0) {
+                throw new EOFException("Unexpected end of zip file");
+            }
+        }
+        ret.flip();
+        return ret;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Stream of a region of the channel. It uses absolute reads, so several streams can share the channel
+     */
+    private static final class ChannelInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        private ChannelInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) return -1;
+            final int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (count < 0) throw new EOFException("Unexpected end of zip entry");
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            final long ret = Math.max(0, Math.min(n, end - position));
+            position += ret;
+            return ret;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+
+    /**
+     * Raw deflate stream. Like the {@link java.util.zip.ZipFile} one, it feeds a dummy byte at the end of the data,
+     * because the inflater may need it to finish
+     */
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+
+        private boolean eof;
+        private boolean closed;
+
+        private EntryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(true), 8192);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of zip entry");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            inf.end();
+            super.close();
+        }
+    }
+}
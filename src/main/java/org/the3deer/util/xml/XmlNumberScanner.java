@@ -0,0 +1,285 @@
+package org.the3deer.util.xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Scanner for the numeric payloads of xml elements (i.e. the collada {@code <float_array>}, {@code <p>}, {@code <vcount>},
+ * {@code <v>}, {@code <matrix>}, etc).
+ * <p>
+ * The numbers are parsed straight from the character buffer of the pull parser
+ * (see {@link XmlPullParser#getTextCharacters(int[])}) into primitive arrays,
+ * so no {@link String} or boxed number is created for the values.
+ *
+ * @author andresoviedo
+ */
+public final class XmlNumberScanner {
+
+    /**
+     * Powers of ten that can be represented exactly as a double
+     */
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Max significant digits accumulated in the mantissa
+     */
+    private static final int MAX_DIGITS = 18;
+
+    private final int[] holder = new int[2];
+
+    // current text
+    private char[] text;
+    private int position;
+    private int limit;
+
+    // line of the element, for error reporting
+    private int lineNum;
+
+    /**
+     * Read the floats of the current element.
+     * The parser must be at the START_TAG and it is left at the END_TAG, like {@link XmlPullParser#nextText()}.
+     *
+     * @param parser the parser
+     * @param dst    the array to fill. Values beyond its length are skipped
+     * @return the number of values found in the element
+     */
+    public int readFloats(XmlPullParser parser, float[] dst) throws XmlPullParserException, IOException {
+        int count = 0;
+        while (nextText(parser)) {
+            while (skipSpaces()) {
+                final float value = nextFloat();
+                if (count < dst.length) dst[count] = value;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Read the floats of the current element.
+     * The parser must be at the START_TAG and it is left at the END_TAG, like {@link XmlPullParser#nextText()}.
+     *
+     * @param parser the parser
+     * @param size   the expected number of values, or -1 if unknown. The array grows if there are more values
+     * @return the values, in an array of the exact length
+     */
+    public float[] readFloats(XmlPullParser parser, int size) throws XmlPullParserException, IOException {
+        float[] ret = new float[Math.max(size, 16)];
+        int count = 0;
+        while (nextText(parser)) {
+            while (skipSpaces()) {
+                if (count == ret.length) {
+                    ret = Arrays.copyOf(ret, ret.length * 2);
+                }
+                ret[count++] = nextFloat();
+            }
+        }
+        return count == ret.length ? ret : Arrays.copyOf(ret, count);
+    }
+
+    /**
+     * Read the integers of the current element.
+     * The parser must be at the START_TAG and it is left at the END_TAG, like {@link XmlPullParser#nextText()}.
+     *
+     * @param parser the parser
+     * @param size   the expected number of values, or -1 if unknown. The array grows if there are more values
+     * @return the values, in an array of the exact length
+     */
+    public int[] readInts(XmlPullParser parser, int size) throws XmlPullParserException, IOException {
+        int[] ret = new int[Math.max(size, 16)];
+        int count = 0;
+        while (nextText(parser)) {
+            while (skipSpaces()) {
+                if (count == ret.length) {
+                    ret = Arrays.copyOf(ret, ret.length * 2);
+                }
+                ret[count++] = nextInt();
+            }
+        }
+        return count == ret.length ? ret : Arrays.copyOf(ret, count);
+    }
+
+    /**
+     * Stream the floats of the current element into the buffer, from its current position.
+     * The parser must be at the START_TAG and it is left at the END_TAG, like {@link XmlPullParser#nextText()}.
+     *
+     * @param parser the parser
+     * @param dst    the buffer to fill. Values beyond its limit are skipped
+     * @return the number of values found in the element
+     */
+    public int readFloats(XmlPullParser parser, FloatBuffer dst) throws XmlPullParserException, IOException {
+        int count = 0;
+        while (nextText(parser)) {
+            while (skipSpaces()) {
+                final float value = nextFloat();
+                if (dst.hasRemaining()) dst.put(value);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stream the integers of the current element into the buffer, from its current position.
+     * The parser must be at the START_TAG and it is left at the END_TAG, like {@link XmlPullParser#nextText()}.
+     *
+     * @param parser the parser
+     * @param dst    the buffer to fill. Values beyond its limit are skipped
+     * @return the number of values found in the element
+     */
+    public int readInts(XmlPullParser parser, IntBuffer dst) throws XmlPullParserException, IOException {
+        int count = 0;
+        while (nextText(parser)) {
+            while (skipSpaces()) {
+                final int value = nextInt();
+                if (dst.hasRemaining()) dst.put(value);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Move to the next text event of the current element
+     *
+     * @return false if the END_TAG of the element was reached
+     */
+    private boolean nextText(XmlPullParser parser) throws XmlPullParserException, IOException {
+        final int eventType = parser.next();
+        if (eventType == XmlPullParser.TEXT) {
+            lineNum = parser.getLineNumber();
+            text = parser.getTextCharacters(holder);
+            position = holder[0];
+            limit = holder[0] + holder[1];
+            return true;
+        }
+        text = null;
+        if (eventType != XmlPullParser.END_TAG) {
+            throw new XmlPullParserException("Expected numeric content", parser, null);
+        }
+        return false;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    /**
+     * @return true if there is another value in the current text
+     */
+    private boolean skipSpaces() {
+        while (position < limit && isSpace(text[position])) {
+            position++;
+        }
+        return position < limit;
+    }
+
+    private int nextInt() {
+        final int start = position;
+        boolean negative = false;
+        char c = text[position];
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            position++;
+        }
+        int value = 0;
+        int digits = 0;
+        while (position < limit && (c = text[position]) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            digits++;
+            position++;
+        }
+        if (digits == 0 || (position < limit && !isSpace(text[position]))) {
+            throw new NumberFormatException("Integer expected at line " + lineNum + " but found '" + token(start) + "'");
+        }
+        return negative ? -value : value;
+    }
+
+    private float nextFloat() {
+        final int start = position;
+        boolean negative = false;
+        char c = text[position];
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            position++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+
+        // integer part
+        while (position < limit && (c = text[position]) >= '0' && c <= '9') {
+            any = true;
+            if (digits < MAX_DIGITS) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                exponent++;
+            }
+            position++;
+        }
+
+        // decimal part
+        if (position < limit && text[position] == '.') {
+            position++;
+            while (position < limit && (c = text[position]) >= '0' && c <= '9') {
+                any = true;
+                if (digits < MAX_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                }
+                position++;
+            }
+        }
+
+        // exponent
+        if (any && position < limit && ((c = text[position]) == 'e' || c == 'E')) {
+            position++;
+            boolean negativeExp = false;
+            if (position < limit && ((c = text[position]) == '-' || c == '+')) {
+                negativeExp = c == '-';
+                position++;
+            }
+            int exp = 0;
+            while (position < limit && (c = text[position]) >= '0' && c <= '9') {
+                if (exp < 10000) exp = exp * 10 + (c - '0');
+                position++;
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+
+        // special values (NaN, INF) or malformed numbers
+        if (!any || (position < limit && !isSpace(text[position]))) {
+            return Float.parseFloat(token(start));
+        }
+
+        double value = mantissa;
+        if (exponent > 0) {
+            value = exponent < POW10.length ? value * POW10[exponent] : value * Math.pow(10, exponent);
+        } else if (exponent < 0) {
+            value = -exponent < POW10.length ? value / POW10[-exponent] : value / Math.pow(10, -exponent);
+        }
+        return (float) (negative ? -value : value);
+    }
+
+    /**
+     * Consume the token at the specified position
+     */
+    private String token(int start) {
+        position = start;
+        while (position < limit && !isSpace(text[position])) {
+            position++;
+        }
+        return new String(text, start, position - start);
+    }
+}
@@ -0,0 +1,328 @@
+package org.the3deer.util.xml;
+
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming xml reader.
+ * <p>
+ * The document is never loaded into memory. The elements are visited in document order, either with
+ * the cursor methods ({@link #nextElement()}, {@link #nextChild(int)}) or with a {@link Handler}.
+ * When the reader is at the start of an element, the element can be consumed:
+ * <ul>
+ *     <li>{@link #skip()}: ignore the whole subtree</li>
+ *     <li>{@link #capture()}: load the subtree into an {@link XmlNode}, i.e. for small elements like materials</li>
+ *     <li>{@link #readText()}: read the text of a leaf element</li>
+ *     <li>{@link #readFloats(FloatBuffer)}, {@link #readInts(IntBuffer)}, etc: stream the numbers of a leaf
+ *     element straight into primitive buffers, without creating a {@link String} for the payload</li>
+ * </ul>
+ * The consuming methods leave the reader at the end of the element, so the memory used doesn't depend on the size of the document.
+ *
+ * @author andresoviedo
+ */
+public final class XmlReader implements Closeable {
+
+    /**
+     * Receives the elements of the document
+     */
+    public interface Handler {
+
+        /**
+         * Called at the start of every element. The handler can consume the element (i.e. {@link #skip()}),
+         * otherwise its children are visited, and then {@link #endElement(XmlReader)} is called
+         *
+         * @param reader the reader, at the start of the element
+         */
+        void startElement(XmlReader reader) throws IOException;
+
+        /**
+         * Called at the end of every element that was not consumed by {@link #startElement(XmlReader)}
+         *
+         * @param reader the reader, at the end of the element
+         */
+        default void endElement(XmlReader reader) throws IOException {
+        }
+    }
+
+    private final XmlPullParser parser;
+    private final InputStream in;
+    private final XmlNumberScanner scanner = new XmlNumberScanner();
+
+    /**
+     * @param in the document. It's closed with {@link #close()}
+     */
+    public XmlReader(InputStream in) throws IOException {
+        try {
+            this.parser = Xml.newPullParser();
+            this.parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+            this.parser.setInput(in, null);
+        } catch (XmlPullParserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        this.in = in;
+    }
+
+    /**
+     * @param parser a parser already initialized
+     */
+    public XmlReader(XmlPullParser parser) {
+        this.parser = parser;
+        this.in = null;
+    }
+
+    /**
+     * @return the underlying parser, i.e. to read the attributes by index
+     */
+    public XmlPullParser getParser() {
+        return parser;
+    }
+
+    /**
+     * @return the name of the current element
+     */
+    public String getName() {
+        return parser.getName();
+    }
+
+    /**
+     * @return the depth of the current element. The root element is at depth 1
+     */
+    public int getDepth() {
+        return parser.getDepth();
+    }
+
+    /**
+     * @param name the name of the attribute
+     * @return the value of the attribute of the current element, or null if there is no such attribute
+     */
+    public String getAttribute(String name) {
+        return parser.getAttributeValue(null, name);
+    }
+
+    public int getLineNumber() {
+        return parser.getLineNumber();
+    }
+
+    /**
+     * Move to the start of the next element, at any depth
+     *
+     * @return false if the end of the document was reached
+     */
+    public boolean nextElement() throws IOException {
+        try {
+            int eventType;
+            while ((eventType = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) return true;
+            }
+            return false;
+        } catch (XmlPullParserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Move to the start of the next child of an element. The children not consumed are skipped.
+     * <pre>
+     * final int depth = reader.getDepth();
+     * while (reader.nextChild(depth)) {
+     *     ...
+     * }
+     * </pre>
+     *
+     * @param depth the depth of the parent element
+     * @return false if the end of the parent element was reached
+     */
+    public boolean nextChild(int depth) throws IOException {
+        try {
+            int eventType = parser.getEventType();
+            // child not consumed
+            if (eventType == XmlPullParser.START_TAG && parser.getDepth() > depth) {
+                skip();
+            }
+            while ((eventType = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) return true;
+                if (eventType == XmlPullParser.END_TAG && parser.getDepth() <= depth) return false;
+            }
+            return false;
+        } catch (XmlPullParserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Skip the current element and all its children. The reader is left at the end of the element
+     */
+    public void skip() throws IOException {
+        try {
+            requireStart();
+            final int depth = parser.getDepth();
+            int eventType;
+            while ((eventType = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.END_TAG && parser.getDepth() == depth) return;
+            }
+            throw new IOException("Unexpected end of document");
+        } catch (XmlPullParserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Load the current element and all its children. The reader is left at the end of the element
+     *
+     * @return the element
+     */
+    public XmlNode capture() throws IOException {
+        try {
+            requireStart();
+            final List<XmlNode> stack = new ArrayList<>();
+            stack.add(newNode());
+            int eventType;
+            while ((eventType = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) {
+                    final XmlNode child = newNode();
+                    stack.get(stack.size() - 1).addChild(child);
+                    stack.add(child);
+                } else if (eventType == XmlPullParser.END_TAG) {
+                    final XmlNode node = stack.remove(stack.size() - 1);
+                    if (stack.isEmpty()) return node;
+                } else if (eventType == XmlPullParser.TEXT) {
+                    stack.get(stack.size() - 1).setData(parser.getText());
+                }
+            }
+            throw new IOException("Unexpected end of document");
+        } catch (XmlPullParserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the text of the current element, that must have no children. The reader is left at the end of the element
+     *
+     * @return the text
+     */
+    public String readText() throws IOException {
+        try {
+            requireStart();
+            return parser.nextText();
+        } catch (XmlPullParserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the floats of the current element. The reader is left at the end of the element
+     *
+     * @param size the expected number of values, or -1 if unknown
+     * @return the values
+     */
+    public float[] readFloats(int size) throws IOException {
+        try {
+            requireStart();
+            return scanner.readFloats(parser, size);
+        } catch (XmlPullParserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stream the floats of the current element into the buffer. The reader is left at the end of the element
+     *
+     * @param dst the buffer to fill, from its position. Values beyond its limit are skipped
+     * @return the number of values found in the element
+     */
+    public int readFloats(FloatBuffer dst) throws IOException {
+        try {
+            requireStart();
+            return scanner.readFloats(parser, dst);
+        } catch (XmlPullParserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the integers of the current element. The reader is left at the end of the element
+     *
+     * @param size the expected number of values, or -1 if unknown
+     * @return the values
+     */
+    public int[] readInts(int size) throws IOException {
+        try {
+            requireStart();
+            return scanner.readInts(parser, size);
+        } catch (XmlPullParserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stream the integers of the current element into the buffer. The reader is left at the end of the element
+     *
+     * @param dst the buffer to fill, from its position. Values beyond its limit are skipped
+     * @return the number of values found in the element
+     */
+    public int readInts(IntBuffer dst) throws IOException {
+        try {
+            requireStart();
+            return scanner.readInts(parser, dst);
+        } catch (XmlPullParserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Visit the rest of the document
+     *
+     * @param handler the handler of the elements
+     */
+    public void read(Handler handler) throws IOException {
+        try {
+            int eventType = parser.getEventType();
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) {
+                    final int depth = parser.getDepth();
+                    handler.startElement(this);
+                    if (parser.getEventType() == XmlPullParser.END_TAG && parser.getDepth() == depth) {
+                        // consumed
+                        eventType = parser.next();
+                        continue;
+                    }
+                    requireStart();
+                } else if (eventType == XmlPullParser.END_TAG) {
+                    handler.endElement(this);
+                }
+                eventType = parser.next();
+            }
+        } catch (XmlPullParserException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) in.close();
+    }
+
+    private XmlNode newNode() {
+        final XmlNode ret = new XmlNode(parser.getName());
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            ret.addAttribute(parser.getAttributeName(i), parser.getAttributeValue(i));
+        }
+        return ret;
+    }
+
+    private void requireStart() throws XmlPullParserException {
+        if (parser.getEventType() != XmlPullParser.START_TAG) {
+            throw new XmlPullParserException("Expected start of element", parser, null);
+        }
+    }
+}
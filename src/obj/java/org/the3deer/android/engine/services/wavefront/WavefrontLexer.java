@@ -0,0 +1,298 @@
+package org.the3deer.android.engine.services.wavefront;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte level tokenizer for wavefront files.
+ * <p>
+ * The stream is read in blocks into a reusable byte buffer and numbers are parsed directly from the bytes,
+ * so no {@link String} is created for the geometry statements (v, vt, vn, f).
+ * Only the names (o, g, usemtl, mtllib) are decoded into strings.
+ *
+ * @author andresoviedo
+ */
+final class WavefrontLexer {
+
+    static final int EOF = -1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Powers of ten that can be represented exactly as a double
+     */
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Max significant digits accumulated in the mantissa
+     */
+    private static final int MAX_DIGITS = 18;
+
+    private final InputStream is;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+
+    // scratch buffer to decode names
+    private byte[] text = new byte[256];
+
+    // bytes consumed before the current buffer
+    private long offset;
+    private int lineNum = 1;
+
+    /**
+     * Tokenizer for the specified stream
+     *
+     * @param is stream to read from. It is not closed by the lexer
+     */
+    WavefrontLexer(InputStream is) {
+        this.is = is;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * @return the current line number (starting at 1)
+     */
+    int getLineNum() {
+        return lineNum;
+    }
+
+    /**
+     * @return number of bytes consumed so far
+     */
+    long getBytesRead() {
+        return offset + position;
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        position = 0;
+        limit = 0;
+        final int read = is.read(buffer, 0, buffer.length);
+        if (read <= 0) return false;
+        limit = read;
+        return true;
+    }
+
+    /**
+     * @return the next byte, without consuming it, or {@link #EOF}
+     */
+    int peek() throws IOException {
+        if (position == limit && !fill()) return EOF;
+        return buffer[position];
+    }
+
+    /**
+     * @return the next byte or {@link #EOF}
+     */
+    int read() throws IOException {
+        if (position == limit && !fill()) return EOF;
+        return buffer[position++];
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * Move to the start of the next statement, skipping blank lines and leading spaces
+     *
+     * @return false if end of file reached
+     */
+    boolean nextStatement() throws IOException {
+        int c;
+        while ((c = peek()) != EOF) {
+            if (c == '\n') {
+                lineNum++;
+            } else if (!isSpace(c)) {
+                return true;
+            }
+            position++;
+        }
+        return false;
+    }
+
+    /**
+     * Consume the rest of the current line, including the line terminator
+     */
+    void skipLine() throws IOException {
+        int c;
+        while ((c = read()) != EOF) {
+            if (c == '\n') {
+                lineNum++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Read the keyword of the current statement
+     *
+     * @param dst buffer to store the keyword
+     * @return the keyword length. It may be greater than the buffer length, in which case it is truncated
+     */
+    int readKeyword(byte[] dst) throws IOException {
+        int length = 0;
+        int c;
+        while ((c = peek()) != EOF && c != '\n' && !isSpace(c)) {
+            if (length < dst.length) dst[length] = (byte) c;
+            length++;
+            position++;
+        }
+        return length;
+    }
+
+    /**
+     * Skip spaces and check if there is another token in the current line
+     *
+     * @return true if there is another token in the current line
+     */
+    boolean hasNext() throws IOException {
+        int c;
+        while (isSpace(c = peek())) {
+            position++;
+        }
+        return c != EOF && c != '\n';
+    }
+
+    /**
+     * Read the rest of the line, without the line terminator
+     *
+     * @return the trimmed text
+     */
+    String readText() throws IOException {
+        int length = 0;
+        int c;
+        while ((c = peek()) != EOF && c != '\n') {
+            if (length == text.length) {
+                final byte[] newText = new byte[text.length * 2];
+                System.arraycopy(text, 0, newText, 0, length);
+                text = newText;
+            }
+            text[length++] = (byte) c;
+            position++;
+        }
+        return new String(text, 0, length, StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Parse a (signed) integer.
+     *
+     * @return the integer
+     * @throws NumberFormatException if there is no integer at the current position
+     */
+    int nextInt() throws IOException {
+        int c = peek();
+        boolean negative = false;
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            position++;
+            c = peek();
+        }
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Integer expected at line " + lineNum + " but found '" + (char) c + "'");
+        }
+        int value = 0;
+        while ((c = peek()) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            position++;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a float in decimal or scientific notation.
+     * Special values (nan, inf) are delegated to {@link Float#parseFloat(String)}
+     *
+     * @return the float
+     * @throws NumberFormatException if there is no number at the current position
+     */
+    float nextFloat() throws IOException {
+        int c = peek();
+        boolean negative = false;
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            position++;
+            c = peek();
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+
+        // integer part
+        while (c >= '0' && c <= '9') {
+            any = true;
+            if (digits < MAX_DIGITS) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                exponent++;
+            }
+            position++;
+            c = peek();
+        }
+
+        // decimal part
+        if (c == '.') {
+            position++;
+            c = peek();
+            while (c >= '0' && c <= '9') {
+                any = true;
+                if (digits < MAX_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                }
+                position++;
+                c = peek();
+            }
+        }
+
+        if (!any) {
+            return parseSpecial(negative);
+        }
+
+        // exponent
+        if (c == 'e' || c == 'E') {
+            position++;
+            c = peek();
+            boolean negativeExp = false;
+            if (c == '-' || c == '+') {
+                negativeExp = c == '-';
+                position++;
+                c = peek();
+            }
+            int exp = 0;
+            while (c >= '0' && c <= '9') {
+                if (exp < 10000) exp = exp * 10 + (c - '0');
+                position++;
+                c = peek();
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+
+        double value = mantissa;
+        if (exponent > 0) {
+            value = exponent < POW10.length ? value * POW10[exponent] : value * Math.pow(10, exponent);
+        } else if (exponent < 0) {
+            value = -exponent < POW10.length ? value / POW10[-exponent] : value / Math.pow(10, -exponent);
+        }
+        return (float) (negative ? -value : value);
+    }
+
+    private float parseSpecial(boolean negative) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        if (negative) sb.append('-');
+        int c;
+        while ((c = peek()) != EOF && c != '\n' && c != '/' && !isSpace(c)) {
+            sb.append((char) c);
+            position++;
+        }
+        return Float.parseFloat(sb.toString());
+    }
+}
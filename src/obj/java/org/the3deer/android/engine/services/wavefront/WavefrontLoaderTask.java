@@ -5,10 +5,13 @@ import android.opengl.GLES20;
 import org.the3deer.android.engine.model.Object3D;
 
 import org.the3deer.android.engine.services.LoadListener;
+import org.the3deer.android.engine.services.LoadPlanner;
 import org.the3deer.android.engine.services.LoaderTask;
+import org.the3deer.android.util.ContentUtils;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -19,22 +22,155 @@ import java.util.List;
 
 public class WavefrontLoaderTask extends LoaderTask {
 
+    /**
+     * Parse the file using all the cores
+     */
+    private final boolean parallel;
+
+    /**
+     * Max memory of the model, compared to the file size, when it has textures and the normals are generated
+     */
+    private static final int MAX_EXPANSION = 4;
+
+    /**
+     * The windows of the file sampled to estimate the model, and their size. Vertices and faces are usually in
+     * different parts of the file, so the windows are spread over the whole file
+     */
+    private static final int SAMPLE_WINDOWS = 16;
+    private static final int SAMPLE_WINDOW_SIZE = 64 * 1024;
+
     public WavefrontLoaderTask(final URI url, final LoadListener callback) {
+        this(url, callback, false);
+    }
+
+    /**
+     * @param parallel true to split the file and parse the chunks in parallel.
+     *                 Only files that can be memory mapped are split, otherwise the file is parsed serially
+     */
+    public WavefrontLoaderTask(final URI url, final LoadListener callback, final boolean parallel) {
         super(url, callback);
+        this.parallel = parallel;
+    }
+
+    /**
+     * The objects are static
+     */
+    @Override
+    protected boolean isCacheable() {
+        return true;
     }
 
     @Override
     protected List<Object3D> build() throws IOException {
 
-        final WavefrontLoader wfl = new WavefrontLoader(GLES20.GL_TRIANGLE_FAN, callback);
+        final WavefrontLoader wfl = new WavefrontLoader(GLES20.GL_TRIANGLE_FAN, callback, parallel);
 
         super.publishProgress("Loading model...");
 
         final List<Object3D> load = wfl.load(URI.create(uri.toString()));
+        checkCancelled();
 
         return load;
     }
 
+    /**
+     * Small files are loaded without estimation. Otherwise, the lines are counted in a few windows spread
+     * over the mapped file, and the counts are extrapolated to the whole file, so the file is not read twice
+     */
+    @Override
+    protected LoadPlanner.Estimate estimate() throws IOException {
+        final long size = ContentUtils.getSize(uri);
+        if (size <= 0 || size * MAX_EXPANSION < LoadPlanner.getBudget()) return null;
+
+        final ByteBuffer data = ContentUtils.map(uri);
+        if (data == null) {
+            // average line of a vertex or a face
+            return estimate(size / 32, 0, 0, size / 32);
+        }
+
+        final long start = System.currentTimeMillis();
+
+        // vertices, textures, normals, triangles
+        final long[] counts = new long[4];
+        final int limit = data.limit();
+        final int windows = (int) Math.min(SAMPLE_WINDOWS, Math.max(1, limit / SAMPLE_WINDOW_SIZE));
+        long sampled = 0;
+        for (int w = 0; w < windows; w++) {
+            checkCancelled();
+
+            // the window starts at the beginning of a line
+            int from = (int) ((long) limit * w / windows);
+            if (from > 0) {
+                while (from < limit && data.get(from - 1) != '\n') from++;
+            }
+            final int to = windows == 1 ? limit : Math.min(limit, from + SAMPLE_WINDOW_SIZE);
+            sampled += count(data, from, to, counts) - from;
+        }
+
+        // extrapolate
+        final double factor = sampled > 0 ? (double) limit / sampled : 1;
+        final long vertices = (long) (counts[0] * factor);
+        final long textures = (long) (counts[1] * factor);
+        final long normals = (long) (counts[2] * factor);
+        final long triangles = (long) (counts[3] * factor);
+
+        logger.info("Estimated model in " + (System.currentTimeMillis() - start) + " ms. sampled: " + sampled
+                + " bytes, vertices: " + vertices + ", textures: " + textures + ", normals: " + normals
+                + ", triangles: " + triangles);
+        return estimate(vertices, textures, normals, triangles);
+    }
+
+    /**
+     * Count the lines that start in the range
+     *
+     * @param counts the vertices, textures, normals and triangles counted so far
+     * @return the end of the last line counted
+     */
+    private static int count(ByteBuffer data, int from, int to, long[] counts) {
+        final int limit = data.limit();
+        int i = from;
+        while (i < to) {
+            // line start
+            final byte b0 = data.get(i);
+            final byte b1 = i + 1 < limit ? data.get(i + 1) : 0;
+            if (b0 == 'v' && b1 == ' ') {
+                counts[0]++;
+            } else if (b0 == 'v' && b1 == 't') {
+                counts[1]++;
+            } else if (b0 == 'v' && b1 == 'n') {
+                counts[2]++;
+            } else if (b0 == 'f' && b1 == ' ') {
+                // polygons are triangulated: one triangle less than the corners
+                int corners = 0;
+                boolean token = false;
+                i++;
+                while (i < limit && data.get(i) != '\n') {
+                    final boolean space = data.get(i) <= ' ';
+                    if (!space && !token) corners++;
+                    token = !space;
+                    i++;
+                }
+                counts[3] += Math.max(0, corners - 2);
+                i++;
+                continue;
+            }
+            // next line
+            while (i < limit && data.get(i) != '\n') i++;
+            i++;
+        }
+        return Math.min(i, limit);
+    }
+
+    private static LoadPlanner.Estimate estimate(long vertices, long textures, long normals, long triangles) {
+        // every different combination of v/vt/vn is a vertex. the raw data and the combinations are temporary
+        final long combinations = Math.max(vertices, Math.max(textures, normals));
+        return new LoadPlanner.Estimate()
+                .setVertices(combinations)
+                .setIndices(triangles * 3)
+                .setFloatsPerVertex(textures > 0 ? 8 : 6)
+                .setTemporaryBytes(vertices * 12 + textures * 8 + normals * 12 + combinations * 12);
+    }
+
     @Override
     public void onProgress(String progress) {
         super.publishProgress(progress);
@@ -27,7 +27,7 @@ public class WavefrontMeshData {
     private FloatBuffer textures;
     private IntBuffer vertexAttributes;
     private List<Element> elements;
-    private Map<String, List<Integer>> smoothingGroups;
+    private Map<String, int[]> smoothingGroups;
 
     // Final buffers
     private FloatBuffer vertexBuffer;
@@ -43,7 +43,7 @@ public class WavefrontMeshData {
         private IntBuffer vertexAttributes;
         private List<Element> elements = new ArrayList<>();
         private String materialFile;
-        private Map<String, List<Integer>> smoothingGroups;
+        private Map<String, int[]> smoothingGroups;
 
         public Builder id(String id) { this.id = id; return this; }
         public Builder name(String name) { this.name = name; return this; }
@@ -53,7 +53,7 @@ public class WavefrontMeshData {
         public Builder vertexAttributes(IntBuffer vertexAttributes) { this.vertexAttributes = vertexAttributes; return this; }
         public Builder addElement(Element element) { this.elements.add(element); return this; }
         public Builder materialFile(String materialFile) { this.materialFile = materialFile; return this; }
-        public Builder smoothingGroups(Map<String, List<Integer>> smoothingGroups) { this.smoothingGroups = smoothingGroups; return this; }
+        public Builder smoothingGroups(Map<String, int[]> smoothingGroups) { this.smoothingGroups = smoothingGroups; return this; }
 
         public WavefrontMeshData build() {
             return new WavefrontMeshData(id, name, vertices, normals, textures, vertexAttributes, elements, materialFile, smoothingGroups);
@@ -62,7 +62,7 @@ public class WavefrontMeshData {
 
     private WavefrontMeshData(String id, String name, FloatBuffer vertices, FloatBuffer normals, FloatBuffer textures,
                              IntBuffer vertexAttributes, List<Element> elements, String materialFile,
-                             Map<String, List<Integer>> smoothingGroups) {
+                             Map<String, int[]> smoothingGroups) {
         this.id = id;
         this.name = name;
         this.vertices = vertices;
@@ -79,6 +79,18 @@ public class WavefrontMeshData {
     public String getMaterialFile() { return materialFile; }
     public List<Element> getElements() { return elements; }
 
+    /**
+     * @return the face corners of every smoothing group, or null if the temporary data was cleared
+     */
+    Map<String, int[]> getSmoothingGroups() { return smoothingGroups; }
+
+    /**
+     * @return the number of vertices of the mesh (one per face corner), or 0 if the temporary data was cleared
+     */
+    public int getVertexCount() {
+        return vertexAttributes != null ? vertexAttributes.limit() / 3 : 0;
+    }
+
     public void fixNormals() {
         if (this.normals == null || this.normals.capacity() == 0) {
             generateNormals();
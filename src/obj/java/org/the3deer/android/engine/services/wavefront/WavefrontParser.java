@@ -0,0 +1,676 @@
+package org.the3deer.android.engine.services.wavefront;
+
+import org.the3deer.android.engine.model.Element;
+import org.the3deer.android.engine.services.LoaderTask;
+import org.the3deer.util.io.ByteBufferInputStream;
+import org.the3deer.util.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single pass wavefront parser.
+ * <p>
+ * The file is read only once with the {@link WavefrontLexer}. Geometry is accumulated into primitive arrays
+ * that grow geometrically, so there is no need to pre-scan the file to count the elements.
+ * The direct buffers are built once the file is completely parsed.
+ * <p>
+ * The parsing is done in 2 phases:
+ * <ol>
+ *     <li>Parse: each chunk of the file (the whole file in serial mode) is parsed into its own v, vt, vn and face
+ *     buffers. The statements that split the geometry (o, g, usemtl, s, mtllib) are recorded as events</li>
+ *     <li>Stitch: chunks are appended in file order. Relative indices are moved by the global offsets and the
+ *     events are replayed, so the meshes and elements are the same no matter how the file was split</li>
+ * </ol>
+ *
+ * @author andresoviedo
+ */
+final class WavefrontParser {
+
+    private static final Logger logger = Logger.getLogger(WavefrontParser.class.getSimpleName());
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Files smaller than this are not worth splitting
+     */
+    private static final long MIN_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The thread interruption (the loading was cancelled) is checked every 64K statements
+     */
+    private static final int CANCEL_CHECK_INTERVAL = 0xFFFF;
+
+    private static final byte[] KW_V = {'v'};
+    private static final byte[] KW_VN = {'v', 'n'};
+    private static final byte[] KW_VT = {'v', 't'};
+    private static final byte[] KW_F = {'f'};
+    private static final byte[] KW_O = {'o'};
+    private static final byte[] KW_G = {'g'};
+    private static final byte[] KW_S = {'s'};
+    private static final byte[] KW_USEMTL = {'u', 's', 'e', 'm', 't', 'l'};
+    private static final byte[] KW_MTLLIB = {'m', 't', 'l', 'l', 'i', 'b'};
+
+    private static final int EVENT_OBJECT = 0;
+    private static final int EVENT_GROUP = 1;
+    private static final int EVENT_MATERIAL = 2;
+    private static final int EVENT_MATERIAL_LIB = 3;
+    private static final int EVENT_SMOOTHING = 4;
+
+    private final URI modelURI;
+
+    // stitched face corners
+    private int corners;
+
+    // smoothing groups (indices into vertexAttributes of each mesh)
+    private final Map<String, Ints> smoothingGroups = new HashMap<>();
+    private Ints currentSmoothingGroup;
+
+    // mesh current
+    private final List<MeshRecord> meshes = new ArrayList<>();
+    private String meshId;
+    private List<Element> meshElements = new ArrayList<>();
+    private int meshStart;
+
+    // element current
+    private String elementId = "default";
+    private String elementMaterialId;
+    private int elementStart;
+    private boolean buildNewElement;
+
+    // material file
+    private String mtllib;
+
+    WavefrontParser(URI modelURI) {
+        this.modelURI = modelURI;
+        this.meshId = modelURI.toString();
+    }
+
+    /**
+     * Parse the whole stream in the current thread
+     *
+     * @param is the model stream. It is not closed
+     * @return the meshes
+     * @throws IOException if there is an error reading the stream
+     */
+    List<WavefrontMeshData> parse(InputStream is) throws IOException {
+
+        // log event
+        logger.info("Loading model... " + modelURI);
+
+        final Chunk chunk = parseChunk(new WavefrontLexer(is));
+        return stitch(Collections.singletonList(chunk));
+    }
+
+    /**
+     * Parse the file in parallel. The file is split in newline aligned chunks which are mapped and
+     * parsed independently.
+     *
+     * @param channel the model file
+     * @param threads number of threads of the pool where the chunks are parsed (see {@link LoaderTask#invokeAll})
+     * @return the meshes, same as {@link #parse(InputStream)}
+     * @throws IOException if there is an error reading the file
+     */
+    List<WavefrontMeshData> parse(FileChannel channel, int threads) throws IOException {
+
+        // split file
+        final long[] bounds = split(channel, threads);
+
+        // log event
+        logger.info("Loading model... " + modelURI + ", chunks: " + (bounds.length - 1) + ", threads: " + threads);
+
+        // the chunks are parsed in the shared pool of the loaders
+        final List<Callable<Chunk>> jobs = new ArrayList<>(bounds.length - 1);
+        for (int i = 0; i < bounds.length - 1; i++) {
+            final ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]);
+            jobs.add(() -> parseChunk(new WavefrontLexer(new ByteBufferInputStream(data))));
+        }
+        try {
+            return stitch(LoaderTask.invokeAll(jobs));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing " + modelURI, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Split the file in chunks. Each chunk starts at the beginning of a line.
+     *
+     * @return the chunk boundaries: [0, ..., size]
+     */
+    private static long[] split(FileChannel channel, int threads) throws IOException {
+        final long size = channel.size();
+        final int count = (int) Math.max(1, Math.min(threads * 2L, size / MIN_CHUNK_SIZE));
+
+        final long[] bounds = new long[count + 1];
+        final ByteBuffer scan = ByteBuffer.allocate(4096);
+        for (int i = 1; i < count; i++) {
+            long position = Math.max(bounds[i - 1], size * i / count);
+
+            // move to next line
+            search:
+            while (position < size) {
+                scan.clear();
+                final int read = channel.read(scan, position);
+                if (read <= 0) break;
+                for (int j = 0; j < read; j++) {
+                    if (scan.get(j) == '\n') {
+                        position += j + 1;
+                        break search;
+                    }
+                }
+                position += read;
+            }
+            bounds[i] = Math.min(position, size);
+        }
+        bounds[count] = size;
+        return bounds;
+    }
+
+    /**
+     * Parse the geometry of a chunk. Indices are stored 0-based.
+     * Relative (negative) indices are resolved against the chunk counters and registered to be moved later.
+     */
+    private static Chunk parseChunk(WavefrontLexer lexer) throws IOException {
+
+        final Chunk chunk = new Chunk();
+        final byte[] keyword = new byte[8];
+
+        int statements = 0;
+        while (lexer.nextStatement()) {
+            // stop if the loading was cancelled
+            if ((++statements & CANCEL_CHECK_INTERVAL) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Parsing cancelled at line " + lexer.getLineNum());
+            }
+            final int length = lexer.readKeyword(keyword);
+            try {
+                if (matches(keyword, length, KW_V)) { // vertex
+                    parseVector(lexer, chunk.vertices, 3);
+                } else if (matches(keyword, length, KW_VN)) { // normal
+                    parseVector(lexer, chunk.normals, 3);
+                } else if (matches(keyword, length, KW_VT)) { // tex coord
+                    parseVector(lexer, chunk.textures, 2);
+                } else if (matches(keyword, length, KW_F)) { // face
+                    parseFace(lexer, chunk);
+                } else if (matches(keyword, length, KW_O)) { // object group
+                    chunk.addEvent(EVENT_OBJECT, lexer.readText());
+                } else if (matches(keyword, length, KW_G)) { // group name
+                    chunk.addEvent(EVENT_GROUP, lexer.readText());
+                } else if (matches(keyword, length, KW_USEMTL)) { // use material
+                    chunk.addEvent(EVENT_MATERIAL, lexer.readText());
+                } else if (matches(keyword, length, KW_MTLLIB)) { // material file
+                    chunk.addEvent(EVENT_MATERIAL_LIB, lexer.readText());
+                } else if (matches(keyword, length, KW_S)) { // smoothing group
+                    chunk.addEvent(EVENT_SMOOTHING, lexer.readText());
+                } else if (length > 0 && keyword[0] == '#') { // comment line
+                    if (logger.isLoggable(Level.FINEST)) {
+                        logger.finest("#" + lexer.readText());
+                    }
+                } else {
+                    logger.warning("Ignoring line " + lexer.getLineNum() + " : " + new String(keyword, 0, Math.min(length, keyword.length)) + " " + lexer.readText());
+                }
+            } catch (NumberFormatException e) {
+                logger.log(Level.SEVERE, "Error reading line: " + lexer.getLineNum() + ", message: " + e.getMessage());
+            }
+            lexer.skipLine();
+        }
+
+        logger.config("Parsed chunk. bytes: " + lexer.getBytesRead() + ", lines: " + lexer.getLineNum()
+                + ", vertices: " + chunk.vertices.size / 3 + ", normals: " + chunk.normals.size / 3
+                + ", textures: " + chunk.textures.size / 2 + ", face corners: " + chunk.vertexAttributes.size / 3);
+
+        return chunk;
+    }
+
+    private static boolean matches(byte[] keyword, int length, byte[] expected) {
+        if (length != expected.length) return false;
+        for (int i = 0; i < length; i++) {
+            if (keyword[i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parse a vector of the specified size. Missing components default to 0. Extra components are ignored.
+     * <p>
+     * A malformed vector is never dropped: if a component can't be parsed, it and the remaining ones are
+     * zero-padded, and the exception is rethrown to skip the rest of the line. This way the vector is stored
+     * anyway and the indices of the following vectors (that the faces refer to) stay aligned.
+     */
+    private static void parseVector(WavefrontLexer lexer, Floats pool, int size) throws IOException {
+        pool.ensureCapacity(size);
+        int i = 0;
+        try {
+            for (; i < size && lexer.hasNext(); i++) {
+                // parse before storing: the index would be taken even if the parse fails
+                final float value = lexer.nextFloat();
+                pool.data[pool.size++] = value;
+            }
+        } finally {
+            // fill remaining
+            for (; i < size; i++) {
+                pool.data[pool.size++] = 0;
+            }
+        }
+    }
+
+    /**
+     * Parse face (v, v/vt, v//vn or v/vt/vn) and triangulate the polygon
+     * (0, 1, 2), (0, 2, 3), (0, 3, 4), ...
+     */
+    private static void parseFace(WavefrontLexer lexer, Chunk chunk) throws IOException {
+
+        // parse all corners first, so a malformed face is not partially stored
+        int corners = 0;
+        while (lexer.hasNext()) {
+            if ((corners + 1) * 3 > chunk.face.length) {
+                chunk.face = Arrays.copyOf(chunk.face, chunk.face.length * 2);
+                chunk.faceRelative = Arrays.copyOf(chunk.faceRelative, chunk.faceRelative.length * 2);
+            }
+            final int[] face = chunk.face;
+            final int offset = corners * 3;
+            int relative = 0;
+
+            int index = lexer.nextInt();
+            if (index < 0) relative |= 1;
+            face[offset] = toIndex(index, chunk.vertices.size / 3);
+            face[offset + 1] = -1;
+            face[offset + 2] = -1;
+            if (lexer.peek() == '/') {
+                lexer.read();
+                if (isNumber(lexer.peek())) {
+                    index = lexer.nextInt();
+                    if (index < 0) relative |= 2;
+                    face[offset + 1] = toIndex(index, chunk.textures.size / 2);
+                }
+                if (lexer.peek() == '/') {
+                    lexer.read();
+                    if (isNumber(lexer.peek())) {
+                        index = lexer.nextInt();
+                        if (index < 0) relative |= 4;
+                        face[offset + 2] = toIndex(index, chunk.normals.size / 3);
+                    }
+                }
+            }
+            chunk.faceRelative[corners++] = relative;
+        }
+        if (corners < 3) return;
+
+        chunk.vertexAttributes.ensureCapacity((corners - 2) * 9);
+        for (int i = 1; i < corners - 1; i++) {
+            chunk.addCorner(0);
+            chunk.addCorner(i);
+            chunk.addCorner(i + 1);
+        }
+    }
+
+    private static boolean isNumber(int c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+';
+    }
+
+    private static int toIndex(int index, int count) {
+        // negative indices are relative to the current count
+        return index < 0 ? count + index : index - 1;
+    }
+
+    /**
+     * Append the chunks in order, moving the relative indices and replaying the events
+     */
+    private List<WavefrontMeshData> stitch(List<Chunk> chunks) {
+
+        int vertexBase = 0;
+        int textureBase = 0;
+        int normalBase = 0;
+        final int[] bases = new int[3];
+
+        for (Chunk chunk : chunks) {
+
+            // move relative indices
+            bases[0] = vertexBase;
+            bases[1] = textureBase;
+            bases[2] = normalBase;
+            final int[] data = chunk.vertexAttributes.data;
+            for (int i = 0; i < chunk.relatives.size; i++) {
+                final int pos = chunk.relatives.data[i];
+                data[pos] += bases[pos % 3];
+            }
+
+            // replay statements
+            final int cornerBase = corners;
+            for (Event event : chunk.events) {
+                advance(cornerBase + event.corner);
+                switch (event.type) {
+                    case EVENT_OBJECT:
+                        onObject(event.text);
+                        break;
+                    case EVENT_GROUP:
+                        onGroup(event.text);
+                        break;
+                    case EVENT_MATERIAL:
+                        onMaterial(event.text);
+                        break;
+                    case EVENT_MATERIAL_LIB:
+                        try {
+                            mtllib = modelURI.resolve(event.text).toString();
+                        } catch (Exception e) {
+                            logger.log(Level.SEVERE, "Error resolving material file: " + event.text + ", message: " + e.getMessage());
+                        }
+                        break;
+                    case EVENT_SMOOTHING:
+                        onSmoothingGroup(event.text);
+                        break;
+                }
+            }
+            advance(cornerBase + chunk.vertexAttributes.size / 3);
+
+            vertexBase += chunk.vertices.size / 3;
+            textureBase += chunk.textures.size / 2;
+            normalBase += chunk.normals.size / 3;
+        }
+
+        // build last element & mesh
+        closeElement();
+        closeMesh();
+
+        logger.info("Parsed model. vertices: " + vertexBase + ", normals: " + normalBase
+                + ", textures: " + textureBase + ", face corners: " + corners);
+
+        return build(chunks);
+    }
+
+    /**
+     * Move the stitched corners counter, assigning the corners to the current smoothing group
+     */
+    private void advance(int to) {
+        if (currentSmoothingGroup != null && to > corners) {
+            currentSmoothingGroup.ensureCapacity(to - corners);
+            for (int i = corners; i < to; i++) {
+                currentSmoothingGroup.data[currentSmoothingGroup.size++] = i - meshStart;
+            }
+        }
+        corners = to;
+    }
+
+    private void onObject(String name) {
+        if (corners > elementStart) {
+            // build current mesh
+            closeElement();
+            closeMesh();
+
+            // start new mesh
+            meshId = name;
+            meshElements = new ArrayList<>();
+            meshStart = corners;
+            elementId = "default";
+            elementMaterialId = null;
+            elementStart = corners;
+        } else {
+            meshId = name;
+        }
+    }
+
+    private void onGroup(String name) {
+        if (buildNewElement && corners > elementStart) {
+
+            // add current element
+            closeElement();
+
+            // prepare next element
+            elementId = name;
+            elementMaterialId = null;
+        } else {
+            elementId = name;
+            buildNewElement = true;
+        }
+    }
+
+    private void onMaterial(String materialId) {
+        if (corners > elementStart) {
+
+            // change element since we are dealing with different material
+            closeElement();
+
+            // log event
+            logger.finest("New material: " + materialId);
+        }
+        elementMaterialId = materialId;
+    }
+
+    /**
+     * Start a smoothing group. Like the original loader, a group id that is used again starts a new group,
+     * which replaces the previous one with the same id
+     */
+    private void onSmoothingGroup(String smoothingGroupId) {
+        if ("0".equals(smoothingGroupId) || "off".equals(smoothingGroupId)) {
+            currentSmoothingGroup = null;
+        } else {
+            currentSmoothingGroup = new Ints(INITIAL_CAPACITY);
+            smoothingGroups.put(smoothingGroupId, currentSmoothingGroup);
+        }
+    }
+
+    /**
+     * Build the element with the corners parsed since the last element.
+     * Each corner has its own vertex attribute, so the indices are consecutive.
+     */
+    private void closeElement() {
+        final int end = corners;
+        if (end <= elementStart) return;
+
+        final IntBuffer indices = IOUtils.createIntBuffer(end - elementStart);
+        for (int i = elementStart - meshStart; i < end - meshStart; i++) {
+            indices.put(i);
+        }
+        meshElements.add(new Element.Builder().id(elementId).materialId(elementMaterialId)
+                .indices(indices.flip()).build());
+
+        // log event
+        logger.config("New element. id: " + elementId + ", indices: " + indices.limit());
+
+        elementStart = end;
+    }
+
+    private void closeMesh() {
+        meshes.add(new MeshRecord(meshId, meshElements, meshStart, corners, mtllib));
+    }
+
+    /**
+     * Copy the primitive pools into direct buffers and build the meshes
+     */
+    private List<WavefrontMeshData> build(List<Chunk> chunks) {
+
+        int vertices = 0, normals = 0, textures = 0, attributes = 0;
+        for (Chunk chunk : chunks) {
+            vertices += chunk.vertices.size;
+            normals += chunk.normals.size;
+            textures += chunk.textures.size;
+            attributes += chunk.vertexAttributes.size;
+        }
+
+        final FloatBuffer vertexBuffer = IOUtils.createFloatBuffer(vertices);
+        final FloatBuffer normalsBuffer = IOUtils.createFloatBuffer(normals);
+        final FloatBuffer textureBuffer = IOUtils.createFloatBuffer(textures);
+        final IntBuffer attributesBuffer = IOUtils.createIntBuffer(attributes);
+        for (Chunk chunk : chunks) {
+            vertexBuffer.put(chunk.vertices.data, 0, chunk.vertices.size);
+            normalsBuffer.put(chunk.normals.data, 0, chunk.normals.size);
+            textureBuffer.put(chunk.textures.data, 0, chunk.textures.size);
+            attributesBuffer.put(chunk.vertexAttributes.data, 0, chunk.vertexAttributes.size);
+
+            // free memory as soon as possible
+            chunk.release();
+        }
+        vertexBuffer.rewind();
+        normalsBuffer.rewind();
+        textureBuffer.rewind();
+        attributesBuffer.rewind();
+
+        final Map<String, int[]> smoothing = new HashMap<>();
+        for (Map.Entry<String, Ints> entry : smoothingGroups.entrySet()) {
+            smoothing.put(entry.getKey(), Arrays.copyOf(entry.getValue().data, entry.getValue().size));
+        }
+
+        final List<WavefrontMeshData> ret = new ArrayList<>(meshes.size());
+        for (MeshRecord mesh : meshes) {
+            final IntBuffer attributesSlice = attributesBuffer.duplicate();
+            attributesSlice.position(mesh.start * 3);
+            attributesSlice.limit(mesh.end * 3);
+
+            final WavefrontMeshData.Builder builder = new WavefrontMeshData.Builder().id(mesh.id)
+                    .vertices(vertexBuffer).normals(normalsBuffer).textures(textureBuffer)
+                    .vertexAttributes(attributesSlice.slice()).materialFile(mesh.materialFile)
+                    .smoothingGroups(smoothing);
+            for (Element element : mesh.elements) {
+                builder.addElement(element);
+            }
+            final WavefrontMeshData meshData = builder.build();
+
+            logger.config("Loaded mesh. id:" + meshData.getId() + ", elements: " + mesh.elements.size()
+                    + ", face corners: " + (mesh.end - mesh.start));
+
+            ret.add(meshData);
+        }
+        return ret;
+    }
+
+    /**
+     * Geometry parsed from a chunk of the file
+     */
+    private static final class Chunk {
+
+        // primitive data pools
+        private Floats vertices = new Floats(INITIAL_CAPACITY * 3);
+        private Floats normals = new Floats(INITIAL_CAPACITY * 3);
+        private Floats textures = new Floats(INITIAL_CAPACITY * 2);
+
+        // each face corner is represented by 3 ints: v, vt, vn
+        private Ints vertexAttributes = new Ints(INITIAL_CAPACITY * 3);
+
+        // positions in vertexAttributes holding relative indices
+        private final Ints relatives = new Ints(16);
+
+        // statements splitting the geometry
+        private final List<Event> events = new ArrayList<>();
+
+        // face corner scratch: v, vt, vn per corner
+        private int[] face = new int[4 * 3];
+
+        // face corner scratch: relative flags per corner (1: v, 2: vt, 4: vn)
+        private int[] faceRelative = new int[4];
+
+        private void addEvent(int type, String text) {
+            events.add(new Event(type, vertexAttributes.size / 3, text));
+        }
+
+        private void addCorner(int corner) {
+            final int offset = corner * 3;
+
+            // register relative indices (rare), so they can be moved when stitching
+            final int relative = faceRelative[corner];
+            if (relative != 0) {
+                for (int i = 0; i < 3; i++) {
+                    if ((relative & (1 << i)) != 0) {
+                        relatives.ensureCapacity(1);
+                        relatives.data[relatives.size++] = vertexAttributes.size + i;
+                    }
+                }
+            }
+
+            final int[] data = vertexAttributes.data;
+            data[vertexAttributes.size++] = face[offset];
+            data[vertexAttributes.size++] = face[offset + 1];
+            data[vertexAttributes.size++] = face[offset + 2];
+        }
+
+        private void release() {
+            vertices = null;
+            normals = null;
+            textures = null;
+            vertexAttributes = null;
+        }
+    }
+
+    private static final class Event {
+        private final int type;
+        private final int corner;
+        private final String text;
+
+        private Event(int type, int corner, String text) {
+            this.type = type;
+            this.corner = corner;
+            this.text = text;
+        }
+    }
+
+    private static final class MeshRecord {
+        private final String id;
+        private final List<Element> elements;
+        private final int start;
+        private final int end;
+        private final String materialFile;
+
+        private MeshRecord(String id, List<Element> elements, int start, int end, String materialFile) {
+            this.id = id;
+            this.elements = elements;
+            this.start = start;
+            this.end = end;
+            this.materialFile = materialFile;
+        }
+    }
+
+    /**
+     * Growable float array
+     */
+    static final class Floats {
+        float[] data;
+        int size;
+
+        Floats(int capacity) {
+            this.data = new float[capacity];
+        }
+
+        void ensureCapacity(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+    }
+
+    /**
+     * Growable int array
+     */
+    static final class Ints {
+        int[] data;
+        int size;
+
+        Ints(int capacity) {
+            this.data = new int[capacity];
+        }
+
+        void ensureCapacity(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.the3deer.android.engine.services.wavefront;
+
+import org.junit.Test;
+import org.the3deer.android.engine.model.Element;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the semantics of the parser, and that parsing the file in chunks gives the same meshes than parsing it serially
+ */
+public class WavefrontParserTest {
+
+    // every block is ~250 bytes, so the file is bigger than a few chunks
+    private static final int BLOCKS = 60_000;
+
+    private static File writeModel() throws IOException {
+        final File file = File.createTempFile("model", ".obj");
+        try (Writer out = new BufferedWriter(new FileWriter(file))) {
+            out.write("mtllib model.mtl\n");
+            int vertices = 0;
+            for (int i = 0; i < BLOCKS; i++) {
+                // new objects, groups, materials and smoothing groups all along the file
+                if (i % 1000 == 0) out.write("o object" + i / 1000 + "\n");
+                if (i % 250 == 0) out.write("g group" + i / 250 + "\n");
+                if (i % 100 == 0) out.write("usemtl material" + (i / 100) % 7 + "\n");
+                if (i % 50 == 0) out.write(i % 100 == 0 ? "s off\n" : "s " + (i / 50) % 5 + "\n");
+
+                for (int j = 0; j < 4; j++) {
+                    out.write(String.format(Locale.US, "v %f %f %f\n", i + j * 0.25f, -i * 0.5f, j * 1.5f));
+                    out.write(String.format(Locale.US, "vt %f %f\n", j * 0.25f, (i % 10) * 0.1f));
+                }
+                out.write(String.format(Locale.US, "vn %f %f %f\n", 0f, 1f, (i % 3) * 0.5f));
+
+                // relative indices on odd blocks, absolute ones on even blocks
+                if (i % 2 == 1) {
+                    out.write("f -4/-4/-1 -3/-3/-1 -2/-2/-1 -1/-1/-1\n");
+                } else {
+                    final int v = vertices + 1;
+                    final int n = i + 1;
+                    out.write("f " + v + "/" + v + "/" + n + " " + (v + 1) + "/" + (v + 1) + "/" + n + " "
+                            + (v + 2) + "/" + (v + 2) + "/" + n + "\n");
+                    out.write("f " + v + "//" + n + " " + (v + 2) + "//" + n + " " + (v + 3) + "//" + n + "\n");
+                }
+                vertices += 4;
+            }
+        }
+        return file;
+    }
+
+    private static List<WavefrontMeshData> parse(String model) throws IOException {
+        return new WavefrontParser(URI.create("file:///model.obj"))
+                .parse(new ByteArrayInputStream(model.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void repeatedSmoothingGroupStartsANewGroup() throws IOException {
+        final List<WavefrontMeshData> meshes = parse("v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\n"
+                + "s 1\nf 1 2 3\n"
+                + "s 2\nf 1 3 4\n"
+                + "s 1\nf 2 3 4\n");
+
+        // the second "s 1" replaces the first group, like the original loader did
+        final Map<String, int[]> groups = meshes.get(0).getSmoothingGroups();
+        assertEquals(2, groups.size());
+        assertArrayEquals(new int[]{6, 7, 8}, groups.get("1"));
+        assertArrayEquals(new int[]{3, 4, 5}, groups.get("2"));
+    }
+
+    @Test
+    public void malformedVectorIsZeroPadded() throws IOException {
+        final List<WavefrontMeshData> meshes = parse("v 1 2 3\nv 4 x 6\nv 7 8 9\nf 1 2 3\n");
+
+        // the malformed vertex is kept, so the face still points to the right vertices
+        final FloatBuffer vertices = meshes.get(0).getVertexBuffer();
+        final float[] actual = new float[vertices.remaining()];
+        vertices.duplicate().get(actual);
+        assertArrayEquals(new float[]{1, 2, 3, 4, 0, 0, 7, 8, 9}, actual, 0);
+    }
+
+    @Test
+    public void parallelParseIsDeterministic() throws IOException {
+        final File file = writeModel();
+        try {
+            assertParallelParse(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void assertParallelParse(File file) throws IOException {
+
+        final List<WavefrontMeshData> expected;
+        try (InputStream is = new FileInputStream(file)) {
+            expected = new WavefrontParser(file.toURI()).parse(is);
+        }
+
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            final List<WavefrontMeshData> actual;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                // the file has to be split for the test to make sense
+                assertTrue(channel.size() > 3 * 4 * 1024 * 1024);
+                actual = new WavefrontParser(file.toURI()).parse(channel, threads);
+            }
+            assertMeshes("threads " + threads, expected, actual);
+        }
+    }
+
+    private static void assertMeshes(String message, List<WavefrontMeshData> expected, List<WavefrontMeshData> actual) {
+        assertEquals(message, BLOCKS / 1000, expected.size());
+        assertEquals(message, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            final WavefrontMeshData e = expected.get(i);
+            final WavefrontMeshData a = actual.get(i);
+            final String mesh = message + ", mesh " + e.getId();
+            assertEquals(mesh, e.getId(), a.getId());
+            assertEquals(mesh, e.getMaterialFile(), a.getMaterialFile());
+            assertEquals(mesh, e.getVertexCount(), a.getVertexCount());
+            assertBuffers(mesh + ", vertices", e.getVertexBuffer(), a.getVertexBuffer());
+            assertBuffers(mesh + ", normals", e.getNormalsBuffer(), a.getNormalsBuffer());
+            assertBuffers(mesh + ", textures", e.getTextureBuffer(), a.getTextureBuffer());
+
+            assertEquals(mesh, e.getElements().size(), a.getElements().size());
+            for (int j = 0; j < e.getElements().size(); j++) {
+                final Element ee = e.getElements().get(j);
+                final Element ae = a.getElements().get(j);
+                final String element = mesh + ", element " + j;
+                assertEquals(element, ee.getId(), ae.getId());
+                assertEquals(element, ee.getMaterialId(), ae.getMaterialId());
+                assertEquals(element, ((IntBuffer) ee.getIndexBuffer()).duplicate().rewind(),
+                        ((IntBuffer) ae.getIndexBuffer()).duplicate().rewind());
+            }
+
+            assertEquals(mesh, e.getSmoothingGroups().keySet(), a.getSmoothingGroups().keySet());
+            for (Map.Entry<String, int[]> group : e.getSmoothingGroups().entrySet()) {
+                assertTrue(mesh + ", smoothing group " + group.getKey(),
+                        Arrays.equals(group.getValue(), a.getSmoothingGroups().get(group.getKey())));
+            }
+        }
+    }
+
+    private static void assertBuffers(String message, FloatBuffer expected, FloatBuffer actual) {
+        assertNotNull(message, expected);
+        assertNotNull(message, actual);
+        // FloatBuffer.equals compares the remaining elements
+        assertEquals(message, expected.duplicate().rewind(), actual.duplicate().rewind());
+    }
+}
@@ -0,0 +1,316 @@
+package org.the3deer.android.engine.services.ply;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * PLY header. It declares the format of the data and the elements (i.e. vertex, face), with their properties.
+ * <pre>
+ * ply
+ * format binary_little_endian 1.0
+ * comment TextureFile texture.png
+ * element vertex 8
+ * property float x
+ * property float y
+ * property float z
+ * property uchar red
+ * element face 6
+ * property list uchar int vertex_indices
+ * end_header
+ * </pre>
+ *
+ * @author andresoviedo
+ */
+final class PlyHeader {
+
+    /**
+     * The header is text, and it's always small
+     */
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+
+    private static final byte[] END_HEADER = "end_header".getBytes(StandardCharsets.US_ASCII);
+
+    enum Format {
+        ASCII, BINARY_LITTLE_ENDIAN, BINARY_BIG_ENDIAN
+    }
+
+    /**
+     * Scalar types, with the old and the new names
+     */
+    enum Type {
+        CHAR(1), UCHAR(1), SHORT(2), USHORT(2), INT(4), UINT(4), FLOAT(4), DOUBLE(8);
+
+        private final int size;
+
+        Type(int size) {
+            this.size = size;
+        }
+
+        int getSize() {
+            return size;
+        }
+
+        static Type parse(String name) throws IOException {
+            switch (name) {
+                case "char":
+                case "int8":
+                    return CHAR;
+                case "uchar":
+                case "uint8":
+                    return UCHAR;
+                case "short":
+                case "int16":
+                    return SHORT;
+                case "ushort":
+                case "uint16":
+                    return USHORT;
+                case "int":
+                case "int32":
+                    return INT;
+                case "uint":
+                case "uint32":
+                    return UINT;
+                case "float":
+                case "float32":
+                    return FLOAT;
+                case "double":
+                case "float64":
+                    return DOUBLE;
+                default:
+                    throw new IOException("Unknown PLY type: " + name);
+            }
+        }
+    }
+
+    static final class Property {
+
+        private final String name;
+        private final Type type;
+        /**
+         * Type of the number of items, or null if the property is not a list
+         */
+        private final Type countType;
+
+        Property(String name, Type type, Type countType) {
+            this.name = name;
+            this.type = type;
+            this.countType = countType;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        Type getCountType() {
+            return countType;
+        }
+
+        boolean isList() {
+            return countType != null;
+        }
+    }
+
+    static final class Element {
+
+        private final String name;
+        private final long count;
+        private final List<Property> properties = new ArrayList<>();
+
+        Element(String name, long count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        List<Property> getProperties() {
+            return properties;
+        }
+
+        /**
+         * @param names the alternative names of the property (i.e. "red", "diffuse_red")
+         * @return the index of the first property found, or -1 if there is none
+         */
+        int indexOf(String... names) {
+            for (String name : names) {
+                for (int i = 0; i < properties.size(); i++) {
+                    if (properties.get(i).getName().equals(name)) return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return the bytes of every row, or -1 if the element has lists
+         */
+        int getStride() {
+            int ret = 0;
+            for (Property property : properties) {
+                if (property.isList()) return -1;
+                ret += property.getType().getSize();
+            }
+            return ret;
+        }
+
+        /**
+         * @param index the index of the property
+         * @return the offset of the property in the row. The previous properties can't be lists
+         */
+        int getOffset(int index) {
+            int ret = 0;
+            for (int i = 0; i < index; i++) {
+                ret += properties.get(i).getType().getSize();
+            }
+            return ret;
+        }
+    }
+
+    private final Format format;
+    private final List<Element> elements;
+    private final List<String> comments;
+    private final int length;
+
+    private PlyHeader(Format format, List<Element> elements, List<String> comments, int length) {
+        this.format = format;
+        this.elements = elements;
+        this.comments = comments;
+        this.length = length;
+    }
+
+    Format getFormat() {
+        return format;
+    }
+
+    List<Element> getElements() {
+        return elements;
+    }
+
+    /**
+     * @param name the name of the element
+     * @return the element or null if it's not declared
+     */
+    Element getElement(String name) {
+        for (Element element : elements) {
+            if (element.getName().equals(name)) return element;
+        }
+        return null;
+    }
+
+    List<String> getComments() {
+        return comments;
+    }
+
+    /**
+     * @return the position of the data, that is, the size of the header
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * @param data the file, from the beginning
+     * @return true if the data starts with the magic number
+     */
+    static boolean isPly(ByteBuffer data) {
+        return data.limit() >= 4 && data.get(0) == 'p' && data.get(1) == 'l' && data.get(2) == 'y'
+                && (data.get(3) == '\n' || data.get(3) == '\r');
+    }
+
+    /**
+     * @param data the file, from the beginning
+     * @return the header
+     * @throws IOException if the header is not valid
+     */
+    static PlyHeader read(ByteBuffer data) throws IOException {
+        if (!isPly(data)) {
+            throw new IOException("Not a PLY file");
+        }
+
+        // find end of header
+        final int max = Math.min(data.limit(), MAX_HEADER_SIZE);
+        int end = -1;
+        for (int i = 0; i < max - END_HEADER.length && end == -1; i++) {
+            if (data.get(i) != '\n') continue;
+            int j = 0;
+            while (j < END_HEADER.length && data.get(i + 1 + j) == END_HEADER[j]) j++;
+            if (j == END_HEADER.length) end = i + 1 + j;
+        }
+        if (end == -1) {
+            throw new IOException("PLY end_header not found");
+        }
+        // the line ends with \n or \r\n
+        int length = end;
+        while (length < data.limit() && data.get(length) != '\n') length++;
+        length++;
+
+        final byte[] bytes = new byte[end];
+        for (int i = 0; i < end; i++) {
+            bytes[i] = data.get(i);
+        }
+        final String[] lines = new String(bytes, StandardCharsets.US_ASCII).split("\r?\n");
+
+        Format format = null;
+        final List<Element> elements = new ArrayList<>();
+        final List<String> comments = new ArrayList<>();
+        Element element = null;
+        for (int i = 1; i < lines.length; i++) {
+            final String line = lines[i].trim();
+            final String[] tokens = line.split("\\s+");
+            switch (tokens[0]) {
+                case "format":
+                    if (tokens.length < 2) throw new IOException("Invalid PLY format: " + line);
+                    try {
+                        format = Format.valueOf(tokens[1].toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Unknown PLY format: " + tokens[1]);
+                    }
+                    break;
+                case "comment":
+                case "obj_info":
+                    comments.add(line.substring(tokens[0].length()).trim());
+                    break;
+                case "element":
+                    if (tokens.length < 3) throw new IOException("Invalid PLY element: " + line);
+                    try {
+                        element = new Element(tokens[1], Long.parseLong(tokens[2]));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid PLY element: " + line);
+                    }
+                    elements.add(element);
+                    break;
+                case "property":
+                    if (element == null) throw new IOException("PLY property without element: " + line);
+                    if (tokens.length >= 5 && tokens[1].equals("list")) {
+                        element.getProperties().add(new Property(tokens[4], Type.parse(tokens[3]), Type.parse(tokens[2])));
+                    } else if (tokens.length >= 3) {
+                        element.getProperties().add(new Property(tokens[2], Type.parse(tokens[1]), null));
+                    } else {
+                        throw new IOException("Invalid PLY property: " + line);
+                    }
+                    break;
+                default:
+                    // end_header or empty line
+                    break;
+            }
+        }
+        if (format == null) {
+            throw new IOException("PLY format not declared");
+        }
+        return new PlyHeader(format, Collections.unmodifiableList(elements), comments, length);
+    }
+}
@@ -0,0 +1,173 @@
+package org.the3deer.android.engine.services.ply;
+
+import android.opengl.GLES20;
+
+import org.the3deer.android.engine.model.Element;
+import org.the3deer.android.engine.model.Material;
+import org.the3deer.android.engine.model.Object3D;
+import org.the3deer.android.engine.model.Scene;
+import org.the3deer.android.engine.model.Texture;
+import org.the3deer.android.engine.services.LoadListener;
+import org.the3deer.android.engine.services.LoadPlanner;
+import org.the3deer.android.engine.services.LoaderTask;
+import org.the3deer.android.util.ContentUtils;
+import org.the3deer.util.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * PLY (Polygon File Format) loader. It loads point clouds and meshes, in ascii or binary format.
+ * <p>
+ * The file is memory mapped when possible, otherwise it's read into memory. The vertex positions, normals, colors
+ * and texture coordinates are decoded directly into the buffers of the {@link Object3D}.
+ * Files without faces are drawn as points. The texture declared with the comment <code>TextureFile</code>
+ * (as exported by MeshLab) is loaded as the color texture.
+ *
+ * @author andresoviedo
+ */
+public final class PlyLoaderTask extends LoaderTask {
+
+    private static final String TEXTURE_FILE = "TextureFile";
+
+    public PlyLoaderTask(URI url, LoadListener callback) {
+        super(url, callback);
+    }
+
+    /**
+     * The objects are static
+     */
+    @Override
+    protected boolean isCacheable() {
+        return true;
+    }
+
+    @Override
+    protected List<Object3D> build() throws IOException {
+
+        // scene
+        final Scene scene = new Scene();
+
+        try {
+
+            // log event
+            logger.info("Parsing model... " + uri);
+            super.publishProgress("Parsing model...");
+
+            final ByteBuffer data = open();
+            final PlyHeader header = PlyHeader.read(data);
+
+            // log event
+            logger.info("PLY format: " + header.getFormat() + ", elements: " + header.getElements().size());
+
+            // notify user
+            super.publishProgress("Loading vertices...");
+
+            final PlyParser parser = new PlyParser(header, data, getParallelism());
+            parser.parse();
+            publishParsed(parser.getVertexCount());
+
+            // log event
+            logger.info("Loaded model. Vertices: " + parser.getVertexCount()
+                    + ", triangles: " + (parser.getIndices() != null ? parser.getIndices().limit() / 3 : 0)
+                    + ", normals: " + (parser.getNormals() != null) + ", colors: " + (parser.getColors() != null)
+                    + ", textures: " + (parser.getTexCoords() != null));
+
+            // build object
+            final Object3D data3D = new Object3D(uri.toString(), parser.getPositions());
+            data3D.setUri(uri);
+            data3D.setNormalsBuffer(parser.getNormals());
+            data3D.setColorsBuffer(parser.getColors());
+            data3D.setTextureCoordsArrayBuffer(parser.getTexCoords());
+            if (parser.getIndices() != null) {
+                final Element element = new Element(uri.toString(), parser.getIndices());
+                element.setMaterial(loadMaterial(header, parser));
+                data3D.setElements(Collections.singletonList(element));
+                data3D.setIndexed(true);
+                data3D.setDrawMode(GLES20.GL_TRIANGLES);
+            } else {
+                data3D.setIndexed(false);
+                data3D.setDrawMode(GLES20.GL_POINTS);
+            }
+
+            callback.onLoadObject(scene, data3D);
+
+            callback.onLoadScene(scene);
+
+            return Collections.singletonList(data3D);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Error loading PLY: " + e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * The header has the number of vertices and faces
+     */
+    @Override
+    protected LoadPlanner.Estimate estimate() throws IOException {
+        final ByteBuffer data = ContentUtils.map(uri);
+        if (data == null) return null;
+
+        final PlyHeader header = PlyHeader.read(data);
+        final PlyHeader.Element vertex = header.getElement("vertex");
+        if (vertex == null) return null;
+        final PlyHeader.Element face = header.getElement("face");
+
+        // positions, colors and normals (generated when there are faces). the triangles are accumulated before the buffer is created
+        int floatsPerVertex = 3 + 4;
+        if (face != null || vertex.indexOf("nx") != -1) floatsPerVertex += 3;
+        if (vertex.indexOf("u", "s", "texture_u", "texture_s") != -1) floatsPerVertex += 2;
+        final long indices = face != null ? face.getCount() * 3 : 0;
+        return new LoadPlanner.Estimate()
+                .setVertices(vertex.getCount())
+                .setIndices(indices)
+                .setFloatsPerVertex(floatsPerVertex)
+                .setTemporaryBytes(indices * 4);
+    }
+
+    /**
+     * Map the file for zero-copy parsing. Files that can't be mapped (i.e. remote or compressed) are read into memory
+     *
+     * @return the whole file
+     */
+    private ByteBuffer open() throws IOException {
+        try {
+            final ByteBuffer ret = ContentUtils.map(uri);
+            if (ret != null) return ret;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "File can't be mapped. Reading into memory. " + e.getMessage());
+        }
+        try (InputStream stream = ContentUtils.getInputStream(uri)) {
+            return ByteBuffer.wrap(IOUtils.read(stream));
+        }
+    }
+
+    /**
+     * @return the material with the texture declared in the header, or null if there is none
+     */
+    private Material loadMaterial(PlyHeader header, PlyParser parser) {
+        if (parser.getTexCoords() == null) return null;
+        for (String comment : header.getComments()) {
+            if (!comment.startsWith(TEXTURE_FILE)) continue;
+            final String file = comment.substring(TEXTURE_FILE.length()).trim();
+
+            // log event
+            logger.info("Reading texture file... " + file);
+
+            try (InputStream stream = ContentUtils.getInputStream(uri.resolve(file))) {
+                final Material ret = new Material(file, file);
+                ret.setColorTexture(new Texture(file).setData(IOUtils.read(stream)));
+                return ret;
+            } catch (Exception ex) {
+                logger.log(Level.SEVERE, String.format("Error reading texture file: %s", ex.getMessage()));
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,578 @@
+package org.the3deer.android.engine.services.ply;
+
+import org.the3deer.android.engine.services.LoaderTask;
+import org.the3deer.util.io.IOUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * PLY parser. It decodes the vertices and faces directly from the (memory mapped) file into the direct buffers.
+ * <p>
+ * The binary vertices without lists have a fixed size, so any row can be decoded without reading the previous ones.
+ * Big vertex elements are split in ranges of rows, and every range is decoded in parallel into the same buffers.
+ * The faces, the ascii files and the elements with lists are read sequentially.
+ * <p>
+ * The faces are triangulated as a fan. The normals are generated if the file has faces but no normals.
+ *
+ * @author andresoviedo
+ */
+final class PlyParser {
+
+    private static final Logger logger = Logger.getLogger(PlyParser.class.getSimpleName());
+
+    /**
+     * Vertex elements smaller than this are not worth splitting
+     */
+    private static final int MIN_PARALLEL_VERTICES = 256 * 1024;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final PlyHeader header;
+    private final ByteBuffer data;
+    private final int threads;
+
+    // current position of the sequential readers
+    private int position;
+    private Reader reader;
+
+    // parsed data
+    private int vertexCount;
+    private FloatBuffer positions;
+    private FloatBuffer normals;
+    private FloatBuffer colors;
+    private FloatBuffer texCoords;
+    private IntBuffer indices;
+
+    /**
+     * @param header  the header
+     * @param data    the whole file
+     * @param threads number of threads of the pool where the binary vertices are decoded (see {@link LoaderTask#invokeAll})
+     */
+    PlyParser(PlyHeader header, ByteBuffer data, int threads) {
+        this.header = header;
+        this.data = data.duplicate().order(header.getFormat() == PlyHeader.Format.BINARY_BIG_ENDIAN ?
+                ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        this.threads = Math.max(1, threads);
+    }
+
+    void parse() throws IOException {
+        this.position = header.getLength();
+        this.reader = header.getFormat() == PlyHeader.Format.ASCII ? new AsciiReader() : new BinaryReader();
+
+        boolean vertices = false;
+        for (PlyHeader.Element element : header.getElements()) {
+            if (!vertices && element.getName().equals("vertex")) {
+                parseVertices(element);
+                vertices = true;
+            } else if (indices == null && vertices && element.getName().equals("face")) {
+                parseFaces(element);
+            } else {
+                logger.config("Skipping PLY element: " + element.getName() + ", rows: " + element.getCount());
+                skip(element);
+            }
+        }
+        if (!vertices) {
+            throw new IOException("PLY vertex element not found");
+        }
+        if (normals == null && indices != null) {
+            generateNormals();
+        }
+    }
+
+    int getVertexCount() {
+        return vertexCount;
+    }
+
+    FloatBuffer getPositions() {
+        return positions;
+    }
+
+    /**
+     * @return the normals, or null if the file is a point cloud without normals
+     */
+    FloatBuffer getNormals() {
+        return normals;
+    }
+
+    /**
+     * @return the RGBA colors, or null if the vertices have no color
+     */
+    FloatBuffer getColors() {
+        return colors;
+    }
+
+    /**
+     * @return the texture coordinates, or null if the vertices have no texture coordinates
+     */
+    FloatBuffer getTexCoords() {
+        return texCoords;
+    }
+
+    /**
+     * @return the triangles, or null if the file is a point cloud
+     */
+    IntBuffer getIndices() {
+        return indices;
+    }
+
+    /**
+     * Index of the vertex properties used by the engine, and the scale to convert them to floats
+     */
+    private static final class Columns {
+
+        final int[] position = new int[3];
+        final int[] normal;
+        final int[] color;
+        final int[] texCoord;
+        final float[] colorScale;
+
+        Columns(PlyHeader.Element element) throws IOException {
+            position[0] = element.indexOf("x");
+            position[1] = element.indexOf("y");
+            position[2] = element.indexOf("z");
+            if (position[0] == -1 || position[1] == -1 || position[2] == -1) {
+                throw new IOException("PLY vertex without x, y or z");
+            }
+            normal = find(element, new String[][]{{"nx"}, {"ny"}, {"nz"}});
+            texCoord = find(element, new String[][]{{"u", "s", "texture_u", "texture_s"},
+                    {"v", "t", "texture_v", "texture_t"}});
+            final int[] rgb = find(element, new String[][]{{"red", "diffuse_red", "r"},
+                    {"green", "diffuse_green", "g"}, {"blue", "diffuse_blue", "b"}});
+            if (rgb != null) {
+                color = new int[]{rgb[0], rgb[1], rgb[2], element.indexOf("alpha", "diffuse_alpha", "a")};
+                colorScale = new float[4];
+                for (int i = 0; i < 4; i++) {
+                    colorScale[i] = color[i] == -1 ? 0 : getScale(element.getProperties().get(color[i]).getType());
+                }
+            } else {
+                color = null;
+                colorScale = null;
+            }
+        }
+
+        private static int[] find(PlyHeader.Element element, String[][] names) {
+            final int[] ret = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                ret[i] = element.indexOf(names[i]);
+                if (ret[i] == -1) return null;
+            }
+            return ret;
+        }
+
+        private static float getScale(PlyHeader.Type type) {
+            switch (type) {
+                case CHAR:
+                case UCHAR:
+                    return 1 / 255f;
+                case SHORT:
+                case USHORT:
+                    return 1 / 65535f;
+                case INT:
+                case UINT:
+                    return 1 / 4294967295f;
+                default:
+                    return 1;
+            }
+        }
+    }
+
+    private void parseVertices(PlyHeader.Element element) throws IOException {
+        if (element.getCount() > Integer.MAX_VALUE / 4) {
+            throw new IOException("Too many vertices: " + element.getCount());
+        }
+        vertexCount = (int) element.getCount();
+
+        final Columns columns = new Columns(element);
+        positions = IOUtils.createFloatBuffer(vertexCount * 3);
+        if (columns.normal != null) normals = IOUtils.createFloatBuffer(vertexCount * 3);
+        if (columns.color != null) colors = IOUtils.createFloatBuffer(vertexCount * 4);
+        if (columns.texCoord != null) texCoords = IOUtils.createFloatBuffer(vertexCount * 2);
+
+        final int stride = element.getStride();
+        if (reader instanceof BinaryReader && stride > 0) {
+            if ((long) stride * vertexCount > data.limit() - position) {
+                throw new IOException("PLY file truncated. Vertices: " + vertexCount + ", stride: " + stride);
+            }
+            decode(element, columns, stride);
+            position += stride * vertexCount;
+            return;
+        }
+
+        final List<PlyHeader.Property> properties = element.getProperties();
+        final double[] row = new double[properties.size()];
+        for (int i = 0; i < vertexCount; i++) {
+            for (int p = 0; p < row.length; p++) {
+                final PlyHeader.Property property = properties.get(p);
+                if (property.isList()) {
+                    reader.skip(property.getType(), (long) reader.read(property.getCountType()));
+                } else {
+                    row[p] = reader.read(property.getType());
+                }
+            }
+            put(columns, i, row);
+        }
+    }
+
+    /**
+     * Decode the binary vertices with fixed size. Big elements are split in ranges of rows that are decoded in parallel
+     */
+    private void decode(PlyHeader.Element element, Columns columns, int stride) throws IOException {
+        final List<PlyHeader.Property> properties = element.getProperties();
+        final PlyHeader.Type[] types = new PlyHeader.Type[properties.size()];
+        final int[] offsets = new int[properties.size()];
+        for (int p = 0; p < properties.size(); p++) {
+            types[p] = properties.get(p).getType();
+            offsets[p] = element.getOffset(p);
+        }
+
+        final int chunks = vertexCount < MIN_PARALLEL_VERTICES ? 1 : Math.min(threads, vertexCount / (MIN_PARALLEL_VERTICES / 2));
+        if (chunks <= 1) {
+            decode(columns, types, offsets, stride, 0, vertexCount);
+            return;
+        }
+
+        // log event
+        logger.info("Decoding vertices... " + vertexCount + ", chunks: " + chunks);
+
+        // the ranges are decoded in the shared pool of the loaders
+        final List<Callable<Void>> jobs = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            final int from = (int) ((long) vertexCount * i / chunks);
+            final int to = (int) ((long) vertexCount * (i + 1) / chunks);
+            jobs.add(() -> {
+                decode(columns, types, offsets, stride, from, to);
+                return null;
+            });
+        }
+        try {
+            LoaderTask.invokeAll(jobs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding vertices", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Decode the rows [from, to). The values are written with absolute puts, so the ranges can be decoded concurrently
+     */
+    private void decode(Columns columns, PlyHeader.Type[] types, int[] offsets, int stride, int from, int to) {
+        final int start = position;
+        for (int i = from; i < to; i++) {
+            final int row = start + i * stride;
+            for (int c = 0; c < 3; c++) {
+                final int p = columns.position[c];
+                positions.put(i * 3 + c, (float) read(data, row + offsets[p], types[p]));
+            }
+            if (columns.normal != null) {
+                for (int c = 0; c < 3; c++) {
+                    final int p = columns.normal[c];
+                    normals.put(i * 3 + c, (float) read(data, row + offsets[p], types[p]));
+                }
+            }
+            if (columns.color != null) {
+                for (int c = 0; c < 4; c++) {
+                    final int p = columns.color[c];
+                    colors.put(i * 4 + c, p == -1 ? 1f : (float) read(data, row + offsets[p], types[p]) * columns.colorScale[c]);
+                }
+            }
+            if (columns.texCoord != null) {
+                final int u = columns.texCoord[0];
+                final int v = columns.texCoord[1];
+                texCoords.put(i * 2, (float) read(data, row + offsets[u], types[u]));
+                texCoords.put(i * 2 + 1, 1 - (float) read(data, row + offsets[v], types[v]));
+            }
+        }
+    }
+
+    private void put(Columns columns, int i, double[] row) {
+        for (int c = 0; c < 3; c++) {
+            positions.put(i * 3 + c, (float) row[columns.position[c]]);
+        }
+        if (columns.normal != null) {
+            for (int c = 0; c < 3; c++) {
+                normals.put(i * 3 + c, (float) row[columns.normal[c]]);
+            }
+        }
+        if (columns.color != null) {
+            for (int c = 0; c < 4; c++) {
+                final int p = columns.color[c];
+                colors.put(i * 4 + c, p == -1 ? 1f : (float) row[p] * columns.colorScale[c]);
+            }
+        }
+        if (columns.texCoord != null) {
+            texCoords.put(i * 2, (float) row[columns.texCoord[0]]);
+            texCoords.put(i * 2 + 1, 1 - (float) row[columns.texCoord[1]]);
+        }
+    }
+
+    private void parseFaces(PlyHeader.Element element) throws IOException {
+        final int list = element.indexOf("vertex_indices", "vertex_index");
+        if (list == -1 || !element.getProperties().get(list).isList()) {
+            logger.warning("PLY face without vertex_indices. Loading as point cloud");
+            skip(element);
+            return;
+        }
+
+        final List<PlyHeader.Property> properties = element.getProperties();
+        int[] triangles = new int[(int) Math.min(Math.max(INITIAL_CAPACITY, element.getCount() * 3), Integer.MAX_VALUE - 8)];
+        int size = 0;
+        int[] polygon = new int[16];
+        for (long f = 0; f < element.getCount(); f++) {
+            for (int p = 0; p < properties.size(); p++) {
+                final PlyHeader.Property property = properties.get(p);
+                if (p != list) {
+                    if (property.isList()) {
+                        reader.skip(property.getType(), (long) reader.read(property.getCountType()));
+                    } else {
+                        reader.read(property.getType());
+                    }
+                    continue;
+                }
+
+                // read polygon
+                final int corners = (int) reader.read(property.getCountType());
+                if (corners < 0) throw new IOException("Invalid PLY face " + f + ": " + corners + " corners");
+                if (corners > polygon.length) polygon = new int[corners];
+                for (int k = 0; k < corners; k++) {
+                    final long index = (long) reader.read(property.getType());
+                    if (index < 0 || index >= vertexCount) {
+                        throw new IOException("Invalid PLY face " + f + ": vertex " + index + " out of " + vertexCount);
+                    }
+                    polygon[k] = (int) index;
+                }
+
+                // triangulate as a fan
+                if (corners < 3) continue;
+                if (size + (corners - 2) * 3 > triangles.length) {
+                    triangles = Arrays.copyOf(triangles, Math.max(size + (corners - 2) * 3, triangles.length * 2));
+                }
+                for (int k = 1; k < corners - 1; k++) {
+                    triangles[size++] = polygon[0];
+                    triangles[size++] = polygon[k];
+                    triangles[size++] = polygon[k + 1];
+                }
+            }
+        }
+
+        indices = IOUtils.createIntBuffer(size);
+        indices.put(triangles, 0, size);
+        indices.flip();
+    }
+
+    private void skip(PlyHeader.Element element) throws IOException {
+        final int stride = element.getStride();
+        if (reader instanceof BinaryReader && stride >= 0) {
+            position += (int) Math.min(stride * element.getCount(), Integer.MAX_VALUE);
+            return;
+        }
+        for (long i = 0; i < element.getCount(); i++) {
+            for (PlyHeader.Property property : element.getProperties()) {
+                if (property.isList()) {
+                    reader.skip(property.getType(), (long) reader.read(property.getCountType()));
+                } else {
+                    reader.read(property.getType());
+                }
+            }
+        }
+    }
+
+    /**
+     * Area weighted vertex normals
+     */
+    private void generateNormals() {
+        logger.config("Generating normals... ");
+        final float[] sum = new float[vertexCount * 3];
+        final int triangles = indices.limit() / 3;
+        for (int t = 0; t < triangles; t++) {
+            final int a = indices.get(t * 3) * 3;
+            final int b = indices.get(t * 3 + 1) * 3;
+            final int c = indices.get(t * 3 + 2) * 3;
+            final float ux = positions.get(b) - positions.get(a);
+            final float uy = positions.get(b + 1) - positions.get(a + 1);
+            final float uz = positions.get(b + 2) - positions.get(a + 2);
+            final float vx = positions.get(c) - positions.get(a);
+            final float vy = positions.get(c + 1) - positions.get(a + 1);
+            final float vz = positions.get(c + 2) - positions.get(a + 2);
+            final float nx = uy * vz - uz * vy;
+            final float ny = uz * vx - ux * vz;
+            final float nz = ux * vy - uy * vx;
+            for (int v : new int[]{a, b, c}) {
+                sum[v] += nx;
+                sum[v + 1] += ny;
+                sum[v + 2] += nz;
+            }
+        }
+        normals = IOUtils.createFloatBuffer(vertexCount * 3);
+        for (int i = 0; i < vertexCount * 3; i += 3) {
+            final float length = (float) Math.sqrt(sum[i] * sum[i] + sum[i + 1] * sum[i + 1] + sum[i + 2] * sum[i + 2]);
+            if (length > 0) {
+                normals.put(i, sum[i] / length).put(i + 1, sum[i + 1] / length).put(i + 2, sum[i + 2] / length);
+            } else {
+                normals.put(i, 0).put(i + 1, 1).put(i + 2, 0);
+            }
+        }
+    }
+
+    private static double read(ByteBuffer data, int offset, PlyHeader.Type type) {
+        switch (type) {
+            case CHAR:
+                return data.get(offset);
+            case UCHAR:
+                return data.get(offset) & 0xFF;
+            case SHORT:
+                return data.getShort(offset);
+            case USHORT:
+                return data.getShort(offset) & 0xFFFF;
+            case INT:
+                return data.getInt(offset);
+            case UINT:
+                return data.getInt(offset) & 0xFFFFFFFFL;
+            case FLOAT:
+                return data.getFloat(offset);
+            default:
+                return data.getDouble(offset);
+        }
+    }
+
+    /**
+     * Sequential reader of the values, either binary or ascii
+     */
+    private abstract static class Reader {
+
+        abstract double read(PlyHeader.Type type) throws IOException;
+
+        abstract void skip(PlyHeader.Type type, long count) throws IOException;
+    }
+
+    private final class BinaryReader extends Reader {
+
+        @Override
+        double read(PlyHeader.Type type) throws IOException {
+            if (position + type.getSize() > data.limit()) {
+                throw new IOException("Unexpected end of PLY file");
+            }
+            final double ret = PlyParser.read(data, position, type);
+            position += type.getSize();
+            return ret;
+        }
+
+        @Override
+        void skip(PlyHeader.Type type, long count) throws IOException {
+            if (count < 0 || position + count * type.getSize() > data.limit()) {
+                throw new IOException("Unexpected end of PLY file");
+            }
+            position += (int) (count * type.getSize());
+        }
+    }
+
+    private final class AsciiReader extends Reader {
+
+        @Override
+        double read(PlyHeader.Type type) throws IOException {
+            final int limit = data.limit();
+            while (position < limit && data.get(position) <= ' ') position++;
+            if (position >= limit) {
+                throw new IOException("Unexpected end of PLY file");
+            }
+
+            final int start = position;
+            boolean negative = false;
+            byte b = data.get(position);
+            if (b == '-' || b == '+') {
+                negative = b == '-';
+                position++;
+            }
+
+            // mantissa and decimal exponent
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean point = false;
+            boolean valid = false;
+            while (position < limit) {
+                b = data.get(position);
+                if (b >= '0' && b <= '9') {
+                    valid = true;
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        if (mantissa > 0) digits++;
+                        if (point) exponent--;
+                    } else if (!point) {
+                        exponent++;
+                    }
+                } else if (b == '.' && !point) {
+                    point = true;
+                } else {
+                    break;
+                }
+                position++;
+            }
+            if (valid && position < limit && (b == 'e' || b == 'E')) {
+                position++;
+                boolean negativeExponent = false;
+                if (position < limit && (data.get(position) == '-' || data.get(position) == '+')) {
+                    negativeExponent = data.get(position) == '-';
+                    position++;
+                }
+                int value = 0;
+                valid = false;
+                while (position < limit && (b = data.get(position)) >= '0' && b <= '9') {
+                    valid = true;
+                    value = Math.min(value * 10 + (b - '0'), 1000);
+                    position++;
+                }
+                exponent += negativeExponent ? -value : value;
+            }
+            if (!valid || (position < limit && data.get(position) > ' ')) {
+                // i.e. nan, inf
+                while (position < limit && data.get(position) > ' ') position++;
+                final byte[] token = new byte[position - start];
+                for (int i = 0; i < token.length; i++) {
+                    token[i] = data.get(start + i);
+                }
+                final String text = new String(token, StandardCharsets.US_ASCII);
+                switch (text.toLowerCase(Locale.ROOT)) {
+                    case "nan":
+                    case "-nan":
+                        return Double.NaN;
+                    case "inf":
+                    case "+inf":
+                        return Double.POSITIVE_INFINITY;
+                    case "-inf":
+                        return Double.NEGATIVE_INFINITY;
+                    default:
+                        try {
+                            return Double.parseDouble(text);
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Invalid PLY number: " + text);
+                        }
+                }
+            }
+            final double ret = exponent == 0 ? mantissa : exponent > 0 ? mantissa * Math.pow(10, exponent)
+                    : mantissa / Math.pow(10, -exponent);
+            return negative ? -ret : ret;
+        }
+
+        @Override
+        void skip(PlyHeader.Type type, long count) throws IOException {
+            for (long i = 0; i < count; i++) {
+                read(type);
+            }
+        }
+    }
+}
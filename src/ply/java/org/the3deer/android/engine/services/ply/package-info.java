@@ -0,0 +1,4 @@
+/**
+ * PLY (Polygon File Format) loader. Point clouds and meshes, in ascii or binary (little and big endian) format.
+ */
+package org.the3deer.android.engine.services.ply;
@@ -6,12 +6,15 @@ import org.the3deer.android.engine.model.Object3D;
 
 import org.the3deer.android.engine.model.Scene;
 import org.the3deer.android.engine.services.LoadListener;
+import org.the3deer.android.engine.services.LoadPlanner;
 import org.the3deer.android.engine.services.LoaderTask;
+import org.the3deer.android.util.ContentUtils;
 import org.the3deer.util.io.IOUtils;
 
 import java.io.IOException;
 import java.net.URI;
 import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
@@ -23,12 +26,29 @@ import java.util.logging.Level;
  */
 public final class STLLoaderTask extends LoaderTask {
 
+    /**
+     * Approximate size of a facet in an ascii file
+     */
+    private static final int ASCII_FACET_BYTES = 250;
+    /**
+     * Approximate memory used by {@link STLMeshData#smooth()} for every vertex
+     */
+    private static final int SMOOTH_BYTES_PER_VERTEX = 40;
+
     private STLFileReader stlFileReader;
 
     public STLLoaderTask(URI url, LoadListener callback) {
         super(url, callback);
     }
 
+    /**
+     * The objects are static
+     */
+    @Override
+    protected boolean isCacheable() {
+        return true;
+    }
+
     @Override
     protected List<Object3D> build() throws IOException {
 
@@ -45,48 +65,71 @@ public final class STLLoaderTask extends LoaderTask {
             logger.info("Parsing model...");
             super.publishProgress("Parsing model...");
 
-            // Parse STL
-            this.stlFileReader = new STLFileReader(uri);
+            // primitive data
+            final FloatBuffer vertices;
+            final FloatBuffer normals;
 
-            // get total facets
-            int totalFaces = stlFileReader.getNumOfFacets()[0];
+            // binary files are mapped and decoded in one pass
+            final STLMappedBinaryParser mappedParser = openMapped();
+            if (mappedParser != null) {
 
-            // log event
-            logger.info("Num of objects found: " + stlFileReader.getNumOfObjects());
-            logger.info("Num facets found '" + totalFaces + "' facets");
-            logger.info("Parsing messages: " + stlFileReader.getParsingMessages());
+                // get total facets
+                final int totalFaces = mappedParser.getNumOfFacets();
+                logger.info("Num facets found '" + totalFaces + "' facets (mapped)");
 
-            // primitive data
-            final FloatBuffer vertices = IOUtils.createFloatBuffer(totalFaces * 3 * 3);
-            final FloatBuffer normals = IOUtils.createFloatBuffer(totalFaces * 3 * 3);
-
-            // Parse all facets...
-            double[] normal = new double[3];
-            double[][] triangle = new double[3][3];
-
-            // notify user
-            super.publishProgress("Loading facets...");
-
-            // load data
-            while (stlFileReader.getNextFacet(normal, triangle) && counter < totalFaces) {
-                counter++;
-
-                float nx = (float) normal[0];
-                float ny = (float) normal[1];
-                float nz = (float) normal[2];
-                normals.put(nx).put(ny).put(nz);
-                normals.put(nx).put(ny).put(nz);
-                normals.put(nx).put(ny).put(nz);
-
-                vertices.put((float) triangle[0][0]).put((float) triangle[0][1]).put((float) triangle[0][2]);
-                vertices.put((float) triangle[1][0]).put((float) triangle[1][1]).put((float) triangle[1][2]);
-                vertices.put((float) triangle[2][0]).put((float) triangle[2][1]).put((float) triangle[2][2]);
+                vertices = IOUtils.createFloatBuffer(totalFaces * 3 * 3);
+                normals = IOUtils.createFloatBuffer(totalFaces * 3 * 3);
+
+                // notify user
+                super.publishProgress("Loading facets...");
+
+                // load data
+                counter = mappedParser.read(vertices, normals);
+            } else {
+
+                // Parse STL
+                this.stlFileReader = new STLFileReader(uri);
+
+                // get total facets
+                int totalFaces = stlFileReader.getNumOfFacets()[0];
+
+                // log event
+                logger.info("Num of objects found: " + stlFileReader.getNumOfObjects());
+                logger.info("Num facets found '" + totalFaces + "' facets");
+                logger.info("Parsing messages: " + stlFileReader.getParsingMessages());
+
+                vertices = IOUtils.createFloatBuffer(totalFaces * 3 * 3);
+                normals = IOUtils.createFloatBuffer(totalFaces * 3 * 3);
+
+                // Parse all facets...
+                double[] normal = new double[3];
+                double[][] triangle = new double[3][3];
+
+                // notify user
+                super.publishProgress("Loading facets...");
+
+                // load data
+                while (stlFileReader.getNextFacet(normal, triangle) && counter < totalFaces) {
+                    counter++;
+
+                    float nx = (float) normal[0];
+                    float ny = (float) normal[1];
+                    float nz = (float) normal[2];
+                    normals.put(nx).put(ny).put(nz);
+                    normals.put(nx).put(ny).put(nz);
+                    normals.put(nx).put(ny).put(nz);
+
+                    vertices.put((float) triangle[0][0]).put((float) triangle[0][1]).put((float) triangle[0][2]);
+                    vertices.put((float) triangle[1][0]).put((float) triangle[1][1]).put((float) triangle[1][2]);
+                    vertices.put((float) triangle[2][0]).put((float) triangle[2][1]).put((float) triangle[2][2]);
+                }
             }
             vertices.flip();
             normals.flip();
 
             // log event
             logger.info("Loaded model. Facets: " + counter + ", vertices:" + vertices.limit() / 3 + ", normals: " + normals.limit() / 3);
+            publishParsed(vertices.limit() / 3);
 
             // build data
             final STLMeshData mesh = new STLMeshData(vertices, normals);
@@ -122,4 +165,41 @@ public final class STLLoaderTask extends LoaderTask {
             }
         }
     }
+
+    /**
+     * The binary files have the number of facets in the header. The ascii ones are estimated from the file size
+     */
+    @Override
+    protected LoadPlanner.Estimate estimate() {
+        long facets = -1;
+        final STLMappedBinaryParser mappedParser = openMapped();
+        if (mappedParser != null) {
+            facets = mappedParser.getNumOfFacets();
+        } else {
+            final long size = ContentUtils.getSize(uri);
+            if (size > 0) facets = size / ASCII_FACET_BYTES;
+        }
+        if (facets < 0) return null;
+
+        // positions and normals, not indexed. the smoothing groups the vertices in a map
+        return new LoadPlanner.Estimate()
+                .setVertices(facets * 3)
+                .setFloatsPerVertex(6)
+                .setTemporaryBytes(facets * 3 * SMOOTH_BYTES_PER_VERTEX);
+    }
+
+    /**
+     * Try to map the file for zero-copy parsing. Only binary files on local storage can be mapped.
+     *
+     * @return the mapped parser or null if the file is not mappable or not binary
+     */
+    private STLMappedBinaryParser openMapped() {
+        try (FileChannel channel = ContentUtils.getFileChannel(uri)) {
+            if (channel == null) return null;
+            return STLMappedBinaryParser.open(channel);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "File can't be mapped. Using stream parser. " + e.getMessage());
+            return null;
+        }
+    }
 }
@@ -0,0 +1,125 @@
+package org.the3deer.android.engine.services.stl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Zero-copy parser for binary STL files.
+ * <p>
+ * The file is memory mapped and the 50-byte facet records are decoded straight from the
+ * little-endian view into the vertex and normal buffers, without intermediate arrays or streams.
+ * <p>
+ * Binary layout: 80 bytes header, 4 bytes facet count, then per facet: normal (3 floats),
+ * 3 vertices (9 floats) and 2 bytes attribute.
+ *
+ * @author andresoviedo
+ * @see STLBinaryParser
+ */
+final class STLMappedBinaryParser {
+
+    /**
+     * size of binary header (comment + number of facets)
+     */
+    private static final int HEADER_SIZE = 84;
+
+    /**
+     * offset of the facets count in the header
+     */
+    private static final int COUNT_OFFSET = 80;
+
+    /**
+     * size of one facet record in binary format
+     */
+    private static final int RECORD_SIZE = 50;
+
+    private final ByteBuffer buffer;
+    private final int numOfFacets;
+
+    private STLMappedBinaryParser(ByteBuffer buffer, int numOfFacets) {
+        this.buffer = buffer;
+        this.numOfFacets = numOfFacets;
+    }
+
+    /**
+     * Map the file and check it is a binary STL.
+     *
+     * @param channel the file channel
+     * @return the parser, or null if the file is not a binary STL (i.e. ASCII) and should be
+     * processed by the {@link STLFileReader}
+     * @throws IOException if there is an error mapping the file
+     */
+    static STLMappedBinaryParser open(FileChannel channel) throws IOException {
+        final long size = channel.size();
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        final long facets = buffer.getInt(COUNT_OFFSET) & 0xFFFFFFFFL;
+        final long expected = HEADER_SIZE + facets * RECORD_SIZE;
+
+        // some exporters write "solid" in the binary header, so only the size is reliable
+        if (size == expected || (size > expected && !startsWithSolid(buffer))) {
+            return new STLMappedBinaryParser(buffer, (int) facets);
+        }
+        return null;
+    }
+
+    private static boolean startsWithSolid(ByteBuffer buffer) {
+        final byte[] solid = {'s', 'o', 'l', 'i', 'd'};
+        for (int i = 0; i < solid.length; i++) {
+            if (buffer.get(i) != solid[i]) return false;
+        }
+        return true;
+    }
+
+    int getNumOfFacets() {
+        return numOfFacets;
+    }
+
+    /**
+     * Decode all the facets into the specified buffers.
+     * The normal of the facet is replicated for each of the 3 vertices.
+     * Invalid normals (NaN or infinite) are set to 0, so they can be calculated later.
+     *
+     * @param vertices buffer with capacity for (facets * 9) floats
+     * @param normals  buffer with capacity for (facets * 9) floats
+     * @return number of facets read
+     */
+    int read(FloatBuffer vertices, FloatBuffer normals) {
+        final ByteBuffer buffer = this.buffer;
+        int vOffset = vertices.position();
+        int nOffset = normals.position();
+
+        for (int facet = 0, record = HEADER_SIZE; facet < numOfFacets; facet++, record += RECORD_SIZE) {
+
+            float nx = buffer.getFloat(record);
+            float ny = buffer.getFloat(record + 4);
+            float nz = buffer.getFloat(record + 8);
+            if (!Float.isFinite(nx) || !Float.isFinite(ny) || !Float.isFinite(nz)) {
+                // STL spec says use 0 0 0 for autocalc
+                nx = 0;
+                ny = 0;
+                nz = 0;
+            }
+            for (int i = 0; i < 3; i++) {
+                normals.put(nOffset++, nx);
+                normals.put(nOffset++, ny);
+                normals.put(nOffset++, nz);
+            }
+
+            for (int i = 12; i < 48; i += 4) {
+                vertices.put(vOffset++, buffer.getFloat(record + i));
+            }
+        }
+
+        vertices.position(vOffset);
+        normals.position(nOffset);
+        return numOfFacets;
+    }
+}
@@ -0,0 +1,317 @@
+package org.the3deer.android.engine.animation;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.the3deer.android.engine.model.Node;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the blending of the {@link AnimationMixer}: the weights, the crossfades and the joint masks are compared
+ * with poses computed by hand. It also checks that the update doesn't allocate, and measures 20 characters
+ * blending 3 clips each against the frame budget.
+ */
+public class AnimationMixerTest {
+
+    private static final Logger logger = Logger.getLogger(AnimationMixerTest.class.getSimpleName());
+
+    private static final int JOINTS = 30;
+    private static final int FRAMES = 10_000;
+
+    // 20 characters, blending 3 clips each, within 2 ms
+    private static final int CHARACTERS = 20;
+    private static final float FRAME_BUDGET_MS = 2;
+
+    /**
+     * A chain of joints, the first one is the root
+     */
+    private static Node[] buildChain(String prefix, int length) {
+        final Node[] joints = new Node[length];
+        for (int i = 0; i < length; i++) {
+            joints[i] = new Node(prefix + i);
+            if (i > 0) {
+                joints[i - 1].addChild(joints[i]);
+            }
+        }
+        return joints;
+    }
+
+    /**
+     * A clip that holds the same translation and rotation (around z) on the joints
+     */
+    private static Animation constant(String name, float x, double degrees, String... targets) {
+        return linear(name, x, degrees, x, degrees, targets);
+    }
+
+    /**
+     * A clip of 2 seconds that moves the translation and the rotation (around z) of the joints linearly
+     */
+    private static Animation linear(String name, float x0, double degrees0, float x1, double degrees1, String... targets) {
+        final float[] times = {0, 2};
+        final Track[] tracks = new Track[targets.length * 2];
+        for (int i = 0; i < targets.length; i++) {
+            tracks[i * 2] = new Track(targets[i], Track.TRANSLATION, times, new float[]{x0, 0, 0, x1, 0, 0});
+            final float[] q0 = rotationZ(degrees0), q1 = rotationZ(degrees1);
+            tracks[i * 2 + 1] = new Track(targets[i], Track.ROTATION, times,
+                    new float[]{q0[0], q0[1], q0[2], q0[3], q1[0], q1[1], q1[2], q1[3]});
+        }
+        return new Animation(name, tracks);
+    }
+
+    private static float[] rotationZ(double degrees) {
+        final double half = Math.toRadians(degrees) / 2;
+        return new float[]{0, 0, (float) Math.sin(half), (float) Math.cos(half)};
+    }
+
+    /**
+     * @return the local matrix of a translation along x and a rotation around z
+     */
+    private static float[] matrix(double x, double radians) {
+        final float cos = (float) Math.cos(radians), sin = (float) Math.sin(radians);
+        return new float[]{
+                cos, sin, 0, 0,
+                -sin, cos, 0, 0,
+                0, 0, 1, 0,
+                (float) x, 0, 0, 1};
+    }
+
+    /**
+     * @return the angle of the normalized sum of the rotations (around z) by their weights
+     */
+    private static double nlerp(double[] weights, double... degrees) {
+        double z = 0, w = 0;
+        for (int i = 0; i < weights.length; i++) {
+            z += Math.sin(Math.toRadians(degrees[i]) / 2) * weights[i];
+            w += Math.cos(Math.toRadians(degrees[i]) / 2) * weights[i];
+        }
+        return 2 * Math.atan2(z, w);
+    }
+
+    private static float[] pose(Node node) {
+        final int offset = node.getAnimatedLocalTransformOffset();
+        return Arrays.copyOfRange(node.getAnimatedLocalTransform(), offset, offset + 16);
+    }
+
+    @Test
+    public void weightsAreBlendedWithNlerp() {
+        final Node[] joints = buildChain("joint", 1);
+        final List<Node> rootNodes = Collections.singletonList(joints[0]);
+        final AnimationMixer mixer = new AnimationMixer();
+        mixer.clipAction(constant("a", 1, 30, "joint0")).setWeight(0.25f).play();
+        mixer.clipAction(constant("b", 3, 90, "joint0")).setWeight(0.75f).play();
+
+        mixer.update(rootNodes, 0);
+
+        // translation: 0.25 * 1 + 0.75 * 3. rotation: normalize(0.25 * qa + 0.75 * qb)
+        final double angle = nlerp(new double[]{0.25, 0.75}, 30, 90);
+        assertArrayEquals(matrix(2.5, angle), pose(joints[0]), 1e-5f);
+    }
+
+    @Test
+    public void weightsBelowOneAreCompletedWithTheBindPose() {
+        final Node[] joints = buildChain("joint", 1);
+        final List<Node> rootNodes = Collections.singletonList(joints[0]);
+        final AnimationMixer mixer = new AnimationMixer();
+        mixer.clipAction(constant("a", 4, 60, "joint0")).setWeight(0.5f).play();
+
+        mixer.update(rootNodes, 0);
+
+        // the bind pose is the identity
+        final double angle = nlerp(new double[]{0.5, 0.5}, 0, 60);
+        assertArrayEquals(matrix(2, angle), pose(joints[0]), 1e-5f);
+    }
+
+    @Test
+    public void crossFadeStartsAndEndsWithTheSingleClipPose() {
+        final Animation a = constant("a", 1, 30, "joint0", "joint1");
+        final Animation b = linear("b", 0, 0, 2, 90, "joint0", "joint1");
+
+        final Node[] joints = buildChain("joint", 2);
+        final List<Node> rootNodes = Collections.singletonList(joints[0]);
+        final AnimationMixer mixer = new AnimationMixer();
+        mixer.clipAction(a).play();
+        mixer.update(rootNodes, 0);
+
+        // the clips alone, with the same clock
+        final Node[] onlyA = buildChain("joint", 2);
+        final AnimationMixer mixerA = new AnimationMixer();
+        mixerA.clipAction(a).play();
+        mixerA.update(Collections.singletonList(onlyA[0]), 0);
+        final Node[] onlyB = buildChain("joint", 2);
+        final AnimationMixer mixerB = new AnimationMixer();
+        mixerB.clipAction(b).play();
+        mixerB.update(Collections.singletonList(onlyB[0]), 0);
+        mixerB.update(Collections.singletonList(onlyB[0]), 1);
+
+        // weight 0: the pose of the first clip
+        final AnimationAction next = mixer.crossFadeTo(b, 1);
+        mixer.update(rootNodes, 0);
+        assertEquals(0, next.getWeight(), 0);
+        for (int i = 0; i < joints.length; i++) {
+            assertArrayEquals("joint " + i, pose(onlyA[i]), pose(joints[i]), 1e-6f);
+        }
+
+        // weight 1: the pose of the second clip, and the first one is stopped
+        mixer.update(rootNodes, 1);
+        assertEquals(1, next.getWeight(), 0);
+        assertFalse(mixer.clipAction(a).isPlaying());
+        for (int i = 0; i < joints.length; i++) {
+            assertArrayEquals("joint " + i, pose(onlyB[i]), pose(joints[i]), 1e-6f);
+        }
+        assertArrayEquals(matrix(1, Math.toRadians(45)), pose(joints[0]), 1e-5f);
+    }
+
+    @Test
+    public void maskedLayerOnlyPosesTheMaskedJoints() {
+        // root -> spine -> arm. The upper body layer is masked from the spine
+        final Node root = new Node("root");
+        final Node spine = new Node("spine");
+        final Node arm = new Node("arm");
+        root.addChild(spine);
+        spine.addChild(arm);
+        final List<Node> rootNodes = Collections.singletonList(root);
+
+        final AnimationMixer mixer = new AnimationMixer();
+        mixer.clipAction(constant("walk", 1, 30, "root", "spine", "arm")).play();
+        mixer.addLayer(false).setJointWeight("spine", 1);
+        mixer.clipAction(constant("wave", 3, 90, "root", "spine", "arm"), 1).play();
+        mixer.update(rootNodes, 0);
+
+        assertArrayEquals(matrix(1, Math.toRadians(30)), pose(root), 1e-5f);
+        assertArrayEquals(matrix(3, Math.toRadians(90)), pose(spine), 1e-5f);
+        assertArrayEquals(matrix(3, Math.toRadians(90)), pose(arm), 1e-5f);
+
+        // half weight for the arm: nlerp between the layers
+        mixer.getLayer(1).setJointWeight("arm", 0.5f);
+        mixer.update(rootNodes, 0);
+        assertArrayEquals(matrix(3, Math.toRadians(90)), pose(spine), 1e-5f);
+        assertArrayEquals(matrix(2, nlerp(new double[]{0.5, 0.5}, 30, 90)), pose(arm), 1e-5f);
+    }
+
+    @Test
+    public void hierarchyChangesAreBound() {
+        final Node[] joints = buildChain("joint", 2);
+        final List<Node> rootNodes = new ArrayList<>(Collections.singletonList(joints[0]));
+        final AnimationMixer mixer = new AnimationMixer();
+        mixer.clipAction(constant("a", 1, 30, "joint0", "joint1", "joint2")).play();
+        mixer.update(rootNodes, 0);
+        assertArrayEquals(matrix(1, Math.toRadians(30)), pose(joints[1]), 1e-5f);
+
+        // a joint is added to the same hierarchy (and the same list of root nodes)
+        final Node added = new Node("joint2");
+        joints[1].addChild(added);
+        mixer.update(rootNodes, 0);
+        assertArrayEquals(matrix(1, Math.toRadians(30)), pose(added), 1e-5f);
+
+        // a joint is replaced
+        final Node replaced = new Node("joint1");
+        joints[0].getChildren().set(0, replaced);
+        mixer.update(rootNodes, 0);
+        assertArrayEquals(matrix(1, Math.toRadians(30)), pose(replaced), 1e-5f);
+
+        // without changes, the pose array is the same
+        final float[] pose = joints[0].getAnimatedLocalTransform();
+        mixer.update(rootNodes, 0);
+        assertSame(pose, joints[0].getAnimatedLocalTransform());
+    }
+
+    /**
+     * A character of {@link #JOINTS} joints blending 3 clips in the base layer
+     */
+    private static final class Character {
+
+        private final List<Node> rootNodes;
+        private final AnimationMixer mixer = new AnimationMixer();
+
+        private Character(int index) {
+            final String prefix = "character" + index + "_joint";
+            final String[] targets = new String[JOINTS];
+            for (int i = 0; i < JOINTS; i++) {
+                targets[i] = prefix + i;
+            }
+            rootNodes = Collections.singletonList(buildChain(prefix, JOINTS)[0]);
+            mixer.clipAction(linear("idle", 0, 0, 1, 20, targets)).setWeight(0.5f).play();
+            mixer.clipAction(linear("walk", 0, 10, 2, 40, targets)).setWeight(0.3f).setSpeed(1.5f).play();
+            mixer.clipAction(linear("wave", 1, 90, 0, -90, targets)).setWeight(0.2f).play();
+        }
+
+        private void update() {
+            mixer.update(rootNodes, 1 / 60f);
+        }
+    }
+
+    @Test
+    public void updateDoesNotAllocateInSteadyState() {
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+
+        // 3 clips in the base layer, plus a masked layer and an additive one
+        final Character character = new Character(0);
+        final String[] targets = {"character0_joint10", "character0_joint11"};
+        character.mixer.addLayer(false).setJointWeight("character0_joint10", 0.5f);
+        character.mixer.clipAction(constant("aim", 1, 45, targets), 1).play();
+        character.mixer.addLayer(true).setWeight(0.5f);
+        character.mixer.clipAction(constant("breathe", 0.1f, 5, targets), 2).play();
+
+        // warm up: the mixer is bound and the code is compiled
+        for (int i = 0; i < FRAMES; i++) {
+            character.update();
+        }
+
+        final long thread = Thread.currentThread().getId();
+        final long start = bean.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < FRAMES; i++) {
+            character.update();
+        }
+        final long allocated = bean.getThreadAllocatedBytes(thread) - start;
+
+        // less than 1 byte per frame, to allow for the measurement itself
+        assertTrue("Allocated " + allocated + " bytes in " + FRAMES + " frames", allocated < FRAMES);
+    }
+
+    @Test
+    public void charactersBlendingThreeClipsFitInTheFrameBudget() {
+        final Character[] characters = new Character[CHARACTERS];
+        for (int i = 0; i < CHARACTERS; i++) {
+            characters[i] = new Character(i);
+        }
+
+        // warm up
+        for (int frame = 0; frame < 1_000; frame++) {
+            for (Character character : characters) {
+                character.update();
+            }
+        }
+
+        // the best of several runs, so a pause of the JVM doesn't fail the test
+        final int frames = 200;
+        float best = Float.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            final long start = System.nanoTime();
+            for (int frame = 0; frame < frames; frame++) {
+                for (Character character : characters) {
+                    character.update();
+                }
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1e6f / frames);
+        }
+
+        logger.info(String.format(Locale.US, "AnimationMixer. characters: %d, joints: %d, clips: 3, %.3f ms/frame",
+                CHARACTERS, JOINTS, best));
+        assertTrue("Frame took " + best + " ms", best < FRAME_BUDGET_MS);
+    }
+}
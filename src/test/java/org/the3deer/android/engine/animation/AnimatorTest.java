@@ -0,0 +1,328 @@
+package org.the3deer.android.engine.animation;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.the3deer.android.engine.model.Node;
+import org.the3deer.android.engine.model.Skin;
+import org.the3deer.android.engine.model.Transform;
+import org.the3deer.android.util.Matrix;
+import org.the3deer.util.math.Quaternion;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the per-frame animation path: {@link Animator#update(List, Animation, boolean)}, the world transforms
+ * of the nodes and the skin matrices, and the completion of the legacy keyframes ({@link Animator#initAnimation}).
+ * It runs on the JVM, with a hand-built joint hierarchy.
+ */
+public class AnimatorTest {
+
+    private static final int JOINTS = 30;
+    private static final int FRAMES = 10_000;
+
+    /**
+     * A chain of joints, the first one is the root
+     */
+    private static Node[] buildChain() {
+        final Node[] joints = new Node[JOINTS];
+        for (int i = 0; i < JOINTS; i++) {
+            joints[i] = new Node("joint" + i);
+            joints[i].setJointIndex(i);
+            if (i > 0) {
+                joints[i - 1].addChild(joints[i]);
+            }
+        }
+        return joints;
+    }
+
+    /**
+     * Every joint is animated with a translation and a rotation track. The last joint is not animated
+     */
+    private static Animation buildAnimation() {
+        final float[] times = {0, 0.5f, 1};
+        final float s = (float) Math.sin(Math.PI / 8), c = (float) Math.cos(Math.PI / 8);
+        final Track[] tracks = new Track[(JOINTS - 1) * 2];
+        for (int i = 0; i < JOINTS - 1; i++) {
+            tracks[i * 2] = new Track("joint" + i, Track.TRANSLATION, times,
+                    new float[]{0, 0, 0, 0, 1, 0, 0, 0, 0});
+            tracks[i * 2 + 1] = new Track("joint" + i, Track.ROTATION, times,
+                    new float[]{0, 0, 0, 1, 0, 0, s, c, 0, 0, 0, 1});
+        }
+        return new Animation("test", tracks);
+    }
+
+    private static Skin buildSkin(Node root) {
+        final float[] inverseBindMatrices = new float[JOINTS * 16];
+        final int[] joints = new int[JOINTS];
+        for (int i = 0; i < JOINTS; i++) {
+            Matrix.setIdentityM(inverseBindMatrices, i * 16);
+            joints[i] = i;
+        }
+        final Skin skin = new Skin("skin", inverseBindMatrices, joints);
+        skin.setRootJoint(root);
+        return skin;
+    }
+
+    @Test
+    public void updatePointsTheNodesToThePose() {
+        final Node[] joints = buildChain();
+        final List<Node> rootNodes = Collections.singletonList(joints[0]);
+        final Animator animator = new Animator();
+
+        animator.update(rootNodes, buildAnimation(), false);
+
+        // the animated joints share the pose array, one matrix per joint
+        final float[] pose = joints[0].getAnimatedLocalTransform();
+        for (int i = 0; i < JOINTS - 1; i++) {
+            assertSame("joint " + i, pose, joints[i].getAnimatedLocalTransform());
+            assertEquals("joint " + i, i * 16, joints[i].getAnimatedLocalTransformOffset());
+        }
+
+        // the joint not animated keeps its bind pose
+        assertSame(joints[JOINTS - 1].getLocalTransform().getTransform(), joints[JOINTS - 1].getAnimatedLocalTransform());
+
+        // bind pose only
+        animator.update(rootNodes, buildAnimation(), true);
+        assertSame(joints[0].getLocalTransform().getTransform(), joints[0].getAnimatedLocalTransform());
+    }
+
+    @Test
+    public void updateDoesNotAllocateInSteadyState() {
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+
+        final Node[] joints = buildChain();
+        final List<Node> rootNodes = Collections.singletonList(joints[0]);
+        final Animation animation = buildAnimation();
+        final Skin skin = buildSkin(joints[0]);
+        final Animator animator = new Animator();
+        final float[] worldMatrix = new float[16];
+        Matrix.setIdentityM(worldMatrix, 0);
+
+        // warm up: the animation is bound, the skin joints are resolved and the code is compiled
+        for (int i = 0; i < FRAMES; i++) {
+            frame(animator, rootNodes, animation, worldMatrix, skin);
+        }
+
+        final long thread = Thread.currentThread().getId();
+        final long start = bean.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < FRAMES; i++) {
+            frame(animator, rootNodes, animation, worldMatrix, skin);
+        }
+        final long allocated = bean.getThreadAllocatedBytes(thread) - start;
+
+        // less than 1 byte per frame, to allow for the measurement itself
+        assertTrue("Allocated " + allocated + " bytes in " + FRAMES + " frames", allocated < FRAMES);
+    }
+
+    private static void frame(Animator animator, List<Node> rootNodes, Animation animation, float[] worldMatrix, Skin skin) {
+        animator.update(rootNodes, animation, false);
+        rootNodes.get(0).updateAnimatedWorldTransform(worldMatrix);
+        skin.updateSkinMatrices();
+    }
+
+    private static KeyFrame keyFrame(float time, JointTransform transform) {
+        final Map<String, JointTransform> transforms = new HashMap<>();
+        if (transform != null) {
+            transforms.put("joint", transform);
+        }
+        return new KeyFrame(time, transforms);
+    }
+
+    private static void assertQuaternion(String message, float x, float y, float z, float w, Quaternion actual) {
+        assertArrayEquals(message, new float[]{x, y, z, w},
+                new float[]{actual.getX(), actual.getY(), actual.getZ(), actual.getW()}, 1e-5f);
+    }
+
+    /**
+     * Bind pose: no rotation, translation 1,2,3
+     */
+    private static Node sparseJoint() {
+        final Node joint = new Node("joint");
+        joint.setLocalTransform(new Transform(new Float[]{1f, 1f, 1f}, new Quaternion(0, 0, 0, 1), new Float[]{1f, 2f, 3f}));
+        return joint;
+    }
+
+    /**
+     * Keys: x at 0s, x and a rotation of 90 degrees around z at 2s. Nothing at 1s and 3s
+     */
+    private static KeyFrame[] sparseKeyFrames() {
+        final JointTransform key2 = JointTransform.ofLocation(new Float[]{20f, null, null});
+        key2.setRotation(new Quaternion(0, 0, (float) Math.sin(Math.PI / 4), (float) Math.cos(Math.PI / 4)));
+        return new KeyFrame[]{
+                keyFrame(0, JointTransform.ofLocation(new Float[]{10f, null, null})),
+                keyFrame(1, null),
+                keyFrame(2, key2),
+                keyFrame(3, null)};
+    }
+
+    @Test
+    public void initAnimationCompletesSparseKeyFrames() {
+        final Node joint = sparseJoint();
+        final KeyFrame[] keyFrames = sparseKeyFrames();
+        final JointTransform key2 = keyFrames[2].getTransforms().get("joint");
+        final Animation animation = new Animation("test", 3, keyFrames);
+
+        Animator.initAnimation(Collections.singletonList(joint), animation);
+        assertTrue(animation.isInitialized());
+
+        // the first keyframe is completed with the bind pose
+        final JointTransform first = keyFrames[0].getTransforms().get("joint");
+        assertArrayEquals(new Float[]{10f, 2f, 3f}, first.getLocation());
+        assertArrayEquals(new Float[]{1f, 1f, 1f}, first.getScale());
+        assertQuaternion("first", 0, 0, 0, 1, first.getQRotation());
+
+        // the missing channels are interpolated between the previous and next keys, the rotation included
+        final JointTransform middle = keyFrames[1].getTransforms().get("joint");
+        assertArrayEquals(new Float[]{15f, 2f, 3f}, middle.getLocation());
+        assertArrayEquals(new Float[]{1f, 1f, 1f}, middle.getScale());
+        assertQuaternion("middle", 0, 0, (float) Math.sin(Math.PI / 8), (float) Math.cos(Math.PI / 8), middle.getQRotation());
+        final float[] rotation = new float[16];
+        Matrix.setRotateM(rotation, 0, 45, 0, 0, 1);
+        assertArrayEquals(new float[]{rotation[0], rotation[1], rotation[4], rotation[5]},
+                new float[]{middle.getTransform()[0], middle.getTransform()[1], middle.getTransform()[4], middle.getTransform()[5]}, 1e-5f);
+
+        // the last keyframe is the previous one
+        final JointTransform last = keyFrames[3].getTransforms().get("joint");
+        assertSame(key2, last);
+        assertArrayEquals(new Float[]{20f, 2f, 3f}, last.getLocation());
+
+        // the keyframes are only completed once
+        Animator.initAnimation(Collections.singletonList(joint), animation);
+        assertSame(last, keyFrames[3].getTransforms().get("joint"));
+        assertArrayEquals(new Float[]{20f, 2f, 3f}, last.getLocation());
+    }
+
+    @Test
+    public void initAnimationMatchesTheBaselineOnSparseKeyFrames() {
+        final KeyFrame[] expected = sparseKeyFrames();
+        BaselineKeyFrameCompletion.initAnimation(Collections.singletonList(sparseJoint()), new Animation("baseline", 3, expected));
+
+        final KeyFrame[] actual = sparseKeyFrames();
+        Animator.initAnimation(Collections.singletonList(sparseJoint()), new Animation("test", 3, actual));
+
+        assertSameCompletion(expected, actual);
+    }
+
+    @Test
+    public void initAnimationMatchesTheBaselineOnRandomKeyFrames() {
+        for (long seed = 0; seed < 10; seed++) {
+            final KeyFrame[] expected = randomKeyFrames(seed);
+            BaselineKeyFrameCompletion.initAnimation(randomJoints(), new Animation("baseline", 1, expected));
+
+            final KeyFrame[] actual = randomKeyFrames(seed);
+            Animator.initAnimation(randomJoints(), new Animation("test", 1, actual));
+
+            assertSameCompletion(expected, actual);
+        }
+    }
+
+    private static final int RANDOM_JOINTS = 8;
+    private static final int RANDOM_KEYFRAMES = 300;
+
+    /**
+     * The joints have a bind pose, but the last one, which is not in the scene
+     */
+    private static List<Node> randomJoints() {
+        final List<Node> rootNodes = new ArrayList<>();
+        for (int j = 0; j < RANDOM_JOINTS - 1; j++) {
+            final Node joint = new Node("joint" + j);
+            joint.setLocalTransform(new Transform(new Float[]{1f, 2f, 1f}, new Quaternion(0, 0.6f, 0, 0.8f), new Float[]{(float) j, 1f, 0f}));
+            rootNodes.add(joint);
+        }
+        return rootNodes;
+    }
+
+    /**
+     * Keyframes with the keys of every joint missing, partial, with a rotation or complete at random
+     */
+    private static KeyFrame[] randomKeyFrames(long seed) {
+        final Random random = new Random(seed);
+        final KeyFrame[] keyFrames = new KeyFrame[RANDOM_KEYFRAMES];
+        float time = 0;
+        for (int i = 0; i < RANDOM_KEYFRAMES; i++) {
+            final Map<String, JointTransform> transforms = new HashMap<>();
+            for (int j = 0; j < RANDOM_JOINTS; j++) {
+                final JointTransform transform;
+                switch (random.nextInt(6)) {
+                    case 0:
+                    case 1:
+                        continue;
+                    case 2:
+                        transform = JointTransform.ofLocation(randomVector(random));
+                        break;
+                    case 3:
+                        transform = JointTransform.ofScale(randomVector(random));
+                        break;
+                    case 4:
+                        transform = JointTransform.ofLocation(randomVector(random));
+                        final float x = random.nextFloat() - 0.5f, z = random.nextFloat() - 0.5f;
+                        final float w = (float) Math.sqrt(1 - x * x - z * z);
+                        transform.setRotation(new Quaternion(x, 0, z, w));
+                        break;
+                    default:
+                        final float[] matrix = new float[16];
+                        Matrix.setIdentityM(matrix, 0);
+                        Matrix.translateM(matrix, 0, random.nextFloat(), random.nextFloat(), random.nextFloat());
+                        transform = new JointTransform(matrix);
+                }
+                transforms.put("joint" + j, transform);
+            }
+            keyFrames[i] = new KeyFrame(time, transforms);
+            time += 0.01f + random.nextFloat() * 0.05f;
+        }
+        return keyFrames;
+    }
+
+    private static Float[] randomVector(Random random) {
+        final Float[] vector = new Float[3];
+        for (int i = 0; i < 3; i++) {
+            vector[i] = random.nextBoolean() ? random.nextFloat() * 10 : null;
+        }
+        return vector;
+    }
+
+    /**
+     * Every keyframe has the same transforms, component by component, and the keyframes that share a transform
+     * share it in both
+     */
+    private static void assertSameCompletion(KeyFrame[] expected, KeyFrame[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            final Map<String, JointTransform> expectedTransforms = expected[i].getTransforms();
+            final Map<String, JointTransform> actualTransforms = actual[i].getTransforms();
+            assertEquals("keyframe " + i, expectedTransforms.keySet(), actualTransforms.keySet());
+            for (String jointId : expectedTransforms.keySet()) {
+                final String message = "keyframe " + i + ", " + jointId;
+                final JointTransform e = expectedTransforms.get(jointId);
+                final JointTransform a = actualTransforms.get(jointId);
+                assertArrayEquals(message, e.getScale(), a.getScale());
+                assertArrayEquals(message, e.getRotation(), a.getRotation());
+                assertArrayEquals(message, e.getLocation(), a.getLocation());
+                assertArrayEquals(message, e.getTransform(), a.getTransform(), 0);
+                if (e.getQRotation() == null || a.getQRotation() == null) {
+                    assertSame(message, e.getQRotation(), a.getQRotation());
+                } else {
+                    assertQuaternion(message, e.getQRotation().getX(), e.getQRotation().getY(),
+                            e.getQRotation().getZ(), e.getQRotation().getW(), a.getQRotation());
+                }
+                if (i > 0) {
+                    assertEquals(message, e == expected[i - 1].getTransforms().get(jointId),
+                            a == actual[i - 1].getTransforms().get(jointId));
+                }
+            }
+        }
+    }
+}
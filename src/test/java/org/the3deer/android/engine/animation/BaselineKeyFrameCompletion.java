@@ -0,0 +1,224 @@
+package org.the3deer.android.engine.animation;
+
+import org.the3deer.android.engine.model.Constants;
+import org.the3deer.android.engine.model.Node;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * The completion of the legacy keyframes as it was before it was made linear: for every keyframe and joint, the
+ * following keyframes are scanned for the next key of every channel. It's kept verbatim, so the output of
+ * {@link Animator#initAnimation} can be compared with it. The interpolation of the keys is shared
+ * ({@link JointTransform#ofInterpolation}), so it's the order and the choice of the keys that is compared.
+ */
+final class BaselineKeyFrameCompletion {
+
+    private static final Logger logger = Logger.getLogger(BaselineKeyFrameCompletion.class.getSimpleName());
+
+    private BaselineKeyFrameCompletion() {
+    }
+
+    static void initAnimation(List<Node> rootNodes, Animation animation) {
+
+        // tracks don't need completion: the channels not animated are taken from the bind pose
+        if (animation.isInitialized() || animation.getTracks() != null) {
+            return;
+        }
+
+
+        final KeyFrame[] keyFrames = animation.getKeyFrames();
+        logger.config("Animation '" + animation.getName() + "'. Initializing " + keyFrames.length + " key frames...");
+
+        // debug
+        if (Constants.DEBUG) {
+            animation.debugKeyFrames();
+        }
+
+        // get all joint names in the different key frames
+        final Set<String> allJointIds = new HashSet<>();
+        for (int i = 0; i < keyFrames.length; i++) {
+            allJointIds.addAll(keyFrames[i].getTransforms().keySet());
+        }
+
+        // complete keyframes with missing transforms
+        for (int i = 0; i < keyFrames.length; i++) {
+
+            final KeyFrame keyFrameCurrent = keyFrames[i];
+
+            final Map<String, JointTransform> jointTransforms = keyFrameCurrent.getTransforms();
+
+            for (String jointId : allJointIds) {
+
+                // if transform is complete, do nothing
+                final JointTransform currentTransform = jointTransforms.get(jointId);
+                if (currentTransform != null && currentTransform.isComplete()) {
+                    continue;
+                }
+
+                // if not complete, but first frame we just complete transforms with joint data
+                if (currentTransform != null && i == 0) {
+                    Node node = Animator.findNode(rootNodes, jointId);
+                    if (node != null) {
+                        logger.finest("Found node: " + node.getId() + ". Animation: " + animation.getName());
+                    } else {
+                        logger.warning("Didn't find node for joint '" + jointId + "'. Animation: " + animation.getName());
+                    }
+                    currentTransform.complete(node);
+                    continue;
+                }
+
+                // if no transforms at all, but first frame we fill with empty transforms
+                if (currentTransform == null && i == 0) {
+                    jointTransforms.put(jointId, JointTransform.ofNull());
+                    continue;
+                }
+
+                // get previous key frame
+                final KeyFrame keyFramePrevious = keyFrames[i - 1];
+                final JointTransform previousTransform = keyFramePrevious.getTransforms().get(jointId);
+
+                // if on last frame, just use previous one
+                if (currentTransform == null && i == keyFrames.length - 1) {
+                    jointTransforms.put(jointId, previousTransform);
+                    continue;
+                }
+
+                // otherwise, interpolate...
+                boolean hasScaleX = currentTransform != null && currentTransform.hasScaleX();
+                boolean hasScaleY = currentTransform != null && currentTransform.hasScaleY();
+                boolean hasScaleZ = currentTransform != null && currentTransform.hasScaleZ();
+                boolean hasRotationX = currentTransform != null && currentTransform.hasRotationX();
+                boolean hasRotationY = currentTransform != null && currentTransform.hasRotationY();
+                boolean hasRotationZ = currentTransform != null && currentTransform.hasRotationZ();
+                boolean hasLocationX = currentTransform != null && currentTransform.hasLocationX();
+                boolean hasLocationY = currentTransform != null && currentTransform.hasLocationY();
+                boolean hasLocationZ = currentTransform != null && currentTransform.hasLocationZ();
+
+                // get next available key frames
+                KeyFrame keyFrameNextScaleX = null;
+                KeyFrame keyFrameNextScaleY = null;
+                KeyFrame keyFrameNextScaleZ = null;
+                KeyFrame keyFrameNextRotationX = null;
+                KeyFrame keyFrameNextRotationY = null;
+                KeyFrame keyFrameNextRotationZ = null;
+                KeyFrame keyFrameNextLocationX = null;
+                KeyFrame keyFrameNextLocationY = null;
+                KeyFrame keyFrameNextLocationZ = null;
+                for (int k = i + 1; k < keyFrames.length; k++) {
+                    JointTransform candidate = keyFrames[k].getTransforms().get(jointId);
+                    if (candidate == null) continue;
+                    if (candidate.getScale() != null) {
+                        if (keyFrameNextScaleX == null && candidate.getScale()[0] != null)
+                            keyFrameNextScaleX = keyFrames[k];
+                        if (keyFrameNextScaleY == null && candidate.getScale()[1] != null)
+                            keyFrameNextScaleY = keyFrames[k];
+                        if (keyFrameNextScaleZ == null && candidate.getScale()[2] != null)
+                            keyFrameNextScaleZ = keyFrames[k];
+                    }
+
+                    if (!Constants.PREFER_QUATERNION && candidate.getRotation() != null) {
+                        if (keyFrameNextRotationX == null && candidate.getRotation()[0] != null)
+                            keyFrameNextRotationX = keyFrames[k];
+                        if (keyFrameNextRotationY == null && candidate.getRotation()[1] != null)
+                            keyFrameNextRotationY = keyFrames[k];
+                        if (keyFrameNextRotationZ == null && candidate.getRotation()[2] != null)
+                            keyFrameNextRotationZ = keyFrames[k];
+                    } else if (candidate.getQRotation() != null) {
+                        if (keyFrameNextRotationX == null)
+                            keyFrameNextRotationX = keyFrames[k];
+                        if (keyFrameNextRotationY == null)
+                            keyFrameNextRotationY = keyFrames[k];
+                        if (keyFrameNextRotationZ == null)
+                            keyFrameNextRotationZ = keyFrames[k];
+                    }
+                    if (candidate.getLocation() != null) {
+                        if (keyFrameNextLocationX == null && candidate.getLocation()[0] != null)
+                            keyFrameNextLocationX = keyFrames[k];
+                        if (keyFrameNextLocationY == null && candidate.getLocation()[1] != null)
+                            keyFrameNextLocationY = keyFrames[k];
+                        if (keyFrameNextLocationZ == null && candidate.getLocation()[2] != null)
+                            keyFrameNextLocationZ = keyFrames[k];
+                    }
+                    if (keyFrameNextScaleX != null && keyFrameNextScaleY != null && keyFrameNextScaleZ != null
+                            && keyFrameNextRotationX != null && keyFrameNextRotationY != null && keyFrameNextRotationZ != null
+                            && keyFrameNextLocationX != null && keyFrameNextLocationY != null && keyFrameNextLocationZ != null) {
+                        break;
+                    }
+                }
+
+                // if next transform is null, copy previous one
+                if (keyFrameNextScaleX == null)
+                    keyFrameNextScaleX = hasScaleX ? keyFrameCurrent : keyFramePrevious;
+                if (keyFrameNextScaleY == null)
+                    keyFrameNextScaleY = hasScaleY ? keyFrameCurrent : keyFramePrevious;
+                if (keyFrameNextScaleZ == null)
+                    keyFrameNextScaleZ = hasScaleZ ? keyFrameCurrent : keyFramePrevious;
+                if (keyFrameNextRotationX == null)
+                    keyFrameNextRotationX = hasRotationX ? keyFrameCurrent : keyFramePrevious;
+                if (keyFrameNextRotationY == null)
+                    keyFrameNextRotationY = hasRotationY ? keyFrameCurrent : keyFramePrevious;
+                if (keyFrameNextRotationZ == null)
+                    keyFrameNextRotationZ = hasRotationZ ? keyFrameCurrent : keyFramePrevious;
+                if (keyFrameNextLocationX == null)
+                    keyFrameNextLocationX = hasLocationX ? keyFrameCurrent : keyFramePrevious;
+                if (keyFrameNextLocationY == null)
+                    keyFrameNextLocationY = hasLocationY ? keyFrameCurrent : keyFramePrevious;
+                if (keyFrameNextLocationZ == null)
+                    keyFrameNextLocationZ = hasLocationZ ? keyFrameCurrent : keyFramePrevious;
+
+                // calculate progression for each individual transform
+                final float elapsed = keyFrameCurrent.getTimeStamp() - keyFramePrevious.getTimeStamp();
+                final float scaleProgressionX = keyFrameNextScaleX != keyFramePrevious ?
+                        elapsed / (keyFrameNextScaleX.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
+                final float scaleProgressionY = keyFrameNextScaleY != keyFramePrevious ?
+                        elapsed / (keyFrameNextScaleY.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
+                final float scaleProgressionZ = keyFrameNextScaleZ != keyFramePrevious ?
+                        elapsed / (keyFrameNextScaleZ.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
+                final float rotationProgressionX = keyFrameNextRotationX != keyFramePrevious ?
+                        elapsed / (keyFrameNextRotationX.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
+                final float rotationProgressionY = keyFrameNextRotationY != keyFramePrevious ?
+                        elapsed / (keyFrameNextRotationY.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
+                final float rotationProgressionZ = keyFrameNextRotationZ != keyFramePrevious ?
+                        elapsed / (keyFrameNextRotationZ.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
+                final float locationProgressionX = keyFrameNextLocationX != keyFramePrevious ?
+                        elapsed / (keyFrameNextLocationX.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
+                final float locationProgressionY = keyFrameNextLocationY != keyFramePrevious ?
+                        elapsed / (keyFrameNextLocationY.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
+                final float locationProgressionZ = keyFrameNextLocationZ != keyFramePrevious ?
+                        elapsed / (keyFrameNextLocationZ.getTimeStamp() - keyFramePrevious.getTimeStamp()) : 0;
+
+                // interpolate
+                final JointTransform missingFrameTransform = JointTransform.ofInterpolation(
+                        hasScaleX ? currentTransform : previousTransform, keyFrameNextScaleX.getTransforms().get(jointId), scaleProgressionX,
+                        hasScaleY ? currentTransform : previousTransform, keyFrameNextScaleY.getTransforms().get(jointId), scaleProgressionY,
+                        hasScaleZ ? currentTransform : previousTransform, keyFrameNextScaleZ.getTransforms().get(jointId), scaleProgressionZ,
+                        hasRotationX ? currentTransform : previousTransform, keyFrameNextRotationX.getTransforms().get(jointId), rotationProgressionX,
+                        hasRotationY ? currentTransform : previousTransform, keyFrameNextRotationY.getTransforms().get(jointId), rotationProgressionY,
+                        hasRotationZ ? currentTransform : previousTransform, keyFrameNextRotationZ.getTransforms().get(jointId), rotationProgressionZ,
+                        hasLocationX ? currentTransform : previousTransform, keyFrameNextLocationX.getTransforms().get(jointId), locationProgressionX,
+                        hasLocationY ? currentTransform : previousTransform, keyFrameNextLocationY.getTransforms().get(jointId), locationProgressionY,
+                        hasLocationZ ? currentTransform : previousTransform, keyFrameNextLocationZ.getTransforms().get(jointId), locationProgressionZ
+                );
+
+                if (currentTransform == null) {
+                    jointTransforms.put(jointId, missingFrameTransform);
+                } else {
+                    currentTransform.complete(missingFrameTransform);
+                }
+
+            }
+        }
+        animation.setInitialized(true);
+
+        logger.info("Animation '" + animation.getName() + "' initialized with " + keyFrames.length + " key frames");
+
+        // debug
+        if (Constants.DEBUG) {
+            animation.debugKeyFrames();
+        }
+    }
+}
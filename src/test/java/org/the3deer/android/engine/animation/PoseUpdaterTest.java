@@ -0,0 +1,146 @@
+package org.the3deer.android.engine.animation;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.the3deer.android.engine.model.Node;
+import org.the3deer.android.engine.model.Skin;
+import org.the3deer.android.engine.model.Transform;
+import org.the3deer.android.util.Matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that updating the scene in parallel gives the same matrices than updating it serially,
+ * and measures the update of 1, 10 and 100 rigs
+ */
+public class PoseUpdaterTest {
+
+    private static final Logger logger = Logger.getLogger(PoseUpdaterTest.class.getSimpleName());
+
+    private static final int JOINTS = 30;
+    private static final int[] RIGS = {1, 10, 100};
+    private static final int FRAMES = 1_000;
+
+    /**
+     * The rigs of the scene. Every rig is a chain of joints, with 2 collada skins that share the joints
+     */
+    private static final class Scene {
+
+        private final List<Node> rootNodes = new ArrayList<>();
+        private final List<Skin> skins = new ArrayList<>();
+
+        private Scene(int rigs) {
+            for (int r = 0; r < rigs; r++) {
+                final List<String> jointNames = new ArrayList<>();
+                Node parent = null;
+                for (int i = 0; i < JOINTS; i++) {
+                    final Node joint = new Node("rig" + r + "_joint" + i);
+                    joint.setLocalTransform(new Transform(new Float[]{1f, 1f, 1f}, new Float[]{0f, 0f, 10f + r},
+                            new Float[]{0f, 1f, 0f}));
+                    jointNames.add(joint.getId());
+                    if (parent == null) {
+                        rootNodes.add(joint);
+                    } else {
+                        parent.addChild(joint);
+                    }
+                    parent = joint;
+                }
+                for (int s = 0; s < 2; s++) {
+                    final float[] inverseBindMatrices = new float[JOINTS * 16];
+                    for (int i = 0; i < JOINTS; i++) {
+                        Matrix.setIdentityM(inverseBindMatrices, i * 16);
+                        inverseBindMatrices[i * 16 + 13] = -i;
+                    }
+                    final Skin skin = new Skin(null, null, null, inverseBindMatrices, jointNames);
+                    skin.setRootJoint(rootNodes.get(r));
+                    skins.add(skin);
+                }
+            }
+        }
+    }
+
+    private static float[] identity() {
+        final float[] ret = new float[16];
+        Matrix.setIdentityM(ret, 0);
+        return ret;
+    }
+
+    @Test
+    public void parallelUpdateMatchesSerial() {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int rigs : RIGS) {
+                final Scene expected = new Scene(rigs);
+                final Scene actual = new Scene(rigs);
+                new PoseUpdater(null).update(expected.rootNodes, identity(), expected.skins);
+                new PoseUpdater(pool).update(actual.rootNodes, identity(), actual.skins);
+
+                for (int s = 0; s < expected.skins.size(); s++) {
+                    final float[][] e = expected.skins.get(s).getJointMatrices();
+                    final float[][] a = actual.skins.get(s).getJointMatrices();
+                    for (int j = 0; j < JOINTS; j++) {
+                        assertArrayEquals("rigs " + rigs + ", skin " + s + ", joint " + j, e[j], a[j], 0);
+                    }
+                }
+
+                // the joints shared by the skins are resolved once
+                for (Node root : actual.rootNodes) {
+                    Node joint = root;
+                    for (int j = 0; j < JOINTS; j++) {
+                        assertEquals("rigs " + rigs, j, joint.getJointIndex());
+                        joint = j < JOINTS - 1 ? joint.getChildren().get(0) : null;
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Logs the time per frame of the serial and the parallel update. It doesn't assert anything,
+     * since the speedup depends on the cores of the machine, so it's not part of the unit tests.
+     * To run it, remove the @Ignore and run: gradlew testDebugUnitTest --tests "*PoseUpdaterTest.benchmark"
+     */
+    @Ignore("benchmark")
+    @Test
+    public void benchmark() {
+        final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (int rigs : RIGS) {
+                final Scene scene = new Scene(rigs);
+                final float serial = measure(new PoseUpdater(null), scene);
+                final float parallel = measure(new PoseUpdater(pool), scene);
+                logger.info(String.format(Locale.US, "PoseUpdater. rigs: %d, joints: %d, cores: %d, serial: %.1f us/frame, parallel: %.1f us/frame",
+                        rigs, scene.skins.size() * JOINTS, pool.getParallelism(), serial, parallel));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return the time per frame, in microseconds
+     */
+    private static float measure(PoseUpdater updater, Scene scene) {
+        final float[] worldMatrix = identity();
+
+        // warm up
+        for (int i = 0; i < FRAMES; i++) {
+            updater.update(scene.rootNodes, worldMatrix, scene.skins);
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            updater.update(scene.rootNodes, worldMatrix, scene.skins);
+        }
+        return (System.nanoTime() - start) / 1000f / FRAMES;
+    }
+}
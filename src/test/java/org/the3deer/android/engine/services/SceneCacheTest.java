@@ -0,0 +1,314 @@
+package org.the3deer.android.engine.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.the3deer.android.engine.model.Camera;
+import org.the3deer.android.engine.model.Element;
+import org.the3deer.android.engine.model.Material;
+import org.the3deer.android.engine.model.Node;
+import org.the3deer.android.engine.model.Object3D;
+import org.the3deer.android.engine.model.Scene;
+import org.the3deer.android.engine.model.Skin;
+import org.the3deer.android.engine.model.Texture;
+import org.the3deer.android.engine.model.Transform;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link SceneCache}: the round trip of the geometry, the materials and the nodes,
+ * the scenes that are not cached, the loader version and the eviction of the scenes used least recently.
+ */
+public class SceneCacheTest {
+
+    private static final String LOADER = "org.the3deer.android.engine.services.wavefront.WavefrontLoaderTask";
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("scenes").toFile();
+        SceneCache.setDirectory(directory);
+        SceneCache.setMaxSize(Long.MAX_VALUE);
+    }
+
+    @After
+    public void tearDown() {
+        SceneCache.clear();
+        if (!directory.delete()) directory.deleteOnExit();
+    }
+
+    /**
+     * Collects the restored scenes and objects
+     */
+    private static final class Listener implements LoadListener {
+
+        private final List<Scene> scenes = new ArrayList<>();
+        private final List<Object3D> objects = new ArrayList<>();
+
+        @Override
+        public void onLoadStart() {
+        }
+
+        @Override
+        public void onProgress(String progress) {
+        }
+
+        @Override
+        public void onLoadCamera(Scene scene, Camera camera) {
+        }
+
+        @Override
+        public void onLoadScene(Scene scene) {
+            scenes.add(scene);
+        }
+
+        @Override
+        public void onLoadObject(Scene scene, Object3D data) {
+            objects.add(data);
+        }
+
+        @Override
+        public void onLoadError(Exception ex) {
+        }
+
+        @Override
+        public void onLoadComplete() {
+        }
+    }
+
+    private static FloatBuffer floats(float... values) {
+        return FloatBuffer.wrap(values);
+    }
+
+    private static float[] array(FloatBuffer buffer) {
+        final float[] ret = new float[buffer.capacity()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = buffer.get(i);
+        }
+        return ret;
+    }
+
+    private static int[] array(Buffer buffer) {
+        final int[] ret = new int[buffer.capacity()];
+        for (int i = 0; i < ret.length; i++) {
+            if (buffer instanceof IntBuffer) ret[i] = ((IntBuffer) buffer).get(i);
+            else ret[i] = ((ShortBuffer) buffer).get(i);
+        }
+        return ret;
+    }
+
+    /**
+     * @return a scene with an indexed object made of 2 elements, a non indexed object and a node hierarchy
+     */
+    private static Scene scene() {
+        final Texture external = new Texture("diffuse.png");
+        final Texture embedded = new Texture();
+        embedded.setData(new byte[]{(byte) 0x89, 'P', 'N', 'G', 1, 2, 3});
+
+        final Material red = new Material("red", "Red");
+        red.setDiffuse(new float[]{1, 0, 0, 1});
+        red.setAmbient(new float[]{0.1f, 0.1f, 0.1f});
+        red.setShininess(32);
+        red.setAlpha(0.5f);
+        red.setAlphaMode(Material.AlphaMode.BLEND);
+        red.setColorTexture(external);
+        red.setNormalTexture(embedded);
+
+        final Material green = new Material("green", "Green");
+        green.setDiffuse(new float[]{0, 1, 0, 1});
+        green.setEmissiveFactor(new float[]{0.2f, 0.3f, 0.4f});
+        green.setEmissiveTexture(embedded);
+
+        final Object3D quad = new Object3D("quad",
+                floats(0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0),
+                floats(0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1),
+                floats(0, 0, 1, 0, 1, 1, 0, 1),
+                floats(1, 0, 0, 1, 0, 1, 0, 1, 0, 0, 1, 1, 1, 1, 1, 1), red);
+        quad.setIndexBuffer(IntBuffer.wrap(new int[]{0, 1, 2, 2, 3, 0}));
+        final Element first = new Element("first", IntBuffer.wrap(new int[]{0, 1, 2}), "red");
+        first.setMaterial(red);
+        final Element second = new Element("second", ShortBuffer.wrap(new short[]{2, 3, 0}), "green");
+        second.setMaterial(green);
+        quad.setElements(Arrays.asList(first, second));
+
+        final Object3D points = new Object3D("points", floats(5, 6, 7, 8, 9, 10), null, null, null, green);
+
+        final Scene scene = new Scene("default");
+        scene.addObject(quad);
+        scene.addObject(points);
+
+        final Node root = new Node("root");
+        root.setMeshes(new ArrayList<>(Collections.singletonList(quad)));
+        final Node child = new Node(new Transform(new float[]{1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 3, 4, 5, 1}));
+        child.setId("child");
+        child.setMeshes(new ArrayList<>(Collections.singletonList(points)));
+        root.addChild(child);
+        scene.getRootNodes().add(root);
+        return scene;
+    }
+
+    private static void assertSameMaterial(Material expected, Material actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertArrayEquals(expected.getDiffuse(), actual.getDiffuse(), 0);
+        assertArrayEquals(expected.getAmbient(), actual.getAmbient(), 0);
+        assertArrayEquals(expected.getEmissiveFactor(), actual.getEmissiveFactor(), 0);
+        assertEquals(expected.getShininess(), actual.getShininess(), 0);
+        assertEquals(expected.getAlpha(), actual.getAlpha(), 0);
+        assertEquals(expected.getAlphaMode(), actual.getAlphaMode());
+        assertSameTexture(expected.getColorTexture(), actual.getColorTexture());
+        assertSameTexture(expected.getNormalTexture(), actual.getNormalTexture());
+        assertSameTexture(expected.getEmissiveTexture(), actual.getEmissiveTexture());
+    }
+
+    private static void assertSameTexture(Texture expected, Texture actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.getFile(), actual.getFile());
+        assertArrayEquals(expected.getData(), actual.getData());
+    }
+
+    @Test
+    public void sceneIsRestoredWithItsBuffersAndMaterials() {
+        final Scene expected = scene();
+        SceneCache.save("hash", LOADER, 1, Collections.singletonList(expected));
+
+        final Listener listener = new Listener();
+        assertTrue(SceneCache.load("hash", LOADER, 1, listener));
+        assertEquals(1, listener.scenes.size());
+        final Scene actual = listener.scenes.get(0);
+        assertEquals("default", actual.getName());
+        assertEquals(2, listener.objects.size());
+
+        // geometry
+        final Object3D quad = expected.getObjects().get(0);
+        final Object3D restored = listener.objects.get(0);
+        assertEquals("quad", restored.getId());
+        assertArrayEquals(array(quad.getVertexBuffer()), array(restored.getVertexBuffer()), 0);
+        assertArrayEquals(array(quad.getNormalsBuffer()), array(restored.getNormalsBuffer()), 0);
+        assertArrayEquals(array(quad.getTextureCoordsArrayBuffer()), array(restored.getTextureCoordsArrayBuffer()), 0);
+        assertArrayEquals(array((FloatBuffer) quad.getColorsBuffer()), array((FloatBuffer) restored.getColorsBuffer()), 0);
+        assertTrue(restored.getIndexBuffer() instanceof IntBuffer);
+        assertArrayEquals(array(quad.getIndexBuffer()), array(restored.getIndexBuffer()));
+
+        final Object3D points = listener.objects.get(1);
+        assertArrayEquals(new float[]{5, 6, 7, 8, 9, 10}, array(points.getVertexBuffer()), 0);
+        assertNull(points.getNormalsBuffer());
+        assertNull(points.getIndexBuffer());
+
+        // elements keep their own indices and materials
+        assertEquals(2, restored.getElements().size());
+        for (int i = 0; i < 2; i++) {
+            final Element element = quad.getElements().get(i);
+            final Element actualElement = restored.getElements().get(i);
+            assertEquals(element.getId(), actualElement.getId());
+            assertEquals(element.getMaterialId(), actualElement.getMaterialId());
+            assertEquals(element.getIndexBuffer() instanceof ShortBuffer,
+                    actualElement.getIndexBuffer() instanceof ShortBuffer);
+            assertArrayEquals(array(element.getIndexBuffer()), array(actualElement.getIndexBuffer()));
+            assertSameMaterial(element.getMaterial(), actualElement.getMaterial());
+        }
+
+        // materials and textures are shared, as in the original scene
+        assertSameMaterial(quad.getMaterial(), restored.getMaterial());
+        assertSame(restored.getMaterial(), restored.getElements().get(0).getMaterial());
+        assertSame(restored.getMaterial().getNormalTexture(), points.getMaterial().getEmissiveTexture());
+
+        // nodes
+        assertEquals(1, actual.getRootNodes().size());
+        final Node root = actual.getRootNodes().get(0);
+        assertEquals("root", root.getId());
+        assertEquals(Collections.singletonList(restored), root.getMeshes());
+        assertEquals(1, root.getChildren().size());
+        final Node child = root.getChildren().get(0);
+        assertEquals("child", child.getId());
+        assertSame(root, child.getParent());
+        assertEquals(Collections.singletonList(points), child.getMeshes());
+        assertArrayEquals(expected.getRootNodes().get(0).getChildren().get(0).getLocalTransform().getTransform(),
+                child.getLocalTransform().getTransform(), 0);
+    }
+
+    @Test
+    public void restoredBuffersAreWritable() {
+        SceneCache.save("hash", LOADER, 1, Collections.singletonList(scene()));
+
+        final Listener listener = new Listener();
+        assertTrue(SceneCache.load("hash", LOADER, 1, listener));
+        final FloatBuffer vertices = listener.objects.get(0).getVertexBuffer();
+        vertices.put(0, 42);
+        assertEquals(42, vertices.get(0), 0);
+
+        // the private mapping doesn't change the file
+        final Listener reloaded = new Listener();
+        assertTrue(SceneCache.load("hash", LOADER, 1, reloaded));
+        assertEquals(0, reloaded.objects.get(0).getVertexBuffer().get(0), 0);
+    }
+
+    @Test
+    public void scenesWithSkinsAreNotCached() {
+        final Scene scene = scene();
+        scene.getSkins().add(new Skin("skin", new float[16], new int[]{0}));
+        SceneCache.save("hash", LOADER, 1, Collections.singletonList(scene));
+
+        assertFalse(SceneCache.load("hash", LOADER, 1, new Listener()));
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void otherLoaderVersionIsDiscarded() {
+        SceneCache.save("hash", LOADER, 1, Collections.singletonList(scene()));
+
+        final Listener listener = new Listener();
+        assertFalse(SceneCache.load("hash", LOADER, 2, listener));
+        assertTrue(listener.scenes.isEmpty());
+
+        // the stale entry is deleted
+        assertFalse(SceneCache.load("hash", LOADER, 1, listener));
+    }
+
+    @Test
+    public void scenesUsedLeastRecentlyAreEvicted() {
+        SceneCache.save("a", LOADER, 1, Collections.singletonList(scene()));
+        final File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        final long size = files[0].length();
+
+        SceneCache.save("b", LOADER, 1, Collections.singletonList(scene()));
+        for (File file : directory.listFiles()) {
+            assertTrue(file.setLastModified(file.getName().startsWith("a") ? 1000_000 : 2000_000));
+        }
+
+        // a is used, so b is the least recent
+        assertTrue(SceneCache.load("a", LOADER, 1, new Listener()));
+
+        SceneCache.setMaxSize(size * 2);
+        SceneCache.save("c", LOADER, 1, Collections.singletonList(scene()));
+
+        assertTrue(SceneCache.load("a", LOADER, 1, new Listener()));
+        assertFalse(SceneCache.load("b", LOADER, 1, new Listener()));
+        assertTrue(SceneCache.load("c", LOADER, 1, new Listener()));
+    }
+}
@@ -0,0 +1,252 @@
+package org.the3deer.android.engine.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the parsing and the level layout of the KTX containers. No GPU is needed
+ */
+public class KtxTextureTest {
+
+    private static final byte[] KTX1_IDENTIFIER = {(byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+    private static final byte[] KTX2_IDENTIFIER = {(byte) 0xAB, 'K', 'T', 'X', ' ', '2', '0', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+
+    private static final int VK_FORMAT_R8G8B8A8_SRGB = 43;
+    private static final int VK_FORMAT_ASTC_6x6_UNORM_BLOCK = 165;
+
+    /**
+     * @return the level filled with its index, so every level can be told apart
+     */
+    private static byte[] level(int level, long size) {
+        final byte[] ret = new byte[(int) size];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = (byte) (level * 16 + i);
+        }
+        return ret;
+    }
+
+    private static byte[] keyValue(String key, String value, ByteOrder order) {
+        final byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        final byte[] v = value.getBytes(StandardCharsets.UTF_8);
+        final int size = k.length + 1 + v.length;
+        final ByteBuffer ret = ByteBuffer.allocate(4 + ((size + 3) & ~3)).order(order);
+        ret.putInt(size).put(k).put((byte) 0).put(v);
+        return ret.array();
+    }
+
+    private static ByteBuffer ktx1(ByteOrder order, int glType, int glFormat, int glInternalFormat,
+                                   int width, int height, int levels, byte[] keyValues) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteBuffer header = ByteBuffer.allocate(64).order(order);
+        header.put(KTX1_IDENTIFIER);
+        header.putInt(0x04030201);
+        header.putInt(glType);
+        header.putInt(1);
+        header.putInt(glFormat);
+        header.putInt(glInternalFormat);
+        header.putInt(glFormat);
+        header.putInt(width);
+        header.putInt(height);
+        header.putInt(0);
+        header.putInt(0);
+        header.putInt(1);
+        header.putInt(levels);
+        header.putInt(keyValues.length);
+        out.write(header.array(), 0, 64);
+        out.write(keyValues, 0, keyValues.length);
+        for (int l = 0; l < levels; l++) {
+            final byte[] data = level(l, KtxTexture.getLevelSize(glInternalFormat, glFormat,
+                    Math.max(1, width >> l), Math.max(1, height >> l)));
+            final ByteBuffer size = ByteBuffer.allocate(4).order(order).putInt(data.length);
+            out.write(size.array(), 0, 4);
+            out.write(data, 0, data.length);
+            out.write(new byte[(4 - data.length % 4) % 4], 0, (4 - data.length % 4) % 4);
+        }
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private static ByteBuffer ktx2(int vkFormat, int glInternalFormat, int glFormat, int width, int height,
+                                   int levels, int supercompression, byte[] keyValues) {
+        final int kvdOffset = 80 + levels * 24;
+        int offset = kvdOffset + keyValues.length;
+        final long[] sizes = new long[levels];
+        final int[] offsets = new int[levels];
+        for (int l = 0; l < levels; l++) {
+            sizes[l] = KtxTexture.getLevelSize(glInternalFormat, glFormat, Math.max(1, width >> l), Math.max(1, height >> l));
+            offsets[l] = offset;
+            offset += (int) sizes[l];
+        }
+        final ByteBuffer ret = ByteBuffer.allocate(offset).order(ByteOrder.LITTLE_ENDIAN);
+        ret.put(KTX2_IDENTIFIER);
+        ret.putInt(vkFormat);
+        ret.putInt(1);
+        ret.putInt(width);
+        ret.putInt(height);
+        ret.putInt(0);
+        ret.putInt(0);
+        ret.putInt(1);
+        ret.putInt(levels);
+        ret.putInt(supercompression);
+        ret.putInt(0);
+        ret.putInt(0);
+        ret.putInt(kvdOffset);
+        ret.putInt(keyValues.length);
+        ret.putLong(0);
+        ret.putLong(0);
+        for (int l = 0; l < levels; l++) {
+            ret.putLong(offsets[l]).putLong(sizes[l]).putLong(sizes[l]);
+        }
+        ret.put(keyValues);
+        for (int l = 0; l < levels; l++) {
+            ret.put(level(l, sizes[l]));
+        }
+        ret.clear();
+        return ret;
+    }
+
+    private static void assertLevels(KtxTexture texture) {
+        for (int l = 0; l < texture.getLevelCount(); l++) {
+            final long size = KtxTexture.getLevelSize(texture.getGlInternalFormat(), texture.getGlFormat(),
+                    texture.getLevelWidth(l), texture.getLevelHeight(l));
+            final ByteBuffer data = texture.getLevel(l);
+            assertEquals("level " + l, size, data.remaining());
+            final byte[] actual = new byte[data.remaining()];
+            data.get(actual);
+            assertArrayEquals("level " + l, level(l, size), actual);
+        }
+    }
+
+    @Test
+    public void readKtx1Etc2WithMipmaps() {
+        final byte[] kvd = keyValue("KTXorientation", "S=r,T=d", ByteOrder.LITTLE_ENDIAN);
+        final ByteBuffer data = ktx1(ByteOrder.LITTLE_ENDIAN, 0, 0, KtxTexture.GL_COMPRESSED_RGB8_ETC2, 16, 8, 5, kvd);
+        assertTrue(KtxTexture.isKtx(data));
+
+        final KtxTexture texture = KtxTexture.read(data);
+        assertEquals(1, texture.getVersion());
+        assertEquals(16, texture.getWidth());
+        assertEquals(8, texture.getHeight());
+        assertTrue(texture.isCompressed());
+        assertEquals(KtxTexture.GL_COMPRESSED_RGB8_ETC2, texture.getGlInternalFormat());
+        assertEquals(5, texture.getLevelCount());
+
+        // 16x8, 8x4, 4x2, 2x1, 1x1: the last levels are one block
+        assertEquals(4 * 2 * 8, texture.getLevel(0).remaining());
+        assertEquals(2 * 8, texture.getLevel(1).remaining());
+        assertEquals(8, texture.getLevel(4).remaining());
+        assertEquals(1, texture.getLevelWidth(4));
+        assertEquals(1, texture.getLevelHeight(4));
+        assertLevels(texture);
+
+        assertArrayEquals("S=r,T=d".getBytes(StandardCharsets.UTF_8),
+                texture.getKeyValues().get("KTXorientation"));
+    }
+
+    @Test
+    public void readKtx1BigEndianRgba() {
+        final ByteBuffer data = ktx1(ByteOrder.BIG_ENDIAN, KtxTexture.GL_UNSIGNED_BYTE, KtxTexture.GL_RGBA,
+                KtxTexture.GL_RGBA8, 3, 3, 2, new byte[0]);
+
+        final KtxTexture texture = KtxTexture.read(data);
+        assertFalse(texture.isCompressed());
+        assertEquals(KtxTexture.GL_RGBA, texture.getGlFormat());
+        assertEquals(KtxTexture.GL_UNSIGNED_BYTE, texture.getGlType());
+
+        // 3x3 rgba is not a multiple of 4 bytes per row, and the levels are padded
+        assertEquals(3 * 3 * 4, texture.getLevel(0).remaining());
+        assertEquals(4, texture.getLevel(1).remaining());
+        assertLevels(texture);
+    }
+
+    @Test
+    public void readKtx2Astc() {
+        final int glInternalFormat = KtxTexture.GL_COMPRESSED_RGBA_ASTC_4x4 + 4;
+        final ByteBuffer data = ktx2(VK_FORMAT_ASTC_6x6_UNORM_BLOCK, glInternalFormat, 0, 13, 7, 3, 0,
+                keyValue("KTXwriter", "test", ByteOrder.LITTLE_ENDIAN));
+
+        final KtxTexture texture = KtxTexture.read(data);
+        assertEquals(2, texture.getVersion());
+        assertEquals(glInternalFormat, texture.getGlInternalFormat());
+        assertEquals(6, KtxTexture.getBlockWidth(texture.getGlInternalFormat()));
+        assertEquals(6, KtxTexture.getBlockHeight(texture.getGlInternalFormat()));
+        assertTrue(texture.isCompressed());
+
+        // 13x7 is 3x2 blocks of 16 bytes
+        assertEquals(3 * 2 * 16, texture.getLevel(0).remaining());
+        assertLevels(texture);
+        assertArrayEquals("test".getBytes(StandardCharsets.UTF_8), texture.getKeyValues().get("KTXwriter"));
+    }
+
+    @Test
+    public void readKtx2Rgba() {
+        final ByteBuffer data = ktx2(VK_FORMAT_R8G8B8A8_SRGB, KtxTexture.GL_SRGB8_ALPHA8, KtxTexture.GL_RGBA, 4, 4, 1, 0, new byte[0]);
+
+        final KtxTexture texture = KtxTexture.read(data);
+        assertEquals(KtxTexture.GL_SRGB8_ALPHA8, texture.getGlInternalFormat());
+        assertEquals(KtxTexture.GL_RGBA, texture.getGlFormat());
+        assertFalse(texture.isCompressed());
+        assertLevels(texture);
+    }
+
+    @Test
+    public void levelsAreViewsOfTheData() {
+        final ByteBuffer data = ktx2(VK_FORMAT_R8G8B8A8_SRGB, KtxTexture.GL_SRGB8_ALPHA8, KtxTexture.GL_RGBA, 2, 2, 1, 0, new byte[0]);
+        final KtxTexture texture = KtxTexture.read(data);
+
+        // the level is not copied
+        data.put(data.limit() - 1, (byte) 0x7F);
+        final ByteBuffer level = texture.getLevel(0);
+        assertEquals(0x7F, level.get(level.limit() - 1));
+
+        // the source is not modified
+        assertEquals(0, data.position());
+    }
+
+    @Test
+    public void levelSizes() {
+        assertEquals(8, KtxTexture.getLevelSize(KtxTexture.GL_ETC1_RGB8_OES, 0, 1, 1));
+        assertEquals(16, KtxTexture.getLevelSize(KtxTexture.GL_COMPRESSED_RGBA8_ETC2_EAC, 0, 4, 4));
+        assertEquals(4 * 16, KtxTexture.getLevelSize(KtxTexture.GL_COMPRESSED_RGBA8_ETC2_EAC, 0, 5, 5));
+        // astc 8x5
+        assertEquals(2 * 2 * 16, KtxTexture.getLevelSize(KtxTexture.GL_COMPRESSED_SRGB8_ALPHA8_ASTC_4x4 + 5, 0, 9, 10));
+        assertEquals(5 * 3 * 3, KtxTexture.getLevelSize(KtxTexture.GL_RGB8, KtxTexture.GL_RGB, 5, 3));
+        assertEquals(0, KtxTexture.getBlockBytes(KtxTexture.GL_RGBA8));
+    }
+
+    @Test
+    public void notKtx() {
+        assertFalse(KtxTexture.isKtx(null));
+        assertFalse(KtxTexture.isKtx(ByteBuffer.wrap(new byte[]{(byte) 0x89, 'P', 'N', 'G'})));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readNotKtx() {
+        KtxTexture.read(ByteBuffer.wrap(new byte[64]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readTruncated() {
+        final ByteBuffer data = ktx1(ByteOrder.LITTLE_ENDIAN, 0, 0, KtxTexture.GL_COMPRESSED_RGB8_ETC2, 16, 16, 1, new byte[0]);
+        data.limit(data.limit() - 8);
+        KtxTexture.read(data);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readSupercompressed() {
+        KtxTexture.read(ktx2(VK_FORMAT_R8G8B8A8_SRGB, KtxTexture.GL_SRGB8_ALPHA8, KtxTexture.GL_RGBA, 4, 4, 1, 2, new byte[0]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readTooManyLevels() {
+        KtxTexture.read(ktx1(ByteOrder.LITTLE_ENDIAN, 0, 0, KtxTexture.GL_COMPRESSED_RGB8_ETC2, 4, 4, 4, new byte[0]));
+    }
+}
@@ -0,0 +1,261 @@
+package org.the3deer.util.xml;
+
+import org.junit.Test;
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link XmlReader}: the traversal of nested elements, the attributes, the text and CDATA payloads,
+ * the elements closed early (empty or truncated) and the {@link XmlReader.Handler}.
+ * It runs on the JVM with kxml2, the pull parser of {@link android.util.Xml}.
+ */
+public class XmlReaderTest {
+
+    private static final String DOCUMENT = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<COLLADA version=\"1.4.1\">\n" +
+            "  <asset><up_axis>Z_UP</up_axis></asset>\n" +
+            "  <library_geometries>\n" +
+            "    <geometry id=\"cube\" name=\"Cube\">\n" +
+            "      <mesh>\n" +
+            "        <float_array id=\"positions\" count=\"6\">1 -2.5 3e2\n 0.125 -0 7</float_array>\n" +
+            "        <p>0 1 2 -3</p>\n" +
+            "      </mesh>\n" +
+            "    </geometry>\n" +
+            "    <geometry id=\"empty\"/>\n" +
+            "  </library_geometries>\n" +
+            "  <scene><instance_visual_scene url=\"#scene\"/></scene>\n" +
+            "</COLLADA>";
+
+    private static XmlReader reader(String xml) throws XmlPullParserException {
+        final XmlPullParser parser = new KXmlParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+        parser.setInput(new StringReader(xml));
+        return new XmlReader(parser);
+    }
+
+    /**
+     * Move to the next element with the name
+     */
+    private static void moveTo(XmlReader reader, String name) throws IOException {
+        while (reader.nextElement()) {
+            if (name.equals(reader.getName())) return;
+        }
+        fail("Element not found: " + name);
+    }
+
+    @Test
+    public void nestedElementsAreVisitedInDocumentOrder() throws Exception {
+        final XmlReader reader = reader(DOCUMENT);
+        final List<String> elements = new ArrayList<>();
+        while (reader.nextElement()) {
+            elements.add(reader.getName() + ":" + reader.getDepth());
+        }
+        assertEquals(Arrays.asList("COLLADA:1", "asset:2", "up_axis:3", "library_geometries:2", "geometry:3",
+                "mesh:4", "float_array:5", "p:5", "geometry:3", "scene:2", "instance_visual_scene:3"), elements);
+    }
+
+    @Test
+    public void childrenNotConsumedAreSkipped() throws Exception {
+        final XmlReader reader = reader(DOCUMENT);
+        assertTrue(reader.nextElement());
+        final int depth = reader.getDepth();
+        final List<String> children = new ArrayList<>();
+        while (reader.nextChild(depth)) {
+            children.add(reader.getName());
+        }
+        assertEquals(Arrays.asList("asset", "library_geometries", "scene"), children);
+        assertFalse(reader.nextElement());
+    }
+
+    @Test
+    public void attributesOfTheCurrentElement() throws Exception {
+        final XmlReader reader = reader(DOCUMENT);
+        assertTrue(reader.nextElement());
+        assertEquals("1.4.1", reader.getAttribute("version"));
+        assertNull(reader.getAttribute("id"));
+
+        moveTo(reader, "geometry");
+        assertEquals("cube", reader.getAttribute("id"));
+        assertEquals("Cube", reader.getAttribute("name"));
+    }
+
+    @Test
+    public void captureLoadsTheSubtree() throws Exception {
+        final XmlReader reader = reader(DOCUMENT);
+        moveTo(reader, "library_geometries");
+
+        final XmlNode geometries = reader.capture();
+        assertEquals("library_geometries", geometries.getName());
+        assertEquals(2, geometries.getChildren("geometry").size());
+        final XmlNode cube = geometries.getChildWithAttribute("geometry", "id", "cube");
+        assertEquals("Cube", cube.getAttribute("name"));
+        final XmlNode positions = cube.getChild("mesh").getChild("float_array");
+        assertEquals("6", positions.getAttribute("count"));
+        assertEquals("1 -2.5 3e2\n 0.125 -0 7", positions.getData());
+        assertEquals("0 1 2 -3", cube.getChild("mesh").getChild("p").getData());
+
+        // the reader is left at the end of the element: the next element is the sibling
+        assertTrue(reader.nextElement());
+        assertEquals("scene", reader.getName());
+    }
+
+    @Test
+    public void numbersAreStreamedIntoBuffers() throws Exception {
+        final XmlReader reader = reader(DOCUMENT);
+        moveTo(reader, "float_array");
+        final FloatBuffer floats = FloatBuffer.allocate(6);
+        assertEquals(6, reader.readFloats(floats));
+        assertArrayEquals(new float[]{1, -2.5f, 300, 0.125f, -0f, 7}, floats.array(), 0);
+
+        // the values beyond the limit are counted, but not written
+        assertTrue(reader.nextElement());
+        assertEquals("p", reader.getName());
+        final IntBuffer ints = IntBuffer.allocate(3);
+        assertEquals(4, reader.readInts(ints));
+        assertArrayEquals(new int[]{0, 1, 2}, ints.array());
+
+        assertTrue(reader.nextElement());
+        assertEquals("geometry", reader.getName());
+    }
+
+    @Test
+    public void textAndCdataAreRead() throws Exception {
+        final XmlReader reader = reader("<root>" +
+                "<name>a &lt; b &amp; c</name>" +
+                "<script><![CDATA[if (a < b && c) { return; }]]></script>" +
+                "<mixed>x = <![CDATA[<y>]]>;</mixed>" +
+                "<floats>1.5 <![CDATA[2.5 3]]> 4</floats>" +
+                "<ints><![CDATA[ 7 8 9 ]]></ints>" +
+                "</root>");
+        assertTrue(reader.nextElement());
+        final int depth = reader.getDepth();
+
+        assertTrue(reader.nextChild(depth));
+        assertEquals("a < b & c", reader.readText());
+        assertTrue(reader.nextChild(depth));
+        assertEquals("if (a < b && c) { return; }", reader.readText());
+        assertTrue(reader.nextChild(depth));
+        assertEquals("x = <y>;", reader.readText());
+        assertTrue(reader.nextChild(depth));
+        assertArrayEquals(new float[]{1.5f, 2.5f, 3, 4}, reader.readFloats(-1), 0);
+        assertTrue(reader.nextChild(depth));
+        assertArrayEquals(new int[]{7, 8, 9}, reader.readInts(3));
+        assertFalse(reader.nextChild(depth));
+    }
+
+    @Test
+    public void emptyElementsCloseEarly() throws Exception {
+        final XmlReader reader = reader("<root><a/><b></b><c id=\"c\"/><d>1</d></root>");
+        assertTrue(reader.nextElement());
+        final int depth = reader.getDepth();
+
+        assertTrue(reader.nextChild(depth));
+        assertEquals("a", reader.getName());
+        assertEquals("", reader.readText());
+
+        assertTrue(reader.nextChild(depth));
+        assertEquals("b", reader.getName());
+        assertEquals(0, reader.readFloats(-1).length);
+
+        assertTrue(reader.nextChild(depth));
+        final XmlNode c = reader.capture();
+        assertEquals("c", c.getAttribute("id"));
+        assertNull(c.getData());
+        assertNull(c.getChild("d"));
+
+        assertTrue(reader.nextChild(depth));
+        assertEquals("d", reader.getName());
+        assertArrayEquals(new int[]{1}, reader.readInts(-1));
+        assertFalse(reader.nextChild(depth));
+    }
+
+    @Test
+    public void truncatedDocumentIsReported() throws Exception {
+        final String truncated = "<root><mesh><p>1 2 3</p><p>4 5";
+
+        XmlReader reader = reader(truncated);
+        assertTrue(reader.nextElement());
+        try {
+            reader.capture();
+            fail("The document is truncated");
+        } catch (IOException expected) {
+            // expected
+        }
+
+        reader = reader(truncated);
+        assertTrue(reader.nextElement());
+        try {
+            reader.skip();
+            fail("The document is truncated");
+        } catch (IOException expected) {
+            // expected
+        }
+
+        reader = reader(truncated);
+        moveTo(reader, "p");
+        assertArrayEquals(new int[]{1, 2, 3}, reader.readInts(-1));
+        assertTrue(reader.nextElement());
+        try {
+            reader.readInts(-1);
+            fail("The document is truncated");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void consumingRequiresTheStartOfAnElement() throws Exception {
+        final XmlReader reader = reader("<root><a>1</a></root>");
+        try {
+            reader.readText();
+            fail("The reader is not at an element");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void handlerVisitsTheElementsNotConsumed() throws Exception {
+        final XmlReader reader = reader(DOCUMENT);
+        final List<String> events = new ArrayList<>();
+        final float[][] positions = new float[1][];
+        reader.read(new XmlReader.Handler() {
+            @Override
+            public void startElement(XmlReader reader) throws IOException {
+                events.add("<" + reader.getName());
+                if ("asset".equals(reader.getName())) {
+                    reader.skip();
+                } else if ("float_array".equals(reader.getName())) {
+                    positions[0] = reader.readFloats(Integer.parseInt(reader.getAttribute("count")));
+                }
+            }
+
+            @Override
+            public void endElement(XmlReader reader) {
+                events.add(reader.getName() + ">");
+            }
+        });
+
+        // the consumed elements (asset, float_array) and the children of asset are not closed
+        assertEquals(Arrays.asList("<COLLADA", "<asset", "<library_geometries", "<geometry", "<mesh",
+                "<float_array", "<p", "p>", "mesh>", "geometry>", "<geometry", "geometry>", "library_geometries>",
+                "<scene", "<instance_visual_scene", "instance_visual_scene>", "scene>", "COLLADA>"), events);
+        assertArrayEquals(new float[]{1, -2.5f, 300, 0.125f, -0f, 7}, positions[0], 0);
+    }
+}